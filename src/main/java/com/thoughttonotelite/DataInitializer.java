@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thoughttonotelite.model.Note;
 import com.thoughttonotelite.repository.NoteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.core.io.ClassPathResource;
@@ -19,15 +20,25 @@ public class DataInitializer implements ApplicationRunner {
 
     private final NoteRepository noteRepository;
     private final ObjectMapper objectMapper;
+    private final String owner;
+    private final boolean enabled;
 
     @Autowired
-    public DataInitializer(NoteRepository noteRepository, ObjectMapper objectMapper) {
+    public DataInitializer(NoteRepository noteRepository, ObjectMapper objectMapper,
+                           @Value("${notes.ownership.legacy-owner:${spring.security.user.name}}") String owner,
+                           @Value("${notes.sample-data.enabled:true}") boolean enabled) {
         this.noteRepository = noteRepository;
         this.objectMapper = objectMapper;
+        this.owner = owner;
+        this.enabled = enabled;
     }
 
     @Override
     public void run(ApplicationArguments args) throws IOException {
+        if (!enabled) {
+            // Counting the notes scans the whole table, which instances started on demand should not wait for
+            return;
+        }
         if (noteRepository.count() == 0) {
             // Load the JSON file
             ClassPathResource resource = new ClassPathResource("data/notes-data.json");
@@ -35,6 +46,8 @@ public class DataInitializer implements ApplicationRunner {
 
             // Convert JSON data to list of Note objects
             List<Note> notes = objectMapper.readValue(inputStream, new TypeReference<List<Note>>() {});
+            // Sample notes belong to the default user
+            notes.forEach(note -> note.setOwner(owner));
 
             // Save notes to the database
             noteRepository.saveAll(notes);
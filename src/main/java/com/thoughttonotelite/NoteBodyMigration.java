@@ -0,0 +1,98 @@
+package com.thoughttonotelite;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves note content stored inline in the {@code notes} table into the {@code note_bodies} table.
+ * <p>
+ * Earlier versions kept the content in the {@code content} and {@code compressed_content} columns of
+ * {@code notes}. Hibernate adds the new {@code body_id} column and {@code note_bodies} table on startup
+ * but leaves the old columns in place, so this runner copies the content of every note that has no
+ * body yet, in batches of {@code notes.storage.body-migration-batch-size} notes, and drops the old
+ * columns once they are empty. It runs before any other startup work and does nothing once the old
+ * columns are gone.
+ * </p>
+ * <p>
+ * Each note used to have a body of its own, enforced by a unique constraint on {@code notes.body_id}.
+ * Now that notes with the same content share a body, this runner also drops that constraint, which
+ * Hibernate leaves in place.
+ * </p>
+ */
+@Component
+@Order(0)
+@Profile("!embedded & !sharded")
+public class NoteBodyMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteBodyMigration.class);
+
+    private static final String BODY_ID_UNIQUE_CONSTRAINTS_SQL = """
+            SELECT conname FROM pg_constraint
+            WHERE conrelid = 'notes'::regclass AND contype = 'u' AND pg_get_constraintdef(oid) = 'UNIQUE (body_id)'
+            """;
+
+    // Copies one batch of inline content into new bodies and links each note to its body, in a single statement.
+    // The placeholder is the compressed content column, which only exists in databases created by some versions.
+    private static final String MOVE_BATCH_SQL = """
+            WITH batch AS (
+                SELECT id, nextval(pg_get_serial_sequence('note_bodies', 'id')) AS body_id, content, %1$s AS compressed_content
+                FROM notes
+                WHERE body_id IS NULL AND (content IS NOT NULL OR %1$s IS NOT NULL)
+                ORDER BY id
+                LIMIT ?
+            ), bodies AS (
+                INSERT INTO note_bodies (id, content, compressed_content)
+                SELECT body_id, content, compressed_content FROM batch
+            )
+            UPDATE notes n SET body_id = batch.body_id
+            FROM batch
+            WHERE n.id = batch.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public NoteBodyMigration(JdbcTemplate jdbcTemplate,
+                             @Value("${notes.storage.body-migration-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String constraint : jdbcTemplate.queryForList(BODY_ID_UNIQUE_CONSTRAINTS_SQL, String.class)) {
+            jdbcTemplate.execute("ALTER TABLE notes DROP CONSTRAINT \"%s\"".formatted(constraint));
+            log.info("Dropped the unique constraint {} so that notes can share bodies", constraint);
+        }
+
+        if (!hasColumn("notes", "content")) {
+            return;
+        }
+        String moveBatchSql = MOVE_BATCH_SQL.formatted(hasColumn("notes", "compressed_content") ? "compressed_content" : "NULL::bytea");
+        long moved = 0;
+        int count;
+        do {
+            count = jdbcTemplate.update(moveBatchSql, batchSize);
+            moved += count;
+        } while (count > 0);
+
+        jdbcTemplate.execute("ALTER TABLE notes DROP COLUMN content, DROP COLUMN IF EXISTS compressed_content");
+        log.info("Moved the content of {} notes into note_bodies", moved);
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM information_schema.columns WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.thoughttonotelite;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Gives notes created before notes had owners to a user, and optionally partitions the {@code notes} table by owner.
+ * <p>
+ * Hibernate adds the {@code owner} column on startup but leaves it empty for existing notes, which no user
+ * could then see. This runner sets the owner of those notes to {@code notes.ownership.legacy-owner}, in
+ * batches of {@code notes.ownership.migration-batch-size} notes, and does nothing once every note has an owner.
+ * </p>
+ * <p>
+ * With {@code notes.storage.partitioning.partitions} above zero, the {@code notes} table is converted once into
+ * a table hash-partitioned by owner with that many partitions, so that all notes of a user are in one partition
+ * and the partitions stay small as users are added. The primary key becomes {@code (id, owner)}, since
+ * PostgreSQL requires the partition key in every unique constraint; IDs stay unique because they are drawn from
+ * one sequence. For the same reason, the unique constraint on {@code body_id} cannot be kept. The conversion
+ * copies the whole table in one transaction, holding an exclusive lock on it, so it is best done during
+ * maintenance. Changing the number of partitions later requires repartitioning by hand.
+ * </p>
+ */
+@Component
+@Order(1)
+@Profile("!embedded & !sharded")
+public class NoteOwnershipMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteOwnershipMigration.class);
+
+    private static final String BACKFILL_BATCH_SQL = """
+            UPDATE notes SET owner = ?
+            WHERE id IN (SELECT id FROM notes WHERE owner IS NULL ORDER BY id LIMIT ?)
+            """;
+
+    private static final String FOREIGN_KEYS_SQL = """
+            SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint
+            WHERE conrelid = 'notes'::regclass AND contype = 'f'
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String legacyOwner;
+    private final int batchSize;
+    private final int partitions;
+
+    @Autowired
+    public NoteOwnershipMigration(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${notes.ownership.legacy-owner:${spring.security.user.name}}") String legacyOwner,
+                                  @Value("${notes.ownership.migration-batch-size:1000}") int batchSize,
+                                  @Value("${notes.storage.partitioning.partitions:0}") int partitions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.legacyOwner = legacyOwner;
+        this.batchSize = batchSize;
+        this.partitions = partitions;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long assigned = 0;
+        int count;
+        do {
+            count = jdbcTemplate.update(BACKFILL_BATCH_SQL, legacyOwner, batchSize);
+            assigned += count;
+        } while (count > 0);
+        if (assigned > 0) {
+            log.info("Gave {} notes without an owner to {}", assigned, legacyOwner);
+        }
+
+        if (partitions > 0 && !isPartitioned()) {
+            transactionTemplate.executeWithoutResult(status -> partitionByOwner());
+            log.info("Partitioned the notes table by owner into {} partitions", partitions);
+        }
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_partitioned_table WHERE partrelid = 'notes'::regclass", Integer.class);
+        return count != null && count > 0;
+    }
+
+    // Replaces the notes table with a partitioned copy, keeping its columns, IDs and foreign keys.
+    // Other indexes are left to Hibernate, which finds the partitioned table through hibernate.hbm2ddl.extra_physical_table_types.
+    private void partitionByOwner() {
+        List<String[]> foreignKeys = jdbcTemplate.query(FOREIGN_KEYS_SQL,
+                (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)});
+        jdbcTemplate.execute("LOCK TABLE notes IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("ALTER TABLE notes RENAME TO notes_unpartitioned");
+        jdbcTemplate.execute("ALTER TABLE notes_unpartitioned RENAME CONSTRAINT notes_pkey TO notes_unpartitioned_pkey");
+        jdbcTemplate.execute("CREATE TABLE notes (LIKE notes_unpartitioned INCLUDING DEFAULTS, CONSTRAINT notes_pkey PRIMARY KEY (id, owner)) PARTITION BY HASH (owner)");
+        for (int i = 0; i < partitions; i++) {
+            jdbcTemplate.execute("CREATE TABLE notes_p%d PARTITION OF notes FOR VALUES WITH (MODULUS %d, REMAINDER %d)"
+                    .formatted(i, partitions, i));
+        }
+        jdbcTemplate.execute("INSERT INTO notes SELECT * FROM notes_unpartitioned");
+        jdbcTemplate.execute("DROP TABLE notes_unpartitioned");
+
+        // A new identity sequence, continuing after the highest copied ID
+        Long maxId = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM notes", Long.class);
+        jdbcTemplate.execute("ALTER TABLE notes ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY (START WITH %d)".formatted(maxId + 1));
+        for (String[] foreignKey : foreignKeys) {
+            jdbcTemplate.execute("ALTER TABLE notes ADD CONSTRAINT %s %s".formatted(foreignKey[0], foreignKey[1]));
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.thoughttonotelite;
 
+import com.thoughttonotelite.config.NoteRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(NoteRuntimeHints.class)
 public class ThoughtToNoteLiteBeApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,144 @@
+package com.thoughttonotelite.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the notes API: sheds load before it reaches the database instead of queueing it.
+ * <p>
+ * Every authenticated user has a token bucket in a {@link ClientRateLimiter}, refilled at
+ * {@code notes.admission.rate.requests-per-second} up to {@code notes.admission.rate.burst} requests. A user
+ * exceeding it receives 429 (Too Many Requests) with a {@code Retry-After} header telling when the next request
+ * will be admitted, so that one client looping over the API cannot take the capacity of the others.
+ * </p>
+ * <p>
+ * Admitted requests then need a permit for their class of endpoint. Expensive requests, which read many notes
+ * (the list of all notes, searches and lookups of several notes by ID), share
+ * {@code notes.admission.concurrency.expensive} permits, kept below the size of the connection pool so that
+ * they never hold all connections; all other requests share {@code notes.admission.concurrency.cheap}
+ * permits. A request finding no free permit is answered at once with 503 (Service Unavailable) and
+ * {@code Retry-After}, instead of waiting for a connection until it times out.
+ * </p>
+ * <p>
+ * The filter runs right after Spring Security, so unauthenticated requests are rejected before they use a token.
+ * Idle buckets are evicted every {@code notes.admission.rate.eviction-interval-ms}.
+ * </p>
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private static final String PATH_PREFIX = "/api/notes";
+
+    private final boolean enabled;
+    private final ClientRateLimiter rateLimiter;
+    private final Semaphore expensivePermits;
+    private final Semaphore cheapPermits;
+
+    /**
+     * Constructs a new {@code AdmissionControlFilter}.
+     *
+     * @param enabled           whether requests are limited at all
+     * @param requestsPerSecond the rate at which each user may send requests
+     * @param burst             the number of requests a user may send at once after being idle
+     * @param maxClients        the maximum number of users tracked with a bucket of their own
+     * @param expensive         the maximum number of expensive requests served concurrently
+     * @param cheap             the maximum number of other requests served concurrently
+     */
+    @Autowired
+    public AdmissionControlFilter(@Value("${notes.admission.enabled:false}") boolean enabled,
+                                  @Value("${notes.admission.rate.requests-per-second:50}") double requestsPerSecond,
+                                  @Value("${notes.admission.rate.burst:100}") int burst,
+                                  @Value("${notes.admission.rate.max-clients:10000}") int maxClients,
+                                  @Value("${notes.admission.concurrency.expensive:4}") int expensive,
+                                  @Value("${notes.admission.concurrency.cheap:32}") int cheap) {
+        this(enabled, new ClientRateLimiter(requestsPerSecond, burst, maxClients), expensive, cheap);
+    }
+
+    AdmissionControlFilter(boolean enabled, ClientRateLimiter rateLimiter, int expensive, int cheap) {
+        this.enabled = enabled;
+        this.rateLimiter = rateLimiter;
+        this.expensivePermits = new Semaphore(expensive);
+        this.cheapPermits = new Semaphore(cheap);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled || !(path.equals(PATH_PREFIX) || path.startsWith(PATH_PREFIX + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // The request is wrapped by Spring Security, which reports the authenticated user as the remote user
+        String client = request.getRemoteUser() != null ? request.getRemoteUser() : request.getRemoteAddr();
+        long waitNanos = rateLimiter.tryAcquire(client);
+        if (waitNanos > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos, "Too many requests, retry later");
+            return;
+        }
+
+        Semaphore permits = isExpensive(request) ? expensivePermits : cheapPermits;
+        if (!permits.tryAcquire()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), "Too many requests in progress, retry later");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Drops the rate limiting state of users that have been idle long enough to have a full bucket.
+     */
+    @Scheduled(fixedDelayString = "${notes.admission.rate.eviction-interval-ms:60000}",
+            initialDelayString = "${notes.admission.rate.eviction-interval-ms:60000}")
+    public void evictIdleClients() {
+        int evicted = rateLimiter.evictIdle();
+        if (evicted > 0) {
+            log.debug("Evicted the rate limiting state of {} idle clients", evicted);
+        }
+    }
+
+    // Requests whose cost grows with the number of notes
+    private static boolean isExpensive(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return switch (request.getMethod()) {
+            case "GET" -> path.equals(PATH_PREFIX) || path.equals(PATH_PREFIX + "/search");
+            case "POST" -> path.equals(PATH_PREFIX + "/lookup");
+            default -> false;
+        };
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterNanos, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000)));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+}
@@ -0,0 +1,58 @@
+package com.thoughttonotelite.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Configures the binary encodings offered by the REST API in addition to JSON.
+ * <p>
+ * Clients that send {@code Accept: application/cbor} or {@code Accept: application/x-jackson-smile}
+ * receive notes and lists of notes in CBOR or Smile instead of JSON, and may send request bodies in the
+ * same encodings by setting the {@code Content-Type} accordingly. Both formats carry exactly the same
+ * data model as the JSON representation, but are smaller and cheaper to encode and decode, since numbers
+ * and string lengths are written in binary instead of being printed, parsed and escaped.
+ * </p>
+ * <p>
+ * Spring MVC registers default converters for both formats when they are on the classpath, but those
+ * use a plain {@code ObjectMapper}. They are replaced here by converters built from Spring Boot's
+ * {@link Jackson2ObjectMapperBuilder}, so that the {@code spring.jackson.*} settings applied to JSON,
+ * such as the date format, apply to the binary encodings as well. JSON remains the default for clients
+ * that do not ask for a specific encoding.
+ * </p>
+ */
+@Configuration
+public class BinaryEncodingConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    /**
+     * Constructs a new {@code BinaryEncodingConfig}.
+     *
+     * @param objectMapperBuilder provider of the builder configured by Spring Boot; a new builder is obtained per encoding
+     */
+    @Autowired
+    public BinaryEncodingConfig(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        // Appended after the JSON converter, so that JSON is still chosen for "Accept: */*"
+        converters.add(new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new CBORFactory()).build()));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new SmileFactory()).build()));
+    }
+}
@@ -0,0 +1,107 @@
+package com.thoughttonotelite.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client token buckets, refilled at a fixed rate up to a burst size.
+ * <p>
+ * Each client's bucket is a single {@link AtomicLong} holding the time at which the bucket will be full
+ * again (the generic cell rate algorithm): a request is admitted if that time is at most a burst's worth of
+ * tokens ahead of now, and moves it one token further. Admitting a request is a compare-and-set on that
+ * value, without locks, and a rejected request is told how long to wait until the next token.
+ * </p>
+ * <p>
+ * A bucket whose full time has passed behaves exactly like a new one, so such idle buckets can be dropped
+ * at any time by {@link #evictIdle()}. At most {@code maxClients} buckets are kept; once that many clients
+ * are active, further clients share one overflow bucket. A request racing with the eviction of its bucket
+ * may find a fresh bucket afterwards, which admits at most one request more than the rate allows.
+ * </p>
+ */
+public class ClientRateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxClients;
+    private final LongSupplier clock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow;
+
+    /**
+     * Constructs a new {@code ClientRateLimiter}.
+     *
+     * @param requestsPerSecond the rate at which every client's bucket is refilled
+     * @param burst             the number of tokens a full bucket holds
+     * @param maxClients        the maximum number of buckets kept
+     */
+    public ClientRateLimiter(double requestsPerSecond, int burst, int maxClients) {
+        this(requestsPerSecond, burst, maxClients, System::nanoTime);
+    }
+
+    ClientRateLimiter(double requestsPerSecond, int burst, int maxClients, LongSupplier clock) {
+        if (requestsPerSecond <= 0 || burst < 1 || maxClients < 1) {
+            throw new IllegalArgumentException("Expected a positive rate, burst and number of clients");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / requestsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxClients = maxClients;
+        this.clock = clock;
+        this.overflow = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Takes a token from the bucket of a client.
+     *
+     * @param client the name identifying the client
+     * @return {@code 0} if the request is admitted, otherwise the nanoseconds until the client gets its next token
+     */
+    public long tryAcquire(String client) {
+        AtomicLong bucket = buckets.get(client);
+        if (bucket == null) {
+            bucket = register(client);
+        }
+        while (true) {
+            long now = clock.getAsLong();
+            long fullAt = bucket.get();
+            long start = fullAt - now > 0 ? fullAt : now;
+            long ahead = start - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets of clients that have been idle long enough for their bucket to be full.
+     *
+     * @return the number of buckets dropped
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        return before - buckets.size();
+    }
+
+    /**
+     * Returns the number of clients with a bucket of their own.
+     *
+     * @return the number of buckets kept
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong register(String client) {
+        // Full until the next eviction; scanning for idle buckets here would make every new client pay for it
+        if (buckets.size() >= maxClients) {
+            return overflow;
+        }
+        return buckets.computeIfAbsent(client, key -> new AtomicLong(clock.getAsLong()));
+    }
+}
@@ -0,0 +1,45 @@
+package com.thoughttonotelite.config;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import com.thoughttonotelite.model.NoteVersion;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import java.sql.Connection;
+
+/**
+ * Declares what a native image of the application must keep beyond what Spring's AOT processing finds itself.
+ * <p>
+ * Spring derives hints for the beans, the JPA entities and the request and response types it can read from
+ * controller signatures, which covers the security configuration as well. It cannot see notes encoded by the
+ * response cache or behind {@code ResponseEntity<?>}, the sample data read by {@link com.thoughttonotelite.DataInitializer},
+ * the record created by a JPQL constructor expression for revision summaries, or the JDK proxies wrapping
+ * connections when reads are routed to replicas. These are registered here; without them the native
+ * executable starts but fails on the first request that needs them.
+ * </p>
+ */
+public class NoteRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Types encoded and decoded by Jackson outside of controller signatures
+        bindingRegistrar.registerReflectionHints(hints.reflection(), Note.class, NoteBatch.class, NoteVersion.class,
+                NoteRevisionSummary.class);
+
+        // SELECT new NoteRevisionSummary(...) invokes the canonical constructor reflectively
+        hints.reflection().registerType(NoteRevisionSummary.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+
+        hints.resources().registerPattern("data/notes-data.json");
+
+        // Connections handed out by ReplicaRoutingDataSource and the LazyConnectionDataSourceProxy it extends
+        hints.proxies().registerJdkProxy(Connection.class);
+        hints.proxies().registerJdkProxy(ConnectionProxy.class);
+    }
+}
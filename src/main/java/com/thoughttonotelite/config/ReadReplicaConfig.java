@@ -0,0 +1,79 @@
+package com.thoughttonotelite.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes read-only transactions to PostgreSQL read replicas when {@code notes.datasource.replicas.urls} is set.
+ * <p>
+ * The data source configured by Spring Boot from {@code spring.datasource.*} stays the primary and keeps
+ * serving all writes. It is wrapped in a {@link ReplicaRoutingDataSource} together with one connection pool
+ * per replica URL, so that the methods of {@link com.thoughttonotelite.service.NoteService} marked
+ * {@code @Transactional(readOnly = true)} read from the replicas. Replicas connect with the primary's
+ * credentials unless {@code notes.datasource.replicas.username} and {@code password} are set. Without
+ * replica URLs, the data source is left untouched.
+ * </p>
+ */
+@Configuration
+@Profile("!embedded & !sharded")
+public class ReadReplicaConfig {
+
+    /**
+     * Wraps the primary data source in a {@link ReplicaRoutingDataSource} if replicas are configured.
+     *
+     * @param urls                the JDBC URLs of the replicas, if any
+     * @param username            the user name for the replicas, empty to use the primary's
+     * @param password            the password for the replicas, empty to use the primary's
+     * @param poolSize            the maximum number of connections per replica
+     * @param connectionTimeout   how long to wait for a replica connection before falling back to the primary, in milliseconds
+     * @param maxLagBytes         the maximum replay lag, in bytes of write-ahead log, for a replica to be used
+     * @param checkIntervalMillis the interval between checks of the replicas
+     * @return the post-processor wrapping the {@code dataSource} bean
+     */
+    @Bean
+    static BeanPostProcessor replicaRoutingPostProcessor(
+            @Value("${notes.datasource.replicas.urls:}") List<String> urls,
+            @Value("${notes.datasource.replicas.username:}") String username,
+            @Value("${notes.datasource.replicas.password:}") String password,
+            @Value("${notes.datasource.replicas.pool-size:10}") int poolSize,
+            @Value("${notes.datasource.replicas.connection-timeout-ms:1000}") long connectionTimeout,
+            @Value("${notes.datasource.replicas.max-lag-bytes:1048576}") long maxLagBytes,
+            @Value("${notes.datasource.replicas.check-interval-ms:2000}") long checkIntervalMillis) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource primary)
+                        || bean instanceof ReplicaRoutingDataSource || urls.stream().allMatch(String::isBlank)) {
+                    return bean;
+                }
+                List<DataSource> replicas = new ArrayList<>();
+                for (String url : urls) {
+                    if (url.isBlank()) {
+                        continue;
+                    }
+                    HikariDataSource replica = DataSourceBuilder.create()
+                            .type(HikariDataSource.class)
+                            .url(url.trim())
+                            .username(username.isEmpty() && primary instanceof HikariDataSource hikari ? hikari.getUsername() : username)
+                            .password(password.isEmpty() && primary instanceof HikariDataSource hikari ? hikari.getPassword() : password)
+                            .build();
+                    replica.setPoolName("replica-" + (replicas.size() + 1));
+                    replica.setMaximumPoolSize(poolSize);
+                    replica.setConnectionTimeout(connectionTimeout);
+                    replica.setReadOnly(true);
+                    replicas.add(replica);
+                }
+                return new ReplicaRoutingDataSource(primary, replicas, maxLagBytes, checkIntervalMillis);
+            }
+        };
+    }
+}
@@ -0,0 +1,323 @@
+package com.thoughttonotelite.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data source sending connections of read-only transactions to PostgreSQL streaming replicas, and all
+ * others to the primary.
+ * <p>
+ * A transaction is read-only when it runs under {@code @Transactional(readOnly = true)}. Connections are
+ * handed out lazily, so the physical connection is only chosen when the first statement runs, by which time
+ * the transaction manager has recorded whether the transaction is read-only. Read-only transactions are
+ * spread over the replicas round-robin.
+ * </p>
+ * <p>
+ * A background check asks every {@code checkIntervalMillis} milliseconds how far each replica lags behind
+ * the primary, in bytes of write-ahead log not yet replayed. A replica is only used while it is reachable,
+ * in recovery, and lags by at most {@code maxLagBytes}. A replica that fails to hand out a connection is
+ * taken out of rotation until the next successful check. When no replica is usable, reads go to the primary.
+ * </p>
+ * <p>
+ * Users read their own writes: after each commit of a read-write transaction, the primary's write-ahead log
+ * position is read on the committing connection and recorded for the authenticated user, and a replica only
+ * serves that user's reads once it has replayed up to that position. Otherwise the read goes to another
+ * replica or the primary. Since notes are only changed by their owner, this also keeps caches filled by reads
+ * from picking up outdated notes after a change. Writes of other users do not hold back a user's reads.
+ * Commits without an authenticated user, such as write-behind batches and background jobs, change notes of
+ * many users, so every read waits for them. Positions every replica in rotation has replayed are forgotten
+ * at the next check.
+ * </p>
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY_LSN_SQL = "SELECT pg_current_wal_lsn()::text";
+
+    private static final String REPLICA_LAG_SQL = """
+            SELECT pg_is_in_recovery(), pg_wal_lsn_diff(?::pg_lsn, pg_last_wal_replay_lsn()), pg_last_wal_replay_lsn()::text
+            """;
+
+    private static final String REPLICA_LSN_SQL = "SELECT pg_last_wal_replay_lsn()::text";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagBytes;
+    private final AtomicInteger next = new AtomicInteger();
+    // Position of the primary's write-ahead log after each user's last commit, which replicas must have replayed
+    // before serving that user's reads
+    private final Map<String, Long> committedLsns = new ConcurrentHashMap<>();
+    // Position every read waits for: commits without a user, and at least what all replicas in rotation had
+    // replayed when entries of committedLsns were forgotten, so that a replica rejoining late cannot serve them
+    private final AtomicLong sharedLsn = new AtomicLong();
+    private final ScheduledExecutorService checker;
+
+    /**
+     * Constructs a new {@code ReplicaRoutingDataSource} and starts checking the replicas.
+     * Replicas are not used until their first check has passed.
+     *
+     * @param primary             the data source of the primary, used for writes
+     * @param replicas            the data sources of the replicas, used for read-only transactions
+     * @param maxLagBytes         the maximum replay lag, in bytes of write-ahead log, for a replica to be used
+     * @param checkIntervalMillis the interval between checks of the replicas
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagBytes, long checkIntervalMillis) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLagBytes = maxLagBytes;
+        setTargetDataSource(new Router());
+        afterPropertiesSet();
+        this.checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of replicas currently used for read-only transactions.
+     *
+     * @return the number of usable replicas
+     */
+    public int getUsableReplicaCount() {
+        return (int) replicas.stream().filter(replica -> replica.usable).count();
+    }
+
+    /**
+     * Measures the lag of every replica and takes lagging or unreachable replicas out of rotation.
+     */
+    void checkReplicas() {
+        String primaryLsn;
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(PRIMARY_LSN_SQL)) {
+            rs.next();
+            primaryLsn = rs.getString(1);
+        } catch (SQLException e) {
+            // Lag cannot be measured without the primary; keep the replicas as they are
+            log.warn("Could not read the WAL position of the primary: {}", e.getMessage());
+            return;
+        }
+        for (Replica replica : replicas) {
+            replica.check(primaryLsn);
+        }
+        long replayedByAll = replicas.stream().filter(replica -> replica.usable)
+                .mapToLong(replica -> replica.replayedLsn).min().orElse(0);
+        if (replayedByAll > 0) {
+            sharedLsn.accumulateAndGet(replayedByAll, Math::max);
+            committedLsns.values().removeIf(lsn -> lsn <= replayedByAll);
+        }
+    }
+
+    /**
+     * Records the write-ahead log position of the primary after a commit, read on the committing connection.
+     *
+     * @param connection the connection that has just committed
+     */
+    private void recordCommit(Connection connection) {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // A read that fell back to the primary wrote nothing
+            return;
+        }
+        // No second connection is taken from the pool, which may be exhausted by committing threads. The query runs
+        // in an implicit transaction, ended when the transaction manager restores auto-commit.
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(PRIMARY_LSN_SQL)) {
+            rs.next();
+            long lsn = parseLsn(rs.getString(1));
+            String user = currentUser();
+            if (user == null) {
+                sharedLsn.accumulateAndGet(lsn, Math::max);
+            } else {
+                committedLsns.merge(user, lsn, Math::max);
+            }
+        } catch (SQLException e) {
+            log.warn("Could not read the WAL position of the primary after a commit: {}", e.getMessage());
+        }
+    }
+
+    // Position a replica must have replayed to serve the current thread's reads
+    private long requiredLsn() {
+        String user = currentUser();
+        long shared = sharedLsn.get();
+        return user == null ? shared : Math.max(shared, committedLsns.getOrDefault(user, 0L));
+    }
+
+    // Name of the user whose request runs on this thread, or null for background work
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || !authentication.isAuthenticated() ? null : authentication.getName();
+    }
+
+    // Converts the text form of a pg_lsn, two hexadecimal halves separated by a slash, into a number
+    static long parseLsn(String lsn) {
+        if (lsn == null) {
+            return 0;
+        }
+        int slash = lsn.indexOf('/');
+        return Long.parseLong(lsn.substring(0, slash), 16) << 32 | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+
+    @Override
+    public void close() throws IOException {
+        checker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Chooses the physical data source when the lazy connection is first used.
+     */
+    private class Router extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                long requiredLsn = requiredLsn();
+                int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+                for (int i = 0; i < replicas.size(); i++) {
+                    Replica replica = replicas.get((start + i) % replicas.size());
+                    Connection connection = replica.usable ? replica.getConnection(requiredLsn) : null;
+                    if (connection != null) {
+                        return connection;
+                    }
+                }
+            }
+            return recordingCommits(primary.getConnection());
+        }
+
+        // Records the position of each commit, so that later reads wait for the replicas to replay it
+        private Connection recordingCommits(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                        if (method.getName().equals("commit")) {
+                            recordCommit(connection);
+                        }
+                        return result;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+    }
+
+    /**
+     * One replica and its state as of the last check.
+     */
+    private class Replica {
+
+        final DataSource dataSource;
+        volatile boolean usable;
+        volatile long replayedLsn;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        // Returns a connection if the replica has replayed up to the given position, or null
+        Connection getConnection(long requiredLsn) {
+            Connection connection = null;
+            try {
+                connection = dataSource.getConnection();
+                if (replayedLsn < requiredLsn) {
+                    try (Statement statement = connection.createStatement();
+                         ResultSet rs = statement.executeQuery(REPLICA_LSN_SQL)) {
+                        rs.next();
+                        replayedLsn = Math.max(replayedLsn, parseLsn(rs.getString(1)));
+                    }
+                    if (replayedLsn < requiredLsn) {
+                        connection.close();
+                        return null;
+                    }
+                }
+                return connection;
+            } catch (SQLException e) {
+                markUnusable("connection failed: " + e.getMessage());
+                if (connection != null) {
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                        // The replica is out of rotation already
+                    }
+                }
+                return null;
+            }
+        }
+
+        void check(String primaryLsn) {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(REPLICA_LAG_SQL)) {
+                statement.setString(1, primaryLsn);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    long lag = rs.getLong(2);
+                    if (!rs.getBoolean(1)) {
+                        markUnusable("not in recovery, so not a replica of the primary");
+                        return;
+                    }
+                    replayedLsn = Math.max(replayedLsn, parseLsn(rs.getString(3)));
+                    if (lag > maxLagBytes) {
+                        markUnusable("lagging by " + lag + " bytes");
+                    } else if (!usable) {
+                        usable = true;
+                        log.info("Replica {} is in rotation, lagging by {} bytes", this, lag);
+                    }
+                }
+            } catch (SQLException e) {
+                markUnusable("check failed: " + e.getMessage());
+            }
+        }
+
+        void markUnusable(String reason) {
+            if (usable) {
+                usable = false;
+                log.warn("Replica {} is out of rotation: {}", this, reason);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(replicas.indexOf(this) + 1);
+        }
+    }
+}
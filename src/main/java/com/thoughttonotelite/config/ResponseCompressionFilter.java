@@ -0,0 +1,331 @@
+package com.thoughttonotelite.config;
+
+import com.thoughttonotelite.utils.AcceptEncodingUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses responses of the notes API according to the client's {@code Accept-Encoding} header.
+ * <p>
+ * Responses below {@code notes.compression.min-size} bytes are sent as they are, since compressing
+ * a single small note costs more CPU than it saves bandwidth. Larger responses are compressed with gzip,
+ * or deflate for clients that only accept deflate, at {@code notes.compression.level}. Only the first
+ * {@code min-size} bytes are held back to make that decision; everything after them is compressed and
+ * passed on as it is written, so streamed responses such as note content are compressed incrementally
+ * and never buffered as a whole.
+ * </p>
+ * <p>
+ * Responses that already carry a {@code Content-Encoding}, such as pre-compressed cached responses,
+ * partial responses to range requests, and responses of other media types than
+ * {@code notes.compression.mime-types} are never compressed.
+ * </p>
+ */
+@Component
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/notes";
+
+    private final boolean enabled;
+    private final int minSize;
+    private final int level;
+    private final List<MediaType> mimeTypes;
+
+    /**
+     * Constructs a new {@code ResponseCompressionFilter}.
+     *
+     * @param enabled   whether responses are compressed at all
+     * @param minSize   the minimum response size to compress, in bytes
+     * @param level     the deflate compression level, from 1 (fastest) to 9 (best)
+     * @param mimeTypes the media types of responses that are compressed
+     */
+    @Autowired
+    public ResponseCompressionFilter(@Value("${notes.compression.enabled:true}") boolean enabled,
+                                     @Value("${notes.compression.min-size:2048}") int minSize,
+                                     @Value("${notes.compression.level:6}") int level,
+                                     @Value("${notes.compression.mime-types:application/json,application/*+json,text/plain,application/cbor,application/x-jackson-smile}") List<MediaType> mimeTypes) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.level = level;
+        this.mimeTypes = mimeTypes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled
+                || "HEAD".equals(request.getMethod())
+                || !(path.equals(PATH_PREFIX) || path.startsWith(PATH_PREFIX + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        String coding = AcceptEncodingUtil.accepts(acceptEncoding, "gzip") ? "gzip"
+                : AcceptEncodingUtil.accepts(acceptEncoding, "deflate") ? "deflate"
+                : null;
+        if (coding == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CompressingResponse compressingResponse = new CompressingResponse(response, coding);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, compressingResponse);
+            completed = true;
+        } finally {
+            if (completed) {
+                compressingResponse.finish();
+            } else {
+                compressingResponse.abort();
+            }
+        }
+    }
+
+    private boolean isCompressible(HttpServletResponse response) {
+        if (response.getStatus() != HttpServletResponse.SC_OK
+                || response.getHeader(HttpHeaders.CONTENT_ENCODING) != null
+                || response.getContentType() == null) {
+            return false;
+        }
+        MediaType contentType = MediaType.parseMediaType(response.getContentType());
+        return mimeTypes.stream().anyMatch(mimeType -> mimeType.includes(contentType));
+    }
+
+    /**
+     * Holds back the start of the response until it is known whether it is worth compressing.
+     */
+    private class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final String coding;
+        private final byte[] pending = new byte[minSize];
+        private int pendingLength;
+        private long contentLength = -1;
+        private OutputStream target;
+        private Deflater deflater;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response, String coding) {
+            super(response);
+            this.coding = coding;
+        }
+
+        // The length is only known to be right if the response ends up uncompressed, so it is applied then
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            if (target != null && !isCompressing()) {
+                super.setContentLengthLong(length);
+            } else {
+                contentLength = length;
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called for this response");
+            }
+            if (outputStream == null) {
+                outputStream = new CompressingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (outputStream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called for this response");
+                }
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+                outputStream = new CompressingOutputStream(super.getOutputStream());
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, charset));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (target != null) {
+                target.flush();
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            pendingLength = 0;
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            pendingLength = 0;
+            contentLength = -1;
+        }
+
+        private boolean isCompressing() {
+            return deflater != null;
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target == null) {
+                if (pendingLength + length <= pending.length) {
+                    System.arraycopy(bytes, offset, pending, pendingLength, length);
+                    pendingLength += length;
+                    return;
+                }
+                start(true);
+            }
+            target.write(bytes, offset, length);
+        }
+
+        // Decides whether to compress, sets the headers accordingly and passes on the bytes held back
+        private void start(boolean large) throws IOException {
+            OutputStream raw = super.getOutputStream();
+            boolean compressible = isCompressible((HttpServletResponse) getResponse());
+            if (compressible) {
+                addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            if (large && compressible) {
+                super.setHeader(HttpHeaders.CONTENT_ENCODING, coding);
+                deflater = new Deflater(level, "gzip".equals(coding));
+                target = "gzip".equals(coding)
+                        ? new LevelGzipOutputStream(raw, deflater)
+                        : new DeflaterOutputStream(raw, deflater, 8192, true);
+            } else {
+                target = raw;
+                if (contentLength >= 0) {
+                    super.setContentLengthLong(contentLength);
+                }
+            }
+            target.write(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (target == null) {
+                start(false);
+            }
+            if (isCompressing()) {
+                try {
+                    ((DeflaterOutputStream) target).finish();
+                } finally {
+                    deflater.end();
+                }
+            }
+        }
+
+        // Releases the deflater of a response whose handler failed. Nothing more is written: the error is left to
+        // the error handling, and a response already started stays incomplete, as it would uncompressed.
+        void abort() {
+            if (isCompressing()) {
+                deflater.end();
+            }
+        }
+
+        private class CompressingOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            CompressingOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                CompressingResponse.this.write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                CompressingResponse.this.write(bytes, offset, length);
+            }
+
+            // Nothing is flushed while the start of the response is held back
+            @Override
+            public void flush() throws IOException {
+                if (target != null) {
+                    target.flush();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+    }
+
+    /**
+     * A gzip stream using a given deflater, so that the compression level can be chosen, and flushing
+     * whatever has been compressed so far on {@link #flush()}.
+     */
+    private static class LevelGzipOutputStream extends GZIPOutputStream {
+
+        LevelGzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, 8192, true);
+            def.end();
+            def = deflater;
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.thoughttonotelite.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
 import java.util.Arrays;
+import java.util.List;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -44,6 +50,28 @@ public class SecurityConfig {
         return new CorsFilter(source);
     }
 
+    /**
+     * Users that can sign in: {@code spring.security.user}, and each {@code name:password} pair listed in
+     * {@code notes.security.users}. Every user sees and changes only the notes they created.
+     */
+    @Bean
+    public UserDetailsService userDetailsService(SecurityProperties properties,
+                                                 @Value("${notes.security.users:}") List<String> additionalUsers) {
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager();
+        SecurityProperties.User user = properties.getUser();
+        users.createUser(User.withUsername(user.getName()).password(user.getPassword())
+                .roles(user.getRoles().toArray(String[]::new)).build());
+        for (String entry : additionalUsers) {
+            int colon = entry.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected name:password in notes.security.users, got '" + entry + "'");
+            }
+            users.createUser(User.withUsername(entry.substring(0, colon).trim()).password(entry.substring(colon + 1))
+                    .roles("USER").build());
+        }
+        return users;
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return NoOpPasswordEncoder.getInstance();  // Use NoOpPasswordEncoder to keep passwords in plain text
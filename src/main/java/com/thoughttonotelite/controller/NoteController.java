@@ -1,13 +1,32 @@
 package com.thoughttonotelite.controller;
 
 import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import com.thoughttonotelite.model.NoteStats;
+import com.thoughttonotelite.model.NoteVersion;
+import com.thoughttonotelite.service.IngestionQueueFullException;
+import com.thoughttonotelite.service.NoteContentService;
+import com.thoughttonotelite.service.NoteResponseCache;
+import com.thoughttonotelite.service.NoteResponseCache.CachedResponse;
 import com.thoughttonotelite.service.NoteService;
+import com.thoughttonotelite.utils.AcceptEncodingUtil;
+import com.thoughttonotelite.utils.OwnerUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * REST controller for managing {@link Note} entities.
@@ -17,21 +36,36 @@ import java.util.List;
  * The controller uses the {@link NoteService} to perform the necessary business logic and interact
  * with the persistence layer.
  * </p>
+ * <p>
+ * JSON responses for single notes and the list of all notes are served from the {@link NoteResponseCache},
+ * which keeps their encoded bytes between requests, and responses for several notes by ID are assembled
+ * from it. Other encodings, such as CBOR, are produced per request by the message converters.
+ * </p>
  */
 @RestController
 @RequestMapping("/api/notes")
 public class NoteController {
 
     private final NoteService noteService;
+    private final NoteContentService noteContentService;
+    private final NoteResponseCache responseCache;
+    private final int maxIdsPerRequest;
 
     /**
      * Constructs a new {@code NoteController} with the provided {@link NoteService}.
      *
-     * @param noteService the service used to manage notes
+     * @param noteService        the service used to manage notes
+     * @param noteContentService the service used to stream note content
+     * @param responseCache      the cache of encoded JSON responses
+     * @param maxIdsPerRequest   the maximum number of notes requested by ID at once
      */
     @Autowired
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, NoteContentService noteContentService, NoteResponseCache responseCache,
+                          @Value("${notes.multi-get.max-ids:500}") int maxIdsPerRequest) {
         this.noteService = noteService;
+        this.noteContentService = noteContentService;
+        this.responseCache = responseCache;
+        this.maxIdsPerRequest = maxIdsPerRequest;
     }
 
     /**
@@ -84,17 +118,38 @@ public class NoteController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Restores a deleted note by its ID.
+     * <p>
+     * This endpoint handles POST requests to bring back a {@link Note} that was deleted and has not been
+     * purged yet. The restored note is returned in the response with a status of 200 (OK).
+     * </p>
+     *
+     * @param id the ID of the note to restore
+     * @return a {@link ResponseEntity} containing the restored note and an HTTP status of 200 (OK)
+     */
+    @PostMapping("/{id}/restore")
+    public ResponseEntity<Note> restoreNoteById(@PathVariable Long id) {
+        Note restoredNote = noteService.restoreNoteById(id);
+        return new ResponseEntity<>(restoredNote, HttpStatus.OK);
+    }
+
     /**
      * Retrieves all notes.
      * <p>
-     * This endpoint handles GET requests to retrieve a list of all {@link Note} entities.
-     * The notes are returned in the response with a status of 200 (OK).
+     * This endpoint handles GET requests to retrieve a list of all {@link Note} entities of the authenticated user.
+     * The notes are returned in the response with a status of 200 (OK). JSON responses are taken
+     * from the {@link NoteResponseCache} and sent gzip compressed if the client accepts it.
      * </p>
      *
+     * @param headers the request headers, used to choose the encoding of the response
      * @return a {@link ResponseEntity} containing a list of notes and an HTTP status of 200 (OK)
      */
     @GetMapping
-    public ResponseEntity<List<Note>> getAllNotes() {
+    public ResponseEntity<?> getAllNotes(@RequestHeader HttpHeaders headers) {
+        if (acceptsJsonFirst(headers)) {
+            return toJsonResponse(responseCache.getAllNotes(OwnerUtil.currentOwner(), noteService::getAllNotes), headers);
+        }
         List<Note> notes = noteService.getAllNotes();
         return new ResponseEntity<>(notes, HttpStatus.OK);
     }
@@ -103,18 +158,129 @@ public class NoteController {
      * Retrieves a note by its ID.
      * <p>
      * This endpoint handles GET requests to retrieve a specific {@link Note} by its ID.
-     * The note is returned in the response with a status of 200 (OK).
+     * The note is returned in the response with a status of 200 (OK). JSON responses are taken
+     * from the {@link NoteResponseCache} and sent gzip compressed if the client accepts it.
      * </p>
      *
-     * @param id the ID of the note to retrieve
+     * @param id      the ID of the note to retrieve
+     * @param headers the request headers, used to choose the encoding of the response
      * @return a {@link ResponseEntity} containing the requested note and an HTTP status of 200 (OK)
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Note> getNoteById(@PathVariable Long id) {
+    public ResponseEntity<?> getNoteById(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+        if (acceptsJsonFirst(headers)) {
+            return toJsonResponse(responseCache.getNote(id, OwnerUtil.currentOwner(), () -> noteService.getNoteById(id)), headers);
+        }
         Note note = noteService.getNoteById(id);
         return new ResponseEntity<>(note, HttpStatus.OK);
     }
 
+    /**
+     * Retrieves several notes by their IDs.
+     * <p>
+     * This endpoint handles GET requests with an {@code ids} parameter, e.g. {@code /api/notes?ids=3,1,2}, and
+     * returns the requested {@link Note} entities in one response, read with a single query, with a status
+     * of 200 (OK). The notes are returned in the order of their IDs, each once; the IDs of notes that do not
+     * exist are listed as missing (see {@link NoteBatch}). JSON responses are assembled from the notes cached
+     * in the {@link NoteResponseCache}, so only the notes not cached are read. Requests for more than
+     * {@code notes.multi-get.max-ids} notes are answered with 400 (Bad Request).
+     * </p>
+     *
+     * @param ids     the IDs of the notes to retrieve
+     * @param headers the request headers, used to choose the encoding of the response
+     * @return a {@link ResponseEntity} containing the notes found and the IDs missing, and an HTTP status of 200 (OK)
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<?> getNotesByIds(@RequestParam List<Long> ids, @RequestHeader HttpHeaders headers) {
+        return multiGet(ids, headers);
+    }
+
+    /**
+     * Retrieves several notes by their IDs, given as a JSON array in the request body.
+     * <p>
+     * This endpoint handles POST requests for lists of IDs too long for a URL, and answers them like
+     * {@link #getNotesByIds}.
+     * </p>
+     *
+     * @param ids     the IDs of the notes to retrieve
+     * @param headers the request headers, used to choose the encoding of the response
+     * @return a {@link ResponseEntity} containing the notes found and the IDs missing, and an HTTP status of 200 (OK)
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<?> lookupNotes(@RequestBody List<Long> ids, @RequestHeader HttpHeaders headers) {
+        return multiGet(ids, headers);
+    }
+
+    /**
+     * Streams the content of a note.
+     * <p>
+     * This endpoint handles GET requests for the raw content of a specific {@link Note}, returned as
+     * UTF-8 encoded {@code text/plain}. The content is streamed from the database as it is written to
+     * the response, so very large notes never have to be held in memory. Clients can request parts of
+     * the content with the HTTP {@code Range} header, e.g. {@code Range: bytes=0-1048575}, and receive
+     * a 206 (Partial Content) response with only the requested bytes.
+     * </p>
+     *
+     * @param id the ID of the note whose content to stream
+     * @return a {@link ResponseEntity} streaming the content of the note with an HTTP status of 200 (OK),
+     * or 206 (Partial Content) for range requests
+     */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<Resource> getNoteContent(@PathVariable Long id) {
+        Resource content = noteContentService.getContent(id);
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(content);
+    }
+
+    /**
+     * Lists the revisions of a note.
+     * <p>
+     * This endpoint handles GET requests for the revision history of a specific {@link Note}. The revisions
+     * are returned oldest first, without their content, with a status of 200 (OK).
+     * </p>
+     *
+     * @param id the ID of the note whose revisions to list
+     * @return a {@link ResponseEntity} containing the revisions of the note and an HTTP status of 200 (OK)
+     */
+    @GetMapping("/{id}/revisions")
+    public ResponseEntity<List<NoteRevisionSummary>> getNoteRevisions(@PathVariable Long id) {
+        List<NoteRevisionSummary> revisions = noteService.getNoteRevisions(id);
+        return new ResponseEntity<>(revisions, HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves one revision of a note.
+     * <p>
+     * This endpoint handles GET requests for a past or current version of a specific {@link Note}, rebuilt
+     * from its revision history. The title and content of the revision are returned with a status of 200 (OK).
+     * </p>
+     *
+     * @param id       the ID of the note
+     * @param revision the number of the revision, from 1
+     * @return a {@link ResponseEntity} containing the requested revision and an HTTP status of 200 (OK)
+     */
+    @GetMapping("/{id}/revisions/{revision}")
+    public ResponseEntity<NoteVersion> getNoteRevision(@PathVariable Long id, @PathVariable int revision) {
+        NoteVersion version = noteService.getNoteRevision(id, revision);
+        return new ResponseEntity<>(version, HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the statistics of the current user's notes.
+     * <p>
+     * This endpoint handles GET requests for the number and total content size of the notes, the notes
+     * created per day and the notes recently updated. The statistics are kept up to date as notes change,
+     * so they are returned without reading the notes, with a status of 200 (OK).
+     * </p>
+     *
+     * @return a {@link ResponseEntity} containing the statistics and an HTTP status of 200 (OK)
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<NoteStats> getNoteStats() {
+        return new ResponseEntity<>(noteService.getNoteStats(), HttpStatus.OK);
+    }
+
     /**
      * Searches for notes by title.
      * <p>
@@ -131,5 +297,61 @@ public class NoteController {
         List<Note> notes = noteService.searchNotesByTitle(title);
         return new ResponseEntity<>(notes, HttpStatus.OK);
     }
-}
 
+    /**
+     * Handles notes rejected because the write-behind ingestion queue is full.
+     * <p>
+     * The client receives a 429 (Too Many Requests) response with a {@code Retry-After} header, so that
+     * it backs off instead of overwhelming the queue.
+     * </p>
+     *
+     * @param e the exception raised by the service
+     * @return a {@link ResponseEntity} with the reason and an HTTP status of 429 (Too Many Requests)
+     */
+    @ExceptionHandler(IngestionQueueFullException.class)
+    public ResponseEntity<String> handleIngestionQueueFull(IngestionQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(e.getMessage());
+    }
+
+    private ResponseEntity<?> multiGet(List<Long> requestedIds, HttpHeaders headers) {
+        List<Long> ids = requestedIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.size() > maxIdsPerRequest) {
+            return ResponseEntity.of(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST,
+                    "At most " + maxIdsPerRequest + " notes can be requested at once, got " + ids.size())).build();
+        }
+        if (acceptsJsonFirst(headers)) {
+            return toJsonResponse(responseCache.getNotes(ids, OwnerUtil.currentOwner(), noteService::getNotesByIds), headers);
+        }
+        return new ResponseEntity<>(NoteBatch.of(ids, noteService.getNotesByIds(ids)), HttpStatus.OK);
+    }
+
+    // JSON is the default; other encodings are only used when the client prefers them to JSON
+    private static boolean acceptsJsonFirst(HttpHeaders headers) {
+        List<MediaType> accepted = new ArrayList<>(headers.getAccept());
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() > 0 && mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return true;
+            }
+            if (mediaType.getQualityValue() > 0 && !mediaType.isWildcardSubtype()) {
+                return false;
+            }
+        }
+        return accepted.isEmpty();
+    }
+
+    // Writes a cached body as is; the byte arrays are shared, so no per-request copy or encoding takes place
+    private static ResponseEntity<byte[]> toJsonResponse(CachedResponse response, HttpHeaders headers) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        byte[] gzipped = AcceptEncodingUtil.accepts(headers.getFirst(HttpHeaders.ACCEPT_ENCODING), "gzip") ? response.gzipped() : null;
+        if (gzipped != null) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzipped);
+        }
+        return builder.body(response.body());
+    }
+}
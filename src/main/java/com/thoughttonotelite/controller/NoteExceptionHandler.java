@@ -0,0 +1,52 @@
+package com.thoughttonotelite.controller;
+
+import com.thoughttonotelite.service.InvalidNoteException;
+import com.thoughttonotelite.service.NotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+
+/**
+ * Maps exceptions raised while handling API requests to RFC 9457 problem responses.
+ * <p>
+ * Notes, or revisions, that do not exist are answered with 404 (Not Found) and the message of the
+ * {@link NotFoundException} as detail; notes that cannot be stored, an {@link InvalidNoteException}, with
+ * 400 (Bad Request). Invalid requests that Spring MVC rejects itself, such as an ID that is not a number, a
+ * missing parameter or an unreadable body, are answered with 400 (Bad Request) by
+ * {@link ResponseEntityExceptionHandler}. Problems are encoded as {@code application/problem+json}, with
+ * the request path as {@code instance}.
+ * </p>
+ */
+@RestControllerAdvice
+public class NoteExceptionHandler extends ResponseEntityExceptionHandler {
+
+    /**
+     * Handles requests for notes or revisions that do not exist.
+     * <p>
+     * This is an expected outcome, so nothing is logged and the exception carries no stack trace.
+     * </p>
+     *
+     * @param e the exception raised by the service
+     * @return a {@link ResponseEntity} with the problem and an HTTP status of 404 (Not Found)
+     */
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<ProblemDetail> handleNotFound(NotFoundException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, e.getMessage());
+        return ResponseEntity.of(problem).build();
+    }
+
+    /**
+     * Handles notes that cannot be stored as they are, such as a title longer than the database allows.
+     *
+     * @param e the exception raised by the service
+     * @return a {@link ResponseEntity} with the problem and an HTTP status of 400 (Bad Request)
+     */
+    @ExceptionHandler(InvalidNoteException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidNote(InvalidNoteException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+        return ResponseEntity.of(problem).build();
+    }
+}
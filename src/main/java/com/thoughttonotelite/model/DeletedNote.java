@@ -0,0 +1,61 @@
+package com.thoughttonotelite.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * What is left to know about a note once it has been marked as deleted, as returned by
+ * {@code NoteRepository.markDeleted}: enough to stop counting it in the statistics.
+ * <p>
+ * An interface rather than a record, so that Spring Data can project the row returned by a native update onto it.
+ * </p>
+ */
+public interface DeletedNote {
+
+    /**
+     * Returns the time the note was created.
+     *
+     * @return the creation time
+     */
+    LocalDateTime getCreatedAt();
+
+    /**
+     * Returns the time the note was last updated before it was deleted.
+     *
+     * @return the time of the last update
+     */
+    LocalDateTime getUpdatedAt();
+
+    /**
+     * Returns the size of the content of the note.
+     *
+     * @return the length of its content in UTF-8 bytes, {@code 0} if it has none
+     */
+    long getContentLength();
+
+    /**
+     * Returns a {@code DeletedNote} holding the given values.
+     *
+     * @param createdAt     the time the note was created
+     * @param updatedAt     the time the note was last updated
+     * @param contentLength the length of its content in UTF-8 bytes
+     * @return the deleted note
+     */
+    static DeletedNote of(LocalDateTime createdAt, LocalDateTime updatedAt, long contentLength) {
+        return new DeletedNote() {
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return createdAt;
+            }
+
+            @Override
+            public LocalDateTime getUpdatedAt() {
+                return updatedAt;
+            }
+
+            @Override
+            public long getContentLength() {
+                return contentLength;
+            }
+        };
+    }
+}
@@ -1,24 +1,48 @@
 package com.thoughttonotelite.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
+
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notes")
+// Every query is scoped to one owner, so the owner leads the index used to list and look up a user's notes.
+// Deleted notes are found by the purge job through the deleted_at index, and the notes sharing a body through the body_id index.
+@Table(name = "notes", indexes = {
+        @Index(name = "idx_notes_owner_id", columnList = "owner, id"),
+        @Index(name = "idx_notes_deleted_at", columnList = "deleted_at"),
+        @Index(name = "idx_notes_body_id", columnList = "body_id")})
+// Deleted notes stay in the table until they are purged, but no query sees them
+@SQLRestriction("deleted_at IS NULL")
 public class Note {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Name of the user who created the note; set by the service, never taken from the request
+    @JsonIgnore
+    private String owner;
+
     private String title;
 
-    @Column(columnDefinition = "TEXT")
-    private String content;
+    // The content lives in the note_bodies table and is only loaded when it is read.
+    // Notes with the same content share one body, see NoteBodyStore.
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST)
+    @JoinColumn(name = "body_id")
+    private NoteBody body;
 
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
 
+    // Set when the note is deleted; the note can be restored until it is purged.
+    // Only changed through NoteRepository.markDeleted and restore, so that saving a note never undoes a delete.
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
     // Getters and setters
 
     public Long getId() {
@@ -29,6 +53,14 @@ public class Note {
         this.id = id;
     }
 
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -38,11 +70,38 @@ public class Note {
     }
 
     public String getContent() {
-        return content;
+        return body == null ? null : body.getContent();
     }
 
+    // The current body may be shared with other notes, so new content always gets a new body
     public void setContent(String content) {
-        this.content = content;
+        body = new NoteBody();
+        body.setContent(content);
+    }
+
+    public NoteBody getBody() {
+        return body;
+    }
+
+    public void setBody(NoteBody body) {
+        this.body = body;
+    }
+
+    @JsonIgnore
+    public byte[] getCompressedContent() {
+        return body == null ? null : body.getCompressedContent();
+    }
+
+    /**
+     * Replaces the plain content of this note with its compressed form.
+     *
+     * @param compressedContent the content encoded with {@link com.thoughttonotelite.utils.ContentCompressionUtil}
+     */
+    public void storeCompressedContent(byte[] compressedContent) {
+        if (body == null) {
+            body = new NoteBody();
+        }
+        body.storeCompressedContent(compressedContent);
     }
 
     public LocalDateTime getCreatedAt() {
@@ -61,6 +120,14 @@ public class Note {
         this.updatedAt = updatedAt;
     }
 
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     // Automatically set createdAt before the entity is persisted
     @PrePersist
     protected void onCreate() {
@@ -0,0 +1,41 @@
+package com.thoughttonotelite.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to a request for several notes by ID.
+ * <p>
+ * Notes that do not exist, have been deleted or belong to another user are reported alike, as missing.
+ * </p>
+ *
+ * @param notes   the notes found, in the order their IDs were requested
+ * @param missing the requested IDs for which no note was found, in the order they were requested
+ */
+public record NoteBatch(List<Note> notes, List<Long> missing) {
+
+    /**
+     * Arranges the notes found for a request in the order of the requested IDs.
+     *
+     * @param ids   the requested IDs, without duplicates
+     * @param found the notes found, in any order
+     * @return the batch of notes found and IDs missing
+     */
+    public static NoteBatch of(List<Long> ids, List<Note> found) {
+        Map<Long, Note> byId = new HashMap<>();
+        found.forEach(note -> byId.put(note.getId(), note));
+        List<Note> notes = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Note note = byId.get(id);
+            if (note != null) {
+                notes.add(note);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new NoteBatch(notes, missing);
+    }
+}
@@ -0,0 +1,128 @@
+package com.thoughttonotelite.model;
+
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+
+/**
+ * The content of a {@link Note}, kept in its own table.
+ * <p>
+ * Notes reference their body lazily, so loading a note only reads the narrow {@code notes} row and
+ * the potentially large content is fetched when it is actually read. When several bodies have to be
+ * loaded, e.g. to render a list of notes, they are fetched in batches rather than one query per note.
+ * </p>
+ * <p>
+ * Bodies are content-addressed: a body created through {@link com.thoughttonotelite.service.NoteBodyStore}
+ * carries the hash of its content and is shared by every note with the same content, counting its
+ * references. Its content never changes; a note whose content changes gets another body. Bodies created
+ * by saving a note directly, and bodies saved before content addressing, have no hash and a single
+ * reference until {@link com.thoughttonotelite.service.NoteBodyDeduplicationJob} merges them.
+ * </p>
+ */
+@Entity
+// The unique index finds the body of a content and keeps concurrent writers from storing it twice
+@Table(name = "note_bodies", indexes = @Index(name = "uk_note_bodies_content_hash", columnList = "content_hash", unique = true))
+@BatchSize(size = 100)
+public class NoteBody {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    // Content above the configured size threshold is stored here instead of in the content column
+    @Column(columnDefinition = "bytea")
+    private byte[] compressedContent;
+
+    // Length of the content in UTF-8 bytes, so that it can be streamed in ranges without reading it first
+    private Long contentLength;
+
+    // SHA-256 of the content, see ContentHashUtil; only changed through NoteBodyStore and NoteBodyDeduplicationJob
+    @Column(columnDefinition = "bytea", updatable = false)
+    private byte[] contentHash;
+
+    // Number of notes referencing this body, including deleted notes not purged yet.
+    // Only changed through NoteBodyStore and the purge, so that saving a stale copy never overwrites it.
+    @Column(columnDefinition = "integer default 1 not null", updatable = false)
+    private int refCount = 1;
+
+    // Decompressed on first read of a compressed body and kept for the lifetime of this instance
+    @Transient
+    private String decompressedContent;
+
+    // Getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getContent() {
+        if (content == null && compressedContent != null) {
+            if (decompressedContent == null) {
+                decompressedContent = ContentCompressionUtil.decompress(compressedContent);
+            }
+            return decompressedContent;
+        }
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.compressedContent = null;
+        this.decompressedContent = null;
+        this.contentLength = content == null ? null : utf8Length(content);
+    }
+
+    public Long getContentLength() {
+        return contentLength;
+    }
+
+    public byte[] getCompressedContent() {
+        return compressedContent;
+    }
+
+    public byte[] getContentHash() {
+        return contentHash;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    /**
+     * Replaces the plain content of this body with its compressed form.
+     *
+     * @param compressedContent the content encoded with {@link ContentCompressionUtil}
+     */
+    public void storeCompressedContent(byte[] compressedContent) {
+        this.decompressedContent = getContent();
+        this.content = null;
+        this.compressedContent = compressedContent;
+    }
+
+    // Counts the UTF-8 encoded length without encoding the content
+    private static long utf8Length(String content) {
+        long length = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;  // Unpaired surrogates are encoded as '?'
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
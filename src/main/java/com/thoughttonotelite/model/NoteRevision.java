@@ -0,0 +1,113 @@
+package com.thoughttonotelite.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored version of a {@link Note}, as kept by the revision history.
+ * <p>
+ * A revision is either a snapshot, holding the complete content compressed, or a delta against the content
+ * of the revision before it (see {@link com.thoughttonotelite.utils.BinaryDeltaUtil}). Every revision records
+ * the snapshot its chain of deltas starts from, so that all rows needed to rebuild it are found with one
+ * range query on the {@code (note_id, revision)} key.
+ * </p>
+ */
+@Entity
+@Table(name = "note_revisions", uniqueConstraints = @UniqueConstraint(
+        name = "uk_note_revisions_note_id_revision", columnNames = {"note_id", "revision"}))
+public class NoteRevision {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long noteId;
+
+    // Numbered from 1 per note
+    private int revision;
+
+    // Revision of the snapshot the delta chain of this revision starts from; equal to revision for snapshots
+    private int snapshotRevision;
+
+    private String title;
+
+    // The compressed content for snapshots, the delta against the previous revision otherwise
+    @Column(columnDefinition = "bytea")
+    private byte[] data;
+
+    // Length of the content in UTF-8 bytes
+    private long contentLength;
+
+    private LocalDateTime createdAt;
+
+    // Getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public int getSnapshotRevision() {
+        return snapshotRevision;
+    }
+
+    public void setSnapshotRevision(int snapshotRevision) {
+        this.snapshotRevision = snapshotRevision;
+    }
+
+    public boolean isSnapshot() {
+        return revision == snapshotRevision;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
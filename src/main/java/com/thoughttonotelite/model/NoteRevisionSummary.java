@@ -0,0 +1,14 @@
+package com.thoughttonotelite.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A revision of a note as listed by {@code GET /api/notes/{id}/revisions}, without its content.
+ *
+ * @param revision      the number of the revision, from 1
+ * @param title         the title of the note in this revision
+ * @param contentLength the length of the content in this revision, in UTF-8 bytes
+ * @param createdAt     the time this version of the note was saved
+ */
+public record NoteRevisionSummary(int revision, String title, long contentLength, LocalDateTime createdAt) {
+}
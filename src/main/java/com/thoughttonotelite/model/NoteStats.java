@@ -0,0 +1,23 @@
+package com.thoughttonotelite.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SortedMap;
+
+/**
+ * Statistics about the notes of one user, as shown on the dashboard.
+ * <p>
+ * Deleted notes are not counted. The figures are maintained as notes change and corrected periodically
+ * against the database, so they may briefly differ from the notes stored.
+ * </p>
+ *
+ * @param totalNotes        the number of notes
+ * @param totalContentBytes the size of the content of all notes, in UTF-8 bytes
+ * @param notesPerDay       the number of notes created on each of the last days, including days without notes
+ * @param recentlyUpdated   the number of notes created or last updated within the last {@code recentHours} hours
+ * @param recentHours       the number of hours, including the current one, counted as recent
+ * @param reconciledAt      the time the statistics were last corrected against the database
+ */
+public record NoteStats(long totalNotes, long totalContentBytes, SortedMap<LocalDate, Long> notesPerDay,
+                        long recentlyUpdated, int recentHours, LocalDateTime reconciledAt) {
+}
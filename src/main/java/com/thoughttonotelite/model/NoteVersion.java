@@ -0,0 +1,15 @@
+package com.thoughttonotelite.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A past or current version of a note, rebuilt from its revision history.
+ *
+ * @param noteId    the ID of the note
+ * @param revision  the number of the revision, from 1
+ * @param title     the title of the note in this revision
+ * @param content   the content of the note in this revision
+ * @param createdAt the time this version of the note was saved
+ */
+public record NoteVersion(Long noteId, int revision, String title, String content, LocalDateTime createdAt) {
+}
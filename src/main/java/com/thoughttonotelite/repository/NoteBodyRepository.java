@@ -0,0 +1,69 @@
+package com.thoughttonotelite.repository;
+
+import com.thoughttonotelite.model.NoteBody;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing {@link NoteBody} entities.
+ * <p>
+ * Note bodies are normally created and released through {@link com.thoughttonotelite.service.NoteBodyStore}.
+ * This repository provides the queries used by maintenance jobs that work on the stored content directly,
+ * without loading the notes themselves.
+ * </p>
+ */
+@Repository
+public interface NoteBodyRepository extends JpaRepository<NoteBody, Long> {
+
+    /**
+     * Finds bodies whose content is still stored uncompressed although it is long enough to be compressed.
+     * <p>
+     * Results are ordered by ID and start after {@code afterId}, so that callers can walk the table
+     * in batches without offset scans.
+     * </p>
+     *
+     * @param afterId   the ID after which to start, exclusive
+     * @param minLength the minimum content length, in characters
+     * @param limit     the maximum number of bodies to return
+     * @return the next batch of bodies eligible for compression
+     */
+    @Query("select b from NoteBody b where b.id > :afterId and b.compressedContent is null and length(b.content) >= :minLength order by b.id")
+    List<NoteBody> findUncompressedContentAfter(@Param("afterId") Long afterId, @Param("minLength") int minLength, Limit limit);
+
+    /**
+     * Replaces the plain content of a body with its compressed form.
+     * <p>
+     * The update only applies while the body still holds the expected plain content, so that a
+     * concurrent edit is never overwritten with stale compressed content.
+     * </p>
+     *
+     * @param id                the ID of the body
+     * @param content           the plain content the compressed form was computed from
+     * @param compressedContent the compressed content
+     * @return the number of bodies updated, {@code 0} if the body changed in the meantime
+     */
+    @Modifying
+    @Query("update NoteBody b set b.content = null, b.compressedContent = :compressedContent where b.id = :id and b.content = :content")
+    int storeCompressedContent(@Param("id") Long id, @Param("content") String content, @Param("compressedContent") byte[] compressedContent);
+
+    /**
+     * Finds bodies that have no content hash yet, because they were saved before content addressing or by
+     * saving a note directly.
+     * <p>
+     * Results are ordered by ID and start after {@code afterId}, so that callers can walk the table
+     * in batches without offset scans.
+     * </p>
+     *
+     * @param afterId the ID after which to start, exclusive
+     * @param limit   the maximum number of bodies to return
+     * @return the next batch of bodies without a hash
+     */
+    @Query("select b from NoteBody b where b.id > :afterId and b.contentHash is null order by b.id")
+    List<NoteBody> findUnhashedAfter(@Param("afterId") Long afterId, Limit limit);
+}
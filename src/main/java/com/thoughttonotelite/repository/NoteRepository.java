@@ -1,38 +1,181 @@
 package com.thoughttonotelite.repository;
 
+import com.thoughttonotelite.model.DeletedNote;
 import com.thoughttonotelite.model.Note;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing {@link Note} entities.
  * <p>
- * This interface extends {@link JpaRepository}, providing CRUD operations and additional
- * JPA-related methods for the {@link Note} entity. The interface is annotated with {@link Repository},
- * indicating that it is a Spring Data repository.
+ * This interface extends {@link ListCrudRepository}, providing CRUD operations for the {@link Note}
+ * entity. The interface is annotated with {@link Repository}, indicating that it is a Spring Data repository.
  * </p>
- * <p>x
- * By extending {@link JpaRepository}, this interface inherits several methods for working with {@link Note}
- * persistence, including methods for saving, deleting, and finding notes. Additionally, custom query methods
- * can be defined by following Spring Data JPA naming conventions.
+ * <p>
+ * Notes belong to the user who created them. Apart from the inherited CRUD methods, which are meant for
+ * maintenance and tests, every query is scoped to one owner.
+ * </p>
+ * <p>
+ * Deleting a note only marks it as deleted (see {@link #markDeleted}). Marked notes are invisible to every
+ * read, including the inherited ones, until they are {@linkplain #restore restored} or
+ * {@linkplain #purgeDeletedBefore purged}. The inherited delete methods still remove notes immediately.
+ * </p>
+ * <p>
+ * By default Spring Data JPA implements this interface against the database. The contract is deliberately
+ * limited to plain CRUD and the query methods below, so that it can also be implemented without JPA, as
+ * the embedded storage engine in {@link com.thoughttonotelite.storage.EmbeddedNoteRepository} and the
+ * sharding layer in {@link com.thoughttonotelite.storage.ShardedNoteRepository} do. Additional query methods
+ * can be defined by following Spring Data naming conventions, as long as these implementations are extended
+ * alongside.
  * </p>
  */
 @Repository
-public interface NoteRepository extends JpaRepository<Note, Long> {
+public interface NoteRepository extends ListCrudRepository<Note, Long> {
+
+    /**
+     * Finds the notes of one owner, in ascending ID order.
+     * <p>
+     * The query is answered from the {@code (owner, id)} index, so its cost depends on the number of notes
+     * of the owner rather than the number of notes in the table.
+     * </p>
+     *
+     * @param owner the name of the user owning the notes
+     * @return the notes of the owner
+     */
+    List<Note> findByOwnerOrderById(String owner);
 
     /**
-     * Finds notes by their title, where the title contains the specified keyword, ignoring case.
+     * Finds a note by its ID if it belongs to the given owner.
+     *
+     * @param id    the ID of the note
+     * @param owner the name of the user owning the note
+     * @return the note, or an empty {@link Optional} if it does not exist or belongs to someone else
+     */
+    Optional<Note> findByIdAndOwner(Long id, String owner);
+
+    /**
+     * Finds the notes with the given IDs that belong to the given owner.
+     * <p>
+     * All notes are read with one query, {@code WHERE id = ANY(?)}, whose text does not depend on the number
+     * of IDs, so the same prepared statement serves every request. Their bodies are loaded in batches when
+     * their content is read.
+     * </p>
+     *
+     * @param ids   the IDs of the notes
+     * @param owner the name of the user owning the notes
+     * @return the notes found, in no particular order; IDs of notes that do not exist or belong to someone else are skipped
+     */
+    @Query(value = "SELECT * FROM notes WHERE id = ANY(CAST(:ids AS bigint[])) AND owner = :owner AND deleted_at IS NULL", nativeQuery = true)
+    List<Note> findByIdInAndOwner(@Param("ids") Long[] ids, @Param("owner") String owner);
+
+    /**
+     * Tells whether a note with the given ID belongs to the given owner.
+     *
+     * @param id    the ID of the note
+     * @param owner the name of the user owning the note
+     * @return {@code true} if the note exists and belongs to the owner
+     */
+    boolean existsByIdAndOwner(Long id, String owner);
+
+    /**
+     * Finds the notes of one owner whose title contains the specified keyword, ignoring case.
      * <p>
      * This method follows the Spring Data JPA query method naming conventions. By defining the method
-     * with the name {@code findByTitleContainingIgnoreCase}, Spring Data JPA will automatically
-     * generate the necessary query to find all {@link Note} entities where the title contains the
-     * specified keyword, case-insensitively.
+     * with the name {@code findByOwnerAndTitleContainingIgnoreCase}, Spring Data JPA will automatically
+     * generate the necessary query to find all {@link Note} entities of the owner where the title contains
+     * the specified keyword, case-insensitively. Only the owner's rows are read, through the
+     * {@code (owner, id)} index.
      * </p>
      *
+     * @param owner the name of the user owning the notes
      * @param title the keyword to search for in the title
-     * @return a list of {@link Note} entities with titles containing the specified keyword, ignoring case
+     * @return a list of the owner's {@link Note} entities with titles containing the specified keyword, ignoring case
+     */
+    List<Note> findByOwnerAndTitleContainingIgnoreCase(String owner, String title);
+
+    /**
+     * Marks a note of the given owner as deleted.
+     * <p>
+     * This is a single-row update of the {@code deleted_at} column: the row, its body and its index entries
+     * stay in place until the note is purged, so deleting many notes causes no index churn or vacuum work
+     * at the time of deletion.
+     * </p>
+     * <p>
+     * The update returns the timestamps of the note and the length of its content read from its body's
+     * {@code content_length}, so that the note is neither loaded nor its content read to delete it. Notes
+     * loaded earlier in the same persistence context are not refreshed.
+     * </p>
+     *
+     * @param id        the ID of the note
+     * @param owner     the name of the user owning the note
+     * @param deletedAt the time of deletion
+     * @return the note as it was marked, or an empty {@link Optional} if the note does not exist, belongs to someone else or is already deleted
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE notes n SET deleted_at = :deletedAt
+            WHERE n.id = :id AND n.owner = :owner AND n.deleted_at IS NULL
+            RETURNING n.created_at AS "createdAt", n.updated_at AS "updatedAt",
+                coalesce((SELECT coalesce(b.content_length, octet_length(b.content)) FROM note_bodies b WHERE b.id = n.body_id), 0) AS "contentLength"
+            """, nativeQuery = true)
+    Optional<DeletedNote> markDeleted(@Param("id") Long id, @Param("owner") String owner, @Param("deletedAt") LocalDateTime deletedAt);
+
+    /**
+     * Restores a note of the given owner that was marked as deleted and has not been purged yet.
+     *
+     * @param id    the ID of the note
+     * @param owner the name of the user owning the note
+     * @return the number of notes restored, {@code 0} if there is no deleted note with the ID for the owner
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE notes SET deleted_at = NULL WHERE id = :id AND owner = :owner AND deleted_at IS NOT NULL", nativeQuery = true)
+    int restore(@Param("id") Long id, @Param("owner") String owner);
+
+    /**
+     * Removes notes, with their bodies and revision history, that were marked as deleted before the given time.
+     * <p>
+     * At most {@code limit} notes are removed, oldest deletions first, in one short transaction, so that
+     * callers can purge in small chunks. The candidates are found through the {@code deleted_at} index.
+     * Bodies shared with other notes lose the references of the removed notes and are only removed with
+     * their last reference; they are locked first, so that concurrent writers referencing the same content
+     * are counted correctly.
+     * </p>
+     *
+     * @param cutoff the time before which notes must have been deleted to be removed
+     * @param limit  the maximum number of notes to remove
+     * @return the number of notes removed
      */
-    List<Note> findByTitleContainingIgnoreCase(String title);
-}
\ No newline at end of file
+    @Transactional
+    @Query(value = """
+            WITH purged AS (
+                DELETE FROM notes
+                WHERE id IN (SELECT id FROM notes WHERE deleted_at < :cutoff ORDER BY deleted_at LIMIT :limit)
+                  AND deleted_at < :cutoff
+                RETURNING id, body_id
+            ), refs AS (
+                SELECT body_id, count(*) AS refs FROM purged WHERE body_id IS NOT NULL GROUP BY body_id
+            ), released AS (
+                SELECT b.id, b.ref_count - refs.refs AS remaining
+                FROM note_bodies b JOIN refs ON b.id = refs.body_id
+                FOR UPDATE OF b
+            ), shared AS (
+                UPDATE note_bodies b SET ref_count = released.remaining
+                FROM released WHERE b.id = released.id AND released.remaining > 0
+            ), bodies AS (
+                DELETE FROM note_bodies b USING released WHERE b.id = released.id AND released.remaining <= 0
+            ), revisions AS (
+                DELETE FROM note_revisions WHERE note_id IN (SELECT id FROM purged)
+            )
+            SELECT count(*) FROM purged
+            """, nativeQuery = true)
+    long purgeDeletedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
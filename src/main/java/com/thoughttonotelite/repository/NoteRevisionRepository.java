@@ -0,0 +1,53 @@
+package com.thoughttonotelite.repository;
+
+import com.thoughttonotelite.model.NoteRevision;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing {@link NoteRevision} entities.
+ * <p>
+ * Revisions are only ever appended. All queries go through the unique {@code (note_id, revision)} key,
+ * so their cost depends on the number of revisions read rather than the size of the history.
+ * </p>
+ */
+@Repository
+public interface NoteRevisionRepository extends JpaRepository<NoteRevision, Long> {
+
+    /**
+     * Finds the latest revision of a note.
+     *
+     * @param noteId the ID of the note
+     * @return the revision with the highest number, or an empty {@link Optional} if the note has no history yet
+     */
+    Optional<NoteRevision> findTopByNoteIdOrderByRevisionDesc(Long noteId);
+
+    /**
+     * Lists the revisions of a note without their content, in ascending order.
+     *
+     * @param noteId the ID of the note
+     * @return the revisions of the note
+     */
+    @Query("select new com.thoughttonotelite.model.NoteRevisionSummary(r.revision, r.title, r.contentLength, r.createdAt) "
+            + "from NoteRevision r where r.noteId = :noteId order by r.revision")
+    List<NoteRevisionSummary> findSummariesByNoteId(@Param("noteId") Long noteId);
+
+    /**
+     * Finds the revisions needed to rebuild one revision: the snapshot its chain starts from, and every
+     * delta after that up to and including the revision itself, in ascending order.
+     *
+     * @param noteId   the ID of the note
+     * @param revision the number of the revision to rebuild
+     * @return the chain of revisions, empty if the revision does not exist
+     */
+    @Query("select r from NoteRevision r where r.noteId = :noteId and r.revision <= :revision and r.revision >= "
+            + "(select t.snapshotRevision from NoteRevision t where t.noteId = :noteId and t.revision = :revision) "
+            + "order by r.revision")
+    List<NoteRevision> findChain(@Param("noteId") Long noteId, @Param("revision") int revision);
+}
@@ -0,0 +1,84 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Background job that removes deleted notes once they can no longer be restored.
+ * <p>
+ * Deleting a note only marks it (see {@link NoteService#deleteNoteById}). Notes marked more than
+ * {@code notes.deletion.retention-hours} ago are removed by this job, which runs on the
+ * {@code notes.deletion.purge.cron} schedule, by default during the night. Each run removes at most
+ * {@code notes.deletion.purge.max-batches-per-run} batches of {@code notes.deletion.purge.batch-size} notes,
+ * one short transaction per batch, and pauses between batches, so that purging a mass deletion is spread
+ * over several runs instead of competing with request traffic for locks and I/O.
+ * </p>
+ */
+@Component
+public class DeletedNotePurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(DeletedNotePurgeJob.class);
+
+    private final NoteRepository noteRepository;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pauseMillis;
+
+    /**
+     * Constructs a new {@code DeletedNotePurgeJob}.
+     *
+     * @param noteRepository   the repository the deleted notes are removed from
+     * @param retentionHours   the number of hours a deleted note can be restored before it is removed
+     * @param batchSize        the number of notes removed per transaction
+     * @param maxBatchesPerRun the maximum number of batches per run
+     * @param pauseMillis      the pause between two batches, in milliseconds
+     */
+    public DeletedNotePurgeJob(NoteRepository noteRepository,
+                               @Value("${notes.deletion.retention-hours:168}") long retentionHours,
+                               @Value("${notes.deletion.purge.batch-size:500}") int batchSize,
+                               @Value("${notes.deletion.purge.max-batches-per-run:20}") int maxBatchesPerRun,
+                               @Value("${notes.deletion.purge.pause-ms:200}") long pauseMillis) {
+        this.noteRepository = noteRepository;
+        this.retention = Duration.ofHours(retentionHours);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Removes the next batches of deleted notes past their retention.
+     *
+     * @return the number of notes removed
+     */
+    @Scheduled(cron = "${notes.deletion.purge.cron:0 */5 1-5 * * *}")
+    public long purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long purged = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            long count = noteRepository.purgeDeletedBefore(cutoff, batchSize);
+            purged += count;
+            if (count < batchSize || batch == maxBatchesPerRun - 1) {
+                // Nothing left to purge until more notes pass their retention, or the run is over
+                break;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (purged > 0) {
+            log.info("Purged {} deleted notes", purged);
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,19 @@
+package com.thoughttonotelite.service;
+
+/**
+ * Thrown when a note cannot be accepted because the {@link NoteWriteBehindQueue} is full.
+ * <p>
+ * Clients receive a 429 (Too Many Requests) response and should retry after a short delay.
+ * </p>
+ */
+public class IngestionQueueFullException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code IngestionQueueFullException}.
+     *
+     * @param message the reason the note was rejected
+     */
+    public IngestionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.thoughttonotelite.service;
+
+/**
+ * Thrown when a note is rejected because the database could not store it, such as a title that is too long.
+ * <p>
+ * Clients receive a 400 (Bad Request) problem response with the message as detail.
+ * </p>
+ */
+public class InvalidNoteException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code InvalidNoteException}.
+     *
+     * @param message the reason the note was rejected
+     */
+    public InvalidNoteException(String message) {
+        super(message);
+    }
+}
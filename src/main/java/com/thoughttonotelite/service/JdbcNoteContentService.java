@@ -0,0 +1,351 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+import com.thoughttonotelite.utils.OwnerUtil;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link NoteContentService} reading the content of notes from the database.
+ * <p>
+ * This service reads the content of a note from the database with a single query when the client starts
+ * consuming it, and encodes or decompresses it in chunks of {@code notes.content.stream-chunk-size}
+ * characters or bytes while it is sent. The returned {@link Resource} knows its length and supports
+ * skipping, which lets Spring MVC answer HTTP {@code Range} requests.
+ * </p>
+ * <p>
+ * The value is read once per request, not once per chunk: slicing it in the database would decode the whole
+ * value again for every chunk. Compressed content is transferred in its compressed form and decompressed
+ * while it is streamed.
+ * </p>
+ * <p>
+ * Memory per request is not bounded by the chunk size. The PostgreSQL driver reads a column value as a whole,
+ * so each request holds the stored value of its note, in compressed form if it is stored compressed, until
+ * the response is complete, also when only a small range is requested. Only the UTF-8 encoding and the
+ * decompression happen chunk by chunk.
+ * </p>
+ * <p>
+ * Only notes of the authenticated user are found; the content of other users' notes is reported as not found.
+ * Notes accepted by the {@link NoteWriteBehindQueue} but not written yet are served from the queue, as by
+ * {@link NoteService#getNoteById}.
+ * </p>
+ * <p>
+ * The content of notes moved into the archive by {@link NoteTierService} is read from the archive as a whole.
+ * </p>
+ */
+@Service
+@Profile("!embedded & !sharded")
+public class JdbcNoteContentService implements NoteContentService {
+
+    private static final String BODY_SQL = """
+            SELECT n.body_id, b.content_length, b.compressed_content IS NOT NULL AS compressed, octet_length(b.content) AS plain_length
+            FROM notes n LEFT JOIN note_bodies b ON b.id = n.body_id
+            WHERE n.id = ? AND n.owner = ? AND n.deleted_at IS NULL
+            """;
+
+    private static final String CONTENT_SQL = "SELECT content, compressed_content FROM note_bodies WHERE id = ?";
+
+    private static final String COMPRESSED_SQL = "SELECT compressed_content FROM note_bodies WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NoteTierService tierService;
+    private final NoteWriteBehindQueue writeBehindQueue;
+    private final int chunkSize;
+
+    /**
+     * Constructs a new {@code JdbcNoteContentService}.
+     *
+     * @param jdbcTemplate the template used to read the content
+     * @param tierService      the service reading notes that have been moved into the archive
+     * @param writeBehindQueue the queue holding notes not written yet, if available
+     * @param chunkSize        the number of characters encoded, or bytes decompressed, at a time while streaming
+     */
+    @Autowired
+    public JdbcNoteContentService(JdbcTemplate jdbcTemplate, NoteTierService tierService,
+                                  ObjectProvider<NoteWriteBehindQueue> writeBehindQueue,
+                                  @Value("${notes.content.stream-chunk-size:1048576}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tierService = tierService;
+        this.writeBehindQueue = writeBehindQueue.getIfAvailable();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Resource getContent(Long id) {
+        String owner = OwnerUtil.currentOwner();
+        // Pending notes are looked up first: a note committed in between is then found in the database
+        if (writeBehindQueue != null && writeBehindQueue.isEnabled()) {
+            Optional<Resource> pending = writeBehindQueue.findPending(id)
+                    .filter(note -> owner.equals(note.getOwner()))
+                    .map(note -> contentOf(id, note.getContent()));
+            if (pending.isPresent()) {
+                return pending.get();
+            }
+        }
+        List<BodyInfo> bodies = jdbcTemplate.query(BODY_SQL, (rs, rowNum) -> new BodyInfo(
+                rs.getObject("body_id", Long.class),
+                rs.getObject("content_length", Long.class),
+                rs.getBoolean("compressed"),
+                rs.getLong("plain_length")), id, owner);
+        if (bodies.isEmpty()) {
+            return tierService.findArchived(id, owner)
+                    .map(note -> contentOf(id, note.getContent()))
+                    .orElseThrow(() -> new NoteNotFoundException(id));
+        }
+        BodyInfo body = bodies.get(0);
+        if (body.id() == null) {
+            return new NoteContentResource(id, null, 0);
+        }
+        long length;
+        if (body.contentLength() != null) {
+            length = body.contentLength();
+        } else if (body.compressed()) {
+            // Bodies written before lengths were recorded; count the decompressed bytes once
+            try (InputStream in = openCompressed(body.id())) {
+                length = in.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read content of note " + id, e);
+            }
+        } else {
+            length = body.plainLength();
+        }
+        return new NoteContentResource(id, body.id(), length);
+    }
+
+    // Content held in memory anyway, by the write-behind queue or decoded from the archive
+    private static Resource contentOf(Long id, String content) {
+        return new ByteArrayResource(content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8), "content of note " + id);
+    }
+
+    private InputStream openCompressed(Long bodyId) {
+        byte[] compressed = jdbcTemplate.queryForObject(COMPRESSED_SQL, byte[].class, bodyId);
+        return ContentCompressionUtil.openStream(compressed);
+    }
+
+    private record BodyInfo(Long id, Long contentLength, boolean compressed, long plainLength) {
+    }
+
+    /**
+     * The content of one note, read from the database when its input stream is consumed.
+     */
+    private class NoteContentResource extends AbstractResource {
+
+        private final Long noteId;
+        private final Long bodyId;
+        private final long length;
+
+        NoteContentResource(Long noteId, Long bodyId, long length) {
+            this.noteId = noteId;
+            this.bodyId = bodyId;
+            this.length = length;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            if (bodyId == null) {
+                return InputStream.nullInputStream();
+            }
+            return new BodyInputStream(bodyId, length);
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public long lastModified() {
+            return -1;
+        }
+
+        @Override
+        public String getFilename() {
+            return null;
+        }
+
+        @Override
+        public String getDescription() {
+            return "content of note " + noteId;
+        }
+    }
+
+    /**
+     * Reads the content of a body with a single query, on a connection held until the stream is closed, and
+     * encodes plain content to UTF-8 as it is read. The driver holds the whole stored value from the query on. The value is therefore read once, however it is consumed,
+     * and a body released by a concurrent update while it is streamed is still read to its end. Skipping
+     * encodes the content before the read position without returning it, so a range only costs the encoding
+     * of what lies before it.
+     */
+    private class BodyInputStream extends InputStream {
+
+        private final Long bodyId;
+        private final long length;
+        private boolean opened;
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private InputStream decompressed;
+        private Reader reader;
+        private char[] chars;
+        private int carried;
+        private boolean endOfContent;
+        private long position;
+        private byte[] chunk = new byte[0];
+        private int chunkOffset;
+
+        BodyInputStream(Long bodyId, long length) {
+            this.bodyId = bodyId;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureChunk()) {
+                return -1;
+            }
+            position++;
+            return chunk[chunkOffset++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (!ensureChunk()) {
+                return -1;
+            }
+            int read = Math.min(count, chunk.length - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, buffer, offset, read);
+            chunkOffset += read;
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long remaining = Math.max(0, Math.min(n, length - position));
+            long skipped = 0;
+            while (skipped < remaining && ensureChunk()) {
+                int step = (int) Math.min(remaining - skipped, chunk.length - chunkOffset);
+                chunkOffset += step;
+                position += step;
+                skipped += step;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - chunkOffset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not close the content of body " + bodyId, e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, jdbcTemplate.getDataSource());
+                connection = null;
+            }
+        }
+
+        private boolean ensureChunk() throws IOException {
+            if (chunkOffset < chunk.length) {
+                return true;
+            }
+            if (position >= length) {
+                return false;
+            }
+            if (!opened) {
+                open();
+            }
+            byte[] next = decompressed != null ? decompressed.readNBytes(chunkSize) : encodeNext();
+            if (next.length == 0) {
+                return false;
+            }
+            chunk = next;
+            chunkOffset = 0;
+            return true;
+        }
+
+        private void open() throws IOException {
+            opened = true;
+            try {
+                connection = DataSourceUtils.getConnection(jdbcTemplate.getDataSource());
+                statement = connection.prepareStatement(CONTENT_SQL);
+                statement.setLong(1, bodyId);
+                resultSet = statement.executeQuery();
+                if (!resultSet.next()) {
+                    throw new IOException("Body " + bodyId + " was removed before its content was read");
+                }
+                byte[] compressed = resultSet.getBytes("compressed_content");
+                if (compressed != null) {
+                    decompressed = ContentCompressionUtil.openStream(compressed);
+                } else {
+                    Reader content = resultSet.getCharacterStream("content");
+                    reader = content == null ? Reader.nullReader() : content;
+                    chars = new char[Math.max(2, chunkSize)];
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not read the content of body " + bodyId, e);
+            }
+        }
+
+        // Encodes the next characters of plain content. A high surrogate at the end of the characters read
+        // is carried over to the next call, so that no character is split between two chunks.
+        private byte[] encodeNext() throws IOException {
+            while (!endOfContent) {
+                int read = reader.read(chars, carried, chars.length - carried);
+                if (read < 0) {
+                    endOfContent = true;
+                    break;
+                }
+                int end = carried + read;
+                carried = end > 0 && Character.isHighSurrogate(chars[end - 1]) ? 1 : 0;
+                byte[] encoded = new String(chars, 0, end - carried).getBytes(StandardCharsets.UTF_8);
+                if (carried > 0) {
+                    chars[0] = chars[end - 1];
+                }
+                if (encoded.length > 0) {
+                    return encoded;
+                }
+            }
+            byte[] rest = new String(chars, 0, carried).getBytes(StandardCharsets.UTF_8);
+            carried = 0;
+            return rest;
+        }
+    }
+}
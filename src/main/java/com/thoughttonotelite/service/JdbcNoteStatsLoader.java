@@ -0,0 +1,104 @@
+package com.thoughttonotelite.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes note statistics with aggregate queries in the database.
+ * <p>
+ * Only the aggregates are transferred, one row per owner, and per owner and day or hour. The three queries
+ * run in one repeatable-read transaction, so they see the same notes.
+ * </p>
+ * <p>
+ * Notes moved into the archive by {@link NoteTierService} are added from the metadata in the archive's index,
+ * without reading their content.
+ * </p>
+ */
+@Service
+@Profile("!embedded & !sharded")
+public class JdbcNoteStatsLoader implements NoteStatsLoader {
+
+    private static final String TOTALS_SQL = """
+            SELECT n.owner, count(*) AS notes, coalesce(sum(coalesce(b.content_length, octet_length(b.content))), 0) AS content_bytes
+            FROM notes n LEFT JOIN note_bodies b ON b.id = n.body_id
+            WHERE n.deleted_at IS NULL AND n.owner IS NOT NULL
+            GROUP BY n.owner
+            """;
+
+    private static final String CREATED_SQL = """
+            SELECT owner, CAST(created_at AS date) AS day, count(*) AS notes
+            FROM notes
+            WHERE deleted_at IS NULL AND owner IS NOT NULL AND created_at >= ?
+            GROUP BY owner, day
+            """;
+
+    private static final String UPDATED_SQL = """
+            SELECT owner, date_trunc('hour', updated_at) AS hour, count(*) AS notes
+            FROM notes
+            WHERE deleted_at IS NULL AND owner IS NOT NULL AND updated_at >= ?
+            GROUP BY owner, hour
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NoteTierService tierService;
+
+    /**
+     * Constructs a new {@code JdbcNoteStatsLoader}.
+     *
+     * @param jdbcTemplate the template used to run the aggregate queries
+     * @param tierService  the service holding the notes moved into the archive
+     */
+    @Autowired
+    public JdbcNoteStatsLoader(JdbcTemplate jdbcTemplate, NoteTierService tierService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tierService = tierService;
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<String, OwnerTotals> load(LocalDateTime createdSince, LocalDateTime updatedSince) {
+        Map<String, long[]> totals = new HashMap<>();
+        jdbcTemplate.query(TOTALS_SQL, (RowCallbackHandler) rs ->
+                totals.put(rs.getString("owner"), new long[]{rs.getLong("notes"), rs.getLong("content_bytes")}));
+
+        Map<String, Map<LocalDate, Long>> created = new HashMap<>();
+        jdbcTemplate.query(CREATED_SQL, (RowCallbackHandler) rs -> created
+                .computeIfAbsent(rs.getString("owner"), owner -> new HashMap<>())
+                .put(rs.getObject("day", LocalDate.class), rs.getLong("notes")), createdSince);
+
+        Map<String, Map<LocalDateTime, Long>> updated = new HashMap<>();
+        jdbcTemplate.query(UPDATED_SQL, (RowCallbackHandler) rs -> updated
+                .computeIfAbsent(rs.getString("owner"), owner -> new HashMap<>())
+                .put(rs.getObject("hour", LocalDateTime.class), rs.getLong("notes")), updatedSince);
+
+        tierService.forEachArchived(entry -> {
+            long[] counts = totals.computeIfAbsent(entry.owner(), owner -> new long[2]);
+            counts[0]++;
+            counts[1] += entry.contentLength();
+            if (entry.createdAt() != null && !entry.createdAt().isBefore(createdSince)) {
+                created.computeIfAbsent(entry.owner(), owner -> new HashMap<>())
+                        .merge(entry.createdAt().toLocalDate(), 1L, Long::sum);
+            }
+            if (entry.updatedAt() != null && !entry.updatedAt().isBefore(updatedSince)) {
+                updated.computeIfAbsent(entry.owner(), owner -> new HashMap<>())
+                        .merge(entry.updatedAt().truncatedTo(ChronoUnit.HOURS), 1L, Long::sum);
+            }
+        });
+
+        Map<String, OwnerTotals> result = new HashMap<>();
+        totals.forEach((owner, counts) -> result.put(owner, new OwnerTotals(counts[0], counts[1],
+                created.getOrDefault(owner, Map.of()), updated.getOrDefault(owner, Map.of()))));
+        return result;
+    }
+}
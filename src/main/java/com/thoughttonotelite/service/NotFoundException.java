@@ -0,0 +1,22 @@
+package com.thoughttonotelite.service;
+
+/**
+ * Base class of the exceptions thrown when a requested note, or a part of it, does not exist.
+ * <p>
+ * A missing note is an expected answer rather than a failure: clients answered with 404 (Not Found) often
+ * ask for IDs that were deleted or never existed. These exceptions therefore do not capture a stack trace,
+ * which would take most of the time and memory spent on such a request, and cannot carry suppressed
+ * exceptions. The message identifies what was not found.
+ * </p>
+ */
+public abstract class NotFoundException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code NotFoundException} without a stack trace.
+     *
+     * @param message what was not found
+     */
+    protected NotFoundException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,141 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.NoteBody;
+import com.thoughttonotelite.repository.NoteBodyRepository;
+import com.thoughttonotelite.utils.ContentHashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Background job that brings bodies saved before content addressing into the shared storage of {@link NoteBodyStore}.
+ * <p>
+ * Each run walks the bodies without a content hash in ID order and hashes them. A body whose content is
+ * not stored yet keeps its place and gets its hash, so later notes with that content share it. A body whose
+ * content is already stored is merged into the stored body: its notes are moved over, with their references,
+ * and the duplicate is removed. Bodies without content are removed, leaving their notes without a body.
+ * </p>
+ * <p>
+ * Every body is handled in its own short transaction; a body that is changed concurrently is skipped and
+ * picked up again by a later run. A run stops after
+ * {@code notes.storage.deduplication.max-batches} batches of {@code notes.storage.deduplication.batch-size}
+ * bodies and the next run continues where it left off.
+ * </p>
+ */
+@Component
+@Profile("!embedded & !sharded")
+public class NoteBodyDeduplicationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteBodyDeduplicationJob.class);
+
+    private final NoteBodyRepository noteBodyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    // ID of the last body examined, so that the next run resumes after it
+    private long cursor;
+
+    /**
+     * Constructs a new {@code NoteBodyDeduplicationJob}.
+     *
+     * @param noteBodyRepository  the repository used to find bodies without a hash
+     * @param jdbcTemplate        the template used to hash and merge bodies
+     * @param transactionTemplate the template used to handle each body in its own transaction
+     * @param enabled             whether existing bodies are deduplicated at all
+     * @param batchSize           the number of bodies read at a time
+     * @param maxBatchesPerRun    the maximum number of batches per run
+     */
+    public NoteBodyDeduplicationJob(NoteBodyRepository noteBodyRepository,
+                                    JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${notes.storage.deduplication.enabled:true}") boolean enabled,
+                                    @Value("${notes.storage.deduplication.batch-size:100}") int batchSize,
+                                    @Value("${notes.storage.deduplication.max-batches:50}") int maxBatchesPerRun) {
+        this.noteBodyRepository = noteBodyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /**
+     * Hashes the next batches of bodies without a hash, merging those whose content is already stored.
+     *
+     * @return the number of bodies merged into another body
+     */
+    @Scheduled(fixedDelayString = "${notes.storage.deduplication.interval-ms:60000}",
+            initialDelayString = "${notes.storage.deduplication.interval-ms:60000}")
+    public int deduplicateExistingBodies() {
+        if (!enabled) {
+            return 0;
+        }
+        int merged = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<NoteBody> bodies = noteBodyRepository.findUnhashedAfter(cursor, Limit.of(batchSize));
+            if (bodies.isEmpty()) {
+                // Reached the end of the table; start over on the next run to pick up skipped bodies
+                cursor = 0;
+                break;
+            }
+            for (NoteBody body : bodies) {
+                if (deduplicate(body)) {
+                    merged++;
+                }
+                cursor = body.getId();
+            }
+        }
+        if (merged > 0) {
+            log.info("Merged {} note bodies into bodies with the same content", merged);
+        }
+        return merged;
+    }
+
+    /**
+     * Hashes one body, or merges it into the stored body with the same content.
+     *
+     * @return {@code true} if the body was merged and removed
+     */
+    private boolean deduplicate(NoteBody body) {
+        // Without content, a note has no body at all, see NoteBodyStore
+        byte[] hash = body.getContent() == null ? null : ContentHashUtil.hash(body.getContent());
+        try {
+            Boolean merged = transactionTemplate.execute(status -> {
+                Long target = null;
+                if (hash != null) {
+                    List<Long> stored = jdbcTemplate.queryForList("SELECT id FROM note_bodies WHERE content_hash = ?", Long.class, hash);
+                    if (stored.isEmpty()) {
+                        jdbcTemplate.update("UPDATE note_bodies SET content_hash = ? WHERE id = ? AND content_hash IS NULL", hash, body.getId());
+                        return false;
+                    }
+                    target = stored.get(0);
+                }
+                // Notes are locked before bodies, in the same order as updates of notes lock them
+                int moved = jdbcTemplate.update("UPDATE notes SET body_id = ? WHERE body_id = ?", target, body.getId());
+                if (target != null) {
+                    jdbcTemplate.update("UPDATE note_bodies SET ref_count = ref_count + ? WHERE id = ?", moved, target);
+                }
+                jdbcTemplate.update("DELETE FROM note_bodies WHERE id = ? AND content_hash IS NULL", body.getId());
+                return true;
+            });
+            return Boolean.TRUE.equals(merged);
+        } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+            // Another writer stored the same content or changed the notes of this body in the meantime
+            log.debug("Skipped deduplicating note body {}", body.getId(), e);
+            return false;
+        }
+    }
+}
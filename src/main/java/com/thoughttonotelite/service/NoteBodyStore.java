@@ -0,0 +1,149 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBody;
+import com.thoughttonotelite.utils.ContentHashUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores note content once per distinct content, shared by every note with that content.
+ * <p>
+ * Bodies are identified by the hash of their content (see {@link ContentHashUtil}) and count the notes
+ * referencing them. Storing content that is already stored only takes another reference to its body, so a
+ * template pasted into many notes is written and kept once. A body is removed when its last note is updated
+ * to other content or purged.
+ * </p>
+ * <p>
+ * Every method must be called in a transaction, so that references and the notes holding them are
+ * committed together. Concurrent writers of the same content are kept from storing it twice by the unique
+ * index on the hash.
+ * </p>
+ * <p>
+ * Not available with the embedded storage engine or sharding, which store the content of every note with
+ * the note.
+ * </p>
+ */
+@Service
+@Profile("!embedded & !sharded")
+public class NoteBodyStore {
+
+    private static final String REFERENCE_SQL = "UPDATE note_bodies SET ref_count = ref_count + 1 WHERE content_hash = ? RETURNING id";
+
+    // Inserts a new body, or takes a reference to the body another transaction inserted in the meantime
+    private static final String INSERT_SQL = """
+            INSERT INTO note_bodies (content, compressed_content, content_length, content_hash, ref_count)
+            VALUES (?, ?, ?, ?, 1)
+            ON CONFLICT (content_hash) DO UPDATE SET ref_count = note_bodies.ref_count + 1
+            RETURNING id
+            """;
+
+    private static final String LOCK_NOTE_SQL = """
+            SELECT n.body_id, b.content_hash, coalesce(b.content_length, octet_length(b.content), 0) AS content_length
+            FROM notes n LEFT JOIN note_bodies b ON b.id = n.body_id
+            WHERE n.id = ? FOR UPDATE OF n
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NoteContentCompressor contentCompressor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Constructs a new {@code NoteBodyStore}.
+     *
+     * @param jdbcTemplate      the template used to reference, insert and remove bodies
+     * @param contentCompressor the compressor deciding whether new bodies are stored compressed
+     */
+    @Autowired
+    public NoteBodyStore(JdbcTemplate jdbcTemplate, NoteContentCompressor contentCompressor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentCompressor = contentCompressor;
+    }
+
+    /**
+     * Gives a new note the body of its content, before the note is saved.
+     *
+     * @param note the note, holding its content in a body that has not been saved
+     */
+    public void storeContent(Note note) {
+        String content = note.getContent();
+        note.setBody(content == null ? null : reference(content, ContentHashUtil.hash(content)));
+    }
+
+    /**
+     * Replaces the content of a saved note, and releases the body of its previous content.
+     * <p>
+     * The note is locked until the end of the transaction, so that concurrent updates release each body
+     * exactly once. Content equal to the current content is recognized by its hash and nothing is written.
+     * The previous content is never read, only its stored length.
+     * </p>
+     *
+     * @param note    the saved note
+     * @param content the new content, may be {@code null}
+     * @return whether the content changed, and the length of the previous content
+     */
+    public Replacement replaceContent(Note note, String content) {
+        byte[] hash = content == null ? null : ContentHashUtil.hash(content);
+        // The body is read from the locked row, since the loaded note may predate a concurrent update
+        List<Map<String, Object>> current = jdbcTemplate.queryForList(LOCK_NOTE_SQL, note.getId());
+        Long currentBodyId = current.isEmpty() ? null : (Long) current.get(0).get("body_id");
+        byte[] currentHash = current.isEmpty() ? null : (byte[]) current.get(0).get("content_hash");
+        long currentLength = currentBodyId == null ? 0 : ((Number) current.get(0).get("content_length")).longValue();
+        boolean unchanged = currentBodyId == null
+                ? content == null
+                : currentHash != null && Arrays.equals(hash, currentHash);
+        if (unchanged) {
+            return new Replacement(false, currentLength);
+        }
+
+        note.setBody(content == null ? null : reference(content, hash));
+        if (currentBodyId != null) {
+            // The note must point at its new body in the database before the old one can be removed
+            entityManager.flush();
+            release(currentBodyId);
+        }
+        return new Replacement(true, currentLength);
+    }
+
+    // Drops one reference to a body, and removes the body once no note references it.
+    // The decrement locks the body, so the last of several concurrent releases sees zero.
+    private void release(Long bodyId) {
+        jdbcTemplate.update("UPDATE note_bodies SET ref_count = ref_count - 1 WHERE id = ?", bodyId);
+        jdbcTemplate.update("DELETE FROM note_bodies WHERE id = ? AND ref_count <= 0", bodyId);
+    }
+
+    // Returns a reference to the body of the content, inserting it if it is not stored yet.
+    // Content that is already stored is neither compressed nor sent to the database.
+    private NoteBody reference(String content, byte[] hash) {
+        List<Long> existing = jdbcTemplate.queryForList(REFERENCE_SQL, Long.class, hash);
+        Long bodyId;
+        if (!existing.isEmpty()) {
+            bodyId = existing.get(0);
+        } else {
+            byte[] compressed = contentCompressor.compress(content);
+            bodyId = jdbcTemplate.queryForObject(INSERT_SQL, Long.class, compressed == null ? content : null, compressed,
+                    (long) content.getBytes(StandardCharsets.UTF_8).length, hash);
+        }
+        return entityManager.getReference(NoteBody.class, bodyId);
+    }
+
+    /**
+     * The outcome of {@link #replaceContent}.
+     *
+     * @param changed       {@code false} if the note already had the content, and nothing was written
+     * @param previousBytes the length of the previous content in UTF-8 bytes, {@code 0} if there was none
+     */
+    public record Replacement(boolean changed, long previousBytes) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.thoughttonotelite.service;
+
+/**
+ * Event published by {@link NoteService} after a note has been created, updated or deleted.
+ * <p>
+ * Components that keep derived state about notes, such as cached responses, listen for this event
+ * instead of being called by the service directly.
+ * </p>
+ *
+ * @param noteId the ID of the note that changed
+ * @param owner  the owner of the note, or {@code null} if unknown
+ */
+public record NoteChangedEvent(Long noteId, String owner) {
+}
@@ -0,0 +1,106 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.NoteBody;
+import com.thoughttonotelite.repository.NoteBodyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Background job that compresses the content of notes saved before compression at rest was enabled.
+ * <p>
+ * Each run walks the note_bodies table in ID order, one small transaction per batch, and compresses every
+ * body whose content is above the threshold but still stored uncompressed. A run stops after
+ * {@code notes.storage.compression.migration-max-batches} batches and the next run continues where
+ * it left off, so the migration never holds long transactions or competes with request traffic for
+ * long. The job does nothing while compression at rest is disabled.
+ * </p>
+ */
+@Component
+@Profile("!embedded & !sharded")
+public class NoteContentCompressionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteContentCompressionJob.class);
+
+    private final NoteBodyRepository noteBodyRepository;
+    private final NoteContentCompressor contentCompressor;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    // ID of the last body examined, so that the next run resumes after it
+    private long cursor;
+
+    /**
+     * Constructs a new {@code NoteContentCompressionJob}.
+     *
+     * @param noteBodyRepository  the repository used to find and update note bodies
+     * @param contentCompressor   the compressor applying the compression settings
+     * @param transactionTemplate the template used to run each batch in its own transaction
+     * @param batchSize           the number of bodies compressed per transaction
+     * @param maxBatchesPerRun    the maximum number of batches per run
+     */
+    public NoteContentCompressionJob(NoteBodyRepository noteBodyRepository,
+                                     NoteContentCompressor contentCompressor,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${notes.storage.compression.migration-batch-size:100}") int batchSize,
+                                     @Value("${notes.storage.compression.migration-max-batches:50}") int maxBatchesPerRun) {
+        this.noteBodyRepository = noteBodyRepository;
+        this.contentCompressor = contentCompressor;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /**
+     * Compresses the next batches of eligible note bodies.
+     */
+    @Scheduled(fixedDelayString = "${notes.storage.compression.migration-interval-ms:60000}",
+            initialDelayString = "${notes.storage.compression.migration-interval-ms:60000}")
+    public void compressExistingNotes() {
+        if (!contentCompressor.isEnabled()) {
+            return;
+        }
+        int compressed = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer count = transactionTemplate.execute(status -> compressNextBatch());
+            if (count == null || count < 0) {
+                // Reached the end of the table; start over on the next run to pick up later writes
+                cursor = 0;
+                break;
+            }
+            compressed += count;
+        }
+        if (compressed > 0) {
+            log.info("Compressed the content of {} existing notes", compressed);
+        }
+    }
+
+    /**
+     * Compresses one batch of note bodies.
+     *
+     * @return the number of bodies compressed, or {@code -1} if no eligible bodies are left
+     */
+    private int compressNextBatch() {
+        List<NoteBody> bodies = noteBodyRepository.findUncompressedContentAfter(cursor, contentCompressor.getMinLength(), Limit.of(batchSize));
+        if (bodies.isEmpty()) {
+            return -1;
+        }
+        int compressed = 0;
+        for (NoteBody body : bodies) {
+            byte[] compressedContent = contentCompressor.compress(body.getContent());
+            if (compressedContent != null) {
+                compressed += noteBodyRepository.storeCompressedContent(body.getId(), body.getContent(), compressedContent);
+            }
+            cursor = body.getId();
+        }
+        return compressed;
+    }
+}
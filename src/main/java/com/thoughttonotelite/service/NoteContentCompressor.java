@@ -0,0 +1,91 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether the content of a {@link Note} is stored compressed.
+ * <p>
+ * Compression at rest is opt-in through {@code notes.storage.compression.enabled}. When enabled,
+ * content of at least {@code notes.storage.compression.min-length} characters is compressed before
+ * the note is saved, as long as compression actually makes it smaller. Compressed content is only
+ * decompressed when it is read.
+ * </p>
+ */
+@Component
+public class NoteContentCompressor {
+
+    private final boolean enabled;
+    private final int minLength;
+    private final int level;
+
+    /**
+     * Constructs a new {@code NoteContentCompressor} from the compression settings.
+     *
+     * @param enabled   whether content is compressed at all
+     * @param minLength the minimum content length, in characters, for content to be compressed
+     * @param level     the deflate compression level, from 1 (fastest) to 9 (smallest)
+     */
+    public NoteContentCompressor(@Value("${notes.storage.compression.enabled:false}") boolean enabled,
+                                 @Value("${notes.storage.compression.min-length:4096}") int minLength,
+                                 @Value("${notes.storage.compression.level:6}") int level) {
+        this.enabled = enabled;
+        this.minLength = minLength;
+        this.level = level;
+    }
+
+    /**
+     * Returns whether compression at rest is enabled.
+     *
+     * @return {@code true} if content above the threshold is compressed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the minimum content length, in characters, for content to be compressed.
+     *
+     * @return the compression threshold
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Compresses the content of the given note if compression is enabled and the content is large
+     * enough to benefit from it.
+     *
+     * @param note the note about to be saved
+     * @return {@code true} if the content of the note is now stored compressed
+     */
+    public boolean compressIfEligible(Note note) {
+        if (note.getCompressedContent() != null) {
+            return false;
+        }
+        byte[] compressed = compress(note.getContent());
+        if (compressed == null) {
+            return false;
+        }
+        note.storeCompressedContent(compressed);
+        return true;
+    }
+
+    /**
+     * Compresses the given content if compression is enabled and the content is large enough to
+     * benefit from it.
+     *
+     * @param content the content to compress, may be {@code null}
+     * @return the compressed content, or {@code null} if it should be stored uncompressed
+     */
+    public byte[] compress(String content) {
+        if (!enabled || content == null || content.length() < minLength) {
+            return null;
+        }
+        byte[] compressed = ContentCompressionUtil.compress(content, level);
+        // Content is always at least one byte per character in UTF-8, so this is a conservative check
+        return compressed.length < content.length() ? compressed : null;
+    }
+}
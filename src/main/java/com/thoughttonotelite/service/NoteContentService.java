@@ -0,0 +1,29 @@
+package com.thoughttonotelite.service;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Service for reading the content of a note as a stream of UTF-8 bytes.
+ * <p>
+ * Unlike {@link NoteService#getNoteById(Long)}, which materializes the whole content as a {@link String},
+ * implementations return the content as a {@link Resource} that knows its length and supports skipping,
+ * which lets Spring MVC answer HTTP {@code Range} requests. {@link JdbcNoteContentService} streams the
+ * content from the database; the embedded storage engine reads it from its log, and the sharding layer
+ * from the note's shard.
+ * </p>
+ */
+public interface NoteContentService {
+
+    /**
+     * Returns the content of a note as a streamable resource.
+     * <p>
+     * Only the length of the content has to be known when this method returns; the content itself may
+     * be read when the resource's input stream is consumed.
+     * </p>
+     *
+     * @param id the ID of the note
+     * @return a resource streaming the UTF-8 encoded content of the note
+     * @throws NoteNotFoundException if the note with the specified ID is not found
+     */
+    Resource getContent(Long id);
+}
@@ -0,0 +1,42 @@
+package com.thoughttonotelite.service;
+
+/**
+ * Thrown when the current user has no note with the requested ID.
+ * <p>
+ * Notes of other users and deleted notes are reported the same way, so that clients cannot tell them apart
+ * from notes that never existed. Clients receive a 404 (Not Found) response.
+ * </p>
+ */
+public class NoteNotFoundException extends NotFoundException {
+
+    private final Long noteId;
+
+    /**
+     * Constructs a new {@code NoteNotFoundException}.
+     *
+     * @param noteId the ID of the note that was not found
+     */
+    public NoteNotFoundException(Long noteId) {
+        this(noteId, "Note not found with id " + noteId);
+    }
+
+    /**
+     * Constructs a new {@code NoteNotFoundException} with a specific message.
+     *
+     * @param noteId  the ID of the note that was not found
+     * @param message what was not found
+     */
+    public NoteNotFoundException(Long noteId, String message) {
+        super(message);
+        this.noteId = noteId;
+    }
+
+    /**
+     * Returns the ID of the note that was not found.
+     *
+     * @return the requested note ID
+     */
+    public Long getNoteId() {
+        return noteId;
+    }
+}
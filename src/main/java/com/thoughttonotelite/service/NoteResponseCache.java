@@ -0,0 +1,303 @@
+package com.thoughttonotelite.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of JSON encoded note responses.
+ * <p>
+ * Reading a note or the list of all notes normally serializes the entities with Jackson on every
+ * request, producing the same bytes again and again. This cache keeps the encoded bytes of single
+ * notes, tagged with the note's {@code updatedAt}, and of each user's list of notes, so that repeated reads
+ * are answered by writing a shared byte array, without touching the database or Jackson. Encoded
+ * bodies of at least {@code notes.response-cache.gzip-min-size} bytes also keep a gzip compressed
+ * variant, created on the first request that accepts it. A cached note is only served to its owner.
+ * </p>
+ * <p>
+ * Entries are dropped when a {@link NoteChangedEvent} is published by {@link NoteService}, or, for changes
+ * made in a transaction, once the transaction has committed. Every change
+ * also advances a generation counter, and a response encoded from data read before a change is never
+ * stored, so a read racing with an update cannot put stale bytes back into the cache. At most
+ * {@code notes.response-cache.max-entries} notes are kept, and notes encoding to more than
+ * {@code notes.response-cache.max-entry-size} bytes are not cached at all; their content is better
+ * served by {@link NoteContentService}. Lists are cached up to {@code notes.response-cache.max-list-size}
+ * bytes each, for at most {@code notes.response-cache.max-entries} users.
+ * </p>
+ */
+@Component
+public class NoteResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final int maxEntrySize;
+    private final int maxListSize;
+    private final int gzipMinSize;
+
+    private final Map<Long, CachedResponse> notes = new ConcurrentHashMap<>();
+    private final Map<String, CachedResponse> lists = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Constructs a new {@code NoteResponseCache}.
+     *
+     * @param objectMapper the mapper also used by Spring MVC to write JSON responses
+     * @param enabled      whether responses are cached at all
+     * @param maxEntries   the maximum number of single notes, and of lists, kept
+     * @param maxEntrySize the maximum encoded size of a cached note, in bytes
+     * @param maxListSize  the maximum encoded size of a cached list of notes, in bytes
+     * @param gzipMinSize  the minimum encoded size for which a gzip variant is kept, in bytes
+     */
+    @Autowired
+    public NoteResponseCache(ObjectMapper objectMapper,
+                             @Value("${notes.response-cache.enabled:true}") boolean enabled,
+                             @Value("${notes.response-cache.max-entries:10000}") int maxEntries,
+                             @Value("${notes.response-cache.max-entry-size:65536}") int maxEntrySize,
+                             @Value("${notes.response-cache.max-list-size:4194304}") int maxListSize,
+                             @Value("${notes.response-cache.gzip-min-size:1024}") int gzipMinSize) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxEntrySize = maxEntrySize;
+        this.maxListSize = maxListSize;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * Returns the encoded response for a single note, loading and encoding the note on a cache miss.
+     *
+     * @param id     the ID of the note
+     * @param owner  the user requesting the note, who must own it to be served from the cache
+     * @param loader loads the note of the user; may throw if the note does not exist
+     * @return the encoded note
+     */
+    public CachedResponse getNote(Long id, String owner, Supplier<Note> loader) {
+        CachedResponse cached = enabled ? notes.get(id) : null;
+        if (cached != null && owner.equals(cached.owner)) {
+            return cached;
+        }
+        long readGeneration = generation.get();
+        Note note = loader.get();
+        CachedResponse response = encode(note, note.getUpdatedAt(), owner);
+        storeNote(id, response, readGeneration);
+        return response;
+    }
+
+    /**
+     * Returns the encoded response for several notes, in the form of a {@link NoteBatch}.
+     * <p>
+     * The response is assembled from the cached bytes of the notes; only the notes not cached for the owner
+     * are loaded, all at once, and are cached for later requests. The assembled response itself is not kept.
+     * </p>
+     *
+     * @param ids    the IDs of the notes, without duplicates
+     * @param owner  the user requesting the notes
+     * @param loader loads those notes of the user among the given IDs that exist, in any order
+     * @return the encoded notes, in the order of {@code ids}, and the IDs of the notes not found
+     */
+    public CachedResponse getNotes(List<Long> ids, String owner, Function<List<Long>, List<Note>> loader) {
+        Map<Long, byte[]> encoded = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            CachedResponse cached = enabled ? notes.get(id) : null;
+            if (cached != null && owner.equals(cached.owner)) {
+                encoded.put(id, cached.body());
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long readGeneration = generation.get();
+            for (Note note : loader.apply(misses)) {
+                CachedResponse response = encode(note, note.getUpdatedAt(), owner);
+                storeNote(note.getId(), response, readGeneration);
+                encoded.put(note.getId(), response.body());
+            }
+        }
+
+        // {"notes":[...],"missing":[...]}, as Jackson would write a NoteBatch
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<Long> missing = new ArrayList<>();
+        out.writeBytes("{\"notes\":[".getBytes(StandardCharsets.UTF_8));
+        boolean first = true;
+        for (Long id : ids) {
+            byte[] body = encoded.get(id);
+            if (body == null) {
+                missing.add(id);
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            out.writeBytes(body);
+            first = false;
+        }
+        out.writeBytes("],\"missing\":".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(encode(missing, null, owner).body());
+        out.write('}');
+        return new CachedResponse(out.toByteArray(), null, owner, gzipMinSize);
+    }
+
+    /**
+     * Returns the encoded response for the list of all notes of a user, loading and encoding the list on a cache miss.
+     *
+     * @param owner  the user whose notes are listed
+     * @param loader loads all notes of the user
+     * @return the encoded list of notes
+     */
+    public CachedResponse getAllNotes(String owner, Supplier<List<Note>> loader) {
+        CachedResponse cached = enabled ? lists.get(owner) : null;
+        if (cached != null) {
+            return cached;
+        }
+        long readGeneration = generation.get();
+        CachedResponse response = encode(loader.get(), null, owner);
+        if (enabled && response.body().length <= maxListSize) {
+            if (lists.size() >= maxEntries) {
+                evictOne(lists);
+            }
+            lists.put(owner, response);
+            if (generation.get() != readGeneration) {
+                lists.remove(owner, response);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Drops the cached responses affected by a change to a note.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNoteChanged(NoteChangedEvent event) {
+        generation.incrementAndGet();
+        if (event.noteId() != null) {
+            notes.remove(event.noteId());
+        }
+        if (event.owner() != null) {
+            lists.remove(event.owner());
+        } else {
+            lists.clear();
+        }
+    }
+
+    /**
+     * Drops all cached responses.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        notes.clear();
+        lists.clear();
+    }
+
+    private void storeNote(Long id, CachedResponse response, long readGeneration) {
+        if (enabled && response.body().length <= maxEntrySize) {
+            if (notes.size() >= maxEntries) {
+                evictOne(notes);
+            }
+            notes.put(id, response);
+            // A change may have been published while the note was being encoded; never keep what was read before it
+            if (generation.get() != readGeneration) {
+                notes.remove(id, response);
+            }
+        }
+    }
+
+    private static <K> void evictOne(Map<K, CachedResponse> entries) {
+        Iterator<K> keys = entries.keySet().iterator();
+        if (keys.hasNext()) {
+            entries.remove(keys.next());
+        }
+    }
+
+    private CachedResponse encode(Object value, LocalDateTime updatedAt, String owner) {
+        try {
+            return new CachedResponse(objectMapper.writeValueAsBytes(value), updatedAt, owner, gzipMinSize);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode note response", e);
+        }
+    }
+
+    /**
+     * An encoded response body. The byte arrays are shared between requests and must not be modified.
+     */
+    public static final class CachedResponse {
+
+        private final byte[] body;
+        private final LocalDateTime updatedAt;
+        private final String owner;
+        private final int gzipMinSize;
+        private volatile byte[] gzipped;
+
+        CachedResponse(byte[] body, LocalDateTime updatedAt, String owner, int gzipMinSize) {
+            this.body = body;
+            this.updatedAt = updatedAt;
+            this.owner = owner;
+            this.gzipMinSize = gzipMinSize;
+        }
+
+        /**
+         * @return the JSON encoded body
+         */
+        public byte[] body() {
+            return body;
+        }
+
+        /**
+         * @return the {@code updatedAt} of the encoded note, or {@code null} for lists
+         */
+        public LocalDateTime updatedAt() {
+            return updatedAt;
+        }
+
+        /**
+         * Returns the body compressed with gzip, compressing it on first use.
+         *
+         * @return the gzip compressed body, or {@code null} if the body is too small to be worth compressing
+         */
+        public byte[] gzipped() {
+            if (body.length < gzipMinSize) {
+                return null;
+            }
+            byte[] result = gzipped;
+            if (result == null) {
+                result = gzip(body);
+                gzipped = result;
+            }
+            return result;
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteRevision;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import com.thoughttonotelite.model.NoteVersion;
+import com.thoughttonotelite.repository.NoteRevisionRepository;
+import com.thoughttonotelite.utils.BinaryDeltaUtil;
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the revision history of notes in the {@code note_revisions} table.
+ * <p>
+ * Every update of a note appends a revision holding a binary delta against the version it replaced, so
+ * an edit to a large note costs about as much storage as the edited bytes. Every
+ * {@code notes.revisions.snapshot-interval} revisions, and whenever a delta would be more than half as
+ * large as the content itself, the complete content is stored compressed instead. Rebuilding any revision
+ * therefore reads one snapshot and fewer than {@code snapshot-interval} deltas in a single range query,
+ * no matter how many times the note has been edited.
+ * </p>
+ * <p>
+ * A note gets its history on its first update: revision 1 is the version being replaced, and revision 2 the
+ * new one. Until then the note itself is its only revision. Notes without content are recorded with empty
+ * content.
+ * </p>
+ * <p>
+ * Not available with the embedded storage engine or sharding, which keep no history.
+ * </p>
+ */
+@Service
+@Profile("!embedded & !sharded")
+public class NoteRevisionService {
+
+    private final NoteRevisionRepository revisionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int snapshotInterval;
+    private final int compressionLevel;
+
+    /**
+     * Constructs a new {@code NoteRevisionService}.
+     *
+     * @param revisionRepository the repository the revisions are stored in
+     * @param jdbcTemplate       the template used to lock notes while they are updated
+     * @param enabled            whether updates are recorded in the history
+     * @param snapshotInterval   the maximum number of revisions from one snapshot to the next
+     * @param compressionLevel   the deflate level used for snapshots
+     */
+    @Autowired
+    public NoteRevisionService(NoteRevisionRepository revisionRepository, JdbcTemplate jdbcTemplate,
+                               @Value("${notes.revisions.enabled:true}") boolean enabled,
+                               @Value("${notes.revisions.snapshot-interval:32}") int snapshotInterval,
+                               @Value("${notes.storage.compression.level:6}") int compressionLevel) {
+        this.revisionRepository = revisionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Tells whether updates are recorded in the history.
+     *
+     * @return {@code true} if revision history is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Locks a note until the end of the current transaction.
+     * <p>
+     * Each delta is computed against the version the update replaces, so concurrent updates of one note must
+     * take turns from reading that version until their revision is stored.
+     * </p>
+     *
+     * @param noteId the ID of the note
+     */
+    public void lockNote(Long noteId) {
+        jdbcTemplate.queryForList("SELECT id FROM notes WHERE id = ? FOR UPDATE", Long.class, noteId);
+    }
+
+    /**
+     * Appends the revision created by an update of a note, in the current transaction.
+     *
+     * @param previousTitle   the title before the update
+     * @param previousContent the content before the update
+     * @param previousSavedAt the time the replaced version was saved
+     * @param updatedNote     the note after the update
+     */
+    public void recordUpdate(String previousTitle, String previousContent, LocalDateTime previousSavedAt, Note updatedNote) {
+        Long noteId = updatedNote.getId();
+        byte[] previous = utf8(previousContent);
+        byte[] current = utf8(updatedNote.getContent());
+        NoteRevision latest = revisionRepository.findTopByNoteIdOrderByRevisionDesc(noteId)
+                .orElseGet(() -> revisionRepository.save(snapshot(noteId, 1, previousTitle, previous, previousSavedAt)));
+
+        int revision = latest.getRevision() + 1;
+        byte[] delta = BinaryDeltaUtil.diff(previous, current);
+        NoteRevision next;
+        if (revision - latest.getSnapshotRevision() >= snapshotInterval || delta.length > current.length / 2) {
+            next = snapshot(noteId, revision, updatedNote.getTitle(), current, updatedNote.getUpdatedAt());
+        } else {
+            next = revision(noteId, revision, latest.getSnapshotRevision(), updatedNote.getTitle(), delta,
+                    current.length, updatedNote.getUpdatedAt());
+        }
+        revisionRepository.save(next);
+    }
+
+    /**
+     * Lists the revisions of a note, oldest first.
+     *
+     * @param note the note
+     * @return the revisions, only the note itself as revision 1 if it has never been updated
+     */
+    public List<NoteRevisionSummary> getRevisions(Note note) {
+        List<NoteRevisionSummary> revisions = revisionRepository.findSummariesByNoteId(note.getId());
+        if (revisions.isEmpty()) {
+            return List.of(new NoteRevisionSummary(1, note.getTitle(), utf8(note.getContent()).length, note.getUpdatedAt()));
+        }
+        return revisions;
+    }
+
+    /**
+     * Rebuilds one revision of a note from the nearest snapshot and the deltas after it.
+     *
+     * @param note     the note
+     * @param revision the number of the revision
+     * @return the version of the note, or an empty {@link Optional} if the note has no such revision
+     */
+    public Optional<NoteVersion> getRevision(Note note, int revision) {
+        List<NoteRevision> chain = revisionRepository.findChain(note.getId(), revision);
+        if (chain.isEmpty()) {
+            if (revision == 1 && revisionRepository.findTopByNoteIdOrderByRevisionDesc(note.getId()).isEmpty()) {
+                return Optional.of(new NoteVersion(note.getId(), 1, note.getTitle(),
+                        note.getContent() == null ? "" : note.getContent(), note.getUpdatedAt()));
+            }
+            return Optional.empty();
+        }
+        byte[] content = decompress(chain.get(0).getData());
+        for (NoteRevision delta : chain.subList(1, chain.size())) {
+            content = BinaryDeltaUtil.apply(content, delta.getData());
+        }
+        NoteRevision target = chain.get(chain.size() - 1);
+        return Optional.of(new NoteVersion(note.getId(), target.getRevision(), target.getTitle(),
+                new String(content, StandardCharsets.UTF_8), target.getCreatedAt()));
+    }
+
+    private NoteRevision snapshot(Long noteId, int revision, String title, byte[] content, LocalDateTime createdAt) {
+        byte[] compressed = ContentCompressionUtil.compress(new String(content, StandardCharsets.UTF_8), compressionLevel);
+        return revision(noteId, revision, revision, title, compressed, content.length, createdAt);
+    }
+
+    private static NoteRevision revision(Long noteId, int revision, int snapshotRevision, String title, byte[] data,
+                                         long contentLength, LocalDateTime createdAt) {
+        NoteRevision noteRevision = new NoteRevision();
+        noteRevision.setNoteId(noteId);
+        noteRevision.setRevision(revision);
+        noteRevision.setSnapshotRevision(snapshotRevision);
+        noteRevision.setTitle(title);
+        noteRevision.setData(data);
+        noteRevision.setContentLength(contentLength);
+        noteRevision.setCreatedAt(createdAt);
+        return noteRevision;
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        try (InputStream in = ContentCompressionUtil.openStream(compressed)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] utf8(String content) {
+        return content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+    }
+}
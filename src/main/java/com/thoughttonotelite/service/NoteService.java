@@ -1,12 +1,28 @@
 package com.thoughttonotelite.service;
 
+import com.thoughttonotelite.model.DeletedNote;
 import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import com.thoughttonotelite.model.NoteStats;
+import com.thoughttonotelite.model.NoteVersion;
 import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.utils.OwnerUtil;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Service class for managing {@link Note} entities.
@@ -15,33 +31,112 @@ import java.util.Optional;
  * It interacts with the {@link NoteRepository} to perform CRUD operations and custom queries.
  * The service methods ensure that business rules are enforced before interacting with the database.
  * </p>
+ * <p>
+ * Notes belong to the authenticated user who created them, and every method only sees the notes of the
+ * current user: notes of other users behave as if they did not exist.
+ * </p>
+ * <p>
+ * Every successful change to a note publishes a {@link NoteChangedEvent}, so that state derived from
+ * notes, such as cached responses, can be kept up to date.
+ * </p>
+ * <p>
+ * Methods that only read notes run in read-only transactions, which lets them be served by a read
+ * replica when replicas are configured (see {@link com.thoughttonotelite.config.ReadReplicaConfig}).
+ * Changes always go to the primary database.
+ * </p>
+ * <p>
+ * Updates are recorded in the revision history kept by {@link NoteRevisionService}, when it is available.
+ * </p>
+ * <p>
+ * Content is stored through {@link NoteBodyStore}, when it is available, so that notes with the same
+ * content share one body.
+ * </p>
+ * <p>
+ * Every change is also counted by {@link NoteStatsService}, which serves the statistics of the user's notes.
+ * </p>
+ * <p>
+ * Notes that have not been updated for a long time may have been moved out of the database by
+ * {@link NoteTierService}, when it is available. Reads fall back to the archive for notes not found in the
+ * database, and archived notes are moved back into the database before they are updated or deleted.
+ * </p>
  */
 @Service
 public class NoteService {
 
     private final NoteRepository noteRepository;
+    private final NoteContentCompressor contentCompressor;
+    private final ApplicationEventPublisher eventPublisher;
+    // Absent when the embedded storage engine or sharding is used
+    private final NoteWriteBehindQueue writeBehindQueue;
+    // Absent when the embedded storage engine or sharding is used
+    private final NoteRevisionService revisionService;
+    // Absent when the embedded storage engine or sharding is used
+    private final NoteBodyStore bodyStore;
+    private final NoteStatsService statsService;
+    // Absent when the embedded storage engine or sharding is used
+    private final NoteTierService tierService;
 
     /**
      * Constructs a new {@code NoteService} with the provided {@link NoteRepository}.
      *
-     * @param noteRepository the repository used to interact with the persistence layer
+     * @param noteRepository    the repository used to interact with the persistence layer
+     * @param contentCompressor the compressor deciding whether note content is stored compressed
+     * @param eventPublisher    the publisher used to announce changes to notes
+     * @param writeBehindQueue  the queue used to create notes when write-behind ingestion is enabled, if available
+     * @param revisionService   the service keeping the revision history of notes, if available
+     * @param bodyStore         the store sharing the bodies of notes with the same content, if available
+     * @param statsService      the service counting notes for their statistics
+     * @param tierService       the service moving old notes into and out of the archive, if available
      */
     @Autowired
-    public NoteService(NoteRepository noteRepository) {
+    public NoteService(NoteRepository noteRepository, NoteContentCompressor contentCompressor,
+                       ApplicationEventPublisher eventPublisher, ObjectProvider<NoteWriteBehindQueue> writeBehindQueue,
+                       ObjectProvider<NoteRevisionService> revisionService, ObjectProvider<NoteBodyStore> bodyStore,
+                       NoteStatsService statsService, ObjectProvider<NoteTierService> tierService) {
         this.noteRepository = noteRepository;
+        this.contentCompressor = contentCompressor;
+        this.eventPublisher = eventPublisher;
+        this.writeBehindQueue = writeBehindQueue.getIfAvailable();
+        this.revisionService = revisionService.getIfAvailable();
+        this.bodyStore = bodyStore.getIfAvailable();
+        this.statsService = statsService;
+        this.tierService = tierService.getIfAvailable();
     }
 
     /**
      * Creates a new note.
      * <p>
-     * This method saves the provided {@link Note} entity to the database using the {@link NoteRepository}.
+     * This method saves the provided {@link Note} entity to the database using the {@link NoteRepository},
+     * owned by the current user. Content that is already stored is shared with the notes holding it, and
+     * large new content is compressed first when compression at rest is enabled. When write-behind ingestion
+     * is enabled, the note is handed to the {@link NoteWriteBehindQueue} instead and returned with its ID
+     * before it has been written to the database.
      * </p>
      *
      * @param note the note to be created
      * @return the created note
+     * @throws IngestionQueueFullException if write-behind ingestion is enabled and its queue is full
+     * @throws InvalidNoteException        if write-behind ingestion is enabled and the database could not store the note
      */
+    @Transactional
     public Note createNote(Note note) {
-        return noteRepository.save(note);
+        note.setOwner(OwnerUtil.currentOwner());
+        // Measured before the note is given a shared body, which would have to be loaded to measure it
+        long contentBytes = NoteStatsService.contentBytes(note);
+        Note createdNote;
+        if (writeBehindEnabled()) {
+            createdNote = writeBehindQueue.submit(note);
+        } else {
+            if (bodyStore != null) {
+                bodyStore.storeContent(note);
+            } else {
+                contentCompressor.compressIfEligible(note);
+            }
+            createdNote = noteRepository.save(note);
+        }
+        statsService.recordAdded(createdNote, contentBytes);
+        eventPublisher.publishEvent(new NoteChangedEvent(createdNote.getId(), createdNote.getOwner()));
+        return createdNote;
     }
 
     /**
@@ -49,83 +144,326 @@ public class NoteService {
      * <p>
      * This method finds the note by its ID, updates its title and content with the provided details,
      * and then saves the updated note back to the database. If the note is not found, it throws a
-     * {@link RuntimeException}.
+     * {@link NoteNotFoundException}.
+     * </p>
+     * <p>
+     * With revision history enabled, the note is locked for the duration of the update, and the new version is
+     * appended to its history in the same transaction.
+     * </p>
+     * <p>
+     * With the {@link NoteBodyStore}, content equal to the current content is not written again. If the title
+     * is unchanged as well, nothing is written at all, and the note is returned as it was.
+     * </p>
+     * <p>
+     * An archived note is moved back into the database first.
      * </p>
      *
      * @param id          the ID of the note to update
      * @param noteDetails the new details of the note
      * @return the updated note
-     * @throws RuntimeException if the note with the specified ID is not found
+     * @throws NoteNotFoundException if the note with the specified ID is not found
      */
+    @Transactional
     public Note updateNote(Long id, Note noteDetails) {
-        Optional<Note> optionalNote = noteRepository.findById(id);
+        if (writeBehindEnabled()) {
+            writeBehindQueue.awaitCommitted(id);
+        }
+        if (revisionsEnabled()) {
+            revisionService.lockNote(id);
+        }
+        String owner = OwnerUtil.currentOwner();
+        Optional<Note> optionalNote = findOrPromote(id, owner);
         if (optionalNote.isPresent()) {
             Note note = optionalNote.get();
+            String previousTitle = note.getTitle();
+            String previousContent = revisionsEnabled() ? note.getContent() : null;
+            LocalDateTime previousSavedAt = note.getUpdatedAt();
+            long contentBytes = NoteStatsService.contentBytes(noteDetails);
+            long previousContentBytes;
+            boolean contentChanged = true;
+            if (bodyStore != null) {
+                // The body of the note is not loaded: its length is read along with the lock
+                NoteBodyStore.Replacement replacement = bodyStore.replaceContent(note, noteDetails.getContent());
+                contentChanged = replacement.changed();
+                previousContentBytes = replacement.previousBytes();
+            } else {
+                previousContentBytes = NoteStatsService.contentBytes(note);
+                note.setContent(noteDetails.getContent());
+                contentCompressor.compressIfEligible(note);
+            }
+            if (!contentChanged && Objects.equals(previousTitle, noteDetails.getTitle())) {
+                return note;
+            }
             note.setTitle(noteDetails.getTitle());
-            note.setContent(noteDetails.getContent());
-            return noteRepository.save(note);
+            // The content lives in its own table, so a content-only change would not mark the note itself as modified
+            note.setUpdatedAt(LocalDateTime.now());
+            Note updatedNote = noteRepository.save(note);
+            if (revisionsEnabled()) {
+                revisionService.recordUpdate(previousTitle, previousContent, previousSavedAt, updatedNote);
+            }
+            statsService.recordUpdated(updatedNote, previousSavedAt, previousContentBytes, contentBytes);
+            eventPublisher.publishEvent(new NoteChangedEvent(id, owner));
+            return updatedNote;
         } else {
-            throw new RuntimeException("Note not found with id " + id);
+            throw new NoteNotFoundException(id);
         }
     }
 
     /**
      * Deletes a note by its ID.
      * <p>
-     * This method checks if a note with the specified ID exists and, if so, deletes it from the database.
-     * If the note is not found, it throws a {@link RuntimeException}.
+     * This method marks the note as deleted with a single-row update, which also returns what the statistics
+     * need, without loading the note or its content; from then on it is no longer found, but it stays in the
+     * database and can be {@linkplain #restoreNoteById restored} until {@link DeletedNotePurgeJob} removes it.
+     * Only a note that is not in the database is looked up in the archive, and moved back into the database
+     * so that it can be restored as well. If the note is not found, it throws a {@link NoteNotFoundException}.
      * </p>
      *
      * @param id the ID of the note to delete
-     * @throws RuntimeException if the note with the specified ID is not found
+     * @throws NoteNotFoundException if the note with the specified ID is not found
      */
+    @Transactional
     public void deleteNoteById(Long id) {
-        if (noteRepository.existsById(id)) {
-            noteRepository.deleteById(id);
+        if (writeBehindEnabled()) {
+            writeBehindQueue.awaitCommitted(id);
+        }
+        String owner = OwnerUtil.currentOwner();
+        LocalDateTime deletedAt = LocalDateTime.now();
+        Optional<DeletedNote> deleted = noteRepository.markDeleted(id, owner, deletedAt);
+        if (deleted.isEmpty() && tierService != null && tierService.promote(id, owner).isPresent()) {
+            deleted = noteRepository.markDeleted(id, owner, deletedAt);
+        }
+        if (deleted.isPresent()) {
+            statsService.recordRemoved(owner, deleted.get());
+            eventPublisher.publishEvent(new NoteChangedEvent(id, owner));
         } else {
-            throw new RuntimeException("Note not found with id " + id);
+            throw new NoteNotFoundException(id);
+        }
+    }
+
+    /**
+     * Restores a deleted note by its ID.
+     * <p>
+     * This method removes the deletion mark of a note of the current user that has not been purged yet,
+     * and returns the note as it was before it was deleted. If there is no such note, it throws a
+     * {@link NoteNotFoundException}.
+     * </p>
+     *
+     * @param id the ID of the note to restore
+     * @return the restored note
+     * @throws NoteNotFoundException if no deleted note with the specified ID is found
+     */
+    @Transactional
+    public Note restoreNoteById(Long id) {
+        String owner = OwnerUtil.currentOwner();
+        if (noteRepository.restore(id, owner) > 0) {
+            eventPublisher.publishEvent(new NoteChangedEvent(id, owner));
+            Note note = noteRepository.findByIdAndOwner(id, owner)
+                    .orElseThrow(() -> new NoteNotFoundException(id));
+            statsService.recordAdded(note, NoteStatsService.contentBytes(note));
+            return note;
+        } else {
+            throw new NoteNotFoundException(id, "Deleted note not found with id " + id);
         }
     }
 
     /**
      * Retrieves all notes.
      * <p>
-     * This method returns a list of all {@link Note} entities from the database.
+     * This method returns a list of all {@link Note} entities of the current user from the database,
+     * including archived notes, in ascending ID order.
      * </p>
      *
      * @return a list of all notes
      */
+    @Transactional(readOnly = true)
     public List<Note> getAllNotes() {
-        return noteRepository.findAll();
+        String owner = OwnerUtil.currentOwner();
+        return withArchivedNotes(withPendingNotes(() -> noteRepository.findByOwnerOrderById(owner), owner, null), owner, null);
     }
 
     /**
      * Retrieves a note by its ID.
      * <p>
-     * This method finds a {@link Note} by its ID. If the note is not found, it throws a
-     * {@link RuntimeException}.
+     * This method finds a {@link Note} by its ID, in the archive if it is not in the database. If the note
+     * is not found, it throws a {@link NoteNotFoundException}.
      * </p>
      *
      * @param id the ID of the note to retrieve
      * @return the note with the specified ID
-     * @throws RuntimeException if the note with the specified ID is not found
+     * @throws NoteNotFoundException if the note with the specified ID is not found
      */
+    @Transactional(readOnly = true)
     public Note getNoteById(Long id) {
-        return noteRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Note not found with id " + id));
+        // Pending notes are looked up first: a note committed in between is then found in the database
+        String owner = OwnerUtil.currentOwner();
+        Optional<Note> pending = writeBehindEnabled()
+                ? writeBehindQueue.findPending(id).filter(note -> owner.equals(note.getOwner()))
+                : Optional.empty();
+        return pending
+                .or(() -> noteRepository.findByIdAndOwner(id, owner))
+                .or(() -> findArchived(id, owner))
+                .orElseThrow(() -> new NoteNotFoundException(id));
+    }
+
+    /**
+     * Retrieves several notes by their IDs.
+     * <p>
+     * This method finds the current user's notes among the given IDs with a single query, instead of one
+     * query per note. Notes accepted by the write-behind queue but not written yet, and archived notes, are
+     * included. IDs for which no note is found are skipped; {@link NoteBatch#of} reports them as missing.
+     * </p>
+     *
+     * @param ids the IDs of the notes to retrieve, without duplicates
+     * @return the notes found, in the order of their IDs in {@code ids}
+     */
+    @Transactional(readOnly = true)
+    public List<Note> getNotesByIds(List<Long> ids) {
+        // Pending notes are looked up first, as for a single note
+        String owner = OwnerUtil.currentOwner();
+        List<Note> found = new ArrayList<>();
+        Set<Long> remaining = new LinkedHashSet<>(ids);
+        if (writeBehindEnabled()) {
+            for (Long id : ids) {
+                writeBehindQueue.findPending(id).filter(note -> owner.equals(note.getOwner())).ifPresent(note -> {
+                    found.add(note);
+                    remaining.remove(id);
+                });
+            }
+        }
+        if (!remaining.isEmpty()) {
+            List<Note> stored = noteRepository.findByIdInAndOwner(remaining.toArray(Long[]::new), owner);
+            found.addAll(stored);
+            stored.forEach(note -> remaining.remove(note.getId()));
+        }
+        if (!remaining.isEmpty() && tierService != null) {
+            found.addAll(tierService.findArchived(remaining, owner));
+        }
+        return NoteBatch.of(ids, found).notes();
+    }
+
+    /**
+     * Lists the revisions of a note.
+     * <p>
+     * This method returns the revisions of one of the current user's notes, oldest first, without their
+     * content. A note that has never been updated has a single revision, itself.
+     * </p>
+     *
+     * @param id the ID of the note
+     * @return the revisions of the note
+     * @throws NoteNotFoundException if the note with the specified ID is not found
+     * @throws IllegalStateException if revision history is not available
+     */
+    @Transactional(readOnly = true)
+    public List<NoteRevisionSummary> getNoteRevisions(Long id) {
+        Note note = getNoteWithHistory(id);
+        return revisionService.getRevisions(note);
+    }
+
+    /**
+     * Retrieves one revision of a note.
+     * <p>
+     * This method rebuilds the title and content of one of the current user's notes as they were in the
+     * given revision. If the note or the revision is not found, it throws a {@link NotFoundException}.
+     * </p>
+     *
+     * @param id       the ID of the note
+     * @param revision the number of the revision, from 1
+     * @return the version of the note
+     * @throws NotFoundException if the note or the revision is not found
+     * @throws IllegalStateException if revision history is not available
+     */
+    @Transactional(readOnly = true)
+    public NoteVersion getNoteRevision(Long id, int revision) {
+        Note note = getNoteWithHistory(id);
+        return revisionService.getRevision(note, revision)
+                .orElseThrow(() -> new RevisionNotFoundException(id, revision));
+    }
+
+    /**
+     * Retrieves the statistics of the current user's notes.
+     * <p>
+     * The statistics are read from counters maintained by {@link NoteStatsService}, so this method does not
+     * query the database, whatever the number of notes.
+     * </p>
+     *
+     * @return the statistics of the current user's notes
+     */
+    public NoteStats getNoteStats() {
+        return statsService.getStats(OwnerUtil.currentOwner());
     }
 
     /**
      * Searches for notes by title.
      * <p>
-     * This method returns a list of {@link Note} entities whose titles contain the specified keyword,
-     * ignoring case.
+     * This method returns a list of the current user's {@link Note} entities whose titles contain the
+     * specified keyword, ignoring case, including archived notes.
      * </p>
      *
      * @param title the keyword to search for in the title
      * @return a list of notes that match the search criteria
      */
+    @Transactional(readOnly = true)
     public List<Note> searchNotesByTitle(String title) {
-        return noteRepository.findByTitleContainingIgnoreCase(title);
+        String owner = OwnerUtil.currentOwner();
+        return withArchivedNotes(withPendingNotes(() -> noteRepository.findByOwnerAndTitleContainingIgnoreCase(owner, title), owner, title),
+                owner, title);
+    }
+
+    // Adds notes accepted by the write-behind queue but not written yet, so that clients read their own writes.
+    // The pending notes are taken before querying, so that a note committed in between is found by the query.
+    private List<Note> withPendingNotes(Supplier<List<Note>> query, String owner, String title) {
+        List<Note> pending = writeBehindEnabled() ? List.copyOf(writeBehindQueue.getPendingNotes()) : List.of();
+        List<Note> notes = query.get();
+        if (pending.isEmpty()) {
+            return notes;
+        }
+        Set<Long> ids = notes.stream().map(Note::getId).collect(Collectors.toSet());
+        List<Note> result = new ArrayList<>(notes);
+        for (Note note : pending) {
+            if (!ids.contains(note.getId()) && owner.equals(note.getOwner())
+                    && (title == null || (note.getTitle() != null && note.getTitle().toLowerCase().contains(title.toLowerCase())))) {
+                result.add(note);
+            }
+        }
+        return result;
+    }
+
+    // Adds archived notes not found in the database, keeping the notes in ID order
+    private List<Note> withArchivedNotes(List<Note> notes, String owner, String title) {
+        if (tierService == null) {
+            return notes;
+        }
+        return tierService.withArchived(notes, owner,
+                archivedTitle -> title == null || (archivedTitle != null && archivedTitle.toLowerCase().contains(title.toLowerCase())));
+    }
+
+    private Optional<Note> findArchived(Long id, String owner) {
+        return tierService == null ? Optional.empty() : tierService.findArchived(id, owner);
+    }
+
+    // Archived notes are moved back into the database before they are changed
+    private Optional<Note> findOrPromote(Long id, String owner) {
+        Optional<Note> note = noteRepository.findByIdAndOwner(id, owner);
+        return note.isPresent() || tierService == null ? note : tierService.promote(id, owner);
+    }
+
+    private Note getNoteWithHistory(Long id) {
+        if (revisionService == null) {
+            throw new IllegalStateException("Revision history is not available with this storage");
+        }
+        String owner = OwnerUtil.currentOwner();
+        // The history of an archived note stays in the database
+        return noteRepository.findByIdAndOwner(id, owner)
+                .or(() -> findArchived(id, owner))
+                .orElseThrow(() -> new NoteNotFoundException(id));
+    }
+
+    private boolean revisionsEnabled() {
+        return revisionService != null && revisionService.isEnabled();
+    }
+
+    private boolean writeBehindEnabled() {
+        return writeBehindQueue != null && writeBehindQueue.isEnabled();
     }
 }
\ No newline at end of file
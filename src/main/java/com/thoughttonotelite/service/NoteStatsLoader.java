@@ -0,0 +1,37 @@
+package com.thoughttonotelite.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Computes the statistics of all notes from storage, for {@link NoteStatsService} to correct its counters.
+ * <p>
+ * Loading reads every note, or an aggregate over all of them, and is only done in the background.
+ * Deleted notes and notes without an owner are not counted.
+ * </p>
+ */
+@FunctionalInterface
+public interface NoteStatsLoader {
+
+    /**
+     * Computes the statistics of the notes of every owner.
+     *
+     * @param createdSince the start of the first day for which notes are counted per day of creation
+     * @param updatedSince the start of the first hour for which notes are counted per hour of their last update
+     * @return the statistics by owner; owners without notes are absent
+     */
+    Map<String, OwnerTotals> load(LocalDateTime createdSince, LocalDateTime updatedSince);
+
+    /**
+     * The statistics of the notes of one owner.
+     *
+     * @param notes          the number of notes
+     * @param contentBytes   the size of their content, in UTF-8 bytes
+     * @param createdPerDay  the number of notes created per day, from the requested day on
+     * @param updatedPerHour the number of notes last updated per hour, keyed by the start of the hour, from the requested hour on
+     */
+    record OwnerTotals(long notes, long contentBytes, Map<LocalDate, Long> createdPerDay,
+                       Map<LocalDateTime, Long> updatedPerHour) {
+    }
+}
@@ -0,0 +1,263 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.DeletedNote;
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBody;
+import com.thoughttonotelite.model.NoteStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps statistics about the notes of every user, so that reading them costs the same whatever the number of notes.
+ * <p>
+ * For each owner, the number of notes and the size of their content are held in {@link LongAdder}s, and the
+ * notes created per day and last updated per hour in histograms of {@code LongAdder}s, covering the last
+ * {@code notes.stats.days} days and {@code notes.stats.recent-hours} hours. {@link NoteService} records every
+ * note it creates, updates, deletes or restores, so that concurrent changes only contend on striped cells
+ * instead of a shared lock. Reading the statistics sums these cells, a fixed amount of work.
+ * </p>
+ * <p>
+ * Notes changed outside {@link NoteService}, e.g. sample data, migrations or purges, and changes racing with a
+ * reconciliation let the counters drift. Every {@code notes.stats.reconcile-interval-ms}, and before the
+ * statistics are first read, they are therefore replaced by figures computed from storage by the
+ * {@link NoteStatsLoader}.
+ * </p>
+ */
+@Service
+public class NoteStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteStatsService.class);
+
+    private final NoteStatsLoader loader;
+    private final int days;
+    private final int recentHours;
+    private final ConcurrentMap<String, OwnerStats> owners = new ConcurrentHashMap<>();
+    private volatile LocalDateTime reconciledAt;
+
+    /**
+     * Constructs a new {@code NoteStatsService}.
+     *
+     * @param loader      the loader computing the statistics from storage
+     * @param days        the number of days, including today, for which notes are counted per day of creation
+     * @param recentHours the number of hours, including the current one, in which updated notes count as recent
+     */
+    @Autowired
+    public NoteStatsService(NoteStatsLoader loader,
+                            @Value("${notes.stats.days:30}") int days,
+                            @Value("${notes.stats.recent-hours:24}") int recentHours) {
+        if (days < 1 || recentHours < 1) {
+            throw new IllegalArgumentException("Expected at least one day and one hour of statistics");
+        }
+        this.loader = loader;
+        this.days = days;
+        this.recentHours = recentHours;
+    }
+
+    /**
+     * Returns the statistics of the notes of one owner.
+     *
+     * @param owner the owner of the notes
+     * @return the statistics, all zero if the owner has no notes
+     */
+    public NoteStats getStats(String owner) {
+        if (reconciledAt == null) {
+            reconcile();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        OwnerStats stats = owners.getOrDefault(owner, OwnerStats.EMPTY);
+
+        SortedMap<LocalDate, Long> notesPerDay = new TreeMap<>();
+        for (LocalDate day = firstDay(now); !day.isAfter(now.toLocalDate()); day = day.plusDays(1)) {
+            notesPerDay.put(day, sum(stats.createdPerDay.get(day)));
+        }
+        long recentlyUpdated = 0;
+        for (LocalDateTime hour = firstHour(now); !hour.isAfter(now); hour = hour.plusHours(1)) {
+            recentlyUpdated += sum(stats.updatedPerHour.get(hour));
+        }
+        return new NoteStats(sum(stats.notes), sum(stats.contentBytes), notesPerDay, recentlyUpdated, recentHours, reconciledAt);
+    }
+
+    /**
+     * Counts a note that was created or restored.
+     *
+     * @param note         the note, with its owner and timestamps
+     * @param contentBytes the size of its content, in UTF-8 bytes
+     */
+    public void recordAdded(Note note, long contentBytes) {
+        OwnerStats stats = statsOf(note.getOwner());
+        if (stats != null) {
+            stats.notes.increment();
+            stats.contentBytes.add(contentBytes);
+            LocalDateTime now = LocalDateTime.now();
+            addCreated(stats, note.getCreatedAt(), 1, now);
+            addUpdated(stats, note.getUpdatedAt(), 1, now);
+        }
+    }
+
+    /**
+     * Counts a note that was updated.
+     *
+     * @param note                 the note after the update
+     * @param previousUpdatedAt    the time of the previous update
+     * @param previousContentBytes the size of the content before the update, in UTF-8 bytes
+     * @param contentBytes         the size of the content after the update, in UTF-8 bytes
+     */
+    public void recordUpdated(Note note, LocalDateTime previousUpdatedAt, long previousContentBytes, long contentBytes) {
+        OwnerStats stats = statsOf(note.getOwner());
+        if (stats != null) {
+            stats.contentBytes.add(contentBytes - previousContentBytes);
+            LocalDateTime now = LocalDateTime.now();
+            addUpdated(stats, previousUpdatedAt, -1, now);
+            addUpdated(stats, note.getUpdatedAt(), 1, now);
+        }
+    }
+
+    /**
+     * Stops counting a note that was deleted.
+     *
+     * @param owner the owner of the note
+     * @param note  the note as it was before it was deleted
+     */
+    public void recordRemoved(String owner, DeletedNote note) {
+        OwnerStats stats = statsOf(owner);
+        if (stats != null) {
+            stats.notes.decrement();
+            stats.contentBytes.add(-note.getContentLength());
+            LocalDateTime now = LocalDateTime.now();
+            addCreated(stats, note.getCreatedAt(), -1, now);
+            addUpdated(stats, note.getUpdatedAt(), -1, now);
+        }
+    }
+
+    /**
+     * Stops counting a note that was counted as created but never stored, such as a note the write-behind
+     * queue had accepted and the database then rejected.
+     *
+     * @param note the note as it was counted
+     */
+    public void recordRemoved(Note note) {
+        recordRemoved(note.getOwner(), DeletedNote.of(note.getCreatedAt(), note.getUpdatedAt(), contentBytes(note)));
+    }
+
+    /**
+     * Replaces the statistics of all owners with figures computed from storage.
+     * <p>
+     * Changes recorded while the figures are computed may be counted twice or not at all until the next run.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${notes.stats.reconcile-interval-ms:600000}",
+            initialDelayString = "${notes.stats.reconcile-interval-ms:600000}")
+    public synchronized void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, NoteStatsLoader.OwnerTotals> totals = loader.load(firstDay(now).atStartOfDay(), firstHour(now));
+
+        long drift = 0;
+        for (Map.Entry<String, NoteStatsLoader.OwnerTotals> entry : totals.entrySet()) {
+            NoteStatsLoader.OwnerTotals owner = entry.getValue();
+            OwnerStats stats = new OwnerStats();
+            stats.notes.add(owner.notes());
+            stats.contentBytes.add(owner.contentBytes());
+            owner.createdPerDay().forEach((day, count) -> stats.createdPerDay.put(day, adder(count)));
+            owner.updatedPerHour().forEach((hour, count) -> stats.updatedPerHour.put(hour, adder(count)));
+            OwnerStats previous = owners.put(entry.getKey(), stats);
+            drift += Math.abs(owner.notes() - (previous == null ? 0 : previous.notes.sum()));
+        }
+        for (Map.Entry<String, OwnerStats> entry : owners.entrySet()) {
+            if (!totals.containsKey(entry.getKey())) {
+                drift += Math.abs(entry.getValue().notes.sum());
+                owners.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (reconciledAt != null && drift > 0) {
+            log.info("Corrected note statistics that had drifted by {} notes", drift);
+        }
+        reconciledAt = now;
+    }
+
+    /**
+     * Returns the size of the content of a note.
+     * <p>
+     * A body that has not been loaded yet is read from the database to be measured, so notes holding a shared
+     * body are measured through the stored length of their content instead.
+     * </p>
+     *
+     * @param note the note
+     * @return the length of its content in UTF-8 bytes, {@code 0} if it has none
+     */
+    public static long contentBytes(Note note) {
+        NoteBody body = note.getBody();
+        if (body == null) {
+            return 0;
+        }
+        if (body.getContentLength() != null) {
+            return body.getContentLength();
+        }
+        String content = body.getContent();
+        return content == null ? 0 : content.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private OwnerStats statsOf(String owner) {
+        return owner == null ? null : owners.computeIfAbsent(owner, key -> new OwnerStats());
+    }
+
+    // Changes outside the histograms are not recorded, so that their buckets stay bounded
+    private void addCreated(OwnerStats stats, LocalDateTime createdAt, long delta, LocalDateTime now) {
+        LocalDate day = (createdAt == null ? now : createdAt).toLocalDate();
+        if (!day.isBefore(firstDay(now))) {
+            stats.createdPerDay.computeIfAbsent(day, key -> new LongAdder()).add(delta);
+        }
+    }
+
+    private void addUpdated(OwnerStats stats, LocalDateTime updatedAt, long delta, LocalDateTime now) {
+        LocalDateTime hour = (updatedAt == null ? now : updatedAt).truncatedTo(ChronoUnit.HOURS);
+        if (!hour.isBefore(firstHour(now))) {
+            stats.updatedPerHour.computeIfAbsent(hour, key -> new LongAdder()).add(delta);
+        }
+    }
+
+    private LocalDate firstDay(LocalDateTime now) {
+        return now.toLocalDate().minusDays(days - 1);
+    }
+
+    private LocalDateTime firstHour(LocalDateTime now) {
+        return now.truncatedTo(ChronoUnit.HOURS).minusHours(recentHours - 1);
+    }
+
+    private static LongAdder adder(long value) {
+        LongAdder adder = new LongAdder();
+        adder.add(value);
+        return adder;
+    }
+
+    // Counters may be read between the two halves of a change, so they never report less than zero
+    private static long sum(LongAdder adder) {
+        return adder == null ? 0 : Math.max(0, adder.sum());
+    }
+
+    // The counters of one owner; buckets older than the histograms are dropped by the next reconciliation
+    private static final class OwnerStats {
+
+        static final OwnerStats EMPTY = new OwnerStats();
+
+        final LongAdder notes = new LongAdder();
+        final LongAdder contentBytes = new LongAdder();
+        final ConcurrentMap<LocalDate, LongAdder> createdPerDay = new ConcurrentHashMap<>();
+        final ConcurrentMap<LocalDateTime, LongAdder> updatedPerHour = new ConcurrentHashMap<>();
+    }
+}
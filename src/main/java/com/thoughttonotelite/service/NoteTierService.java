@@ -0,0 +1,325 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.storage.NoteArchive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Moves notes that have not been updated for a long time out of the database into a {@link NoteArchive}, and
+ * back when they are changed.
+ * <p>
+ * The {@code notes} table is the hot tier. {@link NoteTieringJob} moves notes older than
+ * {@code notes.tiering.min-age-days} into the archive, the cold tier: a batch of notes is first written to a new
+ * segment in {@code notes.tiering.path}, and only then deleted from the database, releasing their bodies. Their
+ * revision history stays in the database. Reads that do not find a note in the database look in the archive, so
+ * archived notes are still found by ID, listed and searched, only more slowly.
+ * </p>
+ * <p>
+ * Archived notes are never changed in place. Before a note is updated or deleted, {@link #promote} inserts it
+ * into the database again under its ID, and once that has been committed the archived copy is marked as
+ * superseded. A note that exists in the database always takes precedence over its archived copy, so a crash
+ * between the two steps of moving a note in either direction at worst leaves a superseded copy current, which is
+ * corrected on the next startup.
+ * </p>
+ * <p>
+ * The archive lives on the local file system, so tiering is meant for a single instance. Not available with the
+ * embedded storage engine or sharding, which store notes in files of their own.
+ * </p>
+ */
+@Service
+@Order(2)
+@Profile("!embedded & !sharded")
+public class NoteTierService implements ApplicationRunner, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteTierService.class);
+
+    private static final String ARCHIVABLE_SQL = """
+            SELECT n.id, n.owner, n.title, n.created_at, n.updated_at, b.content, b.compressed_content
+            FROM notes n LEFT JOIN note_bodies b ON b.id = n.body_id
+            WHERE n.id > ? AND n.updated_at < ? AND n.deleted_at IS NULL AND n.owner IS NOT NULL
+            ORDER BY n.id
+            LIMIT ?
+            """;
+
+    // Removes archived notes that have not been changed since they were read, releasing their bodies like the purge
+    private static final String DELETE_ARCHIVED_SQL = """
+            WITH archived AS (
+                DELETE FROM notes
+                WHERE id = ANY(?) AND updated_at < ? AND deleted_at IS NULL
+                RETURNING id, body_id
+            ), refs AS (
+                SELECT body_id, count(*) AS refs FROM archived WHERE body_id IS NOT NULL GROUP BY body_id
+            ), released AS (
+                SELECT b.id, b.ref_count - refs.refs AS remaining
+                FROM note_bodies b JOIN refs ON b.id = refs.body_id
+                FOR UPDATE OF b
+            ), shared AS (
+                UPDATE note_bodies b SET ref_count = released.remaining
+                FROM released WHERE b.id = released.id AND released.remaining > 0
+            ), bodies AS (
+                DELETE FROM note_bodies b USING released WHERE b.id = released.id AND released.remaining <= 0
+            )
+            SELECT id FROM archived
+            """;
+
+    // Does nothing if a concurrent transaction has promoted the note already
+    private static final String PROMOTE_SQL = """
+            INSERT INTO notes (id, owner, title, created_at, updated_at) VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NoteRepository noteRepository;
+    private final NoteBodyStore bodyStore;
+    private final NoteArchive archive;
+    // Notes promoted by transactions that have not completed yet; they are not archived again until then
+    private final Set<Long> promoting = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a new {@code NoteTierService} and opens the archive.
+     *
+     * @param jdbcTemplate     the template used to move notes between the database and the archive
+     * @param noteRepository   the repository used to load promoted notes
+     * @param bodyStore        the store giving promoted notes the body of their content
+     * @param path             the directory of the archive
+     * @param compressionLevel the deflate compression level of archived content, from 0 (none) to 9 (best)
+     * @throws IOException if the archive cannot be opened
+     */
+    @Autowired
+    public NoteTierService(JdbcTemplate jdbcTemplate, NoteRepository noteRepository, NoteBodyStore bodyStore,
+                           @Value("${notes.tiering.path:data/archive}") Path path,
+                           @Value("${notes.tiering.compression-level:9}") int compressionLevel) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.noteRepository = noteRepository;
+        this.bodyStore = bodyStore;
+        this.archive = new NoteArchive(path, compressionLevel);
+    }
+
+    /**
+     * Marks archived copies of notes that exist in the database as superseded.
+     * <p>
+     * Such copies are left behind by a crash after a note was promoted or archived but before the archive was
+     * updated.
+     * </p>
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (archive.isEmpty()) {
+            return;
+        }
+        long[] ids = archive.ids();
+        int corrected = 0;
+        for (int from = 0; from < ids.length; from += RECONCILE_BATCH_SIZE) {
+            Long[] batch = Arrays.stream(ids, from, Math.min(from + RECONCILE_BATCH_SIZE, ids.length)).boxed().toArray(Long[]::new);
+            // Deleted notes count as well: they are in the database until they are purged
+            long[] existing = jdbcTemplate.queryForList("SELECT id FROM notes WHERE id = ANY(?)", Long.class, (Object) batch)
+                    .stream().mapToLong(Long::longValue).toArray();
+            archive.markSuperseded(existing);
+            corrected += existing.length;
+        }
+        if (corrected > 0) {
+            log.info("Marked the archived copies of {} notes found in the database as superseded", corrected);
+        }
+    }
+
+    /**
+     * Finds an archived note.
+     *
+     * @param id    the ID of the note
+     * @param owner the name of the user owning the note
+     * @return the note, or an empty {@link Optional} if it is not archived or belongs to someone else
+     */
+    public Optional<Note> findArchived(Long id, String owner) {
+        if (archive.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(archive.read(id)).filter(note -> owner.equals(note.getOwner()));
+    }
+
+    /**
+     * Finds archived notes by their IDs.
+     *
+     * @param ids   the IDs of the notes
+     * @param owner the name of the user owning the notes
+     * @return the notes found, in the order of their IDs; IDs of notes that are not archived or belong to someone else are skipped
+     */
+    public List<Note> findArchived(Collection<Long> ids, String owner) {
+        List<Note> notes = new ArrayList<>();
+        for (Long id : ids) {
+            findArchived(id, owner).ifPresent(notes::add);
+        }
+        return notes;
+    }
+
+    /**
+     * Adds the archived notes of an owner to notes read from the database.
+     *
+     * @param notes       the notes read from the database, in ascending ID order
+     * @param owner       the name of the user owning the notes
+     * @param titleFilter the test applied to the title of each archived note; titles may be {@code null}
+     * @return the notes, including the matching archived notes not found in the database, in ascending ID order
+     */
+    public List<Note> withArchived(List<Note> notes, String owner, Predicate<String> titleFilter) {
+        if (archive.isEmpty()) {
+            return notes;
+        }
+        List<Note> archived = archive.readByOwner(owner, titleFilter);
+        if (archived.isEmpty()) {
+            return notes;
+        }
+        Set<Long> ids = new HashSet<>();
+        notes.forEach(note -> ids.add(note.getId()));
+        List<Note> result = new ArrayList<>(notes);
+        for (Note note : archived) {
+            if (!ids.contains(note.getId())) {
+                result.add(note);
+            }
+        }
+        result.sort(Comparator.comparing(Note::getId));
+        return result;
+    }
+
+    /**
+     * Moves an archived note back into the database, so that it can be changed.
+     * <p>
+     * Must be called in a transaction. The note is inserted under its ID with its timestamps, and the body of its
+     * content is shared through the {@link NoteBodyStore}. Its archived copy is marked as superseded once the
+     * transaction has been committed.
+     * </p>
+     *
+     * @param id    the ID of the note
+     * @param owner the name of the user owning the note
+     * @return the note as now stored in the database, or an empty {@link Optional} if it is not archived or belongs to someone else
+     */
+    public Optional<Note> promote(Long id, String owner) {
+        Optional<Note> archived = findArchived(id, owner);
+        if (archived.isEmpty()) {
+            return Optional.empty();
+        }
+        Note note = archived.get();
+        promoting.add(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        archive.markSuperseded(id);
+                    }
+                } finally {
+                    promoting.remove(id);
+                }
+            }
+        });
+        if (jdbcTemplate.update(PROMOTE_SQL, id, owner, note.getTitle(), note.getCreatedAt(), note.getUpdatedAt()) > 0
+                && note.getContent() != null) {
+            // The note is inserted first, so that a concurrent promotion cannot take a second reference to the body
+            Note holder = new Note();
+            holder.setContent(note.getContent());
+            bodyStore.storeContent(holder);
+            jdbcTemplate.update("UPDATE notes SET body_id = ? WHERE id = ?", holder.getBody().getId(), id);
+        }
+        return noteRepository.findByIdAndOwner(id, owner);
+    }
+
+    /**
+     * Finds notes of the database that have not been updated since the given time.
+     *
+     * @param cutoff  the time before which notes must have been updated last
+     * @param afterId the ID after which to look, so that batches can be read in ID order
+     * @param limit   the maximum number of notes
+     * @return the notes with their content, in ascending ID order
+     */
+    public List<Note> findArchivable(LocalDateTime cutoff, long afterId, int limit) {
+        return jdbcTemplate.query(ARCHIVABLE_SQL, (rs, rowNum) -> {
+            Note note = new Note();
+            note.setId(rs.getLong("id"));
+            note.setOwner(rs.getString("owner"));
+            note.setTitle(rs.getString("title"));
+            note.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+            note.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+            byte[] compressed = rs.getBytes("compressed_content");
+            if (compressed != null) {
+                note.storeCompressedContent(compressed);
+            } else {
+                note.setContent(rs.getString("content"));
+            }
+            return note;
+        }, afterId, cutoff, limit);
+    }
+
+    /**
+     * Moves notes found by {@link #findArchivable} into a new archive segment and deletes them from the database.
+     * <p>
+     * Notes that were updated, deleted or promoted since they were read stay in the database, and their archived
+     * copies are marked as superseded.
+     * </p>
+     *
+     * @param notes  the notes to archive
+     * @param cutoff the time the notes were found with
+     * @return the number of notes moved
+     */
+    public int archive(List<Note> notes, LocalDateTime cutoff) {
+        List<Note> candidates = notes.stream().filter(note -> !promoting.contains(note.getId())).toList();
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        archive.write(candidates);
+        Set<Long> deleted = new HashSet<>(jdbcTemplate.queryForList(DELETE_ARCHIVED_SQL, Long.class,
+                candidates.stream().map(Note::getId).toArray(Long[]::new), cutoff));
+        archive.markSuperseded(candidates.stream().mapToLong(Note::getId).filter(id -> !deleted.contains(id)).toArray());
+        return deleted.size();
+    }
+
+    /**
+     * Deletes archive segments that only hold superseded copies of notes.
+     *
+     * @return the number of segments deleted
+     */
+    public int deleteObsoleteSegments() {
+        return archive.deleteObsoleteSegments();
+    }
+
+    /**
+     * Passes the metadata of every archived note to a consumer, without decoding any content.
+     *
+     * @param consumer the consumer of the metadata
+     */
+    public void forEachArchived(Consumer<NoteArchive.Entry> consumer) {
+        archive.forEach(consumer);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        archive.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Background job that moves notes which have not been updated for a long time into the archive.
+ * <p>
+ * When {@code notes.tiering.enabled} is set, each run walks the notes table in ID order and hands notes last
+ * updated more than {@code notes.tiering.min-age-days} days ago to {@link NoteTierService#archive}, one archive
+ * segment of at most {@code notes.tiering.batch-size} notes per batch. A run stops after
+ * {@code notes.tiering.max-batches-per-run} batches and the next run continues where it left off, so that the
+ * database only sees short statements. Archive segments that only hold notes moved back into the database
+ * are deleted at the end of each run.
+ * </p>
+ * <p>
+ * Disabling tiering stops moving notes into the archive; notes archived before are still read from it.
+ * </p>
+ */
+@Component
+@Profile("!embedded & !sharded")
+public class NoteTieringJob {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteTieringJob.class);
+
+    private final NoteTierService tierService;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    // ID of the last note examined, so that the next run resumes after it
+    private long cursor;
+
+    /**
+     * Constructs a new {@code NoteTieringJob}.
+     *
+     * @param tierService      the service moving notes into the archive
+     * @param enabled          whether notes are moved into the archive at all
+     * @param minAgeDays       the number of days since its last update after which a note is archived
+     * @param batchSize        the number of notes archived per segment
+     * @param maxBatchesPerRun the maximum number of batches per run
+     */
+    public NoteTieringJob(NoteTierService tierService,
+                          @Value("${notes.tiering.enabled:false}") boolean enabled,
+                          @Value("${notes.tiering.min-age-days:365}") long minAgeDays,
+                          @Value("${notes.tiering.batch-size:1000}") int batchSize,
+                          @Value("${notes.tiering.max-batches-per-run:10}") int maxBatchesPerRun) {
+        this.tierService = tierService;
+        this.enabled = enabled;
+        this.minAge = Duration.ofDays(minAgeDays);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /**
+     * Archives the next batches of notes past the minimum age.
+     *
+     * @return the number of notes archived
+     */
+    @Scheduled(fixedDelayString = "${notes.tiering.interval-ms:3600000}",
+            initialDelayString = "${notes.tiering.interval-ms:3600000}")
+    public long archiveOldNotes() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        long archived = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<Note> notes = tierService.findArchivable(cutoff, cursor, batchSize);
+            if (notes.isEmpty()) {
+                // Reached the end of the table; start over on the next run to pick up notes that have aged since
+                cursor = 0;
+                break;
+            }
+            archived += tierService.archive(notes, cutoff);
+            cursor = notes.get(notes.size() - 1).getId();
+        }
+        int deleted = tierService.deleteObsoleteSegments();
+        if (archived > 0 || deleted > 0) {
+            log.info("Archived {} notes not updated since {}, deleted {} obsolete archive segments", archived, cutoff, deleted);
+        }
+        return archived;
+    }
+}
@@ -0,0 +1,508 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.utils.ContentHashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind buffer for creating notes at a high rate.
+ * <p>
+ * When {@code notes.ingestion.write-behind.enabled} is set, {@link NoteService#createNote(Note)} hands new
+ * notes to this queue instead of inserting each one in its own transaction. An accepted note gets its ID
+ * from the database sequence right away, from a block of IDs reserved in advance, is appended to the
+ * {@link NoteWriteAheadLog} and is then acknowledged. A dedicated writer thread takes up to
+ * {@code batch-size} queued notes at a time and inserts them with one multi-row statement per table in a
+ * single transaction, sharing the bodies of identical content like {@link NoteBodyStore}. Notes recorded in the log but not yet committed are inserted on the next startup,
+ * so an acknowledged note survives a crash of the application. Notes recorded by a version without owners are
+ * given to {@code notes.ownership.legacy-owner}, as {@code NoteOwnershipMigration} does with the stored notes,
+ * whichever of the two runs first.
+ * </p>
+ * <p>
+ * Until a note is committed, it can be read through {@link #findPending(Long)} and {@link #getPendingNotes()},
+ * which {@link NoteService} consults so that clients read their own writes. Updating or deleting a pending
+ * note waits until it has been committed. The queue holds at most {@code queue-capacity} notes; when it is
+ * full, new notes are rejected with an {@link IngestionQueueFullException}.
+ * </p>
+ * <p>
+ * Notes the database would refuse are rejected with an {@link InvalidNoteException} before they are accepted.
+ * If the database still rejects a batch for a reason that retrying cannot fix, its notes are written one by
+ * one, and the notes rejected on their own are moved to the dead-letter log at {@code dead-letter-path}, in
+ * the format of the write-ahead log, instead of holding up every note queued after them. Since such a note
+ * was already acknowledged, it is then taken out of the statistics again, and a {@link NoteChangedEvent} evicts
+ * any response cached while it was pending.
+ * </p>
+ */
+@Component
+@Order(1)
+@Profile("!embedded & !sharded")
+public class NoteWriteBehindQueue implements ApplicationRunner, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteWriteBehindQueue.class);
+
+    // Length of the title column, which Hibernate creates as varchar(255)
+    private static final int MAX_TITLE_LENGTH = 255;
+
+    private static final String RESERVE_IDS_SQL = "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)";
+
+    // Appended to the multi-row insert of bodies: content already stored gets the references instead of a new body
+    private static final String UPSERT_BODIES_SQL = """
+             ON CONFLICT (content_hash) DO UPDATE SET ref_count = note_bodies.ref_count + EXCLUDED.ref_count
+            RETURNING id, content_hash""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final NoteContentCompressor contentCompressor;
+    private final NoteStatsService statsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxBatchDelayMillis;
+    private final Path walPath;
+    private final boolean walFsync;
+    private final Path deadLetterPath;
+    private final String legacyOwner;
+
+    private final BlockingQueue<Note> queue;
+    private final Map<Long, Note> pending = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Void>> committed = new ConcurrentHashMap<>();
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+
+    // Guards ID assignment, the write-ahead log and the order of the queue, which must all agree
+    private final Object appendLock = new Object();
+    private volatile NoteWriteAheadLog writeAheadLog;
+    // Opened on the first rejected note; only used by the writer thread, and by run() before it starts
+    private NoteWriteAheadLog deadLetterLog;
+    private long appendedCount;
+    private long committedCount;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Constructs a new {@code NoteWriteBehindQueue}.
+     *
+     * @param jdbcTemplate        the template used to reserve IDs and insert notes
+     * @param transactionTemplate the template used to insert each batch in one transaction
+     * @param contentCompressor   the compressor applying the compression at rest settings
+     * @param statsService        the statistics that stop counting notes the database rejects
+     * @param eventPublisher      the publisher of the events evicting notes the database rejects
+     * @param enabled             whether new notes are written behind at all
+     * @param queueCapacity       the maximum number of accepted notes not yet committed
+     * @param batchSize           the maximum number of notes inserted per transaction
+     * @param maxBatchDelayMillis how long the writer blocks waiting for a note before checking for shutdown
+     * @param walPath             the location of the write-ahead log
+     * @param walFsync            whether every append to the log is forced to the storage device
+     * @param deadLetterPath      the location of the log receiving notes the database rejects
+     * @param legacyOwner         the owner of notes recovered from the log without one
+     */
+    @Autowired
+    public NoteWriteBehindQueue(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                NoteContentCompressor contentCompressor,
+                                NoteStatsService statsService,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${notes.ingestion.write-behind.enabled:false}") boolean enabled,
+                                @Value("${notes.ingestion.write-behind.queue-capacity:10000}") int queueCapacity,
+                                @Value("${notes.ingestion.write-behind.batch-size:500}") int batchSize,
+                                @Value("${notes.ingestion.write-behind.max-batch-delay-ms:20}") long maxBatchDelayMillis,
+                                @Value("${notes.ingestion.write-behind.wal-path:data/ingestion.wal}") Path walPath,
+                                @Value("${notes.ingestion.write-behind.wal-fsync:false}") boolean walFsync,
+                                @Value("${notes.ingestion.write-behind.dead-letter-path:data/ingestion-dead-letter.wal}") Path deadLetterPath,
+                                @Value("${notes.ownership.legacy-owner:${spring.security.user.name}}") String legacyOwner) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.contentCompressor = contentCompressor;
+        this.statsService = statsService;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+        this.walPath = walPath;
+        this.walFsync = walFsync;
+        this.deadLetterPath = deadLetterPath;
+        this.legacyOwner = legacyOwner;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Tells whether new notes are written behind.
+     *
+     * @return {@code true} if {@link #submit(Note)} should be used to create notes
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Inserts the notes left in the write-ahead log by the previous run and starts the writer thread.
+     *
+     * @param args the application arguments
+     * @throws IOException if the write-ahead log cannot be opened or read
+     */
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        synchronized (appendLock) {
+            writeAheadLog = new NoteWriteAheadLog(walPath, walFsync);
+            List<Note> uncommitted = writeAheadLog.readUncheckpointed();
+            if (!uncommitted.isEmpty()) {
+                Set<Long> existing = existingIds(uncommitted);
+                List<Note> missing = uncommitted.stream().filter(note -> !existing.contains(note.getId())).toList();
+                // The ownership migration may already have run, and a partitioned table refuses notes without an owner
+                missing.stream().filter(note -> note.getOwner() == null).forEach(note -> note.setOwner(legacyOwner));
+                for (int from = 0; from < missing.size(); from += batchSize) {
+                    List<Note> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+                    try {
+                        insertBatch(batch);
+                    } catch (DataAccessException e) {
+                        if (!isRejected(e)) {
+                            throw e;
+                        }
+                        batch.forEach(this::insertOrDeadLetter);
+                    }
+                }
+                log.info("Recovered {} notes from the write-ahead log", missing.size());
+            }
+            writeAheadLog.truncate();
+        }
+        running = true;
+        writer = new Thread(this::writeBatches, "note-write-behind");
+        // Notes still queued if the database stays unreachable on shutdown are recovered from the log
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Accepts a new note for insertion by the writer thread.
+     * <p>
+     * The note is given its ID and timestamps and recorded in the write-ahead log before this method returns.
+     * </p>
+     *
+     * @param note the note to create
+     * @return the accepted note, with its ID set
+     * @throws InvalidNoteException        if the database could not store the note
+     * @throws IngestionQueueFullException if the queue is full
+     */
+    public Note submit(Note note) {
+        validate(note);
+        if (writeAheadLog == null) {
+            throw new IngestionQueueFullException("Write-behind ingestion is starting up");
+        }
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        note.setCreatedAt(now);
+        note.setUpdatedAt(now);
+        synchronized (appendLock) {
+            if (queue.remainingCapacity() == 0) {
+                throw new IngestionQueueFullException("Too many notes are waiting to be written");
+            }
+            note.setId(nextId());
+            writeAheadLog.appendNote(note);
+            appendedCount++;
+            pending.put(note.getId(), note);
+            committed.put(note.getId(), new CompletableFuture<>());
+            queue.add(note);
+        }
+        return note;
+    }
+
+    /**
+     * Returns an accepted note that has not been committed yet.
+     *
+     * @param id the ID of the note
+     * @return the note if it is still waiting to be written
+     */
+    public Optional<Note> findPending(Long id) {
+        return Optional.ofNullable(pending.get(id));
+    }
+
+    /**
+     * Returns all accepted notes that have not been committed yet.
+     *
+     * @return the pending notes, in no particular order
+     */
+    public Collection<Note> getPendingNotes() {
+        return pending.values();
+    }
+
+    /**
+     * Waits until an accepted note has been committed. Returns immediately for any other note.
+     *
+     * @param id the ID of the note
+     */
+    public void awaitCommitted(Long id) {
+        CompletableFuture<Void> future = committed.get(id);
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for note " + id + " to be written", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Note " + id + " has not been written yet", e);
+        }
+    }
+
+    /**
+     * Stops the writer thread after it has written every queued note.
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        writeAheadLog.close();
+        if (deadLetterLog != null) {
+            deadLetterLog.close();
+        }
+    }
+
+    // Once acknowledged, a note can no longer be refused, so what the database would reject is rejected here
+    private static void validate(Note note) {
+        if (note.getTitle() != null && note.getTitle().length() > MAX_TITLE_LENGTH) {
+            throw new InvalidNoteException("The title must not be longer than " + MAX_TITLE_LENGTH + " characters");
+        }
+        // PostgreSQL cannot store NUL characters in text columns
+        if (note.getTitle() != null && note.getTitle().indexOf('\0') >= 0
+                || note.getContent() != null && note.getContent().indexOf('\0') >= 0) {
+            throw new InvalidNoteException("Titles and content must not contain NUL characters");
+        }
+    }
+
+    // Takes IDs from blocks reserved with one query per block
+    private long nextId() {
+        if (reservedIds.isEmpty()) {
+            reservedIds.addAll(jdbcTemplate.queryForList(RESERVE_IDS_SQL, Long.class, "notes", batchSize));
+        }
+        return reservedIds.removeFirst();
+    }
+
+    private void writeBatches() {
+        List<Note> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Note first = queue.poll(maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    // Notes queued while the previous batch was being written go into this one
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                try {
+                    insertBatch(batch);
+                    afterCommit(batch);
+                } catch (DataAccessException e) {
+                    if (!isRejected(e)) {
+                        throw e;
+                    }
+                    log.warn("The database rejected a batch of {} queued notes, writing them one by one", batch.size(), e);
+                    writeIndividually(batch);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                // Shutting down; keep writing until the queue is empty
+                running = false;
+            } catch (RuntimeException e) {
+                // The database is unavailable; the batch stays in the log and is retried, nothing accepted is dropped
+                log.warn("Could not write {} queued notes, retrying", batch.size(), e);
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    // Writes the notes of a rejected batch in order, each in its own transaction, removing them from the batch
+    // as they are done. Notes already committed by an earlier attempt are only checkpointed.
+    private void writeIndividually(List<Note> batch) {
+        Set<Long> existing = existingIds(batch);
+        for (Iterator<Note> notes = batch.iterator(); notes.hasNext(); ) {
+            Note note = notes.next();
+            boolean stored = existing.contains(note.getId()) || insertOrDeadLetter(note);
+            afterCommit(List.of(note));
+            if (!stored) {
+                // Once no longer pending, so that a read after the eviction does not cache the note again
+                statsService.recordRemoved(note);
+                eventPublisher.publishEvent(new NoteChangedEvent(note.getId(), note.getOwner()));
+            }
+            notes.remove();
+        }
+    }
+
+    // Inserts a single note, or moves it to the dead-letter log if the database rejects it
+    private boolean insertOrDeadLetter(Note note) {
+        try {
+            insertBatch(List.of(note));
+            return true;
+        } catch (DataAccessException e) {
+            if (!isRejected(e)) {
+                throw e;
+            }
+            log.error("The database rejected note {}, moving it to the dead-letter log {}", note.getId(), deadLetterPath, e);
+            try {
+                if (deadLetterLog == null) {
+                    // Always forced to the storage device, since the note is checkpointed out of the write-ahead log next
+                    deadLetterLog = new NoteWriteAheadLog(deadLetterPath, true);
+                }
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            deadLetterLog.appendNote(note);
+            return false;
+        }
+    }
+
+    // Errors that retrying the same statement cannot fix, such as a constraint violation or a value the column
+    // cannot hold. A lost connection is a DataAccessResourceFailureException and is retried.
+    private static boolean isRejected(DataAccessException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof DataAccessResourceFailureException);
+    }
+
+    private Set<Long> existingIds(List<Note> notes) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM notes WHERE id = ANY(?)", Long.class,
+                (Object) notes.stream().map(Note::getId).toArray(Long[]::new)));
+    }
+
+    private void afterCommit(List<Note> batch) {
+        synchronized (appendLock) {
+            committedCount += batch.size();
+            try {
+                if (committedCount == appendedCount) {
+                    writeAheadLog.truncate();
+                } else {
+                    writeAheadLog.appendCheckpoint(batch.get(batch.size() - 1).getId());
+                }
+            } catch (UncheckedIOException e) {
+                // The notes are committed, so the batch must not be written again; should the log replay them
+                // after a restart, they are found in the database and skipped
+                log.error("Could not checkpoint {} committed notes in the write-ahead log", batch.size(), e);
+            }
+        }
+        for (Note note : batch) {
+            pending.remove(note.getId());
+            CompletableFuture<Void> future = committed.remove(note.getId());
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+    }
+
+    // Inserts the bodies and notes of a batch with one multi-row statement each, in one transaction
+    private void insertBatch(List<Note> batch) {
+        // Notes with the same content share one body, see NoteBodyStore. Each distinct content is inserted
+        // once, or referenced if it is stored already; bodies are ordered by hash so that writers lock them in one order.
+        List<byte[]> hashes = new ArrayList<>(batch.size());
+        Map<byte[], Note> bodies = new TreeMap<>(Arrays::compare);
+        Map<byte[], Integer> references = new TreeMap<>(Arrays::compare);
+        for (Note note : batch) {
+            byte[] hash = note.getContent() == null ? null : ContentHashUtil.hash(note.getContent());
+            hashes.add(hash);
+            if (hash != null) {
+                bodies.putIfAbsent(hash, note);
+                references.merge(hash, 1, Integer::sum);
+            }
+        }
+        List<Long> bodyIds = bodies.isEmpty()
+                ? List.of()
+                : jdbcTemplate.queryForList(RESERVE_IDS_SQL, Long.class, "note_bodies", bodies.size());
+        List<Object> bodyArgs = new ArrayList<>(bodies.size() * 6);
+        int index = 0;
+        for (Map.Entry<byte[], Note> body : bodies.entrySet()) {
+            String content = body.getValue().getContent();
+            byte[] compressed = contentCompressor.compress(content);
+            bodyArgs.add(bodyIds.get(index++));
+            bodyArgs.add(compressed == null ? content : null);
+            bodyArgs.add(compressed);
+            bodyArgs.add((long) content.getBytes(StandardCharsets.UTF_8).length);
+            bodyArgs.add(body.getKey());
+            bodyArgs.add(references.get(body.getKey()));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<byte[], Long> bodyIdsByHash = new TreeMap<>(Arrays::compare);
+            if (!bodies.isEmpty()) {
+                jdbcTemplate.query(multiRowInsert("note_bodies (id, content, compressed_content, content_length, content_hash, ref_count)", 6, bodies.size())
+                                + UPSERT_BODIES_SQL,
+                        (RowCallbackHandler) rs -> bodyIdsByHash.put(rs.getBytes("content_hash"), rs.getLong("id")),
+                        bodyArgs.toArray());
+            }
+            List<Object> noteArgs = new ArrayList<>(batch.size() * 6);
+            for (int i = 0; i < batch.size(); i++) {
+                Note note = batch.get(i);
+                noteArgs.add(note.getId());
+                noteArgs.add(note.getOwner());
+                noteArgs.add(note.getTitle());
+                noteArgs.add(hashes.get(i) == null ? null : bodyIdsByHash.get(hashes.get(i)));
+                noteArgs.add(Timestamp.valueOf(note.getCreatedAt()));
+                noteArgs.add(Timestamp.valueOf(note.getUpdatedAt()));
+            }
+            jdbcTemplate.update(multiRowInsert("notes (id, owner, title, body_id, created_at, updated_at)", 6, batch.size()),
+                    noteArgs.toArray());
+        });
+    }
+
+    private static String multiRowInsert(String table, int columns, int rows) {
+        String row = "(" + "?, ".repeat(columns - 1) + "?)";
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(row);
+        }
+        return sql.toString();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
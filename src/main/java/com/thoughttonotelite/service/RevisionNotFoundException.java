@@ -0,0 +1,43 @@
+package com.thoughttonotelite.service;
+
+/**
+ * Thrown when a note exists but has no revision with the requested number.
+ * <p>
+ * Clients receive a 404 (Not Found) response.
+ * </p>
+ */
+public class RevisionNotFoundException extends NotFoundException {
+
+    private final Long noteId;
+    private final int revision;
+
+    /**
+     * Constructs a new {@code RevisionNotFoundException}.
+     *
+     * @param noteId   the ID of the note
+     * @param revision the number of the revision that was not found
+     */
+    public RevisionNotFoundException(Long noteId, int revision) {
+        super("Revision " + revision + " not found for note with id " + noteId);
+        this.noteId = noteId;
+        this.revision = revision;
+    }
+
+    /**
+     * Returns the ID of the note whose revision was not found.
+     *
+     * @return the requested note ID
+     */
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    /**
+     * Returns the number of the revision that was not found.
+     *
+     * @return the requested revision
+     */
+    public int getRevision() {
+        return revision;
+    }
+}
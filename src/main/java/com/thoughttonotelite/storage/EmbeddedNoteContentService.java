@@ -0,0 +1,44 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.service.NoteContentService;
+import com.thoughttonotelite.service.NoteNotFoundException;
+import com.thoughttonotelite.utils.OwnerUtil;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link NoteContentService} reading the content of notes from the embedded {@link NoteLog}.
+ * <p>
+ * The content is copied out of the mapped log in one piece, decompressing it if it is stored compressed,
+ * without decoding the rest of the note or building a {@link String}. Ranges are then served from the copy.
+ * </p>
+ */
+@Service
+@Profile("embedded")
+public class EmbeddedNoteContentService implements NoteContentService {
+
+    private final EmbeddedNoteRepository repository;
+    private final NoteLog noteLog;
+
+    /**
+     * Constructs a new {@code EmbeddedNoteContentService}.
+     *
+     * @param repository the embedded repository whose log holds the content
+     */
+    public EmbeddedNoteContentService(EmbeddedNoteRepository repository) {
+        this.repository = repository;
+        this.noteLog = repository.getLog();
+    }
+
+    @Override
+    public Resource getContent(Long id) {
+        // Only the owner of the note may read its content
+        byte[] content = repository.existsByIdAndOwner(id, OwnerUtil.currentOwner()) ? noteLog.readContent(id) : null;
+        if (content == null) {
+            throw new NoteNotFoundException(id);
+        }
+        return new ByteArrayResource(content, "content of note " + id);
+    }
+}
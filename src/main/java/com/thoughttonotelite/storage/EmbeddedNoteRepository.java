@@ -0,0 +1,229 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.DeletedNote;
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.service.NoteStatsService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * {@link NoteRepository} storing notes in an embedded {@link NoteLog} instead of a database.
+ * <p>
+ * Active with the {@code embedded} profile, which also turns off the datasource and JPA, so the application
+ * runs as a single process with its notes in {@code notes.embedded.path}. Every save and delete is one
+ * append to a memory-mapped file, and reads are served from the mapped files through an in-memory index
+ * of note IDs, without any network round trip or object-relational mapping.
+ * </p>
+ * <p>
+ * Timestamps are set on save the way the JPA entity callbacks set them. Notes are returned as detached
+ * copies, so changes only take effect when the note is saved.
+ * </p>
+ * <p>
+ * Notes stored before notes had owners belong to {@code notes.ownership.legacy-owner}, the same user the
+ * database migration gives them to. Owner-scoped queries test the owner of each note before decoding anything
+ * else of it.
+ * </p>
+ * <p>
+ * Deleted notes are marked in the log rather than removed, and every read leaves them out like the
+ * {@code deleted_at} restriction of the JPA entity does.
+ * </p>
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedNoteRepository implements NoteRepository, DisposableBean {
+
+    private final NoteLog log;
+    private final String legacyOwner;
+
+    /**
+     * Constructs a new {@code EmbeddedNoteRepository}, opening the log and recovering its index.
+     *
+     * @param path        the directory holding the log
+     * @param segmentSize the size of each log segment file, in bytes
+     * @param fsync       whether every write is forced to the storage device before it returns
+     * @param legacyOwner the owner of notes stored without one
+     * @throws IOException if the log cannot be opened
+     */
+    @Autowired
+    public EmbeddedNoteRepository(@Value("${notes.embedded.path:data/embedded}") Path path,
+                                  @Value("${notes.embedded.segment-size:67108864}") int segmentSize,
+                                  @Value("${notes.embedded.fsync:false}") boolean fsync,
+                                  @Value("${notes.ownership.legacy-owner:${spring.security.user.name}}") String legacyOwner) throws IOException {
+        this.log = new NoteLog(path, segmentSize, fsync);
+        this.legacyOwner = legacyOwner;
+    }
+
+    /**
+     * Returns the log the notes are stored in.
+     *
+     * @return the log
+     */
+    public NoteLog getLog() {
+        return log;
+    }
+
+    @Override
+    public <S extends Note> S save(S note) {
+        LocalDateTime now = LocalDateTime.now();
+        if (note.getId() == null || !log.contains(note.getId())) {
+            note.setCreatedAt(now);
+        }
+        note.setUpdatedAt(now);
+        log.put(note);
+        return note;
+    }
+
+    @Override
+    public <S extends Note> List<S> saveAll(Iterable<S> notes) {
+        List<S> saved = new ArrayList<>();
+        notes.forEach(note -> saved.add(save(note)));
+        return saved;
+    }
+
+    @Override
+    public Optional<Note> findById(Long id) {
+        return Optional.ofNullable(withOwner(log.read(id))).filter(note -> note.getDeletedAt() == null);
+    }
+
+    @Override
+    public Optional<Note> findByIdAndOwner(Long id, String owner) {
+        return findById(id).filter(note -> owner.equals(note.getOwner()));
+    }
+
+    @Override
+    public List<Note> findByIdInAndOwner(Long[] ids, String owner) {
+        List<Note> notes = new ArrayList<>();
+        for (Long id : ids) {
+            findByIdAndOwner(id, owner).ifPresent(notes::add);
+        }
+        return notes;
+    }
+
+    @Override
+    public boolean existsByIdAndOwner(Long id, String owner) {
+        try {
+            return ownedBy(owner).test(log.readOwner(id)) && !log.isDeleted(id);
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return log.contains(id) && !log.isDeleted(id);
+    }
+
+    @Override
+    public List<Note> findAll() {
+        return withOwners(log.readAll(owner -> true, title -> true));
+    }
+
+    @Override
+    public List<Note> findByOwnerOrderById(String owner) {
+        return withOwners(log.readAll(ownedBy(owner), title -> true));
+    }
+
+    @Override
+    public List<Note> findAllById(Iterable<Long> ids) {
+        List<Note> notes = new ArrayList<>();
+        for (Long id : ids) {
+            findById(id).ifPresent(notes::add);
+        }
+        return notes;
+    }
+
+    @Override
+    public List<Note> findByOwnerAndTitleContainingIgnoreCase(String owner, String title) {
+        String keyword = title.toLowerCase(Locale.ROOT);
+        return withOwners(log.readAll(ownedBy(owner),
+                candidate -> candidate != null && candidate.toLowerCase(Locale.ROOT).contains(keyword)));
+    }
+
+    @Override
+    public long count() {
+        return log.size();
+    }
+
+    @Override
+    public Optional<DeletedNote> markDeleted(Long id, String owner, LocalDateTime deletedAt) {
+        return findByIdAndOwner(id, owner)
+                .filter(note -> log.markDeleted(id, deletedAt))
+                .map(note -> DeletedNote.of(note.getCreatedAt(), note.getUpdatedAt(), NoteStatsService.contentBytes(note)));
+    }
+
+    @Override
+    public int restore(Long id, String owner) {
+        try {
+            return ownedBy(owner).test(log.readOwner(id)) && log.restore(id) ? 1 : 0;
+        } catch (NoSuchElementException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public long purgeDeletedBefore(LocalDateTime cutoff, int limit) {
+        return log.purgeDeletedBefore(cutoff, limit);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        log.delete(id);
+    }
+
+    @Override
+    public void delete(Note note) {
+        if (note.getId() != null) {
+            log.delete(note.getId());
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Note> notes) {
+        notes.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        findAll().forEach(this::delete);
+    }
+
+    private Predicate<String> ownedBy(String owner) {
+        return stored -> owner.equals(stored == null ? legacyOwner : stored);
+    }
+
+    private Note withOwner(Note note) {
+        if (note != null && note.getOwner() == null) {
+            note.setOwner(legacyOwner);
+        }
+        return note;
+    }
+
+    private List<Note> withOwners(List<Note> notes) {
+        notes.forEach(this::withOwner);
+        return notes;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        log.close();
+    }
+}
@@ -0,0 +1,170 @@
+package com.thoughttonotelite.storage;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from note IDs to log offsets, both stored as primitive {@code long}s.
+ * <p>
+ * Keys and values live in two parallel arrays with open addressing and linear probing, so an entry costs
+ * 16 bytes instead of the two boxed objects and the node of a {@link java.util.HashMap}, and lookups do
+ * not allocate. Removal shifts later entries of the same probe sequence back instead of leaving
+ * tombstones, so the table never degrades under repeated inserts and deletes.
+ * </p>
+ * <p>
+ * Key {@code 0} marks an empty slot and cannot be stored; note IDs start at 1. Looking it up or removing it
+ * finds nothing. This class is not thread-safe.
+ * </p>
+ */
+public class LongOffsetIndex {
+
+    /**
+     * Returned by {@link #get(long)} for keys that are not in the index.
+     */
+    public static final long NO_OFFSET = -1;
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    /**
+     * Creates an empty index.
+     */
+    public LongOffsetIndex() {
+        keys = new long[64];
+        values = new long[64];
+    }
+
+    /**
+     * Returns the offset stored for an ID.
+     *
+     * @param key the note ID
+     * @return the offset, or {@link #NO_OFFSET} if the ID is not in the index
+     */
+    public long get(long key) {
+        if (key == 0) {
+            // Would match the first empty slot
+            return NO_OFFSET;
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return values[slot];
+            }
+            if (existing == 0) {
+                return NO_OFFSET;
+            }
+        }
+    }
+
+    /**
+     * Stores the offset for an ID, replacing any previous offset.
+     *
+     * @param key   the note ID, not {@code 0}
+     * @param value the offset
+     * @return the previous offset, or {@link #NO_OFFSET} if the ID was not in the index
+     */
+    public long put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 cannot be stored");
+        }
+        if (size + 1 > keys.length * MAX_LOAD) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            if (existing == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return NO_OFFSET;
+            }
+        }
+    }
+
+    /**
+     * Removes an ID from the index.
+     *
+     * @param key the note ID
+     * @return the removed offset, or {@link #NO_OFFSET} if the ID was not in the index
+     */
+    public long remove(long key) {
+        if (key == 0) {
+            return NO_OFFSET;
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return NO_OFFSET;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = values[slot];
+        // Move later entries of the probe sequence into the gap, so that lookups never stop early
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+        return removed;
+    }
+
+    /**
+     * @return the number of IDs in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns all IDs in the index in ascending order.
+     *
+     * @return a new array of the IDs
+     */
+    public long[] sortedKeys() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != 0) {
+                result[count++] = key;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    // Spreads sequential IDs over the table
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
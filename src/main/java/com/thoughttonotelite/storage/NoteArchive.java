@@ -0,0 +1,640 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Archive of notes in compressed, immutable segment files, the cold tier of the database storage.
+ * <p>
+ * Every {@link #write} stores a batch of notes in a new segment file, which is never modified afterwards.
+ * A segment holds one record per note, with the content deflate-compressed, followed by an index of the
+ * note IDs in ascending order with the position of each record and the owner of the note. Only the indexes
+ * are read when the archive is opened and kept in memory, as primitive arrays of 20 bytes per note including
+ * the slots of each owner's notes, so a read is a binary search per segment and one decode from the mapped
+ * file, and listing an owner's notes only visits that owner's entries. Each record carries a CRC32 checksum,
+ * which is verified when the note is read.
+ * </p>
+ * <p>
+ * Segments are written to a temporary file, forced to the storage device and renamed, so a crash never leaves
+ * a partial segment behind.
+ * </p>
+ * <p>
+ * Notes leave the archive by being superseded: {@link #markSuperseded} records in {@code superseded.log} that
+ * the copies of a note in the existing segments are out of date, e.g. because the note was moved back into the
+ * database. A later segment may archive the note again. Segments holding only superseded copies are deleted by
+ * {@link #deleteObsoleteSegments()}.
+ * </p>
+ * <p>
+ * All methods are thread-safe. Reads run concurrently; adding and deleting segments and superseding notes are exclusive.
+ * </p>
+ */
+public class NoteArchive implements AutoCloseable {
+
+    private static final int MAGIC = 0x4e415243;  // "NARC"
+    private static final String SUPERSEDED_FILE = "superseded.log";
+
+    private static final byte NO_CONTENT = 0;
+    private static final byte PLAIN_CONTENT = 1;
+    private static final byte COMPRESSED_CONTENT = 2;
+
+    // Record layout: length of the body, checksum of the body, body starting with the note ID
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // Offset of the title within a body: ID, two timestamps of 12 bytes each and the length of the content
+    private static final int TITLE_OFFSET = Long.BYTES + 2 * (Long.BYTES + Integer.BYTES) + Long.BYTES;
+    // Footer layout: position of the index, checksum of the index
+    private static final int FOOTER_SIZE = 2 * Integer.BYTES;
+    // Superseded log layout: note ID, ID of the newest segment at the time
+    private static final int SUPERSEDED_RECORD_SIZE = Long.BYTES + Integer.BYTES;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final int compressionLevel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // Maps the ID of each superseded note to the newest segment whose copy of the note is out of date
+    private final LongOffsetIndex superseded = new LongOffsetIndex();
+    private FileChannel supersededLog;
+
+    /**
+     * Opens the archive in the given directory and reads the indexes of its segments.
+     * <p>
+     * The directory is only created when the first segment is written.
+     * </p>
+     *
+     * @param directory        the directory holding the segment files
+     * @param compressionLevel the deflate compression level of new segments, from 0 (none) to 9 (best)
+     * @throws IOException if a segment file cannot be read or is corrupt
+     */
+    public NoteArchive(Path directory, int compressionLevel) throws IOException {
+        this.directory = directory;
+        this.compressionLevel = compressionLevel;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "archive-*.seg.tmp")) {
+            for (Path file : files) {
+                // Left behind by a crash while a segment was written
+                Files.delete(file);
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "archive-*.seg")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring("archive-".length(), name.length() - ".seg".length()));
+                segments.put(id, Segment.open(id, file));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        Path log = directory.resolve(SUPERSEDED_FILE);
+        if (Files.exists(log)) {
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(log));
+            while (records.remaining() >= SUPERSEDED_RECORD_SIZE) {
+                long id = records.getLong();
+                superseded.put(id, Math.max(superseded.get(id), records.getInt()));
+            }
+            supersededLog = FileChannel.open(log, StandardOpenOption.WRITE);
+            // Drop what a torn append left behind, so that later appends stay aligned
+            supersededLog.truncate(records.position());
+            supersededLog.position(records.position());
+        }
+    }
+
+    /**
+     * Reads an archived note.
+     *
+     * @param id the ID of the note
+     * @return the note, or {@code null} if the note is not archived or has been superseded
+     */
+    public Note read(long id) {
+        lock.readLock().lock();
+        try {
+            // The newest copy decides; if it is superseded, so are all older copies
+            for (Segment segment : segments.descendingMap().values()) {
+                int slot = Arrays.binarySearch(segment.ids, id);
+                if (slot >= 0) {
+                    return isCurrent(segment, id) ? decode(segment, slot) : null;
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the archived notes of one owner whose title matches, in ascending ID order.
+     * <p>
+     * The owner's notes are found in the in-memory index of each segment by owner, without visiting the notes
+     * of other owners, and only the title of each of the owner's notes is decoded to test it, so non-matching
+     * notes cost no content decoding.
+     * </p>
+     *
+     * @param owner       the name of the user owning the notes
+     * @param titleFilter the test applied to each title; titles may be {@code null}
+     * @return the matching notes that have not been superseded
+     */
+    public List<Note> readByOwner(String owner, Predicate<String> titleFilter) {
+        lock.readLock().lock();
+        try {
+            List<Note> notes = new ArrayList<>();
+            LongOffsetIndex seen = new LongOffsetIndex();
+            for (Segment segment : segments.descendingMap().values()) {
+                Integer ordinal = segment.ownerOrdinals.get(owner);
+                if (ordinal == null) {
+                    continue;
+                }
+                for (int slot : segment.slotsByOwner[ordinal]) {
+                    long id = segment.ids[slot];
+                    if (seen.put(id, slot) == LongOffsetIndex.NO_OFFSET
+                            && isCurrent(segment, id) && titleFilter.test(decodeTitle(segment, segment.positions[slot]))) {
+                        notes.add(decode(segment, slot));
+                    }
+                }
+            }
+            notes.sort(Comparator.comparing(Note::getId));
+            return notes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes the metadata of every archived note that has not been superseded to a consumer, without decoding
+     * any content.
+     *
+     * @param consumer the consumer of the metadata, called under the read lock
+     */
+    public void forEach(Consumer<Entry> consumer) {
+        lock.readLock().lock();
+        try {
+            LongOffsetIndex seen = new LongOffsetIndex();
+            for (Segment segment : segments.descendingMap().values()) {
+                for (int slot = 0; slot < segment.ids.length; slot++) {
+                    long id = segment.ids[slot];
+                    if (seen.put(id, slot) == LongOffsetIndex.NO_OFFSET && isCurrent(segment, id)) {
+                        consumer.accept(decodeEntry(segment, slot));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of all archived notes that have not been superseded.
+     *
+     * @return a new array of the IDs, in ascending order
+     */
+    public long[] ids() {
+        LongOffsetIndex ids = new LongOffsetIndex();
+        forEach(entry -> ids.put(entry.id(), 0));
+        return ids.sortedKeys();
+    }
+
+    /**
+     * @return {@code true} if the archive has no segments, so that no note can be found in it
+     */
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return segments.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores notes in a new segment.
+     * <p>
+     * The content of every note is compressed at the configured level, unless that does not make it smaller.
+     * The new segment is visible to reads as soon as this method returns.
+     * </p>
+     *
+     * @param notes the notes to archive, with their IDs and owners, each ID at most once
+     * @return the ID of the new segment
+     */
+    public synchronized int write(List<Note> notes) {
+        List<Note> sorted = new ArrayList<>(notes);
+        sorted.sort(Comparator.comparing(Note::getId));
+        int id = nextSegmentId();
+        Path file = directory.resolve("archive-%010d.seg".formatted(id));
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writeSegment(channel, sorted);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            Segment segment = Segment.open(id, file);
+            lock.writeLock().lock();
+            try {
+                segments.put(id, segment);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return id;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Marks the copies of notes in the existing segments as out of date.
+     * <p>
+     * The mark is forced to the storage device before this method returns. Copies in segments written later are
+     * not affected.
+     * </p>
+     *
+     * @param ids the IDs of the notes
+     */
+    public void markSuperseded(long... ids) {
+        lock.writeLock().lock();
+        try {
+            if (ids.length == 0 || segments.isEmpty()) {
+                return;
+            }
+            int newest = segments.lastKey();
+            ByteBuffer records = ByteBuffer.allocate(ids.length * SUPERSEDED_RECORD_SIZE);
+            for (long id : ids) {
+                records.putLong(id).putInt(newest);
+            }
+            records.flip();
+            if (supersededLog == null) {
+                supersededLog = FileChannel.open(directory.resolve(SUPERSEDED_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            while (records.hasRemaining()) {
+                supersededLog.write(records);
+            }
+            supersededLog.force(false);
+            for (long id : ids) {
+                superseded.put(id, newest);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments all of whose copies have been superseded.
+     * <p>
+     * The newest segment is always kept, so that segment IDs are never reused.
+     * </p>
+     *
+     * @return the number of segments deleted
+     */
+    public int deleteObsoleteSegments() {
+        List<Segment> obsolete = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            for (Segment segment : segments.headMap(segments.lastKey()).values()) {
+                if (Arrays.stream(segment.ids).noneMatch(id -> isCurrent(segment, id))) {
+                    obsolete.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Superseded copies never become current again, so the segments are still obsolete
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : obsolete) {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.delete(segment.file);
+            }
+            return obsolete.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+            if (supersededLog != null) {
+                supersededLog.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The metadata of an archived note.
+     *
+     * @param id            the ID of the note
+     * @param owner         the name of the user owning the note
+     * @param createdAt     the time the note was created
+     * @param updatedAt     the time the note was last updated
+     * @param contentLength the length of the content in UTF-8 bytes
+     */
+    public record Entry(long id, String owner, LocalDateTime createdAt, LocalDateTime updatedAt, long contentLength) {
+    }
+
+    private int nextSegmentId() {
+        lock.readLock().lock();
+        try {
+            return segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A copy is current unless the note was superseded when this segment or a later one already existed
+    private boolean isCurrent(Segment segment, long id) {
+        return superseded.get(id) < segment.id;
+    }
+
+    // Writes the magic number, the records, the index and the footer
+    private void writeSegment(FileChannel channel, List<Note> notes) throws IOException {
+        long position = writeFully(channel, ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip(), 0);
+        long[] ids = new long[notes.size()];
+        int[] positions = new int[notes.size()];
+        int[] owners = new int[notes.size()];
+        Map<String, Integer> ownerOrdinals = new LinkedHashMap<>();
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            if (note.getId() == null || note.getOwner() == null || (i > 0 && note.getId() == ids[i - 1])) {
+                throw new IllegalArgumentException("Archived notes need distinct IDs and an owner");
+            }
+            ids[i] = note.getId();
+            positions[i] = checkedPosition(position);
+            owners[i] = ownerOrdinals.computeIfAbsent(note.getOwner(), owner -> ownerOrdinals.size());
+            byte[] body = encode(note);
+            ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + body.length)
+                    .putInt(body.length).putInt(checksum(ByteBuffer.wrap(body), 0, body.length)).put(body);
+            position = writeFully(channel, record.flip(), position);
+        }
+
+        int indexPosition = checkedPosition(position);
+        List<byte[]> ownerNames = ownerOrdinals.keySet().stream().map(owner -> owner.getBytes(StandardCharsets.UTF_8)).toList();
+        ByteBuffer index = ByteBuffer.allocate(2 * Integer.BYTES
+                + ownerNames.stream().mapToInt(name -> Integer.BYTES + name.length).sum()
+                + notes.size() * (Long.BYTES + 2 * Integer.BYTES));
+        index.putInt(notes.size()).putInt(ownerNames.size());
+        ownerNames.forEach(name -> putString(index, name));
+        for (int i = 0; i < ids.length; i++) {
+            index.putLong(ids[i]).putInt(positions[i]).putInt(owners[i]);
+        }
+        position = writeFully(channel, index.flip(), position);
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE)
+                .putInt(indexPosition).putInt(checksum(index, 0, index.limit()));
+        checkedPosition(writeFully(channel, footer.flip(), position));
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    // Segments are mapped as a whole, which limits them to 2 GB
+    private static int checkedPosition(long position) {
+        if (position > Integer.MAX_VALUE - FOOTER_SIZE) {
+            throw new IllegalArgumentException("Too many notes for one archive segment");
+        }
+        return (int) position;
+    }
+
+    private byte[] encode(Note note) {
+        byte[] title = note.getTitle() == null ? null : note.getTitle().getBytes(StandardCharsets.UTF_8);
+        String content = note.getContent();
+        byte[] raw = content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = content == null ? null : ContentCompressionUtil.compress(content, compressionLevel);
+        byte[] stored = compressed != null && compressed.length < raw.length ? compressed : raw;
+        ByteBuffer body = ByteBuffer.allocate(TITLE_OFFSET + Integer.BYTES + (title == null ? 0 : title.length)
+                + 1 + (stored == null ? 0 : Integer.BYTES + stored.length));
+        body.putLong(note.getId());
+        putTimestamp(body, note.getCreatedAt());
+        putTimestamp(body, note.getUpdatedAt());
+        body.putLong(raw == null ? 0 : raw.length);
+        putString(body, title);
+        body.put(stored == null ? NO_CONTENT : stored == compressed ? COMPRESSED_CONTENT : PLAIN_CONTENT);
+        if (stored != null) {
+            body.putInt(stored.length).put(stored);
+        }
+        return body.array();
+    }
+
+    private static Note decode(Segment segment, int slot) {
+        ByteBuffer buffer = segment.buffer;
+        int position = segment.positions[slot];
+        int length = buffer.getInt(position);
+        if (buffer.getInt(position + Integer.BYTES) != checksum(buffer, position + HEADER_SIZE, length)) {
+            throw new IllegalStateException("Corrupt record at position " + position + " of archive segment " + segment.file);
+        }
+        int body = position + HEADER_SIZE;
+        long id = buffer.getLong(body);
+        Note note = new Note();
+        note.setId(id);
+        note.setOwner(segment.ownerNames[segment.owners[slot]]);
+        note.setCreatedAt(getTimestamp(buffer, body + Long.BYTES));
+        note.setUpdatedAt(getTimestamp(buffer, body + 2 * Long.BYTES + Integer.BYTES));
+        note.setTitle(getString(buffer, body + TITLE_OFFSET));
+        int contentPosition = body + TITLE_OFFSET + Integer.BYTES + Math.max(0, buffer.getInt(body + TITLE_OFFSET));
+        byte codec = buffer.get(contentPosition);
+        if (codec != NO_CONTENT) {
+            byte[] content = new byte[buffer.getInt(contentPosition + 1)];
+            buffer.get(contentPosition + 1 + Integer.BYTES, content);
+            if (codec == COMPRESSED_CONTENT) {
+                note.storeCompressedContent(content);
+            } else {
+                note.setContent(new String(content, StandardCharsets.UTF_8));
+            }
+        }
+        return note;
+    }
+
+    private static String decodeTitle(Segment segment, int position) {
+        return getString(segment.buffer, position + HEADER_SIZE + TITLE_OFFSET);
+    }
+
+    private static Entry decodeEntry(Segment segment, int slot) {
+        ByteBuffer buffer = segment.buffer;
+        int body = segment.positions[slot] + HEADER_SIZE;
+        return new Entry(segment.ids[slot], segment.ownerNames[segment.owners[slot]],
+                getTimestamp(buffer, body + Long.BYTES),
+                getTimestamp(buffer, body + 2 * Long.BYTES + Integer.BYTES),
+                buffer.getLong(body + TITLE_OFFSET - Long.BYTES));
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, LocalDateTime timestamp) {
+        if (timestamp == null) {
+            buffer.putLong(NO_TIMESTAMP).putInt(0);
+        } else {
+            buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC)).putInt(timestamp.getNano());
+        }
+    }
+
+    private static LocalDateTime getTimestamp(ByteBuffer buffer, int position) {
+        long seconds = buffer.getLong(position);
+        return seconds == NO_TIMESTAMP ? null
+                : LocalDateTime.ofEpochSecond(seconds, buffer.getInt(position + Long.BYTES), ZoneOffset.UTC);
+    }
+
+    /**
+     * One mapped segment file with its index.
+     */
+    private static final class Segment {
+
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // Sorted note IDs, and for each the position of its record and the ordinal of its owner
+        final long[] ids;
+        final int[] positions;
+        final int[] owners;
+        final String[] ownerNames;
+        final Map<String, Integer> ownerOrdinals;
+        // The slots of the notes of each owner, by ordinal, in ascending order
+        final int[][] slotsByOwner;
+
+        private Segment(int id, Path file, FileChannel channel, MappedByteBuffer buffer, long[] ids, int[] positions,
+                        int[] owners, String[] ownerNames) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.ids = ids;
+            this.positions = positions;
+            this.owners = owners;
+            this.ownerNames = ownerNames;
+            this.ownerOrdinals = new HashMap<>();
+            for (int i = 0; i < ownerNames.length; i++) {
+                ownerOrdinals.put(ownerNames[i], i);
+            }
+            int[] counts = new int[ownerNames.length];
+            for (int owner : owners) {
+                counts[owner]++;
+            }
+            this.slotsByOwner = new int[ownerNames.length][];
+            for (int i = 0; i < ownerNames.length; i++) {
+                slotsByOwner[i] = new int[counts[i]];
+            }
+            int[] filled = new int[ownerNames.length];
+            for (int slot = 0; slot < owners.length; slot++) {
+                slotsByOwner[owners[slot]][filled[owners[slot]]++] = slot;
+            }
+        }
+
+        // Maps a complete segment file and reads its index
+        static Segment open(int id, Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int size = buffer.capacity();
+                int indexPosition = size >= Integer.BYTES + FOOTER_SIZE ? buffer.getInt(size - FOOTER_SIZE) : -1;
+                if (indexPosition < Integer.BYTES || indexPosition > size - FOOTER_SIZE || buffer.getInt(0) != MAGIC
+                        || buffer.getInt(size - Integer.BYTES) != checksum(buffer, indexPosition, size - FOOTER_SIZE - indexPosition)) {
+                    throw new IOException("Corrupt archive segment " + file);
+                }
+                ByteBuffer index = buffer.slice(indexPosition, size - FOOTER_SIZE - indexPosition);
+                int count = index.getInt();
+                String[] ownerNames = new String[index.getInt()];
+                for (int i = 0; i < ownerNames.length; i++) {
+                    int length = index.getInt(index.position());
+                    ownerNames[i] = getString(index, index.position());
+                    index.position(index.position() + Integer.BYTES + length);
+                }
+                long[] ids = new long[count];
+                int[] positions = new int[count];
+                int[] owners = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ids[i] = index.getLong();
+                    positions[i] = index.getInt();
+                    owners[i] = index.getInt();
+                }
+                return new Segment(id, file, channel, buffer, ids, positions, owners, ownerNames);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of notes, used by the embedded storage engine.
+ * <p>
+ * The log is a sequence of segment files in one directory, each mapped into memory as a whole. Every save
+ * appends the complete note as a new record to the last segment, and every delete appends a tombstone;
+ * records are never modified in place. A {@link LongOffsetIndex} maps each note ID to the offset of its
+ * latest record, so a read is one index lookup and one decode from the mapped segment. When a record does
+ * not fit into the last segment, a new segment of {@code segmentSize} bytes, or larger for larger records,
+ * is started.
+ * </p>
+ * <p>
+ * On opening, the index is rebuilt by replaying all segments in order. Each record starts with its length
+ * and a CRC32 checksum, and replay of a segment stops at the first record that is empty or does not match
+ * its checksum, which is where a crash interrupted the last write; appending continues from there.
+ * </p>
+ * <p>
+ * Records that have been superseded or deleted are garbage. {@link #compact(double)} rewrites the live
+ * records of sealed segments with too much garbage to the end of the log and deletes those segments.
+ * Tombstones are carried over as long as an older segment might still hold a record they delete.
+ * </p>
+ * <p>
+ * Notes can also be marked as deleted, which appends the note again with the time of deletion after its
+ * content. Marked notes are left out of {@link #readAll} and {@link #size()} but keep their records, so that
+ * they can be restored, until {@link #purgeDeletedBefore} appends their tombstones.
+ * </p>
+ * <p>
+ * All methods are thread-safe. Reads run concurrently; appends and compaction are exclusive.
+ * </p>
+ */
+public class NoteLog implements AutoCloseable {
+
+    // Notes written before notes had owners; a PUT body has no owner after the title
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte SEQUENCE = 3;
+    private static final byte OWNED_PUT = 4;
+
+    private static final byte NO_CONTENT = 0;
+    private static final byte PLAIN_CONTENT = 1;
+    private static final byte COMPRESSED_CONTENT = 2;
+
+    // Record layout: length of the body, checksum of the body, body starting with type and note ID
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // Offset of the title within a PUT or OWNED_PUT body: type, ID and two timestamps of 12 bytes each
+    private static final int TITLE_OFFSET = 1 + Long.BYTES + 2 * (Long.BYTES + Integer.BYTES);
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final LongOffsetIndex index = new LongOffsetIndex();
+    private Segment active;
+    private long maxId;
+    // Number of indexed notes marked as deleted
+    private int deleted;
+
+    /**
+     * Opens the log in the given directory, creating it if necessary, and replays its segments.
+     *
+     * @param directory   the directory holding the segment files
+     * @param segmentSize the size of new segment files, in bytes
+     * @param fsync       whether every append is forced to the storage device, rather than only to the operating system
+     * @throws IOException if the segment files cannot be opened
+     */
+    public NoteLog(Path directory, int segmentSize, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length()));
+                segments.put(id, Segment.open(id, file, 0));
+            }
+        }
+        for (Segment segment : segments.values()) {
+            replay(segment);
+        }
+        active = segments.isEmpty() ? newSegment(1, segmentSize) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Reads a note, including a note marked as deleted.
+     *
+     * @param id the ID of the note
+     * @return the note, with its time of deletion if it is marked as deleted, or {@code null} if there is no note with the ID
+     */
+    public Note read(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = index.get(id);
+            return offset == LongOffsetIndex.NO_OFFSET ? null : decode(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the content of a note as UTF-8 bytes, without decoding the rest of the note.
+     *
+     * @param id the ID of the note
+     * @return the content, empty if the note has none, or {@code null} if there is no note with the ID
+     */
+    public byte[] readContent(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = index.get(id);
+            if (offset == LongOffsetIndex.NO_OFFSET) {
+                return null;
+            }
+            ByteBuffer buffer = segment(offset).buffer;
+            int position = contentPosition(offset);
+            byte codec = buffer.get(position);
+            if (codec == NO_CONTENT) {
+                return new byte[0];
+            }
+            byte[] bytes = new byte[buffer.getInt(position + 1)];
+            buffer.get(position + 1 + Integer.BYTES, bytes);
+            return codec == COMPRESSED_CONTENT
+                    ? ContentCompressionUtil.decompress(bytes).getBytes(StandardCharsets.UTF_8)
+                    : bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the owner of a note, without decoding the rest of the note.
+     *
+     * @param id the ID of the note
+     * @return the owner, {@code null} if the note was stored before notes had owners
+     * @throws NoSuchElementException if there is no note with the ID
+     */
+    public String readOwner(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = index.get(id);
+            if (offset == LongOffsetIndex.NO_OFFSET) {
+                throw new NoSuchElementException("No note with id " + id);
+            }
+            return decodeOwner(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tells whether a note exists.
+     *
+     * @param id the ID of the note
+     * @return {@code true} if there is a note with the ID
+     */
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return index.get(id) != LongOffsetIndex.NO_OFFSET;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tells whether a note is marked as deleted.
+     *
+     * @param id the ID of the note
+     * @return {@code true} if there is a note with the ID and it is marked as deleted
+     */
+    public boolean isDeleted(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = index.get(id);
+            return offset != LongOffsetIndex.NO_OFFSET && decodeDeletedAt(offset) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads all notes whose owner and title match, in ascending ID order, leaving out notes marked as deleted.
+     * <p>
+     * Only the owner and title of each note are decoded to test them, so non-matching notes cost no content decoding.
+     * </p>
+     *
+     * @param ownerFilter the test applied to each owner; owners are {@code null} for notes stored before notes had owners
+     * @param titleFilter the test applied to each title; titles may be {@code null}
+     * @return the matching notes
+     */
+    public List<Note> readAll(Predicate<String> ownerFilter, Predicate<String> titleFilter) {
+        lock.readLock().lock();
+        try {
+            List<Note> notes = new ArrayList<>();
+            for (long id : index.sortedKeys()) {
+                long offset = index.get(id);
+                if (ownerFilter.test(decodeOwner(offset)) && decodeDeletedAt(offset) == null
+                        && titleFilter.test(decodeTitle(offset))) {
+                    notes.add(decode(offset));
+                }
+            }
+            return notes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of notes in the log, not counting notes marked as deleted
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size() - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a note, assigning it the next free ID if it has none.
+     * <p>
+     * A note marked as deleted stays marked; the mark is only changed by {@link #markDeleted} and {@link #restore}.
+     * </p>
+     *
+     * @param note the note to store; its ID is set if it was {@code null}
+     */
+    public void put(Note note) {
+        lock.writeLock().lock();
+        try {
+            if (note.getId() == null) {
+                note.setId(maxId + 1);
+            }
+            maxId = Math.max(maxId, note.getId());
+            long previous = index.get(note.getId());
+            note.setDeletedAt(previous == LongOffsetIndex.NO_OFFSET ? null : decodeDeletedAt(previous));
+            long offset = append(encodePut(note));
+            replace(index.put(note.getId(), offset), offset);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a note as deleted by appending it again with the time of deletion.
+     *
+     * @param id        the ID of the note
+     * @param deletedAt the time of deletion
+     * @return {@code true} if the note existed and was not marked as deleted yet
+     */
+    public boolean markDeleted(long id, LocalDateTime deletedAt) {
+        return setDeletedAt(id, deletedAt);
+    }
+
+    /**
+     * Removes the deletion mark of a note by appending it again without it.
+     *
+     * @param id the ID of the note
+     * @return {@code true} if the note existed and was marked as deleted
+     */
+    public boolean restore(long id) {
+        return setDeletedAt(id, null);
+    }
+
+    /**
+     * Appends tombstones for notes marked as deleted before the given time, oldest deletions first.
+     * <p>
+     * The candidates are collected under the read lock; each one is then checked again and deleted under the
+     * write lock on its own, so that reads and writes are only held up for one append at a time.
+     * </p>
+     *
+     * @param cutoff the time before which notes must have been marked to be deleted
+     * @param limit  the maximum number of notes to delete
+     * @return the number of notes deleted
+     */
+    public int purgeDeletedBefore(LocalDateTime cutoff, int limit) {
+        TreeMap<LocalDateTime, List<Long>> candidates = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for (long id : index.sortedKeys()) {
+                LocalDateTime deletedAt = decodeDeletedAt(index.get(id));
+                if (deletedAt != null && deletedAt.isBefore(cutoff)) {
+                    candidates.computeIfAbsent(deletedAt, key -> new ArrayList<>()).add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int purged = 0;
+        for (List<Long> ids : candidates.values()) {
+            for (long id : ids) {
+                if (purged == limit) {
+                    return purged;
+                }
+                lock.writeLock().lock();
+                try {
+                    // The note may have been restored in the meantime
+                    long offset = index.get(id);
+                    LocalDateTime deletedAt = offset == LongOffsetIndex.NO_OFFSET ? null : decodeDeletedAt(offset);
+                    if (deletedAt != null && deletedAt.isBefore(cutoff) && delete(id)) {
+                        purged++;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Appends a tombstone for a note.
+     *
+     * @param id the ID of the note
+     * @return {@code true} if the note existed
+     */
+    public boolean delete(long id) {
+        lock.writeLock().lock();
+        try {
+            long previous = index.remove(id);
+            if (previous == LongOffsetIndex.NO_OFFSET) {
+                return false;
+            }
+            replace(previous, LongOffsetIndex.NO_OFFSET);
+            long offset = append(encodeDelete(id));
+            // A tombstone is garbage as soon as no older segment holds a record of the note
+            segment(offset).liveBytes -= recordSize(offset);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the sealed segments whose share of garbage is at least the given ratio.
+     *
+     * @param garbageRatio the minimum share of superseded or deleted bytes, from 0 to 1
+     * @return the number of segments rewritten and deleted
+     */
+    public int compact(double garbageRatio) {
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.writePosition > 0
+                        && segment.writePosition - segment.liveBytes >= garbageRatio * segment.writePosition) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int compacted = 0;
+        for (Segment segment : candidates) {
+            lock.writeLock().lock();
+            try {
+                // Another compaction may have got there first
+                if (segments.get(segment.id) == segment) {
+                    relocate(segment);
+                    compacted++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Copies the live records of a segment to the end of the log and deletes the segment
+    private void relocate(Segment segment) {
+        boolean olderSegmentExists = segments.firstKey() < segment.id;
+        ByteBuffer buffer = segment.buffer;
+        for (int position = 0; position < segment.writePosition; position += HEADER_SIZE + buffer.getInt(position)) {
+            long offset = offset(segment.id, position);
+            byte type = buffer.get(position + HEADER_SIZE);
+            long id = buffer.getLong(position + HEADER_SIZE + 1);
+            boolean live = isPut(type) ? index.get(id) == offset
+                    : type == DELETE && olderSegmentExists;
+            if (live) {
+                byte[] body = new byte[buffer.getInt(position)];
+                buffer.get(position + HEADER_SIZE, body);
+                long newOffset = append(body);
+                if (isPut(type)) {
+                    index.put(id, newOffset);
+                } else {
+                    segment(newOffset).liveBytes -= recordSize(newOffset);
+                }
+            }
+        }
+        // The highest ID may only have been recorded in this segment
+        long sequenceOffset = append(encodeSequence(maxId));
+        segment(sequenceOffset).liveBytes -= recordSize(sequenceOffset);
+
+        segments.remove(segment.id);
+        try {
+            segment.channel.close();
+            Files.delete(segment.file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replay(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getInt(position + Integer.BYTES) != checksum(buffer, position + HEADER_SIZE, length)) {
+                break;
+            }
+            long offset = offset(segment.id, position);
+            byte type = buffer.get(position + HEADER_SIZE);
+            long id = buffer.getLong(position + HEADER_SIZE + 1);
+            maxId = Math.max(maxId, id);
+            segment.liveBytes += HEADER_SIZE + length;
+            if (isPut(type)) {
+                replace(index.put(id, offset), offset);
+            } else {
+                if (type == DELETE) {
+                    replace(index.remove(id), LongOffsetIndex.NO_OFFSET);
+                }
+                segment.liveBytes -= HEADER_SIZE + length;
+            }
+            position += HEADER_SIZE + length;
+        }
+        segment.writePosition = position;
+        // Clear what a torn write left behind, so that it cannot be mistaken for a record later
+        for (int i = position; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    // Appends a record and returns its offset
+    private long append(byte[] body) {
+        int size = HEADER_SIZE + body.length;
+        if (active.writePosition + size > active.buffer.capacity()) {
+            active = newSegment(active.id + 1, Math.max(segmentSize, size));
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        buffer.put(position + HEADER_SIZE, body);
+        buffer.putInt(position + Integer.BYTES, checksum(ByteBuffer.wrap(body), 0, body.length));
+        buffer.putInt(position, body.length);
+        if (fsync) {
+            buffer.force(position, size);
+        }
+        active.writePosition += size;
+        active.liveBytes += size;
+        return offset(active.id, position);
+    }
+
+    // Accounts for a record that has been superseded or deleted
+    private void release(long offset) {
+        if (offset != LongOffsetIndex.NO_OFFSET) {
+            segment(offset).liveBytes -= recordSize(offset);
+        }
+    }
+
+    // Accounts for the indexed record of a note changing from previous to current, either of which may be absent
+    private void replace(long previous, long current) {
+        if (previous != LongOffsetIndex.NO_OFFSET && decodeDeletedAt(previous) != null) {
+            deleted--;
+        }
+        if (current != LongOffsetIndex.NO_OFFSET && decodeDeletedAt(current) != null) {
+            deleted++;
+        }
+        release(previous);
+    }
+
+    // Appends a note again with the given time of deletion, if that changes whether it is marked
+    private boolean setDeletedAt(long id, LocalDateTime deletedAt) {
+        lock.writeLock().lock();
+        try {
+            long previous = index.get(id);
+            if (previous == LongOffsetIndex.NO_OFFSET || (decodeDeletedAt(previous) == null) == (deletedAt == null)) {
+                return false;
+            }
+            Note note = decode(previous);
+            note.setDeletedAt(deletedAt);
+            long offset = append(encodePut(note));
+            replace(index.put(id, offset), offset);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Segment newSegment(int id, int capacity) {
+        try {
+            Segment segment = Segment.open(id, directory.resolve("segment-%010d.log".formatted(id)), capacity);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segment segment(long offset) {
+        return segments.get((int) (offset >>> 32));
+    }
+
+    private int recordSize(long offset) {
+        return HEADER_SIZE + segment(offset).buffer.getInt(position(offset));
+    }
+
+    private static long offset(int segmentId, int position) {
+        return ((long) segmentId << 32) | position;
+    }
+
+    private static int position(long offset) {
+        return (int) offset;
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private static boolean isPut(byte type) {
+        return type == PUT || type == OWNED_PUT;
+    }
+
+    private static byte[] encodePut(Note note) {
+        byte[] title = note.getTitle() == null ? null : note.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] owner = note.getOwner() == null ? null : note.getOwner().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = note.getCompressedContent();
+        byte[] content = compressed != null ? compressed
+                : note.getContent() == null ? null : note.getContent().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(TITLE_OFFSET + Integer.BYTES + (title == null ? 0 : title.length)
+                + Integer.BYTES + (owner == null ? 0 : owner.length)
+                + 1 + (content == null ? 0 : Integer.BYTES + content.length)
+                + (note.getDeletedAt() == null ? 0 : Long.BYTES + Integer.BYTES));
+        body.put(OWNED_PUT).putLong(note.getId());
+        putTimestamp(body, note.getCreatedAt());
+        putTimestamp(body, note.getUpdatedAt());
+        putString(body, title);
+        putString(body, owner);
+        body.put(content == null ? NO_CONTENT : compressed != null ? COMPRESSED_CONTENT : PLAIN_CONTENT);
+        if (content != null) {
+            body.putInt(content.length).put(content);
+        }
+        // Only notes marked as deleted have anything after the content
+        if (note.getDeletedAt() != null) {
+            putTimestamp(body, note.getDeletedAt());
+        }
+        return body.array();
+    }
+
+    private static byte[] encodeDelete(long id) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(DELETE).putLong(id).array();
+    }
+
+    private static byte[] encodeSequence(long maxId) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(SEQUENCE).putLong(maxId).array();
+    }
+
+    private Note decode(long offset) {
+        ByteBuffer buffer = segment(offset).buffer;
+        int position = position(offset) + HEADER_SIZE + 1;
+        Note note = new Note();
+        note.setId(buffer.getLong(position));
+        note.setCreatedAt(getTimestamp(buffer, position + Long.BYTES));
+        note.setUpdatedAt(getTimestamp(buffer, position + Long.BYTES + Long.BYTES + Integer.BYTES));
+        note.setTitle(decodeTitle(offset));
+        note.setOwner(decodeOwner(offset));
+        position = contentPosition(offset);
+        byte codec = buffer.get(position);
+        if (codec != NO_CONTENT) {
+            byte[] content = new byte[buffer.getInt(position + 1)];
+            buffer.get(position + 1 + Integer.BYTES, content);
+            if (codec == COMPRESSED_CONTENT) {
+                note.storeCompressedContent(content);
+            } else {
+                note.setContent(new String(content, StandardCharsets.UTF_8));
+            }
+        }
+        note.setDeletedAt(decodeDeletedAt(offset));
+        return note;
+    }
+
+    private String decodeTitle(long offset) {
+        return getString(segment(offset).buffer, position(offset) + HEADER_SIZE + TITLE_OFFSET);
+    }
+
+    private String decodeOwner(long offset) {
+        ByteBuffer buffer = segment(offset).buffer;
+        if (buffer.get(position(offset) + HEADER_SIZE) != OWNED_PUT) {
+            return null;
+        }
+        int position = position(offset) + HEADER_SIZE + TITLE_OFFSET;
+        return getString(buffer, position + Integer.BYTES + Math.max(0, buffer.getInt(position)));
+    }
+
+    // Returns the position of the content codec within a segment, past the title and, if present, the owner
+    private int contentPosition(long offset) {
+        ByteBuffer buffer = segment(offset).buffer;
+        int position = position(offset) + HEADER_SIZE + TITLE_OFFSET;
+        position += Integer.BYTES + Math.max(0, buffer.getInt(position));  // Skip the title
+        if (buffer.get(position(offset) + HEADER_SIZE) == OWNED_PUT) {
+            position += Integer.BYTES + Math.max(0, buffer.getInt(position));  // Skip the owner
+        }
+        return position;
+    }
+
+    // Returns the time a note was marked as deleted, stored after the content, or null if it is not marked
+    private LocalDateTime decodeDeletedAt(long offset) {
+        ByteBuffer buffer = segment(offset).buffer;
+        int end = position(offset) + HEADER_SIZE + buffer.getInt(position(offset));
+        int position = contentPosition(offset);
+        position += buffer.get(position) == NO_CONTENT ? 1 : 1 + Integer.BYTES + buffer.getInt(position + 1);
+        return position < end ? getTimestamp(buffer, position) : null;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, LocalDateTime timestamp) {
+        if (timestamp == null) {
+            buffer.putLong(NO_TIMESTAMP).putInt(0);
+        } else {
+            buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC)).putInt(timestamp.getNano());
+        }
+    }
+
+    private static LocalDateTime getTimestamp(ByteBuffer buffer, int position) {
+        long seconds = buffer.getLong(position);
+        return seconds == NO_TIMESTAMP ? null
+                : LocalDateTime.ofEpochSecond(seconds, buffer.getInt(position + Long.BYTES), ZoneOffset.UTC);
+    }
+
+    /**
+     * One mapped segment file.
+     */
+    private static final class Segment {
+
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        long liveBytes;
+
+        private Segment(int id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        // Maps an existing file at its current size, or a new one at the given capacity
+        static Segment open(int id, Path file, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), capacity);
+            return new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+}
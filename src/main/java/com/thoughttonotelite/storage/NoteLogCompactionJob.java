@@ -0,0 +1,52 @@
+package com.thoughttonotelite.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background job that compacts the {@link NoteLog} of the embedded storage engine.
+ * <p>
+ * Every update and delete leaves the previous record of the note behind as garbage. Each run rewrites
+ * the sealed segments in which at least {@code notes.embedded.compaction.garbage-ratio} of the bytes are
+ * garbage and deletes them, so the log stays proportional to the live notes. Reads continue while a
+ * segment is selected; appends wait while a segment is rewritten, which takes as long as copying its
+ * live records.
+ * </p>
+ */
+@Component
+@Profile("embedded")
+public class NoteLogCompactionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteLogCompactionJob.class);
+
+    private final NoteLog noteLog;
+    private final double garbageRatio;
+
+    /**
+     * Constructs a new {@code NoteLogCompactionJob}.
+     *
+     * @param repository   the embedded repository whose log is compacted
+     * @param garbageRatio the share of garbage, from 0 to 1, from which a segment is rewritten
+     */
+    public NoteLogCompactionJob(EmbeddedNoteRepository repository,
+                                @Value("${notes.embedded.compaction.garbage-ratio:0.5}") double garbageRatio) {
+        this.noteLog = repository.getLog();
+        this.garbageRatio = garbageRatio;
+    }
+
+    /**
+     * Rewrites the segments with too much garbage.
+     */
+    @Scheduled(fixedDelayString = "${notes.embedded.compaction.interval-ms:300000}",
+            initialDelayString = "${notes.embedded.compaction.interval-ms:300000}")
+    public void compact() {
+        int compacted = noteLog.compact(garbageRatio);
+        if (compacted > 0) {
+            log.info("Compacted {} note log segments, {} segments remain", compacted, noteLog.segmentCount());
+        }
+    }
+}
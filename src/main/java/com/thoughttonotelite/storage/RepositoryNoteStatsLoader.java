@@ -0,0 +1,65 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.service.NoteStatsLoader;
+import com.thoughttonotelite.service.NoteStatsService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes note statistics by reading all notes, for the embedded storage engine and sharding.
+ * <p>
+ * Neither storage can aggregate by itself, so every note is read once per reconciliation; with sharding,
+ * the shards are read in parallel.
+ * </p>
+ */
+@Service
+@Profile("embedded | sharded")
+public class RepositoryNoteStatsLoader implements NoteStatsLoader {
+
+    private final NoteRepository repository;
+
+    /**
+     * Constructs a new {@code RepositoryNoteStatsLoader}.
+     *
+     * @param repository the repository holding the notes
+     */
+    public RepositoryNoteStatsLoader(NoteRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Map<String, OwnerTotals> load(LocalDateTime createdSince, LocalDateTime updatedSince) {
+        Map<String, long[]> totals = new HashMap<>();
+        Map<String, Map<LocalDate, Long>> created = new HashMap<>();
+        Map<String, Map<LocalDateTime, Long>> updated = new HashMap<>();
+        for (Note note : repository.findAll()) {
+            String owner = note.getOwner();
+            if (owner == null) {
+                continue;
+            }
+            long[] counts = totals.computeIfAbsent(owner, key -> new long[2]);
+            counts[0]++;
+            counts[1] += NoteStatsService.contentBytes(note);
+            if (note.getCreatedAt() != null && !note.getCreatedAt().isBefore(createdSince)) {
+                created.computeIfAbsent(owner, key -> new HashMap<>()).merge(note.getCreatedAt().toLocalDate(), 1L, Long::sum);
+            }
+            if (note.getUpdatedAt() != null && !note.getUpdatedAt().isBefore(updatedSince)) {
+                updated.computeIfAbsent(owner, key -> new HashMap<>())
+                        .merge(note.getUpdatedAt().truncatedTo(ChronoUnit.HOURS), 1L, Long::sum);
+            }
+        }
+
+        Map<String, OwnerTotals> result = new HashMap<>();
+        totals.forEach((owner, counts) -> result.put(owner, new OwnerTotals(counts[0], counts[1],
+                created.getOrDefault(owner, Map.of()), updated.getOrDefault(owner, Map.of()))));
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.thoughttonotelite.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Assignment of notes to shards for the {@link ShardedNoteRepository}.
+ * <p>
+ * Note IDs are spread over a fixed number of {@link #BUCKETS buckets}, and every bucket is assigned to one
+ * shard. Adding shards moves whole buckets to the new shards rather than rehashing every note, so only the
+ * notes of the moved buckets are copied, and a note's bucket never changes.
+ * </p>
+ */
+public class ShardMap {
+
+    /**
+     * The number of buckets; the upper limit for the number of shards.
+     */
+    public static final int BUCKETS = 1024;
+
+    private final AtomicIntegerArray shards;
+
+    /**
+     * Constructs a new {@code ShardMap} from the shard of every bucket.
+     *
+     * @param assignment the shard of each bucket, indexed by bucket
+     */
+    public ShardMap(int[] assignment) {
+        if (assignment.length != BUCKETS) {
+            throw new IllegalArgumentException("Expected " + BUCKETS + " buckets, got " + assignment.length);
+        }
+        this.shards = new AtomicIntegerArray(assignment);
+    }
+
+    /**
+     * Creates the assignment of a new deployment, spreading the buckets evenly over the shards.
+     *
+     * @param shardCount the number of shards
+     * @return the shard map
+     */
+    public static ShardMap initial(int shardCount) {
+        int[] assignment = new int[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            assignment[bucket] = bucket % shardCount;
+        }
+        return new ShardMap(assignment);
+    }
+
+    /**
+     * Returns the bucket of a note.
+     *
+     * @param id the ID of the note
+     * @return the bucket, from 0 to {@link #BUCKETS} - 1
+     */
+    public static int bucketOf(long id) {
+        return (int) Math.floorMod(id, (long) BUCKETS);
+    }
+
+    /**
+     * Returns the shard a bucket is assigned to.
+     *
+     * @param bucket the bucket
+     * @return the index of the shard
+     */
+    public int shardOf(int bucket) {
+        return shards.get(bucket);
+    }
+
+    /**
+     * Returns the shard holding a note.
+     *
+     * @param id the ID of the note
+     * @return the index of the shard
+     */
+    public int shardOfNote(long id) {
+        return shards.get(bucketOf(id));
+    }
+
+    /**
+     * Assigns a bucket to a shard.
+     *
+     * @param bucket the bucket
+     * @param shard  the index of the shard
+     */
+    public void assign(int bucket, int shard) {
+        shards.set(bucket, shard);
+    }
+
+    /**
+     * Returns a copy of the current assignment, indexed by bucket.
+     *
+     * @return the shard of each bucket
+     */
+    public int[] snapshot() {
+        int[] assignment = new int[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            assignment[bucket] = shards.get(bucket);
+        }
+        return assignment;
+    }
+
+    /**
+     * Returns the highest shard index any bucket is assigned to.
+     *
+     * @return the highest assigned shard index
+     */
+    public int maxShard() {
+        int max = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            max = Math.max(max, shards.get(bucket));
+        }
+        return max;
+    }
+
+    /**
+     * Plans the moves that spread the buckets evenly over the given number of shards.
+     * <p>
+     * Every shard ends up with {@code BUCKETS / shardCount} buckets, or one more. Shards holding too many
+     * buckets give away their highest-numbered buckets to the shards holding too few, so buckets only move
+     * when they have to.
+     * </p>
+     *
+     * @param shardCount the number of shards, at least as many as are assigned already
+     * @return the moves, empty if the buckets are spread evenly
+     */
+    public List<Move> planMoves(int shardCount) {
+        List<Deque<Integer>> buckets = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            buckets.get(shards.get(bucket)).add(bucket);
+        }
+
+        // Buckets above each shard's target, taken from the top
+        Deque<Move> surplus = new ArrayDeque<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            while (buckets.get(shard).size() > target(shard, shardCount)) {
+                surplus.add(new Move(buckets.get(shard).removeLast(), shard, -1));
+            }
+        }
+        List<Move> moves = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int missing = target(shard, shardCount) - buckets.get(shard).size(); missing > 0 && !surplus.isEmpty(); missing--) {
+                Move move = surplus.poll();
+                moves.add(new Move(move.bucket(), move.source(), shard));
+            }
+        }
+        return moves;
+    }
+
+    private static int target(int shard, int shardCount) {
+        return BUCKETS / shardCount + (shard < BUCKETS % shardCount ? 1 : 0);
+    }
+
+    /**
+     * A bucket to be moved from one shard to another.
+     *
+     * @param bucket the bucket
+     * @param source the index of the shard holding the bucket
+     * @param target the index of the shard to move the bucket to
+     */
+    public record Move(int bucket, int source, int target) {
+    }
+}
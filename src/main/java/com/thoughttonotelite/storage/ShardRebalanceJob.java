@@ -0,0 +1,90 @@
+package com.thoughttonotelite.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Background job that moves buckets of notes to newly added shards of the {@link ShardedNoteRepository}.
+ * <p>
+ * When shards are appended to {@code notes.sharding.urls}, each run moves up to
+ * {@code notes.sharding.rebalance.max-buckets-per-run} buckets until the buckets are spread evenly over all
+ * shards. Requests keep being served while buckets move; only operations on the notes of the bucket being
+ * moved wait for the last steps of its move. The job does nothing once the buckets are balanced.
+ * </p>
+ * <p>
+ * Every instance of the application runs the job, but only one at a time moves buckets, see
+ * {@link ShardedNoteRepository#runExclusively}. Each run first repairs the buckets served by the shards
+ * after a move that was interrupted, and the first run of each instance, or a run that repaired anything,
+ * deletes the notes such a move left behind. Until then they are only taking up space: shards never read
+ * notes of buckets they do not serve.
+ * </p>
+ */
+@Component
+@Profile("sharded")
+public class ShardRebalanceJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalanceJob.class);
+
+    private final ShardedNoteRepository repository;
+    private final int maxBucketsPerRun;
+    private final int batchSize;
+
+    private boolean cleanedUp;
+
+    /**
+     * Constructs a new {@code ShardRebalanceJob}.
+     *
+     * @param repository       the sharded repository whose buckets are moved
+     * @param maxBucketsPerRun the maximum number of buckets moved per run
+     * @param batchSize        the number of notes copied per query
+     */
+    public ShardRebalanceJob(ShardedNoteRepository repository,
+                             @Value("${notes.sharding.rebalance.max-buckets-per-run:16}") int maxBucketsPerRun,
+                             @Value("${notes.sharding.rebalance.batch-size:500}") int batchSize) {
+        this.repository = repository;
+        this.maxBucketsPerRun = maxBucketsPerRun;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Moves the next buckets towards an even spread over the shards.
+     */
+    @Scheduled(fixedDelayString = "${notes.sharding.rebalance.interval-ms:10000}",
+            initialDelayString = "${notes.sharding.rebalance.interval-ms:10000}")
+    public synchronized void rebalance() {
+        if (!repository.runExclusively(this::moveBuckets)) {
+            log.debug("Another instance is moving buckets between shards");
+        }
+    }
+
+    private void moveBuckets() {
+        int repaired = repository.reconcileServedBuckets();
+        if (repaired > 0) {
+            log.info("Repaired {} bucket entries of the shards left by an interrupted move", repaired);
+        }
+        if (!cleanedUp || repaired > 0) {
+            int deleted = repository.deleteMisplacedNotes();
+            if (deleted > 0) {
+                log.info("Deleted {} notes left on the wrong shard by an interrupted move", deleted);
+            }
+            cleanedUp = true;
+        }
+        List<ShardMap.Move> moves = repository.planRebalance();
+        if (moves.isEmpty()) {
+            return;
+        }
+        int notes = 0;
+        int buckets = Math.min(maxBucketsPerRun, moves.size());
+        for (ShardMap.Move move : moves.subList(0, buckets)) {
+            notes += repository.moveBucket(move.bucket(), move.target(), batchSize);
+        }
+        log.info("Moved {} buckets with {} notes between shards, {} buckets remain to be moved",
+                buckets, notes, moves.size() - buckets);
+    }
+}
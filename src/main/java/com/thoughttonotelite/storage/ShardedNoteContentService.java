@@ -0,0 +1,45 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.service.NoteContentService;
+import com.thoughttonotelite.service.NoteNotFoundException;
+import com.thoughttonotelite.utils.OwnerUtil;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link NoteContentService} reading the content of notes from their shard of the {@link ShardedNoteRepository}.
+ * <p>
+ * The note is read with a single query on its shard and its content is encoded in one piece; ranges are
+ * then served from the copy.
+ * </p>
+ */
+@Service
+@Profile("sharded")
+public class ShardedNoteContentService implements NoteContentService {
+
+    private final ShardedNoteRepository repository;
+
+    /**
+     * Constructs a new {@code ShardedNoteContentService}.
+     *
+     * @param repository the sharded repository holding the notes
+     */
+    public ShardedNoteContentService(ShardedNoteRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Resource getContent(Long id) {
+        // Only the owner of the note may read its content
+        Note note = repository.findByIdAndOwner(id, OwnerUtil.currentOwner())
+                .orElseThrow(() -> new NoteNotFoundException(id));
+        String content = note.getContent();
+        byte[] bytes = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+        return new ByteArrayResource(bytes, "content of note " + id);
+    }
+}
@@ -0,0 +1,805 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.DeletedNote;
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.service.NoteStatsService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link NoteRepository} spreading notes over several PostgreSQL databases, the shards.
+ * <p>
+ * Active with the {@code sharded} profile, which turns off the single datasource and JPA. Each note is
+ * routed by its ID, through its bucket in the {@link ShardMap}, to exactly one shard, so reading, saving
+ * and deleting a note is one query on one shard. Lists and searches are sent to all shards in parallel,
+ * each shard returning its matches in ID order, and the results are combined with a k-way merge.
+ * </p>
+ * <p>
+ * The first shard also holds the catalog: the shard of every bucket, and the sequence note IDs are
+ * allocated from in blocks, so that IDs are unique across shards. Shards are identified by their position
+ * in {@code notes.sharding.urls}; new shards are added at the end, and {@link ShardRebalanceJob} then moves
+ * buckets to them while the application keeps serving requests.
+ * </p>
+ * <p>
+ * Every shard lists the buckets it serves in its {@code note_buckets} table, and only reads and writes notes
+ * of these buckets; every write takes a shared lock on its bucket's entry in the same statement. A bucket is
+ * moved by copying its notes to the target shard while the source keeps serving it, then freezing the bucket
+ * on the source, which waits for writes in progress and makes new ones find nothing, copying the notes changed
+ * in the meantime, switching the bucket in the catalog and on the shards, and deleting the notes from the source.
+ * An operation that finds nothing on a shard that does not serve the bucket (any longer) corrects this
+ * instance's copy of the catalog and runs again, waiting while the bucket is frozen, so instances that did
+ * not move the bucket never write to or read from its old shard. Moves themselves are made by one instance
+ * at a time, see {@link #runExclusively}.
+ * </p>
+ * <p>
+ * Within the instance moving a bucket, operations on its notes wait for the final steps of the move, and
+ * lists never miss its notes. Lists of other instances may miss them for the moment between the source
+ * and the target switching over.
+ * </p>
+ * <p>
+ * Deleted notes are marked in their {@code deleted_at} column and left out of every read, as with JPA. They
+ * move with their bucket like any other note until {@link #purgeDeletedBefore} removes them.
+ * </p>
+ */
+@Repository
+@Profile("sharded")
+public class ShardedNoteRepository implements NoteRepository, DisposableBean {
+
+    // Number of IDs taken from the catalog sequence at once
+    private static final int ID_BLOCK = 100;
+
+    // How long operations on a bucket wait for a move of another instance to complete, and how often they look
+    private static final long MOVE_WAIT_MILLIS = 10_000;
+    private static final long MOVE_POLL_MILLIS = 20;
+
+    // Key of the advisory lock on the catalog held by the instance moving buckets
+    private static final long REBALANCE_LOCK = 0x6e6f746573L;
+
+    private static final String COLUMNS = "id, owner, title, content, compressed_content, created_at, updated_at, deleted_at";
+
+    private static final List<String> SCHEMA_SQL = List.of("""
+                    CREATE TABLE IF NOT EXISTS notes (
+                        id bigint PRIMARY KEY,
+                        bucket integer NOT NULL,
+                        owner varchar(255),
+                        title varchar(255),
+                        content text,
+                        compressed_content bytea,
+                        created_at timestamp(6),
+                        updated_at timestamp(6),
+                        deleted_at timestamp(6))
+                    """,
+            // Shards created before notes could be restored
+            "ALTER TABLE notes ADD COLUMN IF NOT EXISTS deleted_at timestamp(6)",
+            "CREATE INDEX IF NOT EXISTS idx_notes_owner_id ON notes (owner, id)",
+            "CREATE INDEX IF NOT EXISTS idx_notes_bucket_id ON notes (bucket, id)",
+            "CREATE INDEX IF NOT EXISTS idx_notes_deleted_at ON notes (deleted_at) WHERE deleted_at IS NOT NULL",
+            // The buckets the shard serves; notes of a moving bucket are still read, but no longer written
+            "CREATE TABLE IF NOT EXISTS note_buckets (bucket integer PRIMARY KEY, moving boolean NOT NULL DEFAULT false)");
+
+    private static final List<String> CATALOG_SQL = List.of(
+            "CREATE TABLE IF NOT EXISTS note_shard_buckets (bucket integer PRIMARY KEY, shard integer NOT NULL)",
+            "CREATE SEQUENCE IF NOT EXISTS note_ids INCREMENT BY " + ID_BLOCK);
+
+    // Only notes of buckets the shard serves are read, so that notes being copied to it, or not yet deleted from
+    // it after their bucket moved away, are never seen
+    private static final String SERVED = "bucket IN (SELECT bucket FROM note_buckets)";
+
+    // Writes first take a shared lock on the shard's entry for the bucket given as the first parameter, and only
+    // write if the shard serves the bucket and it is not moving; freezing the bucket waits for these locks
+    private static final String FENCE = "WITH fence AS (SELECT bucket FROM note_buckets WHERE bucket = ? AND NOT moving FOR SHARE) ";
+
+    private static final String FENCED = "bucket IN (SELECT bucket FROM fence)";
+
+    private static final String INSERT_SQL = FENCE + "INSERT INTO notes (bucket, " + COLUMNS + ")"
+            + " SELECT bucket, ?::bigint, ?::varchar, ?::varchar, ?::text, ?::bytea, ?::timestamp, ?::timestamp, ?::timestamp FROM fence";
+
+    private static final String UPDATE_SQL = FENCE + "UPDATE notes SET owner = ?, title = ?, content = ?, compressed_content = ?, updated_at = ?"
+            + " WHERE id = ? AND " + FENCED;
+
+    private static final String MARK_DELETED_SQL = FENCE + "UPDATE notes SET deleted_at = ? WHERE id = ? AND owner = ? AND deleted_at IS NULL AND "
+            + FENCED + " RETURNING " + COLUMNS;
+
+    private static final String RESTORE_SQL = FENCE + "UPDATE notes SET deleted_at = NULL WHERE id = ? AND owner = ? AND deleted_at IS NOT NULL AND "
+            + FENCED;
+
+    private static final String DELETE_SQL = FENCE + "DELETE FROM notes WHERE id = ? AND " + FENCED;
+
+    // Copies notes of a moving bucket to its target shard, which does not serve the bucket yet
+    private static final String COPY_SQL = "INSERT INTO notes (bucket, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String PURGE_SQL = """
+            DELETE FROM notes
+            WHERE id IN (SELECT id FROM notes WHERE deleted_at < ? ORDER BY deleted_at LIMIT ?) AND deleted_at < ?
+            """;
+
+    // The transaction ID that wrote each row tells which notes changed after they were copied
+    private static final String BUCKET_PAGE_SQL = "SELECT " + COLUMNS + ", xmin::text::bigint AS row_xmin FROM notes"
+            + " WHERE bucket = ? AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String BUCKET_VERSIONS_SQL = "SELECT id, xmin::text::bigint AS row_xmin FROM notes WHERE bucket = ?";
+
+    private static final RowMapper<Note> NOTE_MAPPER = ShardedNoteRepository::mapNote;
+
+    private final List<JdbcTemplate> shards;
+    private final List<DataSource> dataSources;
+    private final JdbcTemplate catalog;
+    private final ShardMap shardMap;
+    // Held shared by operations on the notes of a bucket, and exclusively for the final steps of moving it
+    private final ReadWriteLock[] bucketLocks = new ReadWriteLock[ShardMap.BUCKETS];
+    // Held shared by lists, and exclusively while a moved bucket switches from its source to its target shard
+    private final ReadWriteLock fanOutLock = new ReentrantReadWriteLock();
+    private final ExecutorService fanOutExecutor;
+
+    private long nextId;
+    private long idLimit;
+
+    /**
+     * Constructs a new {@code ShardedNoteRepository} connecting to the configured shards.
+     *
+     * @param urls          the JDBC URLs of the shards, the first of which holds the catalog
+     * @param username      the user name for the shards
+     * @param password      the password for the shards
+     * @param poolSize      the maximum number of connections per shard
+     * @param fanOutThreads the number of threads querying shards in parallel for lists and searches
+     */
+    @Autowired
+    public ShardedNoteRepository(@Value("${notes.sharding.urls}") List<String> urls,
+                                 @Value("${notes.sharding.username:postgres}") String username,
+                                 @Value("${notes.sharding.password:postgres}") String password,
+                                 @Value("${notes.sharding.pool-size:10}") int poolSize,
+                                 @Value("${notes.sharding.fan-out-threads:16}") int fanOutThreads) {
+        this(createDataSources(urls, username, password, poolSize), fanOutThreads);
+    }
+
+    /**
+     * Constructs a new {@code ShardedNoteRepository} on the given shards, creating their tables and the
+     * catalog if they do not exist yet. The repository closes the data sources when it is destroyed.
+     *
+     * @param dataSources   the data sources of the shards, the first of which holds the catalog
+     * @param fanOutThreads the number of threads querying shards in parallel for lists and searches
+     * @throws IllegalStateException if the catalog assigns buckets to shards that are not configured
+     */
+    public ShardedNoteRepository(List<DataSource> dataSources, int fanOutThreads) {
+        if (dataSources.isEmpty() || dataSources.size() > ShardMap.BUCKETS) {
+            throw new IllegalArgumentException("Expected 1 to " + ShardMap.BUCKETS + " shards, got " + dataSources.size());
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.shards = dataSources.stream().map(JdbcTemplate::new).toList();
+        this.catalog = shards.get(0);
+        for (JdbcTemplate shard : shards) {
+            SCHEMA_SQL.forEach(shard::execute);
+        }
+        CATALOG_SQL.forEach(catalog::execute);
+        this.shardMap = loadShardMap();
+        if (shardMap.maxShard() >= shards.size()) {
+            throw new IllegalStateException("Buckets are assigned to shard " + shardMap.maxShard()
+                    + ", but only " + shards.size() + " shards are configured; shards can only be added");
+        }
+        initializeServedBuckets();
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            bucketLocks[bucket] = new ReentrantReadWriteLock();
+        }
+        this.fanOutExecutor = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static List<DataSource> createDataSources(List<String> urls, String username, String password, int poolSize) {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("shard-" + dataSources.size());
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSources.add(dataSource);
+        }
+        return dataSources;
+    }
+
+    // Reads the bucket assignment from the catalog, creating it on the first start
+    private ShardMap loadShardMap() {
+        ShardMap initial = ShardMap.initial(shards.size());
+        List<Object[]> rows = new ArrayList<>();
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            rows.add(new Object[]{bucket, initial.shardOf(bucket)});
+        }
+        // Another instance may be creating the catalog at the same time; the first one wins
+        catalog.batchUpdate("INSERT INTO note_shard_buckets (bucket, shard) VALUES (?, ?) ON CONFLICT (bucket) DO NOTHING", rows);
+        return new ShardMap(readAssignment());
+    }
+
+    private int[] readAssignment() {
+        int[] assignment = new int[ShardMap.BUCKETS];
+        catalog.query("SELECT bucket, shard FROM note_shard_buckets", rs -> {
+            assignment[rs.getInt(1)] = rs.getInt(2);
+        });
+        return assignment;
+    }
+
+    // Lets every shard serve the buckets the catalog assigns to it, on the first start of a deployment
+    private void initializeServedBuckets() {
+        for (int i = 0; i < shards.size(); i++) {
+            JdbcTemplate shard = shards.get(i);
+            if (Boolean.FALSE.equals(shard.queryForObject("SELECT EXISTS (SELECT 1 FROM note_buckets)", Boolean.class))) {
+                List<Object[]> rows = new ArrayList<>();
+                for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+                    if (shardMap.shardOf(bucket) == i) {
+                        rows.add(new Object[]{bucket});
+                    }
+                }
+                shard.batchUpdate("INSERT INTO note_buckets (bucket) VALUES (?) ON CONFLICT (bucket) DO NOTHING", rows);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the shard a note is stored on.
+     *
+     * @param id the ID of the note
+     * @return the index of the shard
+     */
+    public int shardOf(long id) {
+        return shardMap.shardOfNote(id);
+    }
+
+    @Override
+    public <S extends Note> S save(S note) {
+        LocalDateTime now = LocalDateTime.now();
+        note.setUpdatedAt(now);
+        byte[] compressed = note.getCompressedContent();
+        String content = compressed != null ? null : note.getContent();
+        if (note.getId() != null) {
+            // Updating a note that does not exist creates a new one, as with JPA
+            int updated = onShardOf(note.getId(), count -> count > 0, shard -> shard.update(UPDATE_SQL, ShardMap.bucketOf(note.getId()),
+                    note.getOwner(), note.getTitle(), content, compressed, Timestamp.valueOf(now), note.getId()));
+            if (updated > 0) {
+                return note;
+            }
+        }
+        note.setId(nextId());
+        note.setCreatedAt(now);
+        onShardOf(note.getId(), count -> count > 0, shard -> shard.update(INSERT_SQL, ShardMap.bucketOf(note.getId()), note.getId(),
+                note.getOwner(), note.getTitle(), content, compressed, Timestamp.valueOf(now), Timestamp.valueOf(now), null));
+        return note;
+    }
+
+    @Override
+    public <S extends Note> List<S> saveAll(Iterable<S> notes) {
+        List<S> saved = new ArrayList<>();
+        notes.forEach(note -> saved.add(save(note)));
+        return saved;
+    }
+
+    @Override
+    public Optional<Note> findById(Long id) {
+        return onShardOf(id, notes -> !notes.isEmpty(), shard -> shard.query(
+                        "SELECT " + COLUMNS + " FROM notes WHERE id = ? AND deleted_at IS NULL AND " + SERVED, NOTE_MAPPER, id))
+                .stream().findFirst();
+    }
+
+    @Override
+    public Optional<Note> findByIdAndOwner(Long id, String owner) {
+        return onShardOf(id, notes -> !notes.isEmpty(), shard -> shard.query(
+                        "SELECT " + COLUMNS + " FROM notes WHERE id = ? AND owner = ? AND deleted_at IS NULL AND " + SERVED, NOTE_MAPPER, id, owner))
+                .stream().findFirst();
+    }
+
+    // Asks each shard once, in parallel, for the notes assigned to it, like a list. Notes not found are looked up
+    // again one by one if their shard does not serve their bucket, which another instance may have moved.
+    @Override
+    public List<Note> findByIdInAndOwner(Long[] ids, String owner) {
+        List<Note> notes = new ArrayList<>();
+        List<Long> misrouted = new ArrayList<>();
+        fanOutLock.readLock().lock();
+        try {
+            int[] assignment = shardMap.snapshot();
+            Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+            for (Long id : ids) {
+                idsByShard.computeIfAbsent(assignment[ShardMap.bucketOf(id)], shard -> new ArrayList<>()).add(id);
+            }
+            List<CompletableFuture<List<Note>>> futures = new ArrayList<>();
+            idsByShard.forEach((shard, shardIds) -> futures.add(CompletableFuture.supplyAsync(() -> shards.get(shard).query(
+                    "SELECT " + COLUMNS + " FROM notes WHERE id = ANY(?) AND owner = ? AND deleted_at IS NULL AND " + SERVED,
+                    NOTE_MAPPER, shardIds.toArray(Long[]::new), owner), fanOutExecutor)));
+            joinAll(futures).forEach(notes::addAll);
+            Set<Long> found = new HashSet<>();
+            notes.forEach(note -> found.add(note.getId()));
+            idsByShard.forEach((shard, shardIds) -> {
+                List<Long> missing = shardIds.stream().filter(id -> !found.contains(id)).toList();
+                if (!missing.isEmpty()) {
+                    Set<Integer> served = new HashSet<>(shards.get(shard).queryForList(
+                            "SELECT bucket FROM note_buckets WHERE bucket = ANY(?) AND NOT moving", Integer.class,
+                            (Object) missing.stream().map(ShardMap::bucketOf).distinct().toArray(Integer[]::new)));
+                    missing.stream().filter(id -> !served.contains(ShardMap.bucketOf(id))).forEach(misrouted::add);
+                }
+            });
+        } finally {
+            fanOutLock.readLock().unlock();
+        }
+        // Looked up outside the list lock, since they may wait for a move of this instance
+        misrouted.forEach(id -> findByIdAndOwner(id, owner).ifPresent(notes::add));
+        return notes;
+    }
+
+    @Override
+    public boolean existsByIdAndOwner(Long id, String owner) {
+        return Boolean.TRUE.equals(onShardOf(id, Boolean.TRUE::equals, shard -> shard.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM notes WHERE id = ? AND owner = ? AND deleted_at IS NULL AND " + SERVED + ")", Boolean.class, id, owner)));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return Boolean.TRUE.equals(onShardOf(id, Boolean.TRUE::equals, shard -> shard.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM notes WHERE id = ? AND deleted_at IS NULL AND " + SERVED + ")", Boolean.class, id)));
+    }
+
+    @Override
+    public List<Note> findAll() {
+        return fanOut("SELECT " + COLUMNS + " FROM notes WHERE deleted_at IS NULL AND " + SERVED + " ORDER BY id");
+    }
+
+    @Override
+    public List<Note> findByOwnerOrderById(String owner) {
+        return fanOut("SELECT " + COLUMNS + " FROM notes WHERE owner = ? AND deleted_at IS NULL AND " + SERVED + " ORDER BY id", owner);
+    }
+
+    @Override
+    public List<Note> findAllById(Iterable<Long> ids) {
+        List<Note> notes = new ArrayList<>();
+        for (Long id : ids) {
+            findById(id).ifPresent(notes::add);
+        }
+        return notes;
+    }
+
+    @Override
+    public List<Note> findByOwnerAndTitleContainingIgnoreCase(String owner, String title) {
+        return fanOut("SELECT " + COLUMNS + " FROM notes WHERE owner = ? AND deleted_at IS NULL AND strpos(lower(title), lower(?)) > 0 AND "
+                + SERVED + " ORDER BY id", owner, title);
+    }
+
+    @Override
+    public long count() {
+        fanOutLock.readLock().lock();
+        try {
+            long count = 0;
+            for (JdbcTemplate shard : shards) {
+                count += shard.queryForObject("SELECT count(*) FROM notes WHERE deleted_at IS NULL AND " + SERVED, Long.class);
+            }
+            return count;
+        } finally {
+            fanOutLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<DeletedNote> markDeleted(Long id, String owner, LocalDateTime deletedAt) {
+        // The content is stored with the note, so its length is returned by the same statement
+        return onShardOf(id, notes -> !notes.isEmpty(), shard -> shard.query(MARK_DELETED_SQL, NOTE_MAPPER,
+                        ShardMap.bucketOf(id), Timestamp.valueOf(deletedAt), id, owner))
+                .stream().findFirst()
+                .map(note -> DeletedNote.of(note.getCreatedAt(), note.getUpdatedAt(), NoteStatsService.contentBytes(note)));
+    }
+
+    @Override
+    public int restore(Long id, String owner) {
+        return onShardOf(id, count -> count > 0, shard -> shard.update(RESTORE_SQL, ShardMap.bucketOf(id), id, owner));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The shards are purged one after another, each in one statement, until {@code limit} notes are removed.
+     * </p>
+     */
+    @Override
+    public long purgeDeletedBefore(LocalDateTime cutoff, int limit) {
+        long purged = 0;
+        for (JdbcTemplate shard : shards) {
+            if (purged == limit) {
+                break;
+            }
+            purged += shard.update(PURGE_SQL, Timestamp.valueOf(cutoff), limit - purged, Timestamp.valueOf(cutoff));
+        }
+        return purged;
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        onShardOf(id, count -> count > 0, shard -> shard.update(DELETE_SQL, ShardMap.bucketOf(id), id));
+    }
+
+    @Override
+    public void delete(Note note) {
+        if (note.getId() != null) {
+            deleteById(note.getId());
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Note> notes) {
+        notes.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        findAll().forEach(this::delete);
+    }
+
+    /**
+     * Plans the bucket moves that spread the notes evenly over all configured shards.
+     *
+     * @return the moves, empty if the buckets are spread evenly
+     */
+    public List<ShardMap.Move> planRebalance() {
+        return shardMap.planMoves(shards.size());
+    }
+
+    /**
+     * Runs work that moves buckets or repairs interrupted moves, unless another instance is doing so.
+     * <p>
+     * The work runs while this instance holds an advisory lock on the catalog, which is released when the work
+     * completes or the instance's connection to the catalog is lost. The local copy of the catalog is read
+     * again first, since other instances may have moved buckets.
+     * </p>
+     *
+     * @param work the work
+     * @return {@code false} if another instance holds the lock, and the work was not run
+     */
+    public boolean runExclusively(Runnable work) {
+        return Boolean.TRUE.equals(catalog.execute((ConnectionCallback<Boolean>) connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet locked = statement.executeQuery("SELECT pg_try_advisory_lock(" + REBALANCE_LOCK + ")")) {
+                if (!locked.next() || !locked.getBoolean(1)) {
+                    return false;
+                }
+            }
+            try {
+                int[] assignment = readAssignment();
+                for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+                    shardMap.assign(bucket, assignment[bucket]);
+                }
+                work.run();
+                return true;
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT pg_advisory_unlock(" + REBALANCE_LOCK + ")");
+                }
+            }
+        }));
+    }
+
+    /**
+     * Moves a bucket to another shard, while operations on other buckets continue.
+     * <p>
+     * The notes of the bucket are copied in pages of {@code batchSize} notes while the source shard keeps
+     * serving the bucket. The bucket is then frozen on the source, the notes written, deleted or purged since
+     * they were copied are brought up to date on the target, and the bucket switches to the target in the
+     * catalog and on both shards; only for these final steps do operations on the bucket wait. Notes left on
+     * the target by an earlier, interrupted move are replaced. Must be called through {@link #runExclusively}.
+     * </p>
+     *
+     * @param bucket    the bucket to move
+     * @param target    the index of the shard to move it to
+     * @param batchSize the number of notes copied per query
+     * @return the number of notes moved
+     */
+    public int moveBucket(int bucket, int target, int batchSize) {
+        int source = shardMap.shardOf(bucket);
+        if (source == target) {
+            return 0;
+        }
+        JdbcTemplate from = shards.get(source);
+        JdbcTemplate to = shards.get(target);
+        to.update("DELETE FROM notes WHERE bucket = ?", bucket);
+        Map<Long, Long> copied = new HashMap<>();
+        long lastId = Long.MIN_VALUE;
+        List<CopiedNote> page;
+        do {
+            page = from.query(BUCKET_PAGE_SQL, (rs, rowNum) -> new CopiedNote(mapNote(rs, rowNum), rs.getLong("row_xmin")),
+                    bucket, lastId, batchSize);
+            copy(to, bucket, page.stream().map(CopiedNote::note).toList());
+            page.forEach(row -> copied.put(row.note().getId(), row.xmin()));
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).note().getId();
+            }
+        } while (page.size() == batchSize);
+
+        int moved;
+        ReadWriteLock lock = bucketLocks[bucket];
+        lock.writeLock().lock();
+        try {
+            // Waits for writes in progress on the source; from now on writes of every instance find nothing there
+            from.update("UPDATE note_buckets SET moving = true WHERE bucket = ?", bucket);
+            Map<Long, Long> current = new HashMap<>();
+            from.query(BUCKET_VERSIONS_SQL, rs -> {
+                current.put(rs.getLong("id"), rs.getLong("row_xmin"));
+            }, bucket);
+            Long[] removed = copied.keySet().stream().filter(id -> !current.containsKey(id)).toArray(Long[]::new);
+            Long[] changed = current.entrySet().stream()
+                    .filter(row -> !row.getValue().equals(copied.get(row.getKey())))
+                    .map(Map.Entry::getKey)
+                    .toArray(Long[]::new);
+            if (removed.length > 0 || changed.length > 0) {
+                to.update("DELETE FROM notes WHERE id = ANY(?)", (Object) Stream.concat(Stream.of(removed), Stream.of(changed)).toArray(Long[]::new));
+                copy(to, bucket, from.query("SELECT " + COLUMNS + " FROM notes WHERE id = ANY(?)", NOTE_MAPPER, (Object) changed));
+            }
+            moved = current.size();
+
+            catalog.update("UPDATE note_shard_buckets SET shard = ? WHERE bucket = ?", target, bucket);
+            // Lists of this instance see the bucket on exactly one of the shards
+            fanOutLock.writeLock().lock();
+            try {
+                from.update("DELETE FROM note_buckets WHERE bucket = ?", bucket);
+                to.update("INSERT INTO note_buckets (bucket) VALUES (?) ON CONFLICT (bucket) DO UPDATE SET moving = false", bucket);
+                shardMap.assign(bucket, target);
+            } finally {
+                fanOutLock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // No longer read, since the source does not serve the bucket any more
+        from.update("DELETE FROM notes WHERE bucket = ?", bucket);
+        return moved;
+    }
+
+    /**
+     * Brings the buckets every shard serves in line with the catalog, after a move was interrupted.
+     * <p>
+     * A bucket left frozen on its source by a move interrupted before the catalog was switched is served by
+     * the source again; a bucket whose move was interrupted after the switch is served by its target. Must be
+     * called through {@link #runExclusively}.
+     * </p>
+     *
+     * @return the number of entries of the shards' {@code note_buckets} tables changed
+     */
+    public int reconcileServedBuckets() {
+        int[] assignment = shardMap.snapshot();
+        int changed = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            Integer[] served = IntStream.range(0, ShardMap.BUCKETS).filter(bucket -> assignment[bucket] == shard).boxed().toArray(Integer[]::new);
+            changed += shards.get(i).update("DELETE FROM note_buckets WHERE NOT (bucket = ANY(?))", (Object) served);
+            changed += shards.get(i).update("""
+                    INSERT INTO note_buckets (bucket) SELECT unnest(?::integer[])
+                    ON CONFLICT (bucket) DO UPDATE SET moving = false WHERE note_buckets.moving
+                    """, (Object) served);
+        }
+        return changed;
+    }
+
+    /**
+     * Deletes notes left on shards that do not serve their bucket, by a move that was interrupted. Must be
+     * called through {@link #runExclusively}, so that no bucket is being copied meanwhile.
+     *
+     * @return the number of notes deleted
+     */
+    public int deleteMisplacedNotes() {
+        int deleted = 0;
+        for (JdbcTemplate shard : shards) {
+            deleted += shard.update("DELETE FROM notes WHERE NOT (" + SERVED + ")");
+        }
+        return deleted;
+    }
+
+    private static void copy(JdbcTemplate to, int bucket, List<Note> notes) {
+        to.batchUpdate(COPY_SQL, notes.stream().map(note -> new Object[]{bucket, note.getId(), note.getOwner(),
+                note.getTitle(), note.getCompressedContent() != null ? null : note.getContent(), note.getCompressedContent(),
+                Timestamp.valueOf(note.getCreatedAt()), Timestamp.valueOf(note.getUpdatedAt()),
+                note.getDeletedAt() == null ? null : Timestamp.valueOf(note.getDeletedAt())}).toList());
+    }
+
+    // A note copied by a move, and the transaction that had written it
+    private record CopiedNote(Note note, long xmin) {
+    }
+
+    // Runs an operation on the shard of a note. If the operation finds nothing and the shard does not serve the
+    // note's bucket, another instance has moved the bucket or is moving it: the shard is looked up in the catalog
+    // again, and the operation is run again once the catalog routes the bucket to a shard that serves it.
+    private <T> T onShardOf(long id, Predicate<T> found, Function<JdbcTemplate, T> operation) {
+        int bucket = ShardMap.bucketOf(id);
+        long deadline = System.currentTimeMillis() + MOVE_WAIT_MILLIS;
+        while (true) {
+            int shard;
+            T result;
+            ReadWriteLock lock = bucketLocks[bucket];
+            lock.readLock().lock();
+            try {
+                shard = shardMap.shardOf(bucket);
+                result = operation.apply(shards.get(shard));
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (found.test(result) || serves(shard, bucket)) {
+                return result;
+            }
+            awaitMove(bucket, shard, deadline);
+        }
+    }
+
+    private boolean serves(int shard, int bucket) {
+        return Boolean.TRUE.equals(shards.get(shard).queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM note_buckets WHERE bucket = ? AND NOT moving)", Boolean.class, bucket));
+    }
+
+    // Follows a bucket the catalog has moved to another shard, or waits a moment for a move in progress
+    private void awaitMove(int bucket, int shard, long deadline) {
+        Integer assigned = catalog.queryForObject("SELECT shard FROM note_shard_buckets WHERE bucket = ?", Integer.class, bucket);
+        if (assigned != null && assigned != shard) {
+            shardMap.assign(bucket, assigned);
+            return;
+        }
+        if (System.currentTimeMillis() > deadline) {
+            throw new TransientDataAccessResourceException("Bucket " + bucket + " is not served by shard " + shard + ", it is being moved");
+        }
+        try {
+            Thread.sleep(MOVE_POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Interrupted while waiting for bucket " + bucket + " to be moved", e);
+        }
+    }
+
+    // Runs a query ordered by ID on all shards in parallel and merges the results
+    private List<Note> fanOut(String sql, Object... args) {
+        fanOutLock.readLock().lock();
+        try {
+            List<CompletableFuture<List<Note>>> futures = new ArrayList<>();
+            for (JdbcTemplate shard : shards) {
+                futures.add(CompletableFuture.supplyAsync(() -> shard.query(sql, NOTE_MAPPER, args), fanOutExecutor));
+            }
+            return mergeById(joinAll(futures));
+        } finally {
+            fanOutLock.readLock().unlock();
+        }
+    }
+
+    // Waits for the queries of all shards, rethrowing the first failure as thrown by the query
+    private static List<List<Note>> joinAll(List<CompletableFuture<List<Note>>> futures) {
+        List<List<Note>> results = new ArrayList<>();
+        for (CompletableFuture<List<Note>> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merges lists of notes sorted by ascending ID into one sorted list.
+     * <p>
+     * A heap holds the next note of every list, so merging {@code n} notes from {@code k} lists takes
+     * {@code O(n log k)} comparisons.
+     * </p>
+     *
+     * @param sorted the lists, each sorted by ascending ID
+     * @return all notes, sorted by ascending ID
+     */
+    static List<Note> mergeById(List<List<Note>> sorted) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparingLong(head -> head.note().getId()));
+        int size = 0;
+        for (List<Note> notes : sorted) {
+            size += notes.size();
+            Iterator<Note> rest = notes.iterator();
+            if (rest.hasNext()) {
+                heads.add(new Head(rest.next(), rest));
+            }
+        }
+        List<Note> merged = new ArrayList<>(size);
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            merged.add(head.note());
+            if (head.rest().hasNext()) {
+                heads.add(new Head(head.rest().next(), head.rest()));
+            }
+        }
+        return merged;
+    }
+
+    // The next note of a list being merged, and the notes after it
+    private record Head(Note note, Iterator<Note> rest) {
+    }
+
+    private synchronized long nextId() {
+        if (nextId == idLimit) {
+            nextId = catalog.queryForObject("SELECT nextval('note_ids')", Long.class);
+            idLimit = nextId + ID_BLOCK;
+        }
+        return nextId++;
+    }
+
+    private static Note mapNote(ResultSet rs, int rowNum) throws SQLException {
+        Note note = new Note();
+        note.setId(rs.getLong("id"));
+        note.setOwner(rs.getString("owner"));
+        note.setTitle(rs.getString("title"));
+        byte[] compressed = rs.getBytes("compressed_content");
+        String content = rs.getString("content");
+        if (compressed != null) {
+            note.storeCompressedContent(compressed);
+        } else if (content != null) {
+            note.setContent(content);
+        }
+        note.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        note.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        note.setDeletedAt(rs.getObject("deleted_at", LocalDateTime.class));
+        return note;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        fanOutExecutor.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.thoughttonotelite.utils;
+
+/**
+ * Parses the HTTP {@code Accept-Encoding} request header.
+ */
+public final class AcceptEncodingUtil {
+
+    private AcceptEncodingUtil() {
+    }
+
+    /**
+     * Tells whether a client accepts the given content coding.
+     * <p>
+     * A coding is accepted if it is listed, or covered by {@code *}, with a quality value above zero.
+     * An explicit entry for the coding takes precedence over {@code *}.
+     * </p>
+     *
+     * @param acceptEncoding the value of the {@code Accept-Encoding} header, may be {@code null}
+     * @param coding         the content coding, e.g. {@code gzip}
+     * @return {@code true} if the client accepts responses encoded with the coding
+     */
+    public static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            int parameters = entry.indexOf(';');
+            String name = (parameters < 0 ? entry : entry.substring(0, parameters)).trim();
+            boolean acceptable = parameters < 0 || quality(entry.substring(parameters + 1)) > 0;
+            if (name.equalsIgnoreCase(coding)) {
+                return acceptable;
+            }
+            if (name.equals("*")) {
+                wildcard = acceptable;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=") || trimmed.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,197 @@
+package com.thoughttonotelite.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Computes and applies binary deltas between two versions of a byte sequence.
+ * <p>
+ * A delta describes the target as a sequence of instructions to copy ranges of the base and to insert
+ * literal bytes, so an edit to a large text costs little more than the edited bytes. It starts with the
+ * length of the target; each instruction is a varint holding the length and, in its lowest bit, whether
+ * it is a copy, followed by the offset in the base for a copy or the literal bytes for an insert.
+ * </p>
+ * <p>
+ * Matches are found the way rsync does: the base is indexed in blocks of {@value #BLOCK_SIZE} bytes by a
+ * rolling hash, and a window of the same size is rolled over the target. A matching block is extended in
+ * both directions as far as the bytes agree, so edits need not be aligned to blocks. Computing a delta
+ * takes time linear in the size of both versions.
+ * </p>
+ */
+public final class BinaryDeltaUtil {
+
+    /**
+     * The size of the blocks of the base that the target is matched against.
+     */
+    public static final int BLOCK_SIZE = 16;
+
+    private static final int MULTIPLIER = 0x01000193;
+    // MULTIPLIER to the power of BLOCK_SIZE - 1, to remove the outgoing byte from a rolling hash
+    private static final int OUTGOING_FACTOR;
+
+    static {
+        int factor = 1;
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            factor *= MULTIPLIER;
+        }
+        OUTGOING_FACTOR = factor;
+    }
+
+    private static final int COPY = 1;
+    private static final int INSERT = 0;
+
+    private BinaryDeltaUtil() {
+    }
+
+    /**
+     * Computes the delta turning a base into a target.
+     *
+     * @param base   the base version
+     * @param target the target version
+     * @return the delta, to be passed to {@link #apply(byte[], byte[])} with the same base
+     */
+    public static byte[] diff(byte[] base, byte[] target) {
+        ByteArrayOutputStream delta = new ByteArrayOutputStream(64);
+        writeVarint(delta, target.length);
+        if (base.length < BLOCK_SIZE || target.length < BLOCK_SIZE) {
+            writeInsert(delta, target, 0, target.length);
+            return delta.toByteArray();
+        }
+
+        // Offsets of the base blocks, plus one so that zero marks an empty slot; the first block with a hash wins
+        int[] blocks = new int[Integer.highestOneBit(base.length / BLOCK_SIZE) << 2];
+        int mask = blocks.length - 1;
+        for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+            int slot = hash(base, offset) & mask;
+            if (blocks[slot] == 0) {
+                blocks[slot] = offset + 1;
+            }
+        }
+
+        int literalStart = 0;
+        int position = 0;
+        int hash = hash(target, 0);
+        while (position + BLOCK_SIZE <= target.length) {
+            int candidate = blocks[hash & mask] - 1;
+            if (candidate >= 0 && matches(base, candidate, target, position)) {
+                int start = position;
+                int baseStart = candidate;
+                // Extend the match backwards into the pending literal bytes, then forwards
+                while (baseStart > 0 && start > literalStart && base[baseStart - 1] == target[start - 1]) {
+                    baseStart--;
+                    start--;
+                }
+                int end = position + BLOCK_SIZE;
+                int baseEnd = candidate + BLOCK_SIZE;
+                while (baseEnd < base.length && end < target.length && base[baseEnd] == target[end]) {
+                    baseEnd++;
+                    end++;
+                }
+                writeInsert(delta, target, literalStart, start - literalStart);
+                writeVarint(delta, ((long) (end - start) << 1) | COPY);
+                writeVarint(delta, baseStart);
+                position = end;
+                literalStart = end;
+                if (position + BLOCK_SIZE <= target.length) {
+                    hash = hash(target, position);
+                }
+            } else {
+                if (position + BLOCK_SIZE < target.length) {
+                    hash = (hash - target[position] * OUTGOING_FACTOR) * MULTIPLIER + target[position + BLOCK_SIZE];
+                }
+                position++;
+            }
+        }
+        writeInsert(delta, target, literalStart, target.length - literalStart);
+        return delta.toByteArray();
+    }
+
+    /**
+     * Applies a delta to the base it was computed from.
+     *
+     * @param base  the base version
+     * @param delta the delta produced by {@link #diff(byte[], byte[])}
+     * @return the target version
+     * @throws IllegalArgumentException if the delta is malformed or does not fit the base
+     */
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] position = {0};
+        long targetLength = readVarint(delta, position);
+        if (targetLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid delta: target length " + targetLength);
+        }
+        byte[] target = new byte[(int) targetLength];
+        int written = 0;
+        while (position[0] < delta.length) {
+            long instruction = readVarint(delta, position);
+            long length = instruction >>> 1;
+            if (length > target.length - written) {
+                throw new IllegalArgumentException("Invalid delta: instruction exceeds the target length");
+            }
+            if ((instruction & 1) == COPY) {
+                long offset = readVarint(delta, position);
+                if (offset + length > base.length) {
+                    throw new IllegalArgumentException("Invalid delta: copy beyond the end of the base");
+                }
+                System.arraycopy(base, (int) offset, target, written, (int) length);
+            } else {
+                if (length > delta.length - position[0]) {
+                    throw new IllegalArgumentException("Invalid delta: insert beyond the end of the delta");
+                }
+                System.arraycopy(delta, position[0], target, written, (int) length);
+                position[0] += (int) length;
+            }
+            written += (int) length;
+        }
+        if (written != target.length) {
+            throw new IllegalArgumentException("Invalid delta: " + written + " of " + target.length + " bytes produced");
+        }
+        return target;
+    }
+
+    private static int hash(byte[] bytes, int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+            hash = hash * MULTIPLIER + bytes[i];
+        }
+        return hash;
+    }
+
+    private static boolean matches(byte[] base, int baseOffset, byte[] target, int targetOffset) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (base[baseOffset + i] != target[targetOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeInsert(ByteArrayOutputStream delta, byte[] bytes, int offset, int length) {
+        if (length > 0) {
+            writeVarint(delta, ((long) length << 1) | INSERT);
+            delta.write(bytes, offset, length);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Invalid delta: truncated varint");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid delta: varint too long");
+    }
+}
@@ -0,0 +1,82 @@
+package com.thoughttonotelite.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes and decodes note content stored in compressed form.
+ * <p>
+ * The first byte of an encoded value identifies the codec, so that values written with a different
+ * codec can be told apart and decoded later. The only codec used today is {@link #CODEC_DEFLATE},
+ * which stores the UTF-8 bytes of the content compressed with the JDK's {@link Deflater}.
+ * </p>
+ */
+public final class ContentCompressionUtil {
+
+    /**
+     * Codec identifier for UTF-8 content compressed with zlib deflate.
+     */
+    public static final byte CODEC_DEFLATE = 1;
+
+    private ContentCompressionUtil() {
+    }
+
+    /**
+     * Compresses the given content.
+     *
+     * @param content the content to compress
+     * @param level   the deflate compression level, from 0 (none) to 9 (best)
+     * @return the encoded value, starting with the codec identifier
+     */
+    public static byte[] compress(String content, int level) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+        out.write(CODEC_DEFLATE);
+        Deflater deflater = new Deflater(level);
+        try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater)) {
+            deflaterOut.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses a value produced by {@link #compress(String, int)}.
+     *
+     * @param encoded the encoded value
+     * @return the original content
+     * @throws IllegalArgumentException if the value was written with an unknown codec
+     */
+    public static String decompress(byte[] encoded) {
+        try (InputStream in = openStream(encoded)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens a stream over the decompressed UTF-8 bytes of an encoded value, so that large content can
+     * be read without materializing it as a {@link String}.
+     *
+     * @param encoded the encoded value
+     * @return a stream of the original UTF-8 bytes
+     * @throws IllegalArgumentException if the value was written with an unknown codec
+     */
+    public static InputStream openStream(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown content codec " + (encoded.length == 0 ? "(empty)" : encoded[0]));
+        }
+        return new InflaterInputStream(new ByteArrayInputStream(encoded, 1, encoded.length - 1));
+    }
+}
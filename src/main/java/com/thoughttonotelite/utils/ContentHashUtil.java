@@ -0,0 +1,41 @@
+package com.thoughttonotelite.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the hash that identifies note content in content-addressed storage.
+ * <p>
+ * The hash is the SHA-256 digest of the content encoded in UTF-8. Bodies with equal hashes are shared
+ * between notes, including notes of different users, so the hash must be collision resistant: with a
+ * non-cryptographic hash, a crafted note could be made to collide with someone else's content and be
+ * given their body. SHA-256 is computed with CPU instructions on current hardware, so hashing costs
+ * little next to writing the content.
+ * </p>
+ */
+public final class ContentHashUtil {
+
+    /**
+     * The length of a content hash in bytes.
+     */
+    public static final int HASH_LENGTH = 32;
+
+    private ContentHashUtil() {
+    }
+
+    /**
+     * Computes the hash of the given content.
+     *
+     * @param content the content
+     * @return the {@value #HASH_LENGTH} byte hash of the content
+     */
+    public static byte[] hash(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.thoughttonotelite.utils;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Determines the owner of the notes read and written by the current request.
+ * <p>
+ * Notes belong to the user who created them, identified by the name of the authenticated principal.
+ * Services scope every query to this owner, so users only ever see their own notes.
+ * </p>
+ */
+public class OwnerUtil {
+
+    private OwnerUtil() {
+    }
+
+    /**
+     * Returns the name of the authenticated user of the current thread.
+     *
+     * @return the owner of the notes accessed by the current request
+     * @throws IllegalStateException if no user is authenticated
+     */
+    public static String currentOwner() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication.getName() == null) {
+            throw new IllegalStateException("No authenticated user to own notes");
+        }
+        return authentication.getName();
+    }
+}
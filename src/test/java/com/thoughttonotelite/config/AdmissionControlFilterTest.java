@@ -0,0 +1,119 @@
+package com.thoughttonotelite.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link AdmissionControlFilter} class.
+ * <p>
+ * These tests run the filter in front of a servlet and verify that users exceeding their rate receive 429
+ * with {@code Retry-After}, that expensive requests beyond their concurrency limit receive 503 while cheap
+ * requests are still served, and that a disabled filter lets every request through.
+ * </p>
+ */
+public class AdmissionControlFilterTest {
+
+    private static final HttpServlet OK = new HttpServlet() {
+        @Override
+        protected void service(HttpServletRequest req, HttpServletResponse resp) {
+            resp.setStatus(200);
+        }
+    };
+
+    private static MockHttpServletResponse perform(AdmissionControlFilter filter, String method, String uri, String user,
+                                                   HttpServlet servlet) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteUser(user);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    /**
+     * Test that a user sending more than the burst is answered with 429 and told when to retry, while
+     * other users are still served.
+     */
+    @Test
+    public void testLimitsRatePerUser() throws Exception {
+        // One request per second, bursts of 3
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, new ClientRateLimiter(1, 3, 100), 4, 32);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, perform(filter, "GET", "/api/notes/1", "alice", OK).getStatus());
+        }
+
+        MockHttpServletResponse limited = perform(filter, "GET", "/api/notes/1", "alice", OK);
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader(HttpHeaders.RETRY_AFTER));  // Verify that the wait is rounded up to seconds
+
+        assertEquals(200, perform(filter, "GET", "/api/notes/1", "bob", OK).getStatus());
+        assertEquals(200, perform(filter, "GET", "/actuator/health", "alice", OK).getStatus());  // Verify that other paths are not limited
+    }
+
+    /**
+     * Test that an expensive request is answered with 503 while all expensive permits are taken, that cheap
+     * requests are still served meanwhile, and that permits are returned when requests complete.
+     */
+    @Test
+    public void testLimitsExpensiveConcurrency() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, new ClientRateLimiter(1000, 1000, 100), 1, 32);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServlet blocking = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resp.setStatus(200);
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> search = executor.submit(
+                    () -> perform(filter, "GET", "/api/notes/search", "alice", blocking));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            MockHttpServletResponse shed = perform(filter, "GET", "/api/notes", "bob", OK);
+            assertEquals(503, shed.getStatus());
+            assertEquals("1", shed.getHeader(HttpHeaders.RETRY_AFTER));
+            assertEquals(503, perform(filter, "POST", "/api/notes/lookup", "bob", OK).getStatus());
+            assertEquals(200, perform(filter, "GET", "/api/notes/7", "bob", OK).getStatus());
+            assertEquals(200, perform(filter, "POST", "/api/notes", "bob", OK).getStatus());
+
+            release.countDown();
+            assertEquals(200, search.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(200, perform(filter, "GET", "/api/notes", "bob", OK).getStatus());  // Verify that the permit was returned
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a disabled filter lets every request through.
+     */
+    @Test
+    public void testDisabledPassesThrough() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(false, new ClientRateLimiter(1, 1, 100), 0, 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, perform(filter, "GET", "/api/notes", "alice", OK).getStatus());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.thoughttonotelite.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ClientRateLimiter} class.
+ * <p>
+ * These tests drive the limiter with a manual clock and verify that a client may send a burst and is then
+ * limited to the refill rate, that rejected requests are told how long to wait, that clients do not share
+ * tokens, and that idle buckets are evicted while the number of buckets stays bounded.
+ * </p>
+ */
+public class ClientRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    // 10 requests per second, bursts of 5
+    private final ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 3, clock::get);
+
+    /**
+     * Test that a burst is admitted at once and that the next request must wait for a token.
+     */
+    @Test
+    public void testAdmitsBurstThenLimits() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("alice"));
+        }
+
+        long wait = limiter.tryAcquire("alice");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);  // Verify that the next token comes after one interval
+
+        clock.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire("alice"));  // Verify that waiting as told is enough
+        assertTrue(limiter.tryAcquire("alice") > 0);
+    }
+
+    /**
+     * Test that tokens are refilled at the configured rate, up to the burst size.
+     */
+    @Test
+    public void testRefillsUpToBurst() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("alice");
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        int admitted = 0;
+        while (limiter.tryAcquire("alice") == 0) {
+            admitted++;
+        }
+        assertEquals(5, admitted);  // Verify that a long pause does not save more than a burst
+    }
+
+    /**
+     * Test that one client exhausting its bucket does not limit another client.
+     */
+    @Test
+    public void testClientsHaveSeparateBuckets() {
+        while (limiter.tryAcquire("alice") == 0) {
+            // Exhaust the bucket of alice
+        }
+        assertEquals(0, limiter.tryAcquire("bob"));
+    }
+
+    /**
+     * Test that full buckets are evicted and that clients beyond the maximum share the overflow bucket.
+     */
+    @Test
+    public void testEvictsIdleAndBoundsClients() {
+        limiter.tryAcquire("alice");
+        limiter.tryAcquire("bob");
+        limiter.tryAcquire("carol");
+        assertEquals(3, limiter.size());
+
+        // Verify that further clients get no bucket of their own but share one
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("client-" + i));
+        }
+        assertTrue(limiter.tryAcquire("dave") > 0);
+        assertEquals(3, limiter.size());
+
+        // Verify that buckets are kept while not yet full, and evicted once full again
+        assertEquals(0, limiter.evictIdle());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(3, limiter.evictIdle());
+        assertEquals(0, limiter.size());
+        assertEquals(0, limiter.tryAcquire("dave"));
+        assertEquals(1, limiter.size());
+    }
+}
@@ -0,0 +1,34 @@
+package com.thoughttonotelite.config;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link NoteRuntimeHints}.
+ */
+public class NoteRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    public void testHintsCoverReflectionResourcesAndProxies() {
+        new NoteRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        // Verify that Jackson can read and write notes, and that JPQL can build revision summaries
+        assertThat(RuntimeHintsPredicates.reflection().onType(Note.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(NoteRevisionSummary.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+
+        // Verify that the sample data and the connection proxies are kept
+        assertThat(RuntimeHintsPredicates.resource().forResource("data/notes-data.json")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.proxies().forInterfaces(Connection.class)).accepts(hints);
+    }
+}
@@ -0,0 +1,134 @@
+package com.thoughttonotelite.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ResponseCompressionFilter} class.
+ * <p>
+ * These tests run the filter in front of a servlet writing a response of a given size and verify that
+ * only large enough, compressible responses are compressed, that compressed responses decode to the
+ * original bytes, and that responses written in many small pieces are compressed as they are written.
+ * </p>
+ */
+public class ResponseCompressionFilterTest {
+
+    private static final byte[] LARGE_BODY = "{\"title\":\"Note\",\"content\":\"Some repetitive content\"},".repeat(500)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final ResponseCompressionFilter filter = new ResponseCompressionFilter(true, 2048, 6,
+            List.of(MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN));
+
+    private MockHttpServletResponse perform(String acceptEncoding, int status, byte[] body, int pieceSize) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/notes");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setStatus(status);
+                resp.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                resp.setContentLengthLong(body.length);
+                for (int offset = 0; offset < body.length; offset += pieceSize) {
+                    resp.getOutputStream().write(body, offset, Math.min(pieceSize, body.length - offset));
+                }
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Test that a large response is gzip compressed and decodes to the original body.
+     */
+    @Test
+    public void testCompressesLargeResponse() throws Exception {
+        MockHttpServletResponse response = perform("gzip, deflate, br", 200, LARGE_BODY, LARGE_BODY.length);
+
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));  // Verify that gzip was chosen
+        assertNull(response.getHeader(HttpHeaders.CONTENT_LENGTH));  // Verify that the uncompressed length was dropped
+        assertTrue(response.getContentAsByteArray().length < LARGE_BODY.length / 5);  // Verify that the body shrank
+        assertArrayEquals(LARGE_BODY, readAll(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))));
+    }
+
+    /**
+     * Test that a response written in small pieces, as streamed content is, is compressed the same way.
+     */
+    @Test
+    public void testCompressesStreamedResponseWithDeflate() throws Exception {
+        MockHttpServletResponse response = perform("deflate", 200, LARGE_BODY, 100);
+
+        assertEquals("deflate", response.getHeader(HttpHeaders.CONTENT_ENCODING));  // Verify that deflate was chosen
+        assertArrayEquals(LARGE_BODY, readAll(new InflaterInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))));
+    }
+
+    /**
+     * Test that small responses, partial responses and clients not accepting compression get the response as is.
+     */
+    @Test
+    public void testLeavesOtherResponsesAlone() throws Exception {
+        byte[] smallBody = "{\"title\":\"Small\"}".getBytes(StandardCharsets.UTF_8);
+        MockHttpServletResponse small = perform("gzip", 200, smallBody, smallBody.length);
+        assertNull(small.getHeader(HttpHeaders.CONTENT_ENCODING));  // Verify that a small response is not compressed
+        assertEquals(smallBody.length, small.getContentLength());  // Verify that its length is kept
+        assertArrayEquals(smallBody, small.getContentAsByteArray());
+
+        MockHttpServletResponse partial = perform("gzip", 206, LARGE_BODY, LARGE_BODY.length);
+        assertNull(partial.getHeader(HttpHeaders.CONTENT_ENCODING));  // Verify that a range response is not compressed
+        assertArrayEquals(LARGE_BODY, partial.getContentAsByteArray());
+
+        MockHttpServletResponse identity = perform("gzip;q=0, identity", 200, LARGE_BODY, LARGE_BODY.length);
+        assertNull(identity.getHeader(HttpHeaders.CONTENT_ENCODING));  // Verify that a refused coding is not used
+        assertArrayEquals(LARGE_BODY, identity.getContentAsByteArray());
+    }
+
+    /**
+     * Test that a handler failing after compression has started fails the request, without the compressed
+     * stream being completed as if the response were whole.
+     */
+    @Test
+    public void testHandlerFailingWhileCompressing() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/notes");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                resp.getOutputStream().write(LARGE_BODY);
+                throw new IOException("Lost the content while streaming it");
+            }
+        };
+
+        assertThrows(IOException.class, () -> filter.doFilter(request, response, new MockFilterChain(servlet)));
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        // Verify that no gzip trailer was written for the truncated body
+        assertThrows(EOFException.class, () -> readAll(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))));
+    }
+}
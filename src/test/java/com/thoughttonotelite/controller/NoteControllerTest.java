@@ -1,21 +1,49 @@
 package com.thoughttonotelite.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import com.thoughttonotelite.model.NoteStats;
+import com.thoughttonotelite.model.NoteVersion;
+import com.thoughttonotelite.service.IngestionQueueFullException;
+import com.thoughttonotelite.service.InvalidNoteException;
+import com.thoughttonotelite.service.NoteContentService;
+import com.thoughttonotelite.service.NoteNotFoundException;
+import com.thoughttonotelite.service.NoteResponseCache;
 import com.thoughttonotelite.service.NoteService;
+import com.thoughttonotelite.service.RevisionNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,6 +63,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(NoteController.class)
+@Import(NoteResponseCache.class)
 public class NoteControllerTest {
 
     /**
@@ -51,6 +80,26 @@ public class NoteControllerTest {
     @MockBean
     private NoteService noteService;
 
+    /**
+     * MockBean providing a mock implementation of the NoteContentService used to stream note content.
+     */
+    @MockBean
+    private NoteContentService noteContentService;
+
+    /**
+     * The real NoteResponseCache, so that cached JSON responses are exercised by the tests.
+     */
+    @Autowired
+    private NoteResponseCache responseCache;
+
+    /**
+     * Clears the response cache, which is shared by all tests through the application context.
+     */
+    @BeforeEach
+    public void clearResponseCache() {
+        responseCache.clear();
+    }
+
     /**
      * Test for retrieving all notes.
      * <p>
@@ -169,6 +218,64 @@ public class NoteControllerTest {
                 .andExpect(status().isNoContent());  // Expect HTTP 204 No Content status
     }
 
+    /**
+     * Test for restoring a deleted note.
+     * <p>
+     * This test verifies that the controller correctly handles a POST request to restore a deleted note.
+     * The {@link NoteService} is mocked to return the restored note, which is expected in the response
+     * with a status of 200 (OK).
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testRestoreNote() throws Exception {
+        Note note = new Note();
+        note.setId(1L);
+        note.setTitle("Restored Note");
+        note.setContent("Restored Content");
+        Mockito.when(noteService.restoreNoteById(1L)).thenReturn(note);
+
+        mockMvc.perform(post("/api/notes/{id}/restore", 1L)
+                        .with(csrf()))  // Add CSRF token to the request to pass CSRF protection
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.title").value("Restored Note"));
+    }
+
+    /**
+     * Test for listing the revisions of a note and retrieving one of them.
+     * <p>
+     * This test verifies that the controller returns the revisions listed by the {@link NoteService}, and
+     * the title and content of a single revision rebuilt by it.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNoteRevisions() throws Exception {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 10, 0);
+        Mockito.when(noteService.getNoteRevisions(1L)).thenReturn(List.of(
+                new NoteRevisionSummary(1, "First Title", 13, createdAt),
+                new NoteRevisionSummary(2, "Second Title", 14, createdAt.plusHours(1))));
+        Mockito.when(noteService.getNoteRevision(1L, 1)).thenReturn(
+                new NoteVersion(1L, 1, "First Title", "First content", createdAt));
+
+        mockMvc.perform(get("/api/notes/{id}/revisions", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].revision").value(2))
+                .andExpect(jsonPath("$[1].title").value("Second Title"));
+
+        mockMvc.perform(get("/api/notes/{id}/revisions/{revision}", 1L, 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.noteId").value(1L))
+                .andExpect(jsonPath("$.revision").value(1))
+                .andExpect(jsonPath("$.content").value("First content"));
+    }
+
     /**
      * Test for retrieving an individual note by its ID.
      * <p>
@@ -231,4 +338,339 @@ public class NoteControllerTest {
                 .andExpect(jsonPath("$[0].content").value("Test Content"));  // Expect the first note's content to be "Test Content"
     }
 
-}
\ No newline at end of file
+    /**
+     * Test for streaming the content of a note.
+     * <p>
+     * This test verifies that the controller streams the full content of a note as UTF-8 text, and that
+     * a request with a {@code Range} header receives a 206 (Partial Content) response with only the
+     * requested bytes and a matching {@code Content-Range} header.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNoteContentWithRange() throws Exception {
+        // Mock the behavior of the NoteContentService to return the content of the note
+        Mockito.when(noteContentService.getContent(1L)).thenReturn(new ByteArrayResource("Hello, streamed world".getBytes()));
+
+        // Perform a GET request for the whole content and verify the response
+        mockMvc.perform(get("/api/notes/{id}/content", 1L))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(content().contentType("text/plain;charset=UTF-8"))  // Expect UTF-8 text
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))  // Expect range support to be advertised
+                .andExpect(content().string("Hello, streamed world"));  // Expect the whole content
+
+        // Perform a GET request for a range of the content and verify the response
+        mockMvc.perform(get("/api/notes/{id}/content", 1L)
+                        .header(HttpHeaders.RANGE, "bytes=7-14"))
+                .andExpect(status().isPartialContent())  // Expect HTTP 206 Partial Content status
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-14/21"))  // Expect the served range
+                .andExpect(content().string("streamed"));  // Expect only the requested bytes
+    }
+
+    /**
+     * Test for retrieving notes in the binary encodings.
+     * <p>
+     * This test verifies that a client sending an {@code Accept} header for CBOR or Smile receives the same
+     * list of notes as a JSON client, encoded in the requested format, and that both binary payloads are
+     * smaller than the JSON payload.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetAllNotesInBinaryEncodings() throws Exception {
+        // Create mock notes with all fields set, including non-ASCII content
+        List<Note> notes = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            Note note = new Note();
+            note.setId(i);
+            note.setTitle("Note " + i);
+            note.setContent("Content of note " + i + " with \"quotes\", umlauts äöü and an emoji 😀\n");
+            note.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0).plusMinutes(i));
+            note.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 12, 0).plusMinutes(i));
+            notes.add(note);
+        }
+        Mockito.when(noteService.getAllNotes()).thenReturn(notes);
+
+        // Retrieve the notes as JSON, CBOR and Smile
+        byte[] json = mockMvc.perform(get("/api/notes").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = mockMvc.perform(get("/api/notes").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))  // Expect CBOR content type
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] smile = mockMvc.perform(get("/api/notes").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(content().contentType("application/x-jackson-smile"))  // Expect Smile content type
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Verify that the binary encodings decode to exactly the JSON representation
+        JsonNode expected = new ObjectMapper().readTree(json);
+        assertEquals(expected, new CBORMapper().readTree(cbor));
+        assertEquals(expected, new SmileMapper().readTree(smile));
+
+        // Verify that the binary encodings are more compact than JSON
+        assertTrue(cbor.length < json.length);
+        assertTrue(smile.length < json.length);
+    }
+
+    /**
+     * Test for creating a note from a CBOR request body.
+     * <p>
+     * This test verifies that the controller accepts a note encoded in CBOR and answers in CBOR when asked to,
+     * and that the note passed to the service matches the one sent.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testCreateNoteFromCbor() throws Exception {
+        // Mock the behavior of the NoteService to return the note it is given
+        Mockito.when(noteService.createNote(Mockito.any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Note note = new Note();
+        note.setTitle("Binary Note");
+        note.setContent("Sent as CBOR");
+        CBORMapper cborMapper = new CBORMapper();
+
+        // Perform a POST request with a CBOR body and verify the CBOR response
+        byte[] response = mockMvc.perform(post("/api/notes")
+                        .with(csrf())  // Add CSRF token to the request to pass CSRF protection
+                        .contentType(MediaType.APPLICATION_CBOR)  // Set the content type to CBOR
+                        .accept(MediaType.APPLICATION_CBOR)  // Ask for a CBOR response
+                        .content(cborMapper.writeValueAsBytes(note)))  // Set the request body to the encoded note
+                .andExpect(status().isCreated())  // Expect HTTP 201 Created status
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))  // Expect CBOR content type
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode created = cborMapper.readTree(response);
+        assertEquals("Binary Note", created.get("title").asText());  // Verify the title survived the round trip
+        assertEquals("Sent as CBOR", created.get("content").asText());  // Verify the content survived the round trip
+    }
+
+    /**
+     * Test for serving a note from the response cache.
+     * <p>
+     * This test verifies that repeated JSON reads of a note are answered from the cache without calling the
+     * {@link NoteService} again, that clients accepting gzip receive the gzip compressed variant, and that
+     * the note is loaded again once a change to it has been published.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNoteByIdIsCached() throws Exception {
+        // Create a mock note large enough to be kept gzip compressed
+        Note note = new Note();
+        note.setId(1L);
+        note.setTitle("Cached Note");
+        note.setContent("Cached content. ".repeat(200));
+        Mockito.when(noteService.getNoteById(1L)).thenReturn(note);
+
+        // Perform two plain GET requests and verify that the note was only loaded once
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/notes/{id}", 1L))
+                    .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))  // Expect JSON content type
+                    .andExpect(jsonPath("$.title").value("Cached Note"));  // Expect the note's title
+        }
+        Mockito.verify(noteService, Mockito.times(1)).getNoteById(1L);
+
+        // Perform a GET request accepting gzip and verify that the compressed variant is returned
+        byte[] gzipped = mockMvc.perform(get("/api/notes/{id}", 1L).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))  // Expect gzip encoding
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new java.io.ByteArrayInputStream(gzipped))) {
+            assertEquals("Cached Note", new ObjectMapper().readTree(in).get("title").asText());  // Verify the decompressed note
+        }
+
+        // Publish a change to the note and verify that it is loaded again
+        responseCache.onNoteChanged(new com.thoughttonotelite.service.NoteChangedEvent(1L, "yourUsername"));
+        mockMvc.perform(get("/api/notes/{id}", 1L)).andExpect(status().isOk());
+        Mockito.verify(noteService, Mockito.times(2)).getNoteById(1L);
+    }
+
+    /**
+     * Test for retrieving several notes by their IDs.
+     * <p>
+     * This test verifies that the notes are returned in the requested order with the IDs not found listed as
+     * missing, that a note already cached is taken from the {@link NoteResponseCache} instead of being loaded
+     * again, and that requests for too many notes are rejected.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNotesByIds() throws Exception {
+        Note first = new Note();
+        first.setId(1L);
+        first.setTitle("First");
+        Note second = new Note();
+        second.setId(2L);
+        second.setTitle("Second");
+
+        // Note 1 is cached by a single read; only notes 2 and 9 are left to load, and 9 does not exist
+        Mockito.when(noteService.getNoteById(1L)).thenReturn(first);
+        mockMvc.perform(get("/api/notes/{id}", 1L)).andExpect(status().isOk());
+        Mockito.when(noteService.getNotesByIds(List.of(2L, 9L))).thenReturn(List.of(second));
+
+        mockMvc.perform(get("/api/notes").param("ids", "2,9,1,2"))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))  // Expect JSON content type
+                .andExpect(jsonPath("$.notes.length()").value(2))  // Expect each note found once
+                .andExpect(jsonPath("$.notes[0].title").value("Second"))  // Expect the requested order
+                .andExpect(jsonPath("$.notes[1].title").value("First"))
+                .andExpect(jsonPath("$.missing[0]").value(9));  // Expect the ID not found to be reported
+        Mockito.verify(noteService, Mockito.times(1)).getNotesByIds(List.of(2L, 9L));
+
+        // The same lookup with the IDs in the request body
+        mockMvc.perform(post("/api/notes/lookup")
+                        .with(csrf())  // Add CSRF token to the request to pass CSRF protection
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 2]"))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(jsonPath("$.notes[0].title").value("First"))
+                .andExpect(jsonPath("$.notes[1].title").value("Second"))
+                .andExpect(jsonPath("$.missing").isEmpty());
+
+        // Request more notes than allowed and verify that the request is rejected
+        String tooMany = IntStream.rangeClosed(1, 501).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        mockMvc.perform(get("/api/notes").param("ids", tooMany))
+                .andExpect(status().isBadRequest())  // Expect HTTP 400 Bad Request status
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON));  // Expect a problem response
+    }
+
+    /**
+     * Test for retrieving the statistics of the user's notes.
+     * <p>
+     * This test verifies that the statistics maintained by the service are returned as JSON, with the
+     * notes per day keyed by date.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNoteStats() throws Exception {
+        // Mock the behavior of the NoteService to return the statistics
+        SortedMap<LocalDate, Long> notesPerDay = new TreeMap<>(Map.of(LocalDate.of(2024, 9, 21), 0L, LocalDate.of(2024, 9, 22), 5L));
+        Mockito.when(noteService.getNoteStats()).thenReturn(
+                new NoteStats(128, 524288, notesPerDay, 7, 24, LocalDateTime.of(2024, 9, 22, 10, 15, 30)));
+
+        mockMvc.perform(get("/api/notes/stats"))
+                .andExpect(status().isOk())  // Expect HTTP 200 OK status
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))  // Expect JSON content type
+                .andExpect(jsonPath("$.totalNotes").value(128))
+                .andExpect(jsonPath("$.totalContentBytes").value(524288))
+                .andExpect(jsonPath("$.notesPerDay['2024-09-22']").value(5))  // Expect the histogram keyed by date
+                .andExpect(jsonPath("$.recentlyUpdated").value(7))
+                .andExpect(jsonPath("$.reconciledAt").value("2024-09-22T10:15:30"));
+        Mockito.verify(noteService, Mockito.never()).getAllNotes();  // Verify that the notes themselves were not read
+    }
+
+    /**
+     * Test for retrieving a note or a revision that does not exist.
+     * <p>
+     * This test verifies that a note reported as not found by the service results in a 404 (Not Found)
+     * problem response naming the note and the request path, instead of a server error.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNoteNotFound() throws Exception {
+        // Mock the behavior of the NoteService to find neither the note nor the revision
+        Mockito.when(noteService.getNoteById(42L)).thenThrow(new NoteNotFoundException(42L));
+        Mockito.when(noteService.getNoteRevision(1L, 7)).thenThrow(new RevisionNotFoundException(1L, 7));
+
+        mockMvc.perform(get("/api/notes/{id}", 42L))
+                .andExpect(status().isNotFound())  // Expect HTTP 404 Not Found status
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))  // Expect a problem response
+                .andExpect(jsonPath("$.status").value(404))
+                .andExpect(jsonPath("$.detail").value("Note not found with id 42"))
+                .andExpect(jsonPath("$.instance").value("/api/notes/42"));
+
+        mockMvc.perform(get("/api/notes/{id}/revisions/{revision}", 1L, 7))
+                .andExpect(status().isNotFound())  // Expect HTTP 404 Not Found status
+                .andExpect(jsonPath("$.detail").value("Revision 7 not found for note with id 1"));
+    }
+
+    /**
+     * Test for retrieving a note with an ID that is not a number.
+     * <p>
+     * This test verifies that the request is rejected with a 400 (Bad Request) problem response
+     * without reaching the service.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testGetNoteWithInvalidId() throws Exception {
+        mockMvc.perform(get("/api/notes/{id}", "not-a-number"))
+                .andExpect(status().isBadRequest())  // Expect HTTP 400 Bad Request status
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))  // Expect a problem response
+                .andExpect(jsonPath("$.status").value(400));
+        Mockito.verifyNoInteractions(noteService);
+    }
+
+    /**
+     * Test for creating a note while the write-behind ingestion queue is full.
+     * <p>
+     * This test verifies that a note rejected by the service because the queue is full results in a
+     * 429 (Too Many Requests) response telling the client when to retry.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testCreateNoteWhenQueueIsFull() throws Exception {
+        // Mock the behavior of the NoteService to reject the note
+        Mockito.when(noteService.createNote(Mockito.any(Note.class)))
+                .thenThrow(new IngestionQueueFullException("Too many notes are waiting to be written"));
+
+        // Perform a POST request and verify the response
+        mockMvc.perform(post("/api/notes")
+                        .with(csrf())  // Add CSRF token to the request to pass CSRF protection
+                        .contentType(MediaType.APPLICATION_JSON)  // Set the content type to JSON
+                        .content("{\"title\":\"Quick capture\",\"content\":\"...\"}"))
+                .andExpect(status().isTooManyRequests())  // Expect HTTP 429 Too Many Requests status
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));  // Expect a retry hint
+    }
+
+    /**
+     * Test for creating a note the database could not store.
+     * <p>
+     * This test verifies that a note rejected by the service as invalid results in a 400 (Bad Request)
+     * problem response giving the reason.
+     * </p>
+     *
+     * @throws Exception if any error occurs during the test execution
+     */
+    @Test
+    @WithMockUser(username = "yourUsername", roles = {"USER"})
+    public void testCreateInvalidNote() throws Exception {
+        // Mock the behavior of the NoteService to reject the note
+        Mockito.when(noteService.createNote(Mockito.any(Note.class)))
+                .thenThrow(new InvalidNoteException("The title must not be longer than 255 characters"));
+
+        // Perform a POST request and verify the response
+        mockMvc.perform(post("/api/notes")
+                        .with(csrf())  // Add CSRF token to the request to pass CSRF protection
+                        .contentType(MediaType.APPLICATION_JSON)  // Set the content type to JSON
+                        .content("{\"title\":\"" + "x".repeat(256) + "\",\"content\":\"...\"}"))
+                .andExpect(status().isBadRequest())  // Expect HTTP 400 Bad Request status
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))  // Expect a problem response
+                .andExpect(jsonPath("$.detail").value("The title must not be longer than 255 characters"));
+    }
+}
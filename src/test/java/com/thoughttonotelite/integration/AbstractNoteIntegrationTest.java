@@ -0,0 +1,260 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import com.thoughttonotelite.repository.NoteRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests of the notes API, run against every storage backend.
+ * <p>
+ * The application is started on a random port and the API is exercised over HTTP, through the controller
+ * and {@code NoteService} down to whichever {@link NoteRepository} the subclass configures: PostgreSQL in
+ * {@link NoteIntegrationTest}, the embedded storage engine in {@link EmbeddedStorageIntegrationTest}. A
+ * second user, {@code otherUser}, checks that notes are only visible to the user who created them.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public abstract class AbstractNoteIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    protected TestRestTemplate restTemplate;
+
+    @Autowired
+    protected NoteRepository noteRepository;
+
+    @DynamicPropertySource
+    static void configureUsers(DynamicPropertyRegistry registry) {
+        registry.add("notes.security.users", () -> "otherUser:otherPassword");
+    }
+
+    @Test
+    public void testCreateAndRetrieveNote() {
+        // Ensure the database is clean before the test
+        noteRepository.deleteAll();
+
+        // Create a new Note object
+        Note note = new Note();
+        note.setTitle("Integration Test Note");
+        note.setContent("Content for integration test.");
+
+        // Send POST request to create the note
+        ResponseEntity<Note> postResponse = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class);
+        assertThat(postResponse.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Note createdNote = postResponse.getBody();
+        assertThat(createdNote).isNotNull();
+        assertThat(createdNote.getId()).isNotNull();
+        assertThat(createdNote.getTitle()).isEqualTo("Integration Test Note");
+        assertThat(createdNote.getCreatedAt()).isNotNull();  // Verify that timestamps are set on save
+
+        // Send GET request to retrieve the created note
+        ResponseEntity<Note> getResponse = restTemplate.exchange(
+                createURL("/api/notes/" + createdNote.getId()), HttpMethod.GET, new HttpEntity<>(headers()), Note.class);
+        assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Note retrievedNote = getResponse.getBody();
+        assertThat(retrievedNote).isNotNull();
+        assertThat(retrievedNote.getTitle()).isEqualTo("Integration Test Note");
+        assertThat(retrievedNote.getContent()).isEqualTo("Content for integration test.");
+    }
+
+    @Test
+    public void testUpdateAndSearchNote() {
+        Note note = new Note();
+        note.setTitle("Searchable Test Note");
+        note.setContent("Content before the update.");
+        Long id = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class).getBody().getId();
+
+        note.setTitle("Searchable Test Note, updated");
+        note.setContent("Content after the update.");
+        ResponseEntity<Note> putResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.PUT, new HttpEntity<>(note, headers()), Note.class);
+        assertThat(putResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(putResponse.getBody().getContent()).isEqualTo("Content after the update.");
+
+        ResponseEntity<Note[]> searchResponse = restTemplate.exchange(
+                createURL("/api/notes/search?title=TEST NOTE, upd"), HttpMethod.GET, new HttpEntity<>(headers()), Note[].class);
+        assertThat(searchResponse.getBody()).extracting(Note::getId).containsExactly(id);  // Verify that the search ignores case
+        assertThat(restTemplate.exchange(createURL("/api/notes"), HttpMethod.GET, new HttpEntity<>(headers()), Note[].class).getBody())
+                .extracting(Note::getId).contains(id);
+    }
+
+    @Test
+    public void testUnknownNotesAreNotFound() {
+        // 0 is never assigned as an ID; the embedded engine uses it to mark empty index slots
+        for (long id : new long[]{0, 999_999}) {
+            ResponseEntity<String> getResponse = restTemplate.exchange(
+                    createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(headers()), String.class);
+            assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+            assertThat(getResponse.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_PROBLEM_JSON);
+
+            Note note = new Note();
+            note.setTitle("Never stored");
+            assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.PUT, new HttpEntity<>(note, headers()), String.class)
+                    .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+            assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(headers()), String.class)
+                    .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+            assertThat(restTemplate.exchange(createURL("/api/notes/" + id + "/restore"), HttpMethod.POST, new HttpEntity<>(headers()), String.class)
+                    .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+            assertThat(restTemplate.exchange(createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers()), String.class)
+                    .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @Test
+    public void testStreamNoteContentInRanges() {
+        // Create a note whose content spans several stream chunks and contains multi-byte characters
+        String content = "Zeile äöü 😀\n".repeat(100_000);
+        Note note = new Note();
+        note.setTitle("Large Note");
+        note.setContent(content);
+        note.setOwner("yourUsername");
+        Long id = noteRepository.save(note).getId();
+        byte[] expected = content.getBytes(StandardCharsets.UTF_8);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth("yourUsername", "yourPassword");
+
+        // Retrieve the whole content
+        ResponseEntity<byte[]> fullResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertThat(fullResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(fullResponse.getBody()).isEqualTo(expected);
+
+        // Retrieve a range crossing a chunk boundary
+        headers.setRange(List.of(HttpRange.createByteRange(1_048_000, 1_049_999)));
+        ResponseEntity<byte[]> rangeResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertThat(rangeResponse.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(rangeResponse.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes 1048000-1049999/" + expected.length);
+        assertThat(rangeResponse.getBody()).isEqualTo(Arrays.copyOfRange(expected, 1_048_000, 1_050_000));
+    }
+
+    @Test
+    public void testDeleteRestoreAndPurgeNote() {
+        Note note = new Note();
+        note.setTitle("Deleted Note");
+        note.setContent("Content of a deleted note.");
+        note.setOwner("yourUsername");
+        Long id = noteRepository.save(note).getId();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth("yourUsername", "yourPassword");
+
+        // Delete the note; it is no longer found, but it is kept until it is purged
+        ResponseEntity<Void> deleteResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+        assertThat(deleteResponse.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        ResponseEntity<String> getResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(getResponse.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_PROBLEM_JSON);
+        assertThat(getResponse.getBody()).contains("\"detail\":\"Note not found with id " + id + "\"");
+        ResponseEntity<String> contentResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(contentResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(noteRepository.findByOwnerOrderById("yourUsername")).extracting(Note::getId).doesNotContain(id);
+
+        // Restore it with its content
+        ResponseEntity<Note> restoreResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/restore"), HttpMethod.POST, new HttpEntity<>(headers), Note.class);
+        assertThat(restoreResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(restoreResponse.getBody().getTitle()).isEqualTo("Deleted Note");
+        contentResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(contentResponse.getBody()).isEqualTo("Content of a deleted note.");
+
+        // Delete it again and purge it; it can no longer be restored. Notes deleted by other tests of the
+        // suite are purged along with it.
+        restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+        assertThat(noteRepository.purgeDeletedBefore(LocalDateTime.now().plusMinutes(1), 100)).isPositive();
+        restoreResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/restore"), HttpMethod.POST, new HttpEntity<>(headers), Note.class);
+        assertThat(restoreResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void testGetNotesByIds() {
+        List<Long> ids = new ArrayList<>();
+        for (String owner : List.of("yourUsername", "yourUsername", "yourUsername", "someoneElse")) {
+            Note note = new Note();
+            note.setTitle("Dashboard note " + ids.size());
+            note.setContent("Content " + ids.size());
+            note.setOwner(owner);
+            ids.add(noteRepository.save(note).getId());
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        restTemplate.exchange(createURL("/api/notes/" + ids.get(1)), HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+
+        // Request the notes out of order, together with a deleted note, a note of another user and an unknown ID
+        String requested = ids.get(2) + "," + ids.get(3) + "," + ids.get(0) + ",999999," + ids.get(1);
+        ResponseEntity<NoteBatch> response = restTemplate.exchange(
+                createURL("/api/notes?ids=" + requested), HttpMethod.GET, new HttpEntity<>(headers), NoteBatch.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().notes()).extracting(Note::getId).containsExactly(ids.get(2), ids.get(0));
+        assertThat(response.getBody().notes()).extracting(Note::getContent).containsExactly("Content 2", "Content 0");
+        assertThat(response.getBody().missing()).containsExactly(ids.get(3), 999999L, ids.get(1));
+    }
+
+    @Test
+    public void testNotesAreOnlyVisibleToTheirOwner() {
+        HttpHeaders other = headers();
+        other.setBasicAuth("otherUser", "otherPassword");
+
+        Note note = new Note();
+        note.setTitle("Private Note");
+        note.setContent("Only for its owner.");
+        Long id = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class).getBody().getId();
+        restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(headers()), Note.class);  // Cache the note for its owner
+
+        // Verify that the other user can neither read, list, search, stream, update nor delete the note
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(other), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(restTemplate.exchange(createURL("/api/notes"), HttpMethod.GET, new HttpEntity<>(other), Note[].class).getBody())
+                .extracting(Note::getId).doesNotContain(id);
+        assertThat(restTemplate.exchange(createURL("/api/notes/search?title=Private"), HttpMethod.GET, new HttpEntity<>(other), Note[].class).getBody())
+                .isEmpty();
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(other), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.PUT, new HttpEntity<>(note, other), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(other), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+        // Verify that the owner still sees the note, unchanged
+        ResponseEntity<Note> ownerResponse = restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(headers()), Note.class);
+        assertThat(ownerResponse.getBody().getContent()).isEqualTo("Only for its owner.");
+    }
+
+    protected static HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        return headers;
+    }
+
+    // Helper method to construct the full URL for API requests
+    protected String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
@@ -0,0 +1,48 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.storage.EmbeddedNoteRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@code embedded} profile.
+ * <p>
+ * The application is started without a database, with its notes stored by {@link EmbeddedNoteRepository}
+ * in a temporary directory, and the whole {@link AbstractNoteIntegrationTest} suite is run against it as
+ * against PostgreSQL. Small segments make the suite's notes span several segment files.
+ * </p>
+ */
+@ActiveProfiles("embedded")
+public class EmbeddedStorageIntegrationTest extends AbstractNoteIntegrationTest {
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("notes.embedded.path", Files.createTempDirectory("embedded-notes")::toString);
+        registry.add("notes.embedded.segment-size", () -> 65536);
+    }
+
+    @Test
+    public void testEmbeddedRepositoryReplacesJpa() {
+        assertThat(noteRepository).isInstanceOf(EmbeddedNoteRepository.class);
+
+        Note note = new Note();
+        note.setTitle("Embedded Test Note");
+        note.setContent("Content stored in the embedded log.");
+        Long id = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class).getBody().getId();
+
+        // Verify that a deleted note is gone from the log's view, not only from the API
+        ResponseEntity<Void> deleteResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(headers()), Void.class);
+        assertThat(deleteResponse.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(noteRepository.existsById(id)).isFalse();
+    }
+}
@@ -0,0 +1,174 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.service.NoteBodyDeduplicationJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for content-addressed note bodies.
+ * <p>
+ * Notes with the same content are created through the API and must share one body whose reference count
+ * follows the notes through updates and purges. Bodies saved without a hash must be merged by the
+ * background job.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class NoteDeduplicationIntegrationTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("integrationdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteBodyDeduplicationJob deduplicationJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresqlContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresqlContainer::getUsername);
+        registry.add("spring.datasource.password", postgresqlContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Test
+    public void testNotesWithSameContentShareOneBody() {
+        String template = "## Incident report\n\nSummary:\nImpact:\nTimeline:\n".repeat(200);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(create("Incident " + i, template));
+        }
+
+        // Verify that the five notes reference one body, counting five references
+        assertThat(bodyIds(ids)).hasSize(1);
+        Long shared = bodyIds(ids).get(0);
+        assertThat(refCount(shared)).isEqualTo(5);
+
+        // Verify that rewriting the same title and content writes nothing
+        LocalDateTime updatedAt = noteRepository.findById(ids.get(0)).orElseThrow().getUpdatedAt();
+        Note unchanged = update(ids.get(0), "Incident 0", template);
+        assertThat(unchanged.getUpdatedAt()).isEqualTo(updatedAt);
+        assertThat(refCount(shared)).isEqualTo(5);
+
+        // Verify that new content gets its own body and releases the shared one
+        update(ids.get(1), "Incident 1", "Resolved.");
+        assertThat(refCount(shared)).isEqualTo(4);
+        assertThat(content(ids.get(1))).isEqualTo("Resolved.");
+        assertThat(content(ids.get(2))).isEqualTo(template);
+
+        // Verify that purged notes release their references, and that the body goes with the last one
+        for (Long id : ids) {
+            restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(headers()), Void.class);
+        }
+        noteRepository.purgeDeletedBefore(LocalDateTime.now().plusMinutes(1), 2);
+        assertThat(refCount(shared)).isPositive();
+        noteRepository.purgeDeletedBefore(LocalDateTime.now().plusMinutes(1), 100);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM note_bodies WHERE id = ?", Integer.class, shared)).isZero();
+    }
+
+    @Test
+    public void testBodiesSavedWithoutHashAreMerged() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // Saving through the repository bypasses the body store, like notes saved before content addressing
+            Note note = new Note();
+            note.setOwner("yourUsername");
+            note.setTitle("Legacy " + i);
+            note.setContent("Legacy content shared by three notes.");
+            ids.add(noteRepository.save(note).getId());
+        }
+        assertThat(bodyIds(ids)).hasSize(3);
+
+        deduplicationJob.deduplicateExistingBodies();
+
+        // Verify that the notes now share the body of the first one, with their content intact
+        assertThat(bodyIds(ids)).hasSize(1);
+        assertThat(refCount(bodyIds(ids).get(0))).isEqualTo(3);
+        for (Long id : ids) {
+            assertThat(content(id)).isEqualTo("Legacy content shared by three notes.");
+        }
+
+        // Verify that a note created later with the same content joins the merged body
+        Long created = create("Legacy 3", "Legacy content shared by three notes.");
+        ids.add(created);
+        assertThat(bodyIds(ids)).hasSize(1);
+        assertThat(refCount(bodyIds(ids).get(0))).isEqualTo(4);
+    }
+
+    private List<Long> bodyIds(List<Long> noteIds) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT body_id FROM notes WHERE id = ANY(?)", Long.class,
+                (Object) noteIds.toArray(Long[]::new));
+    }
+
+    private int refCount(Long bodyId) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM note_bodies WHERE id = ?", Integer.class, bodyId);
+    }
+
+    private Long create(String title, String content) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(content);
+        ResponseEntity<Note> response = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        return response.getBody().getId();
+    }
+
+    private Note update(Long id, String title, String content) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(content);
+        ResponseEntity<Note> response = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.PUT, new HttpEntity<>(note, headers()), Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody();
+    }
+
+    private String content(Long id) {
+        return restTemplate.exchange(createURL("/api/notes/" + id + "/content"), HttpMethod.GET,
+                new HttpEntity<>(headers()), String.class).getBody();
+    }
+
+    private static HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        return headers;
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
@@ -0,0 +1,119 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for notes owned by users, with the {@code notes} table partitioned by owner.
+ * <p>
+ * Two users are configured, {@code yourUsername} and {@code otherUser}. These tests verify that the table
+ * was converted into hash partitions on startup, and that each user only reads, lists, searches, streams,
+ * updates and deletes their own notes.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class NoteOwnershipIntegrationTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("integrationdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresqlContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresqlContainer::getUsername);
+        registry.add("spring.datasource.password", postgresqlContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        registry.add("notes.security.users", () -> "otherUser:otherPassword");
+        registry.add("notes.storage.partitioning.partitions", () -> 4);
+    }
+
+    @Test
+    public void testTableIsPartitionedByOwner() {
+        // Verify that the notes table was replaced by a table with four hash partitions
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_inherits WHERE inhparent = 'notes'::regclass", Integer.class)).isEqualTo(4);
+
+        // Verify that the sample notes were kept, given to the default user, and placed in a single partition
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM notes WHERE owner = 'yourUsername'", Integer.class)).isPositive();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM notes WHERE owner IS NULL", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(DISTINCT tableoid) FROM notes WHERE owner = 'yourUsername'", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    public void testNotesAreOnlyVisibleToTheirOwner() {
+        HttpHeaders owner = headers("yourUsername", "yourPassword");
+        HttpHeaders other = headers("otherUser", "otherPassword");
+
+        Note note = new Note();
+        note.setTitle("Private Note");
+        note.setContent("Only for its owner.");
+        ResponseEntity<Note> created = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, owner), Note.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Long id = created.getBody().getId();
+        restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(owner), Note.class);  // Cache the note for its owner
+
+        // Verify that the other user can neither read, list, search, stream, update nor delete the note
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(other), String.class)
+                .getStatusCode().is2xxSuccessful()).isFalse();
+        assertThat(restTemplate.exchange(createURL("/api/notes"), HttpMethod.GET, new HttpEntity<>(other), Note[].class).getBody())
+                .isEmpty();
+        assertThat(restTemplate.exchange(createURL("/api/notes/search?title=Private"), HttpMethod.GET, new HttpEntity<>(other), Note[].class).getBody())
+                .isEmpty();
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(other), String.class)
+                .getStatusCode().is2xxSuccessful()).isFalse();
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.PUT, new HttpEntity<>(note, other), String.class)
+                .getStatusCode().is2xxSuccessful()).isFalse();
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(other), String.class)
+                .getStatusCode().is2xxSuccessful()).isFalse();
+
+        // Verify that the other user's own notes are theirs, and that the owner still has the note unchanged
+        Note otherNote = new Note();
+        otherNote.setTitle("Private Note of another user");
+        Long otherId = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(otherNote, other), Note.class).getBody().getId();
+        assertThat(otherId).isGreaterThan(id);  // IDs stay unique across partitions
+        assertThat(restTemplate.exchange(createURL("/api/notes"), HttpMethod.GET, new HttpEntity<>(other), Note[].class).getBody())
+                .extracting(Note::getId).containsExactly(otherId);
+        ResponseEntity<Note> read = restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(owner), Note.class);
+        assertThat(read.getBody().getTitle()).isEqualTo("Private Note");
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(owner), String.class)
+                .getBody()).isEqualTo("Only for its owner.");
+    }
+
+    private static HttpHeaders headers(String username, String password) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth(username, password);
+        return headers;
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
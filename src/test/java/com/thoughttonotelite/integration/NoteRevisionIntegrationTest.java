@@ -0,0 +1,175 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteRevision;
+import com.thoughttonotelite.model.NoteRevisionSummary;
+import com.thoughttonotelite.model.NoteVersion;
+import com.thoughttonotelite.repository.NoteRevisionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the revision history of notes.
+ * <p>
+ * A large note is edited many times through the API, and every revision is rebuilt and compared with the
+ * version that was saved. The stored history must be a fraction of the size of full copies, and concurrent
+ * updates of one note must still produce a history from which every revision can be rebuilt.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class NoteRevisionIntegrationTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("integrationdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NoteRevisionRepository revisionRepository;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresqlContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresqlContainer::getUsername);
+        registry.add("spring.datasource.password", postgresqlContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("notes.revisions.snapshot-interval", () -> 16);
+    }
+
+    @Test
+    public void testEveryRevisionOfManyEditsIsRebuilt() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 200_000; i++) {
+            content.append("Paragraph ").append(i).append(": some text that is edited over time.\n");
+        }
+        List<String> versions = new ArrayList<>();
+        versions.add(content.toString());
+        Long id = create("Edited Note", content.toString());
+
+        // Verify that a note that was never updated is its own first revision
+        assertThat(revisions(id)).extracting(NoteRevisionSummary::revision).containsExactly(1);
+
+        for (int edit = 1; edit <= 100; edit++) {
+            int position = (edit * 7919) % content.length();
+            content.insert(position, "[edit " + edit + "]");
+            versions.add(content.toString());
+            update(id, "Edited Note " + edit, content.toString());
+        }
+
+        List<NoteRevisionSummary> revisions = revisions(id);
+        assertThat(revisions).extracting(NoteRevisionSummary::revision)
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, 101).boxed().toList());
+        for (int revision = 1; revision <= 101; revision++) {
+            NoteVersion version = revision(id, revision).getBody();
+            assertThat(version.content()).isEqualTo(versions.get(revision - 1));
+            assertThat(version.title()).isEqualTo(revision == 1 ? "Edited Note" : "Edited Note " + (revision - 1));
+        }
+        assertThat(revision(id, 102).getStatusCode().is2xxSuccessful()).isFalse();
+
+        // Verify that the history takes less than a tenth of the space of 101 full copies
+        long stored = revisionRepository.findAll().stream()
+                .filter(revision -> revision.getNoteId().equals(id))
+                .mapToLong(revision -> revision.getData().length)
+                .sum();
+        assertThat(stored).isLessThan(versions.get(100).length() * 101L / 10);
+        // Verify that snapshots bound the chains to rebuild
+        assertThat(revisionRepository.findChain(id, 101)).hasSizeLessThanOrEqualTo(16)
+                .first().extracting(NoteRevision::isSnapshot).isEqualTo(true);
+    }
+
+    @Test
+    public void testConcurrentUpdatesKeepHistoryConsistent() {
+        String base = "Shared base content that every concurrent update keeps.\n".repeat(200);
+        Long id = create("Concurrent Note", base);
+
+        Set<String> saved = new HashSet<>();
+        saved.add(base);
+        List<CompletableFuture<Void>> updates = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            List<String> contents = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                contents.add(base + "update " + i + " of thread " + thread);
+            }
+            saved.addAll(contents);
+            updates.add(CompletableFuture.runAsync(() -> contents.forEach(c -> update(id, "Concurrent Note", c))));
+        }
+        updates.forEach(CompletableFuture::join);
+
+        assertThat(revisions(id)).hasSize(41);
+        for (int revision = 1; revision <= 41; revision++) {
+            // Verify that every revision rebuilds to a version that was actually saved
+            assertThat(saved).contains(revision(id, revision).getBody().content());
+        }
+        ResponseEntity<String> current = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers()), String.class);
+        assertThat(revision(id, 41).getBody().content()).isEqualTo(current.getBody());
+    }
+
+    private Long create(String title, String content) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(content);
+        ResponseEntity<Note> response = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        return response.getBody().getId();
+    }
+
+    private void update(Long id, String title, String content) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(content);
+        ResponseEntity<Note> response = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.PUT, new HttpEntity<>(note, headers()), Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private List<NoteRevisionSummary> revisions(Long id) {
+        ResponseEntity<NoteRevisionSummary[]> response = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/revisions"), HttpMethod.GET, new HttpEntity<>(headers()), NoteRevisionSummary[].class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return List.of(response.getBody());
+    }
+
+    private ResponseEntity<NoteVersion> revision(Long id, int revision) {
+        return restTemplate.exchange(createURL("/api/notes/" + id + "/revisions/" + revision),
+                HttpMethod.GET, new HttpEntity<>(headers()), NoteVersion.class);
+    }
+
+    private static HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        return headers;
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
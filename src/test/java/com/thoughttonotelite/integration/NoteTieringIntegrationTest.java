@@ -0,0 +1,156 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.service.NoteTieringJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for moving old notes into the archive and back.
+ * <p>
+ * Notes are created through the API and aged in the database. The tiering job must move them out of the
+ * {@code notes} table, releasing their bodies, while they can still be read, listed and searched through the
+ * API. Updating or deleting an archived note must move it back into the database first.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class NoteTieringIntegrationTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("integrationdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NoteTieringJob tieringJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("spring.datasource.url", postgresqlContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresqlContainer::getUsername);
+        registry.add("spring.datasource.password", postgresqlContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("notes.security.users", () -> "otherUser:otherPassword");
+        registry.add("notes.tiering.enabled", () -> true);
+        registry.add("notes.tiering.min-age-days", () -> 30);
+        registry.add("notes.tiering.path", Files.createTempDirectory("note-archive")::toString);
+    }
+
+    @Test
+    public void testArchivedNotesAreReadAndPromoted() {
+        String content = "Minutes of the planning meeting äöü 😀\n".repeat(1_000);
+        Long old = create("Old meeting", content);
+        Long recent = create("Recent meeting", "Still in use.");
+        age(old);
+
+        assertThat(tieringJob.archiveOldNotes()).isEqualTo(1);
+
+        // Verify that the old note and its body left the database, and the recent note stayed
+        assertThat(countInDatabase(old)).isZero();
+        assertThat(countInDatabase(recent)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM note_bodies", Integer.class)).isEqualTo(1);
+
+        // Verify that the archived note is still found by ID, listed, searched and streamed
+        ResponseEntity<Note> archived = restTemplate.exchange(createURL("/api/notes/" + old), HttpMethod.GET,
+                new HttpEntity<>(headers()), Note.class);
+        assertThat(archived.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(archived.getBody().getTitle()).isEqualTo("Old meeting");
+        assertThat(archived.getBody().getContent()).isEqualTo(content);
+        assertThat(ids("/api/notes")).containsExactly(old, recent);
+        assertThat(ids("/api/notes/search?title=old")).containsExactly(old);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + old + "/content"), HttpMethod.GET,
+                new HttpEntity<>(headers()), String.class).getBody()).isEqualTo(content);
+
+        // Verify that the archived note is not visible to other users
+        HttpHeaders otherUser = headers();
+        otherUser.setBasicAuth("otherUser", "otherPassword");
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + old), HttpMethod.GET,
+                new HttpEntity<>(otherUser), String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+        // Verify that updating the archived note moves it back into the database under its ID
+        Note note = new Note();
+        note.setTitle("Old meeting, revisited");
+        note.setContent(content);
+        ResponseEntity<Note> updated = restTemplate.exchange(createURL("/api/notes/" + old), HttpMethod.PUT,
+                new HttpEntity<>(note, headers()), Note.class);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(countInDatabase(old)).isEqualTo(1);
+        assertThat(ids("/api/notes")).containsExactly(old, recent);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + old), HttpMethod.GET,
+                new HttpEntity<>(headers()), Note.class).getBody().getTitle()).isEqualTo("Old meeting, revisited");
+
+        // Verify that an archived note can be deleted, and then restored from the database
+        age(old);
+        assertThat(tieringJob.archiveOldNotes()).isEqualTo(1);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + old), HttpMethod.DELETE,
+                new HttpEntity<>(headers()), Void.class).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + old), HttpMethod.GET,
+                new HttpEntity<>(headers()), String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(ids("/api/notes")).containsExactly(recent);
+        assertThat(restTemplate.exchange(createURL("/api/notes/" + old + "/restore"), HttpMethod.POST,
+                new HttpEntity<>(headers()), Note.class).getBody().getContent()).isEqualTo(content);
+    }
+
+    // Moves the last update of a note far into the past
+    private void age(Long id) {
+        jdbcTemplate.update("UPDATE notes SET updated_at = ? WHERE id = ?", LocalDateTime.now().minusDays(400), id);
+    }
+
+    private int countInDatabase(Long id) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM notes WHERE id = ?", Integer.class, id);
+    }
+
+    private Long create(String title, String content) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(content);
+        ResponseEntity<Note> response = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers()), Note.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        return response.getBody().getId();
+    }
+
+    private Long[] ids(String uri) {
+        Note[] notes = restTemplate.exchange(createURL(uri), HttpMethod.GET, new HttpEntity<>(headers()), Note[].class).getBody();
+        return Arrays.stream(notes).map(Note::getId).toArray(Long[]::new);
+    }
+
+    private static HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        return headers;
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
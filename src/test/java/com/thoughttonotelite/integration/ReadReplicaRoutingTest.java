@@ -0,0 +1,222 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.config.ReplicaRoutingDataSource;
+import com.thoughttonotelite.model.Note;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for routing read-only transactions to a read replica.
+ * <p>
+ * A PostgreSQL primary and a streaming replica cloned from it with {@code pg_basebackup} run in two
+ * containers. These tests verify that read-only transactions run on the replica and all others on the
+ * primary, that a note can be read back right after it was written, that the writes of one user do not send
+ * the reads of another to the primary, and that reads fall back to the primary when the replica goes away.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReadReplicaRoutingTest {
+
+    private static final Network NETWORK = Network.newNetwork();
+
+    @Container
+    public static PostgreSQLContainer<?> primaryContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("integrationdb")
+            .withUsername("postgres")
+            .withPassword("postgres")
+            .withNetwork(NETWORK)
+            .withNetworkAliases("primary")
+            // Allow the replica to stream the write-ahead log
+            .withCopyToContainer(Transferable.of("echo 'host replication all all trust' >> \"$PGDATA/pg_hba.conf\""),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    public static GenericContainer<?> replicaContainer = new GenericContainer<>("postgres:16")
+            .withNetwork(NETWORK)
+            .dependsOn(primaryContainer)
+            .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres"))
+            .withCommand("bash", "-c", """
+                    until pg_basebackup -h primary -U postgres -D /tmp/replica -R -X stream; do sleep 1; done
+                    chmod 0700 /tmp/replica
+                    exec postgres -D /tmp/replica
+                    """)
+            .withExposedPorts(5432)
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primaryContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", primaryContainer::getUsername);
+        registry.add("spring.datasource.password", primaryContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        registry.add("notes.datasource.replicas.urls", () -> "jdbc:postgresql://" + replicaContainer.getHost() + ":"
+                + replicaContainer.getMappedPort(5432) + "/integrationdb");
+        registry.add("notes.datasource.replicas.check-interval-ms", () -> 200);
+    }
+
+    @Test
+    @Order(1)
+    public void testReadOnlyTransactionsRunOnReplica() throws InterruptedException {
+        // Verify that the data source routes between primary and replica
+        assertThat(dataSource).isInstanceOf(ReplicaRoutingDataSource.class);
+        awaitUsableReplicas(1);
+
+        assertThat(isInRecovery(true)).isTrue();  // Verify that a read-only transaction runs on the replica
+        assertThat(isInRecovery(false)).isFalse();  // Verify that other transactions run on the primary
+    }
+
+    @Test
+    @Order(2)
+    public void testNotesAreReadableRightAfterWriting() throws InterruptedException {
+        awaitUsableReplicas(1);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+
+        for (int i = 0; i < 50; i++) {
+            Note note = new Note();
+            note.setTitle("Replica Note " + i);
+            note.setContent("x".repeat(10_000));
+            Long id = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers), Note.class).getBody().getId();
+
+            ResponseEntity<Note> getResponse = restTemplate.exchange(
+                    createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(headers), Note.class);
+            // Verify that the read sees the write, although it may be served by the replica
+            assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(getResponse.getBody().getTitle()).isEqualTo("Replica Note " + i);
+        }
+    }
+
+    @Test
+    @Order(3)
+    public void testOnlyTheWritingUserWaitsForReplay() throws Exception {
+        awaitUsableReplicas(1);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS replay_probe (id serial PRIMARY KEY)");
+        awaitReplay();
+        try (Connection replica = connectToReplica();
+             Statement statement = replica.createStatement()) {
+            // Stop the replica from replaying, so that it falls behind the next write
+            statement.execute("SELECT pg_wal_replay_pause()");
+            try {
+                runAs("writer", () -> new TransactionTemplate(transactionManager).execute(
+                        status -> jdbcTemplate.update("INSERT INTO replay_probe DEFAULT VALUES")));
+
+                // Verify that the writer reads from the primary, and everyone else still from the replica
+                assertThat(runAs("writer", () -> isInRecovery(true))).isFalse();
+                assertThat(runAs("reader", () -> isInRecovery(true))).isTrue();
+            } finally {
+                statement.execute("SELECT pg_wal_replay_resume()");
+            }
+        }
+    }
+
+    @Test
+    @Order(4)
+    public void testReadsFallBackToPrimaryWithoutReplica() throws InterruptedException {
+        replicaContainer.stop();
+        awaitUsableReplicas(0);
+
+        // Verify that the failed check took the replica out of rotation
+        assertThat(((ReplicaRoutingDataSource) dataSource).getUsableReplicaCount()).isZero();
+        assertThat(isInRecovery(true)).isFalse();  // Verify that the read-only transaction ran on the primary
+    }
+
+    private boolean isInRecovery(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+    }
+
+    private static <T> T runAs(String user, Supplier<T> action) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+        try {
+            return action.get();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // Waits until the replica has replayed everything written so far, so that no earlier write holds back reads
+    private void awaitReplay() throws InterruptedException, SQLException {
+        String primaryLsn = jdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+        try (Connection replica = connectToReplica();
+             Statement statement = replica.createStatement()) {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (System.currentTimeMillis() < deadline) {
+                try (ResultSet rs = statement.executeQuery("SELECT pg_last_wal_replay_lsn() >= '" + primaryLsn + "'::pg_lsn")) {
+                    rs.next();
+                    if (rs.getBoolean(1)) {
+                        break;
+                    }
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static Connection connectToReplica() throws SQLException {
+        return DriverManager.getConnection("jdbc:postgresql://" + replicaContainer.getHost() + ":"
+                + replicaContainer.getMappedPort(5432) + "/integrationdb", "postgres", "postgres");
+    }
+
+    private void awaitUsableReplicas(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (((ReplicaRoutingDataSource) dataSource).getUsableReplicaCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
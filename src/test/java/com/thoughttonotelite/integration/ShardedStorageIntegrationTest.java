@@ -0,0 +1,248 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.storage.ShardRebalanceJob;
+import com.thoughttonotelite.storage.ShardMap;
+import com.thoughttonotelite.storage.ShardedNoteRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@code sharded} profile.
+ * <p>
+ * Three PostgreSQL containers serve as shards. The notes API is exercised over HTTP with notes spread over
+ * all shards, and further sets of databases on the same containers are used to grow deployments from two
+ * to three shards while their notes are being listed, or updated by another instance.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("sharded")
+@Testcontainers
+public class ShardedStorageIntegrationTest {
+
+    @Container
+    public static PostgreSQLContainer<?> shard0 = shardContainer();
+
+    @Container
+    public static PostgreSQLContainer<?> shard1 = shardContainer();
+
+    @Container
+    public static PostgreSQLContainer<?> shard2 = shardContainer();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    private static PostgreSQLContainer<?> shardContainer() {
+        return new PostgreSQLContainer<>("postgres:16")
+                .withDatabaseName("integrationdb")
+                .withUsername("postgres")
+                .withPassword("postgres");
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("notes.sharding.urls", () -> String.join(",",
+                shard0.getJdbcUrl(), shard1.getJdbcUrl(), shard2.getJdbcUrl()));
+        registry.add("notes.sharding.fan-out-threads", () -> 4);
+    }
+
+    @Test
+    public void testNotesAreSpreadOverShardsAndMergedInLists() {
+        // Verify that the sharded repository replaces the JPA repository
+        assertThat(noteRepository).isInstanceOf(ShardedNoteRepository.class);
+        ShardedNoteRepository repository = (ShardedNoteRepository) noteRepository;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Note note = new Note();
+            note.setTitle("Sharded Note " + i);
+            note.setContent("Content " + i);
+            ResponseEntity<Note> response = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers), Note.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            ids.add(response.getBody().getId());
+        }
+        // Verify that the notes were written to all three shards
+        assertThat(ids.stream().map(repository::shardOf).distinct()).hasSize(3);
+
+        // Verify that the list merges the shards in ID order
+        ResponseEntity<Note[]> listResponse = restTemplate.exchange(createURL("/api/notes"), HttpMethod.GET, new HttpEntity<>(headers), Note[].class);
+        List<Long> listed = Stream.of(listResponse.getBody()).map(Note::getId).toList();
+        assertThat(listed).containsAll(ids).isSorted();
+
+        ResponseEntity<Note[]> searchResponse = restTemplate.exchange(
+                createURL("/api/notes/search?title=sharded note 1"), HttpMethod.GET, new HttpEntity<>(headers), Note[].class);
+        assertThat(searchResponse.getBody()).extracting(Note::getId).containsExactly(ids.get(1), ids.get(10), ids.get(11));
+
+        // Verify that notes from all shards are fetched by ID in the requested order
+        List<Long> requested = List.of(ids.get(7), ids.get(2), -1L, ids.get(9), ids.get(0));
+        ResponseEntity<NoteBatch> batchResponse = restTemplate.exchange(createURL("/api/notes?ids=" + requested.stream()
+                .map(String::valueOf).collect(Collectors.joining(","))), HttpMethod.GET, new HttpEntity<>(headers), NoteBatch.class);
+        assertThat(batchResponse.getBody().notes()).extracting(Note::getId).containsExactly(ids.get(7), ids.get(2), ids.get(9), ids.get(0));
+        assertThat(batchResponse.getBody().missing()).containsExactly(-1L);
+
+        Long id = ids.get(5);
+        ResponseEntity<String> contentResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id + "/content"), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(contentResponse.getBody()).isEqualTo("Content 5");
+
+        ResponseEntity<Void> deleteResponse = restTemplate.exchange(
+                createURL("/api/notes/" + id), HttpMethod.DELETE, new HttpEntity<>(headers), Void.class);
+        assertThat(deleteResponse.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(noteRepository.existsById(id)).isFalse();
+    }
+
+    @Test
+    public void testAddingShardMovesBucketsWhileNotesAreListed() throws Exception {
+        List<PostgreSQLContainer<?>> containers = List.of(shard0, shard1, shard2);
+        for (PostgreSQLContainer<?> container : containers) {
+            try (HikariDataSource admin = dataSource(container, container.getDatabaseName())) {
+                new JdbcTemplate(admin).execute("CREATE DATABASE reshard");
+            }
+        }
+
+        // A deployment with two shards, holding two notes in every bucket
+        ShardedNoteRepository twoShards = new ShardedNoteRepository(
+                List.of(dataSource(shard0, "reshard"), dataSource(shard1, "reshard")), 2);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2 * ShardMap.BUCKETS; i++) {
+            Note note = new Note();
+            note.setOwner("yourUsername");
+            note.setTitle("Note " + i);
+            note.setContent("Content " + i);
+            ids.add(twoShards.save(note).getId());
+        }
+        twoShards.destroy();
+
+        // The same deployment with a third shard added
+        ShardedNoteRepository threeShards = new ShardedNoteRepository(
+                List.of(dataSource(shard0, "reshard"), dataSource(shard1, "reshard"), dataSource(shard2, "reshard")), 2);
+        assertThat(threeShards.planRebalance()).hasSize(ShardMap.BUCKETS / 3);
+        ShardRebalanceJob job = new ShardRebalanceJob(threeShards, 8, 10);
+        CompletableFuture<Void> rebalancing = CompletableFuture.runAsync(() -> {
+            while (!threeShards.planRebalance().isEmpty()) {
+                job.rebalance();
+            }
+        });
+        // Verify that every list taken while buckets move has every note exactly once
+        while (!rebalancing.isDone()) {
+            assertThat(threeShards.findByOwnerOrderById("yourUsername")).extracting(Note::getId).containsExactlyElementsOf(ids);
+        }
+        rebalancing.get();
+
+        assertThat(threeShards.findByOwnerOrderById("yourUsername")).extracting(Note::getId).containsExactlyElementsOf(ids);
+        assertThat(threeShards.count()).isEqualTo(2 * ShardMap.BUCKETS);
+        assertThat(ids.stream().filter(id -> threeShards.shardOf(id) == 2).count()).isEqualTo(2L * (ShardMap.BUCKETS / 3));
+        for (Long id : ids) {
+            // Verify that every note is found on its new shard
+            assertThat(threeShards.findByIdAndOwner(id, "yourUsername")).isPresent();
+        }
+        threeShards.destroy();
+    }
+
+    @Test
+    public void testOtherInstanceKeepsWritingWhileBucketsMove() throws Exception {
+        List<PostgreSQLContainer<?>> containers = List.of(shard0, shard1, shard2);
+        for (PostgreSQLContainer<?> container : containers) {
+            try (HikariDataSource admin = dataSource(container, container.getDatabaseName())) {
+                new JdbcTemplate(admin).execute("CREATE DATABASE multiinstance");
+            }
+        }
+
+        // A deployment with two shards, holding a note in every bucket
+        ShardedNoteRepository twoShards = new ShardedNoteRepository(
+                List.of(dataSource(shard0, "multiinstance"), dataSource(shard1, "multiinstance")), 2);
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < ShardMap.BUCKETS; i++) {
+            Note note = new Note();
+            note.setOwner("yourUsername");
+            note.setTitle("Note " + i);
+            note.setContent("Content " + i);
+            notes.add(twoShards.save(note));
+        }
+        twoShards.destroy();
+
+        // Two instances of the same deployment with a third shard added, the first of which moves the buckets
+        ShardedNoteRepository mover = new ShardedNoteRepository(List.of(dataSource(shard0, "multiinstance"),
+                dataSource(shard1, "multiinstance"), dataSource(shard2, "multiinstance")), 2);
+        ShardedNoteRepository writer = new ShardedNoteRepository(List.of(dataSource(shard0, "multiinstance"),
+                dataSource(shard1, "multiinstance"), dataSource(shard2, "multiinstance")), 2);
+        ShardRebalanceJob job = new ShardRebalanceJob(mover, 8, 10);
+        CompletableFuture<Void> rebalancing = CompletableFuture.runAsync(() -> {
+            while (!mover.planRebalance().isEmpty()) {
+                job.rebalance();
+            }
+        });
+        // The second instance keeps updating every note while its copy of the catalog goes stale
+        int round = 0;
+        while (!rebalancing.isDone() || round == 0) {
+            round++;
+            for (Note note : notes) {
+                note.setTitle("Round " + round);
+                writer.save(note);
+            }
+        }
+        rebalancing.get();
+
+        // Verify that no write of the second instance was lost on a bucket's old shard
+        String lastTitle = "Round " + round;
+        assertThat(mover.findByOwnerOrderById("yourUsername")).hasSize(ShardMap.BUCKETS)
+                .extracting(Note::getTitle).containsOnly(lastTitle);
+        assertThat(writer.findByOwnerOrderById("yourUsername")).hasSize(ShardMap.BUCKETS)
+                .extracting(Note::getTitle).containsOnly(lastTitle);
+        for (Note note : notes) {
+            assertThat(writer.findByIdAndOwner(note.getId(), "yourUsername")).get()
+                    .extracting(Note::getTitle).isEqualTo(lastTitle);
+            // Verify that the second instance now routes the note to its new shard
+            assertThat(writer.shardOf(note.getId())).isEqualTo(mover.shardOf(note.getId()));
+        }
+        mover.destroy();
+        writer.destroy();
+    }
+
+    private static HikariDataSource dataSource(PostgreSQLContainer<?> container, String database) {
+        return (HikariDataSource) DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url("jdbc:postgresql://" + container.getHost() + ":" + container.getMappedPort(5432) + "/" + database)
+                .username(container.getUsername())
+                .password(container.getPassword())
+                .build();
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
@@ -0,0 +1,255 @@
+package com.thoughttonotelite.integration;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import com.thoughttonotelite.service.NoteContentCompressor;
+import com.thoughttonotelite.service.NoteStatsService;
+import com.thoughttonotelite.service.NoteWriteAheadLog;
+import com.thoughttonotelite.service.NoteWriteBehindQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for write-behind ingestion of new notes.
+ * <p>
+ * These tests run the application with {@code notes.ingestion.write-behind.enabled} set and verify that
+ * notes created in a concurrent burst get distinct IDs, can be read back immediately and all reach the
+ * database, and that notes left in the write-ahead log by a crashed process are inserted on startup. Notes
+ * the database would reject are refused before they are acknowledged, and notes it rejects anyway are moved
+ * to the dead-letter log without holding up the others.
+ * </p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class WriteBehindIngestionTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("integrationdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    private static final Path WAL_DIRECTORY = createTempDirectory();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private NoteContentCompressor contentCompressor;
+
+    @Autowired
+    private NoteStatsService statsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresqlContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresqlContainer::getUsername);
+        registry.add("spring.datasource.password", postgresqlContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop"); // Ensures a clean schema for each test
+        registry.add("notes.ingestion.write-behind.enabled", () -> "true");
+        registry.add("notes.ingestion.write-behind.batch-size", () -> "50");
+        registry.add("notes.ingestion.write-behind.wal-path", () -> WAL_DIRECTORY.resolve("ingestion.wal").toString());
+    }
+
+    private static Path createTempDirectory() {
+        try {
+            return Files.createTempDirectory("write-behind-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testBurstOfCreatesIsReadableAndWritten() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+
+        // Create 400 notes from 16 concurrent clients, reading each one back right after creating it
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String title = "Quick capture " + i;
+            futures.add(executor.submit(() -> {
+                Note note = new Note();
+                note.setTitle(title);
+                note.setContent("Captured in a burst");
+                ResponseEntity<Note> created = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers), Note.class);
+                assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                Long id = created.getBody().getId();
+                assertThat(ids.add(id)).isTrue();  // Every note gets its own ID
+
+                ResponseEntity<Note> read = restTemplate.exchange(createURL("/api/notes/" + id), HttpMethod.GET, new HttpEntity<>(headers), Note.class);
+                assertThat(read.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(read.getBody().getTitle()).isEqualTo(title);  // The client reads its own write
+                ResponseEntity<String> content = restTemplate.exchange(createURL("/api/notes/" + id + "/content"), HttpMethod.GET,
+                        new HttpEntity<>(headers), String.class);
+                assertThat(content.getBody()).isEqualTo("Captured in a burst");  // Also through the content endpoint
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Wait for the writer to insert every accepted note
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (noteRepository.findAllById(ids).size() < ids.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(noteRepository.findAllById(ids)).hasSize(400);
+    }
+
+    @Test
+    public void testNotesInWriteAheadLogAreRecoveredOnStartup() throws Exception {
+        // Record two notes in a write-ahead log, as a process that crashed before writing them would have
+        Path walPath = WAL_DIRECTORY.resolve("crashed.wal");
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT nextval(pg_get_serial_sequence('notes', 'id')) FROM generate_series(1, 2)", Long.class);
+        try (NoteWriteAheadLog log = new NoteWriteAheadLog(walPath, false)) {
+            for (Long id : ids) {
+                Note note = new Note();
+                note.setId(id);
+                note.setTitle("Recovered " + id);
+                note.setOwner("yourUsername");
+                note.setContent("Written before the crash");
+                note.setCreatedAt(now);
+                note.setUpdatedAt(now);
+                log.appendNote(note);
+            }
+        }
+
+        // Start a queue on that log, as the application does on startup
+        NoteWriteBehindQueue queue = new NoteWriteBehindQueue(jdbcTemplate, transactionTemplate, contentCompressor, statsService, eventPublisher,
+                true, 100, 50, 20, walPath, false, WAL_DIRECTORY.resolve("crashed-dead-letter.wal"), "yourUsername");
+        queue.run(null);
+        queue.destroy();
+
+        assertThat(noteRepository.findAllById(ids)).extracting(Note::getTitle)
+                .containsExactlyInAnyOrder("Recovered " + ids.get(0), "Recovered " + ids.get(1));
+        assertThat(noteRepository.findAllById(ids)).extracting(Note::getOwner).containsOnly("yourUsername");
+        assertThat(Files.size(walPath)).isZero();  // The log is emptied once its notes are written
+    }
+
+    @Test
+    public void testNotesWithoutOwnerInWriteAheadLogGetLegacyOwner() throws Exception {
+        // Record a note without an owner, as a version before notes had owners would have, after the ownership
+        // migration has already given the stored notes their owner
+        Path walPath = WAL_DIRECTORY.resolve("ownerless.wal");
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        Long id = jdbcTemplate.queryForObject("SELECT nextval(pg_get_serial_sequence('notes', 'id'))", Long.class);
+        try (NoteWriteAheadLog log = new NoteWriteAheadLog(walPath, false)) {
+            Note note = new Note();
+            note.setId(id);
+            note.setTitle("Written before owners");
+            note.setContent("Recovered after the migration");
+            note.setCreatedAt(now);
+            note.setUpdatedAt(now);
+            log.appendNote(note);
+        }
+
+        NoteWriteBehindQueue queue = new NoteWriteBehindQueue(jdbcTemplate, transactionTemplate, contentCompressor, statsService, eventPublisher,
+                true, 100, 50, 20, walPath, false, WAL_DIRECTORY.resolve("ownerless-dead-letter.wal"), "legacyUser");
+        queue.run(null);
+        queue.destroy();
+
+        assertThat(noteRepository.findById(id)).get().extracting(Note::getOwner).isEqualTo("legacyUser");
+    }
+
+    @Test
+    public void testInvalidNoteIsRejectedBeforeItIsAccepted() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        Note note = new Note();
+        note.setTitle("x".repeat(256));
+        note.setContent("Too long a title for the database");
+
+        ResponseEntity<String> response = restTemplate.postForEntity(createURL("/api/notes"), new HttpEntity<>(note, headers), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).contains("255 characters");
+    }
+
+    @Test
+    public void testRejectedNotesAreMovedToDeadLetterLog() throws Exception {
+        // Record a note the database cannot store between two valid ones, as a client of an older version might have
+        Path walPath = WAL_DIRECTORY.resolve("poisoned.wal");
+        Path deadLetterPath = WAL_DIRECTORY.resolve("poisoned-dead-letter.wal");
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT nextval(pg_get_serial_sequence('notes', 'id')) FROM generate_series(1, 3)", Long.class);
+        try (NoteWriteAheadLog log = new NoteWriteAheadLog(walPath, false)) {
+            for (Long id : ids) {
+                Note note = new Note();
+                note.setId(id);
+                note.setTitle(id.equals(ids.get(1)) ? "x".repeat(300) : "Valid " + id);
+                note.setOwner("yourUsername");
+                note.setContent("Written before the crash");
+                note.setCreatedAt(now);
+                note.setUpdatedAt(now);
+                log.appendNote(note);
+            }
+        }
+
+        NoteWriteBehindQueue queue = new NoteWriteBehindQueue(jdbcTemplate, transactionTemplate, contentCompressor, statsService, eventPublisher,
+                true, 100, 50, 20, walPath, false, deadLetterPath, "yourUsername");
+        queue.run(null);
+        queue.destroy();
+
+        // Verify that the valid notes are written, and the rejected one is set aside instead of failing the startup
+        assertThat(noteRepository.findAllById(ids)).extracting(Note::getId).containsExactlyInAnyOrder(ids.get(0), ids.get(2));
+        assertThat(Files.size(walPath)).isZero();
+        try (NoteWriteAheadLog deadLetters = new NoteWriteAheadLog(deadLetterPath, false)) {
+            assertThat(deadLetters.readUncheckpointed()).extracting(Note::getId).containsExactly(ids.get(1));
+        }
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
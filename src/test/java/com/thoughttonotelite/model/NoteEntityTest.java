@@ -2,6 +2,7 @@ package com.thoughttonotelite.model;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnitUtil;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -72,4 +73,29 @@ class NoteEntityTest {
         Duration difference = Duration.between(note.getCreatedAt(), note.getUpdatedAt());
         assertThat(difference).isLessThanOrEqualTo(Duration.ofMillis(10)); // Allowable difference of 10 milliseconds
     }
+
+    /**
+     * Test method to verify that the content of a Note is stored separately and only loaded when it is read.
+     */
+    @Test
+    @Transactional
+    void testContentIsLoadedLazily() {
+        Note note = new Note();
+        note.setTitle("Lazy Note");
+        note.setContent("This content is only loaded on demand.");
+        entityManager.persist(note);
+        entityManager.flush();
+        entityManager.clear();  // Detach everything so the next find reads from the database
+
+        Note loaded = entityManager.find(Note.class, note.getId());
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+
+        // Verify that loading the note does not load its body
+        assertThat(loaded.getTitle()).isEqualTo("Lazy Note");
+        assertThat(persistenceUnitUtil.isLoaded(loaded, "body")).isFalse();
+
+        // Verify that reading the content loads the body
+        assertThat(loaded.getContent()).isEqualTo("This content is only loaded on demand.");
+        assertThat(persistenceUnitUtil.isLoaded(loaded, "body")).isTrue();
+    }
 }
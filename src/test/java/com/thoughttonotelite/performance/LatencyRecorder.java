@@ -0,0 +1,71 @@
+package com.thoughttonotelite.performance;
+
+import java.util.Arrays;
+
+/**
+ * Records request latencies and outcomes for a single operation of a load-test workload.
+ * <p>
+ * A recorder is owned by one worker thread while the workload runs and is only merged with the
+ * recorders of the other workers once all of them have stopped, so it needs no synchronization.
+ * </p>
+ */
+class LatencyRecorder {
+
+    private long[] latenciesNanos = new long[1024];
+    private int count;
+    private long errors;
+
+    /**
+     * Records the outcome of one request.
+     *
+     * @param latencyNanos the time the request took, in nanoseconds
+     * @param success      whether the request completed with the expected status
+     */
+    void record(long latencyNanos, boolean success) {
+        if (count == latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+        }
+        latenciesNanos[count++] = latencyNanos;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    /**
+     * Appends all samples of another recorder to this one.
+     *
+     * @param other the recorder to merge into this one
+     */
+    void merge(LatencyRecorder other) {
+        if (count + other.count > latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, count + other.count);
+        }
+        System.arraycopy(other.latenciesNanos, 0, latenciesNanos, count, other.count);
+        count += other.count;
+        errors += other.errors;
+    }
+
+    long count() {
+        return count;
+    }
+
+    double errorRate() {
+        return count == 0 ? 0.0 : (double) errors / count;
+    }
+
+    /**
+     * Returns the latency at the given percentile using the nearest-rank method.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds, or 0 if nothing was recorded
+     */
+    double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(latenciesNanos, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.thoughttonotelite.performance;
+
+import com.thoughttonotelite.service.NoteNotFoundException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the cost of reporting a missing note with {@link NoteNotFoundException} against a plain
+ * {@link RuntimeException}, which was thrown before and captures a stack trace.
+ * <p>
+ * Both exceptions are thrown and caught at the bottom of a call stack of {@code loadtest.not-found.stack-depth}
+ * frames, about as deep as a request handled by Tomcat, Spring Security and Spring MVC, since capturing a
+ * stack trace takes time and memory in proportion to the depth. After a warm-up, the time and the bytes
+ * allocated per exception are measured on the current thread and printed. The test fails when the typed
+ * exception is not at least {@code loadtest.not-found.min-speedup} times faster, or allocates as much.
+ * </p>
+ * <p>
+ * The end-to-end latency of missing-note requests is measured by the {@code missing-note} workload of
+ * {@link NoteLoadTest}. This test is tagged {@code load} and is excluded from the default build.
+ * </p>
+ */
+@Tag("load")
+public class NotFoundExceptionCostTest {
+
+    private static final Properties config = loadConfig();
+
+    // Keeps every exception reachable, so that the JIT cannot elide its allocation
+    private static volatile RuntimeException lastThrown;
+
+    @Test
+    public void testTypedNotFoundIsCheaper() {
+        int depth = intConfig("loadtest.not-found.stack-depth");
+        int iterations = intConfig("loadtest.not-found.iterations");
+
+        LongFunction<RuntimeException> stackTrace = id -> new RuntimeException("Note not found with id " + id);
+        LongFunction<RuntimeException> typed = NoteNotFoundException::new;
+        atDepth(depth, () -> measure(stackTrace, iterations / 10));
+        atDepth(depth, () -> measure(typed, iterations / 10));
+        long[] stackTraceCost = atDepth(depth, () -> measure(stackTrace, iterations));
+        long[] typedCost = atDepth(depth, () -> measure(typed, iterations));
+
+        double stackTraceNanos = (double) stackTraceCost[0] / iterations;
+        double typedNanos = (double) typedCost[0] / iterations;
+        double stackTraceBytes = (double) stackTraceCost[1] / iterations;
+        double typedBytes = (double) typedCost[1] / iterations;
+        System.out.printf("%nNot-found exceptions (%d frames deep, %d per variant)%n%-22s %12s %12s%n%-22s %12.0f %12.0f%n%-22s %12.0f %12.0f%n",
+                depth, iterations, "exception", "ns each", "bytes each",
+                "RuntimeException", stackTraceNanos, stackTraceBytes,
+                "NoteNotFoundException", typedNanos, typedBytes);
+
+        assertThat(typedNanos * doubleConfig("loadtest.not-found.min-speedup"))
+                .as("time per NoteNotFoundException times the minimum speedup (ns)")
+                .isLessThanOrEqualTo(stackTraceNanos);
+        assertThat(typedBytes).as("bytes allocated per NoteNotFoundException").isLessThan(stackTraceBytes);
+    }
+
+    /**
+     * Throws and catches exceptions in a loop.
+     *
+     * @return the nanoseconds elapsed and the bytes allocated by the current thread
+     */
+    private static long[] measure(LongFunction<RuntimeException> factory, int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            try {
+                throw factory.apply(i);
+            } catch (RuntimeException e) {
+                lastThrown = e;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{elapsed, threads.getCurrentThreadAllocatedBytes() - allocatedBefore};
+    }
+
+    // Runs the measurement below the given number of additional stack frames
+    private static long[] atDepth(int depth, Supplier<long[]> measurement) {
+        return depth <= 0 ? measurement.get() : atDepth(depth - 1, measurement);
+    }
+
+    private static int intConfig(String key) {
+        return Integer.parseInt(config.getProperty(key));
+    }
+
+    private static double doubleConfig(String key) {
+        return Double.parseDouble(config.getProperty(key));
+    }
+
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream inputStream = NotFoundExceptionCostTest.class.getResourceAsStream("/loadtest.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read loadtest.properties", e);
+        }
+        // System properties take precedence so budgets can be tuned per environment
+        System.getProperties().stringPropertyNames().stream()
+                .filter(key -> key.startsWith("loadtest."))
+                .forEach(key -> properties.setProperty(key, System.getProperty(key)));
+        return properties;
+    }
+}
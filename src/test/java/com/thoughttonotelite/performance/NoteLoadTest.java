@@ -0,0 +1,313 @@
+package com.thoughttonotelite.performance;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.repository.NoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load tests for the notes API.
+ * <p>
+ * Each test drives the real application, backed by a PostgreSQL instance managed by Testcontainers,
+ * with a weighted mix of requests from a pool of concurrent clients. After a warm-up period the
+ * latency of every request is recorded, and a report with throughput, tail latencies and error
+ * rates is printed per operation. The test fails when the p99 latency of any operation exceeds the
+ * budget configured for its workload, or when too many requests fail.
+ * </p>
+ * <p>
+ * Budgets, duration and concurrency are read from {@code loadtest.properties} and can be overridden
+ * with system properties, e.g. {@code mvn test -Pload-test -Dloadtest.read-heavy.p99-ms=20}.
+ * These tests are tagged {@code load} and are excluded from the default build.
+ * </p>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+public class NoteLoadTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("loadtestdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    private static final Properties config = loadConfig();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    private final List<Long> seededIds = new ArrayList<>();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgresqlContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgresqlContainer::getUsername);
+        registry.add("spring.datasource.password", postgresqlContainer::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.jpa.show-sql", () -> "false"); // SQL logging would dominate the measured latencies
+    }
+
+    @BeforeEach
+    public void seedNotes() {
+        noteRepository.deleteAll();
+        seededIds.clear();
+
+        int seedCount = intConfig("loadtest.seed-notes");
+        List<Note> notes = new ArrayList<>(seedCount);
+        for (int i = 0; i < seedCount; i++) {
+            Note note = new Note();
+            note.setOwner("yourUsername");  // The user the requests authenticate as
+            note.setTitle("Seeded note " + i);
+            note.setContent(randomText(intConfig("loadtest.content-bytes")));
+            notes.add(note);
+        }
+        noteRepository.saveAll(notes).forEach(note -> seededIds.add(note.getId()));
+    }
+
+    /**
+     * Single-note reads with occasional updates, as generated by clients opening notes.
+     */
+    @Test
+    public void testReadHeavyWorkload() throws Exception {
+        runWorkload("read-heavy", List.of(
+                new Operation("get", 90, HttpStatus.OK,
+                        random -> exchange(HttpMethod.GET, "/api/notes/" + randomSeededId(random), null)),
+                new Operation("update", 10, HttpStatus.OK,
+                        random -> exchange(HttpMethod.PUT, "/api/notes/" + randomSeededId(random),
+                                newNote("Updated note", intConfig("loadtest.content-bytes"))))
+        ));
+    }
+
+    /**
+     * Full listings and title searches, the most expensive read paths.
+     */
+    @Test
+    public void testListAndSearchWorkload() throws Exception {
+        runWorkload("list-search", List.of(
+                new Operation("list", 50, HttpStatus.OK,
+                        random -> exchange(HttpMethod.GET, "/api/notes", null)),
+                new Operation("search", 50, HttpStatus.OK,
+                        random -> exchange(HttpMethod.GET, "/api/notes/search?title=" + random.nextInt(100), null))
+        ));
+    }
+
+    /**
+     * Bursts of note creation, as generated by quick-capture clients.
+     */
+    @Test
+    public void testWriteBurstWorkload() throws Exception {
+        runWorkload("write-burst", List.of(
+                new Operation("create", 100, HttpStatus.CREATED,
+                        random -> exchange(HttpMethod.POST, "/api/notes", newNote("Burst note", 256)))
+        ));
+    }
+
+    /**
+     * Reads of IDs that do not exist, as generated by crawlers and clients holding links to deleted notes.
+     */
+    @Test
+    public void testMissingNoteWorkload() throws Exception {
+        long firstMissingId = Collections.max(seededIds) + 1;
+        runWorkload("missing-note", List.of(
+                new Operation("get-missing", 90, HttpStatus.NOT_FOUND,
+                        random -> exchange(HttpMethod.GET, "/api/notes/" + (firstMissingId + random.nextInt(1_000_000)), null)),
+                new Operation("get", 10, HttpStatus.OK,
+                        random -> exchange(HttpMethod.GET, "/api/notes/" + randomSeededId(random), null))
+        ));
+    }
+
+    /**
+     * Creation and retrieval of notes whose content is far larger than the typical note.
+     */
+    @Test
+    public void testLargeContentWorkload() throws Exception {
+        int largeContentBytes = intConfig("loadtest.large-content-bytes");
+        List<Long> largeIds = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 10; i++) {
+            ResponseEntity<Note> response = restTemplate.exchange(createURL("/api/notes"), HttpMethod.POST,
+                    new HttpEntity<>(newNote("Large note", largeContentBytes), authHeaders()), Note.class);
+            largeIds.add(Objects.requireNonNull(response.getBody()).getId());
+        }
+
+        runWorkload("large-content", List.of(
+                new Operation("get-large", 70, HttpStatus.OK,
+                        random -> exchange(HttpMethod.GET, "/api/notes/" + largeIds.get(random.nextInt(largeIds.size())), null)),
+                new Operation("create-large", 30, HttpStatus.CREATED,
+                        random -> exchange(HttpMethod.POST, "/api/notes", newNote("Large note", largeContentBytes)))
+        ));
+    }
+
+    /**
+     * Runs a weighted mix of operations from concurrent clients, prints a report and asserts the
+     * p99 and error-rate budgets of the workload.
+     */
+    private void runWorkload(String workload, List<Operation> operations) throws Exception {
+        int threads = intConfig("loadtest.threads");
+        long warmupNanos = intConfig("loadtest.warmup-seconds") * 1_000_000_000L;
+        long durationNanos = intConfig("loadtest.duration-seconds") * 1_000_000_000L;
+        int totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long measureUntil = measureFrom + durationNanos;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Map<String, LatencyRecorder>>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                Map<String, LatencyRecorder> recorders = new HashMap<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long now;
+                while ((now = System.nanoTime()) < measureUntil) {
+                    Operation operation = pick(operations, random.nextInt(totalWeight));
+                    boolean success;
+                    try {
+                        success = operation.request().send(random).getStatusCode().isSameCodeAs(operation.expectedStatus());
+                    } catch (RuntimeException e) {
+                        success = false;
+                    }
+                    long latency = System.nanoTime() - now;
+                    if (now >= measureFrom) {
+                        recorders.computeIfAbsent(operation.name(), name -> new LatencyRecorder()).record(latency, success);
+                    }
+                }
+                return recorders;
+            }));
+        }
+
+        Map<String, LatencyRecorder> merged = new TreeMap<>();
+        for (Future<Map<String, LatencyRecorder>> worker : workers) {
+            worker.get().forEach((name, recorder) -> merged.computeIfAbsent(name, n -> new LatencyRecorder()).merge(recorder));
+        }
+        executor.shutdown();
+
+        double seconds = durationNanos / 1_000_000_000.0;
+        double p99Budget = doubleConfig("loadtest." + workload + ".p99-ms");
+        double maxErrorRate = doubleConfig("loadtest.max-error-rate");
+
+        StringBuilder report = new StringBuilder()
+                .append(String.format("%nLoad test '%s' (%d clients, %.0fs, p99 budget %.1f ms)%n", workload, threads, seconds, p99Budget))
+                .append(String.format("%-14s %10s %10s %9s %9s %9s %9s %8s%n", "operation", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors"));
+        merged.forEach((name, recorder) -> report.append(String.format("%-14s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %7.3f%%%n",
+                name, recorder.count(), recorder.count() / seconds,
+                recorder.percentileMillis(50), recorder.percentileMillis(95), recorder.percentileMillis(99),
+                recorder.percentileMillis(100), recorder.errorRate() * 100)));
+        System.out.println(report);
+
+        assertThat(merged).as("requests recorded for workload %s", workload).isNotEmpty();
+        merged.forEach((name, recorder) -> {
+            assertThat(recorder.percentileMillis(99)).as("p99 latency of %s in %s (ms)", name, workload).isLessThanOrEqualTo(p99Budget);
+            assertThat(recorder.errorRate()).as("error rate of %s in %s", name, workload).isLessThanOrEqualTo(maxErrorRate);
+        });
+    }
+
+    private static Operation pick(List<Operation> operations, int roll) {
+        for (Operation operation : operations) {
+            roll -= operation.weight();
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    private ResponseEntity<String> exchange(HttpMethod method, String uri, Note body) {
+        return restTemplate.exchange(createURL(uri), method, new HttpEntity<>(body, authHeaders()), String.class);
+    }
+
+    private long randomSeededId(ThreadLocalRandom random) {
+        return seededIds.get(random.nextInt(seededIds.size()));
+    }
+
+    private static Note newNote(String title, int contentBytes) {
+        Note note = new Note();
+        note.setTitle(title + " " + ThreadLocalRandom.current().nextInt(100));
+        note.setContent(randomText(contentBytes));
+        return note;
+    }
+
+    private static String randomText(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(random.nextBoolean() ? "lorem " : "ipsum ").append(random.nextInt(1000)).append('\n');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    private static HttpHeaders authHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("yourUsername", "yourPassword");
+        return headers;
+    }
+
+    // Helper method to construct the full URL for API requests
+    private String createURL(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+
+    private static int intConfig(String key) {
+        return Integer.parseInt(config.getProperty(key));
+    }
+
+    private static double doubleConfig(String key) {
+        return Double.parseDouble(config.getProperty(key));
+    }
+
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream inputStream = NoteLoadTest.class.getResourceAsStream("/loadtest.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read loadtest.properties", e);
+        }
+        // System properties take precedence so budgets can be tuned per environment
+        System.getProperties().stringPropertyNames().stream()
+                .filter(key -> key.startsWith("loadtest."))
+                .forEach(key -> properties.setProperty(key, System.getProperty(key)));
+        return properties;
+    }
+
+    /**
+     * Sends one request of an operation.
+     */
+    @FunctionalInterface
+    private interface Request {
+        ResponseEntity<?> send(ThreadLocalRandom random);
+    }
+
+    /**
+     * One kind of request in a workload mix, chosen with a probability proportional to its weight.
+     */
+    private record Operation(String name, int weight, HttpStatus expectedStatus, Request request) {
+    }
+}
@@ -0,0 +1,191 @@
+package com.thoughttonotelite.performance;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Measures how fast the packaged application is ready to serve, for each way of building it.
+ * <p>
+ * Every variant (the plain jar, the jar with AOT-processed beans and a class data sharing archive, and the
+ * native executable, see "Fast Startup" in the README) is started as a separate process against a
+ * PostgreSQL instance managed by Testcontainers. A run is timed from launching the process until the first
+ * {@code GET /api/notes} is answered with {@code 200 OK}, which includes the latency of that first request,
+ * reported separately. Each variant gets one warm-up run that is not recorded. The test fails when the
+ * median time to ready of a variant exceeds its budget.
+ * </p>
+ * <p>
+ * Variants must be built beforehand, e.g. {@code mvn -Pcds package -DskipTests}; variants naming files
+ * under {@code target/} that do not exist are skipped. Commands, runs and budgets are read from
+ * {@code loadtest.properties} and can be overridden with system properties. This test is tagged
+ * {@code load} and is excluded from the default build.
+ * </p>
+ */
+@Tag("load")
+@Testcontainers
+public class StartupTimeTest {
+
+    @Container
+    public static PostgreSQLContainer<?> postgresqlContainer = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("startupdb")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    private static final Properties config = loadConfig();
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    @Test
+    public void testTimeToReady() throws Exception {
+        List<String> variants = new ArrayList<>();
+        for (String variant : config.getProperty("loadtest.startup.variants").split(",")) {
+            if (isBuilt(command(variant.trim()))) {
+                variants.add(variant.trim());
+            } else {
+                System.out.printf("Skipping startup variant '%s', it has not been built%n", variant.trim());
+            }
+        }
+        assumeFalse(variants.isEmpty(), "no startup variant has been built");
+
+        // The measured runs neither create the schema nor load sample data, like instances started on demand,
+        // so the first variant prepares the database once with the default settings
+        start(variants.get(0), "prepare", List.of());
+
+        List<String> fastStartupArgs = Arrays.asList(config.getProperty("loadtest.startup.args").trim().split("\\s+"));
+        int runs = intConfig("loadtest.startup.runs");
+        Map<String, LatencyRecorder[]> results = new LinkedHashMap<>();
+        for (String variant : variants) {
+            start(variant, "warmup", fastStartupArgs);
+            LatencyRecorder ready = new LatencyRecorder();
+            LatencyRecorder firstRequest = new LatencyRecorder();
+            for (int run = 1; run <= runs; run++) {
+                long[] timings = start(variant, "run-" + run, fastStartupArgs);
+                ready.record(timings[0], true);
+                firstRequest.record(timings[1], true);
+            }
+            results.put(variant, new LatencyRecorder[]{ready, firstRequest});
+        }
+
+        StringBuilder report = new StringBuilder()
+                .append(String.format("%nStartup (%d runs per variant)%n", runs))
+                .append(String.format("%-10s %14s %14s %18s %12s%n", "variant", "ready p50 ms", "ready max ms", "first req p50 ms", "budget ms"));
+        results.forEach((variant, recorders) -> report.append(String.format("%-10s %14.0f %14.0f %18.1f %12s%n",
+                variant, recorders[0].percentileMillis(50), recorders[0].percentileMillis(100),
+                recorders[1].percentileMillis(50), config.getProperty("loadtest.startup." + variant + ".ready-ms", "-"))));
+        System.out.println(report);
+
+        results.forEach((variant, recorders) -> {
+            String budget = config.getProperty("loadtest.startup." + variant + ".ready-ms");
+            if (budget != null) {
+                assertThat(recorders[0].percentileMillis(50)).as("median time to ready of %s (ms)", variant)
+                        .isLessThanOrEqualTo(Double.parseDouble(budget));
+            }
+        });
+    }
+
+    /**
+     * Starts one variant, waits until it serves the list of notes and stops it again.
+     *
+     * @return the nanoseconds from launch until the first successful response, and the duration of that request
+     */
+    private long[] start(String variant, String label, List<String> extraArgs) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>(command(variant));
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=" + postgresqlContainer.getJdbcUrl());
+        command.add("--spring.datasource.username=" + postgresqlContainer.getUsername());
+        command.add("--spring.datasource.password=" + postgresqlContainer.getPassword());
+        command.add("--spring.docker.compose.enabled=false");
+        command.add("--spring.jpa.show-sql=false");
+        command.addAll(extraArgs);
+
+        File log = new File("target/startup-logs/" + variant + "-" + label + ".log");
+        log.getParentFile().mkdirs();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/notes"))
+                .header("Authorization", "Basic " + Base64.getEncoder()
+                        .encodeToString("yourUsername:yourPassword".getBytes(StandardCharsets.UTF_8)))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(intConfig("loadtest.startup.timeout-seconds"));
+
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Variant " + variant + " exited with " + process.exitValue() + ", see " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Variant " + variant + " was not ready in time, see " + log);
+                }
+                long sent = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                    long received = System.nanoTime();
+                    if (response.statusCode() == 200) {
+                        return new long[]{received - launched, received - sent};
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(5);
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static List<String> command(String variant) {
+        return Arrays.asList(config.getProperty("loadtest.startup." + variant + ".command").trim().split("\\s+"));
+    }
+
+    // A variant is built when every file under target/ its command names exists, e.g. the jar or the archive
+    private static boolean isBuilt(List<String> command) {
+        return command.stream()
+                .map(token -> token.substring(token.indexOf('=') + 1))
+                .filter(path -> path.startsWith("target/"))
+                .allMatch(path -> new File(path).exists());
+    }
+
+    private static int intConfig(String key) {
+        return Integer.parseInt(config.getProperty(key));
+    }
+
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream inputStream = StartupTimeTest.class.getResourceAsStream("/loadtest.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read loadtest.properties", e);
+        }
+        // System properties take precedence so commands and budgets can be tuned per environment
+        System.getProperties().stringPropertyNames().stream()
+                .filter(key -> key.startsWith("loadtest."))
+                .forEach(key -> properties.setProperty(key, System.getProperty(key)));
+        return properties;
+    }
+}
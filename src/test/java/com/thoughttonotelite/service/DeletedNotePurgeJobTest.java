@@ -0,0 +1,62 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.repository.NoteRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link DeletedNotePurgeJob} class.
+ * <p>
+ * These tests verify that a run purges notes past their retention in batches, stops once a batch comes back
+ * short, and never exceeds its maximum number of batches.
+ * </p>
+ */
+@ExtendWith(MockitoExtension.class)
+public class DeletedNotePurgeJobTest {
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    /**
+     * Test that a run stops at the first batch with fewer notes than the batch size, and that only notes
+     * deleted before the retention period are purged.
+     */
+    @Test
+    public void testStopsWhenNothingIsLeft() {
+        DeletedNotePurgeJob job = new DeletedNotePurgeJob(noteRepository, 24, 10, 5, 0);
+        when(noteRepository.purgeDeletedBefore(any(), eq(10))).thenReturn(10L, 10L, 3L);
+
+        LocalDateTime before = LocalDateTime.now().minusHours(24);
+        assertEquals(23, job.purge());
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(noteRepository, times(3)).purgeDeletedBefore(cutoff.capture(), eq(10));
+        // Verify that the cutoff lies the retention period in the past
+        assertFalse(cutoff.getValue().isBefore(before));
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusHours(23)));
+    }
+
+    /**
+     * Test that a run purges at most its maximum number of batches, leaving the rest to the next run.
+     */
+    @Test
+    public void testLimitsBatchesPerRun() {
+        DeletedNotePurgeJob job = new DeletedNotePurgeJob(noteRepository, 24, 10, 2, 0);
+        when(noteRepository.purgeDeletedBefore(any(), eq(10))).thenReturn(10L);
+
+        assertEquals(20, job.purge());
+        verify(noteRepository, times(2)).purgeDeletedBefore(any(), eq(10));
+    }
+}
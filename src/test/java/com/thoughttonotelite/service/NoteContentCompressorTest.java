@@ -0,0 +1,68 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NoteContentCompressor} class.
+ * <p>
+ * These tests verify that note content is only compressed when compression at rest is enabled and the
+ * content is above the threshold, and that compressed content reads back unchanged through the
+ * {@link Note} entity.
+ * </p>
+ */
+public class NoteContentCompressorTest {
+
+    private static final String LARGE_CONTENT = "2024-01-01 INFO request handled in 12 ms\n".repeat(200);
+
+    /**
+     * Test that large content is compressed and decompressed transparently on read.
+     */
+    @Test
+    public void testCompressesLargeContent() {
+        NoteContentCompressor compressor = new NoteContentCompressor(true, 1024, 6);
+        Note note = new Note();
+        note.setContent(LARGE_CONTENT);
+
+        assertTrue(compressor.compressIfEligible(note));  // Verify that the content was compressed
+
+        assertNotNull(note.getCompressedContent());  // Verify that the compressed form is stored
+        assertTrue(note.getCompressedContent().length < LARGE_CONTENT.length() / 5);  // Verify that repetitive content shrinks well
+        assertEquals(LARGE_CONTENT, note.getContent());  // Verify that the content reads back unchanged
+        assertEquals(LARGE_CONTENT, ContentCompressionUtil.decompress(note.getCompressedContent()));  // Verify the stored form decodes on its own
+    }
+
+    /**
+     * Test that content below the threshold, or any content while compression is disabled, is left as is.
+     */
+    @Test
+    public void testLeavesSmallContentAndDisabledModeAlone() {
+        Note smallNote = new Note();
+        smallNote.setContent("Short note");
+        assertFalse(new NoteContentCompressor(true, 1024, 6).compressIfEligible(smallNote));
+        assertNull(smallNote.getCompressedContent());
+
+        Note largeNote = new Note();
+        largeNote.setContent(LARGE_CONTENT);
+        assertFalse(new NoteContentCompressor(false, 1024, 6).compressIfEligible(largeNote));
+        assertNull(largeNote.getCompressedContent());
+    }
+
+    /**
+     * Test that replacing the content of a compressed note stores the new content uncompressed until it is compressed again.
+     */
+    @Test
+    public void testSetContentReplacesCompressedContent() {
+        Note note = new Note();
+        note.setContent(LARGE_CONTENT);
+        new NoteContentCompressor(true, 1024, 6).compressIfEligible(note);
+
+        note.setContent("Rewritten");
+
+        assertNull(note.getCompressedContent());  // Verify that the stale compressed form is dropped
+        assertEquals("Rewritten", note.getContent());  // Verify that the new content is returned
+    }
+}
@@ -0,0 +1,133 @@
+package com.thoughttonotelite.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteBatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NoteResponseCache} class.
+ * <p>
+ * These tests verify that encoded responses are reused until a change to a note is published, that a
+ * response read before a concurrent change is not kept, that oversized notes are not cached, and that
+ * cached responses are only served to the owner of the notes.
+ * </p>
+ */
+public class NoteResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private static Note note(long id, String title) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle(title);
+        note.setContent("Content of " + title);
+        return note;
+    }
+
+    /**
+     * Test that cached notes and lists are reused until a change is published.
+     */
+    @Test
+    public void testReusesResponsesUntilChanged() {
+        NoteResponseCache cache = new NoteResponseCache(objectMapper, true, 100, 65536, 4194304, 1024);
+        AtomicInteger loads = new AtomicInteger();
+
+        NoteResponseCache.CachedResponse first = cache.getNote(1L, "alice", () -> { loads.incrementAndGet(); return note(1, "One"); });
+        NoteResponseCache.CachedResponse second = cache.getNote(1L, "alice", () -> { loads.incrementAndGet(); return note(1, "One"); });
+        cache.getAllNotes("alice", () -> { loads.incrementAndGet(); return List.of(note(1, "One")); });
+        cache.getAllNotes("alice", () -> { loads.incrementAndGet(); return List.of(note(1, "One")); });
+
+        assertSame(first.body(), second.body());  // Verify that the same bytes are served again
+        assertEquals(2, loads.get());  // Verify that the note and the list were each loaded once
+
+        cache.onNoteChanged(new NoteChangedEvent(1L, "alice"));
+        NoteResponseCache.CachedResponse third = cache.getNote(1L, "alice", () -> note(1, "Renamed"));
+        NoteResponseCache.CachedResponse list = cache.getAllNotes("alice", () -> List.of(note(1, "Renamed")));
+
+        assertTrue(new String(third.body()).contains("Renamed"));  // Verify that the changed note is encoded again
+        assertTrue(new String(list.body()).contains("Renamed"));  // Verify that the list is encoded again
+    }
+
+    /**
+     * Test that a response loaded before a concurrent change is served once but not cached.
+     */
+    @Test
+    public void testDoesNotCacheResponseReadBeforeChange() {
+        NoteResponseCache cache = new NoteResponseCache(objectMapper, true, 100, 65536, 4194304, 1024);
+
+        cache.getNote(1L, "alice", () -> {
+            Note stale = note(1, "Stale");
+            cache.onNoteChanged(new NoteChangedEvent(1L, "alice"));  // The note changes while the stale copy is encoded
+            return stale;
+        });
+        NoteResponseCache.CachedResponse next = cache.getNote(1L, "alice", () -> note(1, "Fresh"));
+
+        assertTrue(new String(next.body()).contains("Fresh"));  // Verify that the stale response was not kept
+    }
+
+    /**
+     * Test that notes above the size limit are not cached and small bodies have no gzip variant.
+     */
+    @Test
+    public void testSizeLimits() {
+        NoteResponseCache cache = new NoteResponseCache(objectMapper, true, 100, 64, 4194304, 1024);
+        AtomicInteger loads = new AtomicInteger();
+        Note large = note(1, "Large");
+        large.setContent("x".repeat(1000));
+
+        cache.getNote(1L, "alice", () -> { loads.incrementAndGet(); return large; });
+        NoteResponseCache.CachedResponse response = cache.getNote(1L, "alice", () -> { loads.incrementAndGet(); return large; });
+
+        assertEquals(2, loads.get());  // Verify that the oversized note was loaded each time
+        assertNotNull(response.gzipped());  // Verify that a large body has a gzip variant
+        assertNull(cache.getNote(2L, "alice", () -> note(2, "Small")).gzipped());  // Verify that a small body is not compressed
+    }
+
+    /**
+     * Test that cached notes and lists are not served to other users.
+     */
+    @Test
+    public void testServesCachedResponsesOnlyToOwner() {
+        NoteResponseCache cache = new NoteResponseCache(objectMapper, true, 100, 65536, 4194304, 1024);
+        cache.getNote(1L, "alice", () -> note(1, "Alice's note"));
+        cache.getAllNotes("alice", () -> List.of(note(1, "Alice's note")));
+
+        // Verify that another user's request goes to the loader, which does not find the note for them
+        assertThrows(NoteNotFoundException.class,
+                () -> cache.getNote(1L, "bob", () -> { throw new NoteNotFoundException(1L); }));
+        NoteResponseCache.CachedResponse list = cache.getAllNotes("bob", List::of);
+
+        assertEquals("[]", new String(list.body()));  // Verify that another user gets their own list
+        assertTrue(new String(cache.getNote(1L, "alice", () -> note(1, "Reloaded")).body()).contains("Alice's note"));  // Verify that the owner is still served from the cache
+    }
+
+    /**
+     * Test that a batch of notes is assembled from cached notes, loading only the others, exactly as Jackson writes it.
+     */
+    @Test
+    public void testAssemblesBatchesFromCachedNotes() throws Exception {
+        NoteResponseCache cache = new NoteResponseCache(objectMapper, true, 100, 65536, 4194304, 1024);
+        cache.getNote(1L, "alice", () -> note(1, "One"));
+        List<List<Long>> loaded = new ArrayList<>();
+
+        NoteResponseCache.CachedResponse batch = cache.getNotes(List.of(3L, 1L, 2L), "alice", ids -> {
+            loaded.add(ids);
+            return List.of(note(2, "Two"));
+        });
+
+        assertEquals(List.of(List.of(3L, 2L)), loaded);  // Verify that only the notes not cached were loaded, at once
+        NoteBatch expected = new NoteBatch(List.of(note(1, "One"), note(2, "Two")), List.of(3L));
+        assertArrayEquals(objectMapper.writeValueAsBytes(expected), batch.body());  // Verify the order and the encoding
+
+        cache.getNotes(List.of(2L), "alice", ids -> { loaded.add(ids); return List.of(); });
+        assertEquals(1, loaded.size());  // Verify that the loaded note was cached as well
+    }
+}
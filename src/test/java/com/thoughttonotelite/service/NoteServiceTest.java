@@ -1,19 +1,32 @@
 package com.thoughttonotelite.service;
 
+import com.thoughttonotelite.model.DeletedNote;
 import com.thoughttonotelite.model.Note;
 import com.thoughttonotelite.repository.NoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -26,6 +39,7 @@ import static org.mockito.Mockito.when;
  * <p>
  * The {@link MockitoExtension} is used to initialize mocks and inject them into the service being tested.
  * This allows for isolated testing of the service layer without depending on the actual database or repository.
+ * Every test runs as the user {@code yourUsername}, who owns the notes returned by the mocked repository.
  * </p>
  */
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +51,48 @@ public class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    /**
+     * The NoteContentCompressor is mocked so that note content is always stored as provided.
+     */
+    @Mock
+    private NoteContentCompressor contentCompressor;
+
+    /**
+     * The ApplicationEventPublisher is mocked so that the change events published by the service can be verified.
+     */
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The provider of the NoteWriteBehindQueue is mocked without a queue, so that notes are saved through the repository.
+     */
+    @Mock
+    private ObjectProvider<NoteWriteBehindQueue> writeBehindQueue;
+
+    /**
+     * The provider of the NoteRevisionService is mocked without a service, so that updates are not recorded in a history.
+     */
+    @Mock
+    private ObjectProvider<NoteRevisionService> revisionService;
+
+    /**
+     * The provider of the NoteBodyStore is mocked without a store, so that content is saved with the note.
+     */
+    @Mock
+    private ObjectProvider<NoteBodyStore> bodyStore;
+
+    /**
+     * The NoteStatsService is mocked so that the changes counted for the statistics can be verified.
+     */
+    @Mock
+    private NoteStatsService statsService;
+
+    /**
+     * The provider of the NoteTierService is mocked without a service, so that notes are only read from the repository.
+     */
+    @Mock
+    private ObjectProvider<NoteTierService> tierService;
+
     /**
      * The NoteService is the service being tested. Mocks are injected into this service
      * to isolate it from dependencies such as the NoteRepository.
@@ -44,6 +100,17 @@ public class NoteServiceTest {
     @InjectMocks
     private NoteService noteService;
 
+    @BeforeEach
+    public void authenticate() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("yourUsername", "yourPassword", List.of()));
+    }
+
+    @AfterEach
+    public void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
     /**
      * Test for creating a new note.
      * <p>
@@ -68,13 +135,15 @@ public class NoteServiceTest {
 
         assertNotNull(createdNote);  // Verify that the created note is not null
         assertEquals("Test Note", createdNote.getTitle());  // Verify that the title is as expected
+        assertEquals("yourUsername", createdNote.getOwner());  // Verify that the note belongs to the authenticated user
+        verify(statsService).recordAdded(note, 12);  // Verify that the note is counted in the statistics
     }
 
     /**
      * Test for updating an existing note.
      * <p>
      * This test verifies that the {@link NoteService#updateNote(Long, Note)} method correctly updates an existing note.
-     * The repository's findById method is mocked to return an existing note, and the save method is mocked to
+     * The repository's findByIdAndOwner method is mocked to return an existing note, and the save method is mocked to
      * return the updated note. The test then asserts that the note was updated with the new title and content.
      * </p>
      */
@@ -92,7 +161,7 @@ public class NoteServiceTest {
         updatedNoteDetails.setContent("New Content");
 
         // Mock the behavior of the NoteRepository
-        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));  // Mock finding the note by ID
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.of(note));  // Mock finding the note by ID
         when(noteRepository.save(any(Note.class))).thenReturn(updatedNoteDetails);  // Mock saving the updated note
 
         // Call the updateNote method and assert the results
@@ -100,31 +169,164 @@ public class NoteServiceTest {
 
         assertEquals("New Title", updatedNote.getTitle());  // Verify that the title was updated
         assertEquals("New Content", updatedNote.getContent());  // Verify that the content was updated
+        verify(statsService).recordUpdated(updatedNoteDetails, null, 11, 11);  // Verify that the previous size was replaced
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, "yourUsername"));  // Verify that the change was announced
+    }
+
+    /**
+     * Test for updating a note with its current title and content.
+     * <p>
+     * This test verifies that {@link NoteService#updateNote(Long, Note)} writes nothing when the
+     * {@link NoteBodyStore} reports the content as unchanged and the title is the same, and that the note
+     * is returned as it was.
+     * </p>
+     */
+    @Test
+    public void testUpdateNoteWithoutChangesWritesNothing() {
+        NoteBodyStore store = mock(NoteBodyStore.class);
+        when(bodyStore.getIfAvailable()).thenReturn(store);
+        NoteService service = new NoteService(noteRepository, contentCompressor, eventPublisher, writeBehindQueue, revisionService, bodyStore,
+                statsService, tierService);
+
+        Note note = new Note();
+        note.setId(1L);
+        note.setTitle("Same Title");
+        Note noteDetails = new Note();
+        noteDetails.setTitle("Same Title");
+        noteDetails.setContent("Same Content");
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.of(note));
+        when(store.replaceContent(note, "Same Content")).thenReturn(new NoteBodyStore.Replacement(false, 12));
+
+        assertSame(note, service.updateNote(1L, noteDetails));
+        verify(noteRepository, never()).save(any());  // Verify that the note was not written
+        verify(eventPublisher, never()).publishEvent(any(Object.class));  // Verify that no change was announced
+    }
+
+    /**
+     * Test for updating a note that has been moved into the archive.
+     * <p>
+     * This test verifies that {@link NoteService#updateNote(Long, Note)} has the {@link NoteTierService} move a
+     * note that is not found in the database back into it, and then updates it like any other note.
+     * </p>
+     */
+    @Test
+    public void testUpdateArchivedNotePromotesIt() {
+        NoteTierService tier = mock(NoteTierService.class);
+        when(tierService.getIfAvailable()).thenReturn(tier);
+        NoteService service = new NoteService(noteRepository, contentCompressor, eventPublisher, writeBehindQueue, revisionService, bodyStore,
+                statsService, tierService);
+
+        Note promoted = new Note();
+        promoted.setId(1L);
+        promoted.setTitle("Archived Title");
+        promoted.setContent("Archived Content");
+        Note noteDetails = new Note();
+        noteDetails.setTitle("New Title");
+        noteDetails.setContent("New Content");
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.empty());
+        when(tier.promote(1L, "yourUsername")).thenReturn(Optional.of(promoted));
+        when(noteRepository.save(promoted)).thenReturn(promoted);
+
+        Note updatedNote = service.updateNote(1L, noteDetails);
+
+        assertEquals("New Title", updatedNote.getTitle());  // Verify that the promoted note was updated
+        assertEquals("New Content", updatedNote.getContent());
+        verify(statsService).recordUpdated(promoted, null, 16, 11);  // Verify that the note is counted once, not added again
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, "yourUsername"));
     }
 
     /**
      * Test for deleting a note by its ID.
      * <p>
-     * This test verifies that the {@link NoteService#deleteNoteById(Long)} method correctly interacts with
-     * the {@link NoteRepository#existsById(Object)} and {@link NoteRepository#deleteById(Object)} methods.
-     * The repository's existsById method is mocked to return true, and the deleteById method is mocked to
-     * perform the deletion. The test asserts that no exceptions are thrown during the deletion process.
+     * This test verifies that the {@link NoteService#deleteNoteById(Long)} method marks the note as deleted
+     * through {@link NoteRepository#markDeleted(Long, String, java.time.LocalDateTime)} instead of removing it.
+     * The repository's markDeleted method is mocked to report the marked note. The test asserts that no
+     * exceptions are thrown during the deletion process, that the note is not loaded to delete it, and that
+     * it is no longer counted in the statistics.
      * </p>
      */
     @Test
     public void testDeleteNoteById() {
-        // Mock the behavior of the NoteRepository to return true when existsById is called
-        when(noteRepository.existsById(1L)).thenReturn(true);
+        DeletedNote deleted = DeletedNote.of(LocalDateTime.now(), LocalDateTime.now(), 15);
+
+        // Mock the behavior of the NoteRepository to report that the note was marked as deleted
+        when(noteRepository.markDeleted(eq(1L), eq("yourUsername"), any())).thenReturn(Optional.of(deleted));
 
         // Call the deleteNoteById method and assert that no exceptions are thrown
         assertDoesNotThrow(() -> noteService.deleteNoteById(1L));
+        verify(noteRepository, never()).findByIdAndOwner(any(), any());  // Verify that the note was not loaded
+        verify(noteRepository, never()).deleteById(any());  // Verify that the note was not removed
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, "yourUsername"));  // Verify that the deletion was announced
+        verify(statsService).recordRemoved("yourUsername", deleted);  // Verify that the note and its content are no longer counted
+    }
+
+    /**
+     * Test for deleting a note that has been moved into the archive.
+     * <p>
+     * This test verifies that {@link NoteService#deleteNoteById(Long)} only asks the {@link NoteTierService} to
+     * move a note back into the database when marking it found nothing, and then marks the promoted note.
+     * </p>
+     */
+    @Test
+    public void testDeleteArchivedNotePromotesIt() {
+        NoteTierService tier = mock(NoteTierService.class);
+        when(tierService.getIfAvailable()).thenReturn(tier);
+        NoteService service = new NoteService(noteRepository, contentCompressor, eventPublisher, writeBehindQueue, revisionService, bodyStore,
+                statsService, tierService);
+
+        DeletedNote deleted = DeletedNote.of(LocalDateTime.now(), LocalDateTime.now(), 16);
+        when(noteRepository.markDeleted(eq(1L), eq("yourUsername"), any())).thenReturn(Optional.empty(), Optional.of(deleted));
+        when(tier.promote(1L, "yourUsername")).thenReturn(Optional.of(new Note()));
+
+        service.deleteNoteById(1L);
+
+        verify(tier).promote(1L, "yourUsername");  // Verify that the archived note was moved back to be marked
+        verify(statsService).recordRemoved("yourUsername", deleted);
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, "yourUsername"));
+    }
+
+    /**
+     * Test for restoring a deleted note by its ID.
+     * <p>
+     * This test verifies that the {@link NoteService#restoreNoteById(Long)} method clears the deletion mark
+     * through {@link NoteRepository#restore(Long, String)}, announces the change and returns the note.
+     * </p>
+     */
+    @Test
+    public void testRestoreNoteById() {
+        Note note = new Note();
+        note.setId(1L);
+        note.setTitle("Restored Note");
+        when(noteRepository.restore(1L, "yourUsername")).thenReturn(1);
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.of(note));
+
+        Note restoredNote = noteService.restoreNoteById(1L);
+
+        assertEquals("Restored Note", restoredNote.getTitle());  // Verify that the restored note is returned
+        verify(statsService).recordAdded(note, 0);  // Verify that the note is counted again
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, "yourUsername"));  // Verify that the restore was announced
+    }
+
+    /**
+     * Test for restoring a note that is not deleted or no longer exists.
+     * <p>
+     * This test verifies that the {@link NoteService#restoreNoteById(Long)} method throws a
+     * {@link NoteNotFoundException} when the repository restores nothing, and that nothing is announced.
+     * </p>
+     */
+    @Test
+    public void testRestoreNoteByIdNotFound() {
+        when(noteRepository.restore(1L, "yourUsername")).thenReturn(0);
+
+        assertThrows(NoteNotFoundException.class, () -> noteService.restoreNoteById(1L));  // Verify that nothing can be restored
+        verify(eventPublisher, never()).publishEvent(any(Object.class));  // Verify that no change was announced
     }
 
     /**
      * Test for retrieving all notes.
      * <p>
      * This test verifies that the {@link NoteService#getAllNotes()} method correctly interacts with
-     * the {@link NoteRepository#findAll()} method to retrieve all notes. The repository's findAll method
+     * the {@link NoteRepository#findByOwnerOrderById(String)} method to retrieve all notes of the user. The repository's method
      * is mocked to return a list of notes, and the test asserts that the returned list is not null and
      * contains the expected notes.
      * </p>
@@ -137,8 +339,8 @@ public class NoteServiceTest {
                 new Note() {{ setId(2L); setTitle("Note 2"); setContent("Content 2"); }}
         );
 
-        // Mock the behavior of the NoteRepository to return the list of notes when findAll is called
-        when(noteRepository.findAll()).thenReturn(notes);
+        // Mock the behavior of the NoteRepository to return the list of notes when the user's notes are listed
+        when(noteRepository.findByOwnerOrderById("yourUsername")).thenReturn(notes);
 
         // Call the getAllNotes method and assert the results
         List<Note> retrievedNotes = noteService.getAllNotes();
@@ -153,8 +355,8 @@ public class NoteServiceTest {
      * Test for retrieving a note by its ID.
      * <p>
      * This test verifies that the {@link NoteService#getNoteById(Long)} method correctly interacts with
-     * the {@link NoteRepository#findById(Object)} method to retrieve a note by its ID. The repository's
-     * findById method is mocked to return an Optional containing a note, and the test asserts that the
+     * the {@link NoteRepository#findByIdAndOwner(Long, String)} method to retrieve a note by its ID. The repository's
+     * findByIdAndOwner method is mocked to return an Optional containing a note, and the test asserts that the
      * returned note is not null and contains the expected details.
      * </p>
      */
@@ -166,8 +368,8 @@ public class NoteServiceTest {
         note.setTitle("Test Note");
         note.setContent("Test Content");
 
-        // Mock the behavior of the NoteRepository to return the note when findById is called
-        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+        // Mock the behavior of the NoteRepository to return the note when findByIdAndOwner is called
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.of(note));
 
         // Call the getNoteById method and assert the results
         Note retrievedNote = noteService.getNoteById(1L);
@@ -178,12 +380,63 @@ public class NoteServiceTest {
         assertEquals("Test Content", retrievedNote.getContent());  // Verify that the content is as expected
     }
 
+    /**
+     * Test for retrieving a note that has been moved into the archive.
+     * <p>
+     * This test verifies that {@link NoteService#getNoteById(Long)} reads a note that is not found in the
+     * database from the {@link NoteTierService}, without moving it back into the database.
+     * </p>
+     */
+    @Test
+    public void testGetArchivedNoteById() {
+        NoteTierService tier = mock(NoteTierService.class);
+        when(tierService.getIfAvailable()).thenReturn(tier);
+        NoteService service = new NoteService(noteRepository, contentCompressor, eventPublisher, writeBehindQueue, revisionService, bodyStore,
+                statsService, tierService);
+
+        Note archived = new Note();
+        archived.setId(1L);
+        archived.setTitle("Archived Note");
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.empty());
+        when(tier.findArchived(1L, "yourUsername")).thenReturn(Optional.of(archived));
+
+        assertSame(archived, service.getNoteById(1L));  // Verify that the archived note is found
+        verify(tier, never()).promote(any(), any());  // Verify that reading leaves the note in the archive
+    }
+
+    /**
+     * Test for retrieving several notes by their IDs.
+     * <p>
+     * This test verifies that the {@link NoteService#getNotesByIds(List)} method reads all notes with one call to
+     * {@link NoteRepository#findByIdInAndOwner(Long[], String)}, and returns the notes found in the requested order
+     * even though the repository returns them in another order.
+     * </p>
+     */
+    @Test
+    public void testGetNotesByIds() {
+        Note first = new Note();
+        first.setId(1L);
+        first.setTitle("First");
+        Note third = new Note();
+        third.setId(3L);
+        third.setTitle("Third");
+
+        // The repository returns the notes in ID order and does not find note 2
+        when(noteRepository.findByIdInAndOwner(new Long[]{3L, 2L, 1L}, "yourUsername")).thenReturn(List.of(first, third));
+
+        List<Note> retrievedNotes = noteService.getNotesByIds(List.of(3L, 2L, 1L));
+
+        assertEquals(2, retrievedNotes.size());  // Verify that only the notes found are returned
+        assertEquals("Third", retrievedNotes.get(0).getTitle());  // Verify that the requested order is kept
+        assertEquals("First", retrievedNotes.get(1).getTitle());
+    }
+
     /**
      * Test for searching notes by title.
      * <p>
      * This test verifies that the {@link NoteService#searchNotesByTitle(String)} method correctly interacts with
-     * the {@link NoteRepository#findByTitleContainingIgnoreCase(String)} method to search for notes by title.
-     * The repository's findByTitleContainingIgnoreCase method is mocked to return a list of notes, and the test
+     * the {@link NoteRepository#findByOwnerAndTitleContainingIgnoreCase(String, String)} method to search for notes by title.
+     * The repository's findByOwnerAndTitleContainingIgnoreCase method is mocked to return a list of notes, and the test
      * asserts that the returned list is not null and contains the expected notes.
      * </p>
      */
@@ -195,8 +448,8 @@ public class NoteServiceTest {
                 new Note() {{ setId(2L); setTitle("Another Test Note"); setContent("Content 2"); }}
         );
 
-        // Mock the behavior of the NoteRepository to return the list of notes when findByTitleContainingIgnoreCase is called
-        when(noteRepository.findByTitleContainingIgnoreCase("Test")).thenReturn(notes);
+        // Mock the behavior of the NoteRepository to return the list of notes when findByOwnerAndTitleContainingIgnoreCase is called
+        when(noteRepository.findByOwnerAndTitleContainingIgnoreCase("yourUsername", "Test")).thenReturn(notes);
 
         // Call the searchNotesByTitle method and assert the results
         List<Note> retrievedNotes = noteService.searchNotesByTitle("Test");
@@ -207,4 +460,27 @@ public class NoteServiceTest {
         assertEquals("Another Test Note", retrievedNotes.get(1).getTitle());  // Verify the title of the second note
     }
 
+    /**
+     * Test for retrieving, updating and deleting a note of another user.
+     * <p>
+     * This test verifies that a note the repository does not find for the authenticated user is reported as
+     * not found, exactly like a note that does not exist, and that nothing is changed or announced.
+     * </p>
+     */
+    @Test
+    public void testNoteOfAnotherUserIsNotFound() {
+        // The repository finds no note with ID 1 owned by the authenticated user
+        when(noteRepository.findByIdAndOwner(1L, "yourUsername")).thenReturn(Optional.empty());
+        when(noteRepository.markDeleted(eq(1L), eq("yourUsername"), any())).thenReturn(Optional.empty());
+
+        NoteNotFoundException e = assertThrows(NoteNotFoundException.class, () -> noteService.getNoteById(1L));  // Verify that the note cannot be read
+        assertEquals(1L, e.getNoteId());
+        assertEquals(0, e.getStackTrace().length);  // Verify that no stack trace was captured for the expected outcome
+        assertThrows(NoteNotFoundException.class, () -> noteService.updateNote(1L, new Note()));  // Verify that it cannot be updated
+        assertThrows(NoteNotFoundException.class, () -> noteService.deleteNoteById(1L));  // Verify that it cannot be deleted
+        verify(noteRepository, never()).deleteById(any());  // Verify that nothing was deleted
+        verify(eventPublisher, never()).publishEvent(any(Object.class));  // Verify that no change was announced
+        verifyNoInteractions(statsService);  // Verify that the statistics are unchanged
+    }
+
 }
\ No newline at end of file
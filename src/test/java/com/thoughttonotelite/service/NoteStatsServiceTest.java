@@ -0,0 +1,123 @@
+package com.thoughttonotelite.service;
+
+import com.thoughttonotelite.model.DeletedNote;
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.model.NoteStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NoteStatsService} class.
+ * <p>
+ * These tests load statistics from a loader standing in for the database, record changes to notes and verify
+ * that the counters and histograms follow the changes, that each owner only sees their own statistics, and
+ * that a reconciliation replaces counters that have drifted.
+ * </p>
+ */
+public class NoteStatsServiceTest {
+
+    private final Map<String, NoteStatsLoader.OwnerTotals> stored = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final NoteStatsService statsService = new NoteStatsService((createdSince, updatedSince) -> {
+        loads.incrementAndGet();
+        return Map.copyOf(stored);
+    }, 7, 24);
+
+    private static Note note(String owner, String content, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        Note note = new Note();
+        note.setOwner(owner);
+        note.setContent(content);
+        note.setCreatedAt(createdAt);
+        note.setUpdatedAt(updatedAt);
+        return note;
+    }
+
+    /**
+     * Test that the statistics are loaded before they are first read, and only then.
+     */
+    @Test
+    public void testLoadsBeforeFirstRead() {
+        LocalDateTime now = LocalDateTime.now();
+        stored.put("alice", new NoteStatsLoader.OwnerTotals(3, 300, Map.of(now.toLocalDate(), 2L),
+                Map.of(now.truncatedTo(ChronoUnit.HOURS), 1L)));
+
+        NoteStats stats = statsService.getStats("alice");
+        statsService.getStats("alice");
+
+        assertEquals(1, loads.get());  // Verify that the counters are read without loading again
+        assertEquals(3, stats.totalNotes());
+        assertEquals(300, stats.totalContentBytes());
+        assertEquals(7, stats.notesPerDay().size());  // Verify that every day is listed, including days without notes
+        assertEquals(2, stats.notesPerDay().get(now.toLocalDate()));
+        assertEquals(1, stats.recentlyUpdated());
+        assertNotNull(stats.reconciledAt());
+    }
+
+    /**
+     * Test that created, updated and deleted notes are counted in the totals and histograms.
+     */
+    @Test
+    public void testRecordsChanges() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime lastWeek = now.minusDays(10);
+        statsService.reconcile();
+
+        Note fresh = note("alice", "Hello", now, now);
+        Note old = note("alice", "Old note", lastWeek, lastWeek);
+        statsService.recordAdded(fresh, 5);
+        statsService.recordAdded(old, 8);
+        statsService.recordAdded(note("bob", "Not Alice's", now, now), 11);
+
+        NoteStats stats = statsService.getStats("alice");
+        assertEquals(2, stats.totalNotes());
+        assertEquals(13, stats.totalContentBytes());
+        assertEquals(1, stats.notesPerDay().get(now.toLocalDate()));  // Verify that the old note is outside the histogram
+        assertEquals(1, stats.recentlyUpdated());
+
+        // Updating the old note makes it recent and changes its size
+        Note updated = note("alice", "Old note, now longer", lastWeek, now);
+        statsService.recordUpdated(updated, lastWeek, 8, 20);
+        stats = statsService.getStats("alice");
+        assertEquals(25, stats.totalContentBytes());
+        assertEquals(2, stats.recentlyUpdated());
+
+        statsService.recordRemoved("alice", DeletedNote.of(now, now, 5));
+        stats = statsService.getStats("alice");
+        assertEquals(1, stats.totalNotes());
+        assertEquals(20, stats.totalContentBytes());
+        assertEquals(0, stats.notesPerDay().get(now.toLocalDate()));
+        assertEquals(1, stats.recentlyUpdated());
+        assertEquals(1, statsService.getStats("bob").totalNotes());  // Verify that other owners are unaffected
+
+        // A note counted when it was accepted, but never stored
+        statsService.recordRemoved(note("bob", "Not Alice's", now, now));
+        assertEquals(0, statsService.getStats("bob").totalNotes());
+        assertEquals(0, statsService.getStats("bob").totalContentBytes());
+    }
+
+    /**
+     * Test that a reconciliation replaces counters that have drifted and drops owners without notes.
+     */
+    @Test
+    public void testReconciliationCorrectsDrift() {
+        LocalDateTime now = LocalDateTime.now();
+        statsService.reconcile();
+        statsService.recordAdded(note("alice", "Counted twice", now, now), 13);
+        statsService.recordAdded(note("carol", "Deleted directly in the database", now, now), 32);
+        stored.put("alice", new NoteStatsLoader.OwnerTotals(5, 50, Map.of(), Map.of()));
+
+        statsService.reconcile();
+
+        assertEquals(5, statsService.getStats("alice").totalNotes());
+        assertEquals(50, statsService.getStats("alice").totalContentBytes());
+        assertEquals(0, statsService.getStats("alice").recentlyUpdated());
+        assertEquals(0, statsService.getStats("carol").totalNotes());  // Verify that owners without notes are dropped
+    }
+}
@@ -0,0 +1,78 @@
+package com.thoughttonotelite.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LongOffsetIndex} class.
+ * <p>
+ * These tests compare the index against a {@link HashMap} under random inserts, replacements and removals,
+ * so that growing the table and shifting entries back on removal are exercised together, and check that the
+ * key {@code 0}, which marks empty slots, is never found.
+ * </p>
+ */
+public class LongOffsetIndexTest {
+
+    /**
+     * Test that the index agrees with a reference map after many random operations.
+     */
+    @Test
+    public void testAgreesWithReferenceMap() {
+        LongOffsetIndex index = new LongOffsetIndex();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Long expected = reference.remove(key);
+                assertEquals(expected == null ? LongOffsetIndex.NO_OFFSET : expected, index.remove(key));
+            } else {
+                long offset = random.nextLong() & Long.MAX_VALUE;
+                Long expected = reference.put(key, offset);
+                assertEquals(expected == null ? LongOffsetIndex.NO_OFFSET : expected, index.put(key, offset));
+            }
+        }
+
+        assertEquals(reference.size(), index.size());  // Verify that the sizes match
+        for (long key = 1; key <= 5_000; key++) {
+            // Verify that every key, present or removed, is still found correctly after removals shifted entries
+            assertEquals(reference.getOrDefault(key, LongOffsetIndex.NO_OFFSET), index.get(key));
+        }
+    }
+
+    /**
+     * Test that the key 0 is not found in empty slots, and that removing it changes nothing.
+     */
+    @Test
+    public void testKeyZeroIsNeverFound() {
+        LongOffsetIndex index = new LongOffsetIndex();
+        assertEquals(LongOffsetIndex.NO_OFFSET, index.get(0));
+        index.put(1, 10);
+
+        assertEquals(LongOffsetIndex.NO_OFFSET, index.get(0));
+        assertEquals(LongOffsetIndex.NO_OFFSET, index.remove(0));
+        assertEquals(1, index.size());  // Verify that the size is unchanged
+        assertEquals(10, index.get(1));
+        assertThrows(IllegalArgumentException.class, () -> index.put(0, 1));
+    }
+
+    /**
+     * Test that the keys are returned in ascending order.
+     */
+    @Test
+    public void testSortedKeys() {
+        LongOffsetIndex index = new LongOffsetIndex();
+        index.put(30, 3);
+        index.put(10, 1);
+        index.put(20, 2);
+        index.remove(20);
+
+        assertArrayEquals(new long[]{10, 30}, index.sortedKeys());
+    }
+}
@@ -0,0 +1,162 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.Note;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NoteArchive} class.
+ * <p>
+ * These tests verify that archived notes are read back with all their fields after reopening, found by owner
+ * and title, and stored compressed; that superseded notes are no longer found unless archived again, and that
+ * segments holding only superseded notes are deleted; and that a torn superseded log and corrupt records are
+ * detected.
+ * </p>
+ */
+public class NoteArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private static Note note(long id, String owner, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setOwner(owner);
+        note.setTitle(title);
+        note.setContent(content);
+        note.setCreatedAt(LocalDateTime.of(2023, 1, 1, 12, 0, 0, 123_456_789));
+        note.setUpdatedAt(LocalDateTime.of(2023, 1, 2, 12, 0));
+        return note;
+    }
+
+    /**
+     * Test that archived notes are read back after reopening, by ID and by owner, with all their fields.
+     */
+    @Test
+    public void testReadsArchivedNotesAfterReopen() throws Exception {
+        String large = "Zeile äöü 😀\n".repeat(10_000);
+        try (NoteArchive archive = new NoteArchive(directory, 9)) {
+            assertTrue(archive.isEmpty());
+            assertNull(archive.read(1));
+            archive.write(List.of(note(3, "alice", "Large", large), note(1, "alice", "First", "first"),
+                    note(2, "bob", null, null)));
+        }
+
+        try (NoteArchive archive = new NoteArchive(directory, 9)) {
+            Note first = archive.read(1);
+            assertEquals("First", first.getTitle());
+            assertEquals("first", first.getContent());
+            assertEquals("alice", first.getOwner());
+            assertEquals(LocalDateTime.of(2023, 1, 1, 12, 0, 0, 123_456_789), first.getCreatedAt());
+            assertEquals(LocalDateTime.of(2023, 1, 2, 12, 0), first.getUpdatedAt());
+            assertEquals(large, archive.read(3).getContent());
+            assertNotNull(archive.read(3).getCompressedContent());  // Verify that the large content is stored compressed
+            assertNull(archive.read(2).getContent());
+            assertNull(archive.read(2).getTitle());
+            assertNull(archive.read(4));
+
+            // Verify that notes are found by owner, in ID order, and filtered by title
+            assertEquals(List.of(1L, 3L), archive.readByOwner("alice", title -> true).stream().map(Note::getId).toList());
+            assertEquals(List.of(3L), archive.readByOwner("alice", "Large"::equals).stream().map(Note::getId).toList());
+            assertEquals(List.of(2L), archive.readByOwner("bob", title -> true).stream().map(Note::getId).toList());
+            assertEquals(List.of(), archive.readByOwner("carol", title -> true));
+
+            List<NoteArchive.Entry> entries = new ArrayList<>();
+            archive.forEach(entries::add);
+            assertEquals(3, entries.size());
+            assertTrue(entries.contains(new NoteArchive.Entry(3, "alice", LocalDateTime.of(2023, 1, 1, 12, 0, 0, 123_456_789),
+                    LocalDateTime.of(2023, 1, 2, 12, 0), large.getBytes(StandardCharsets.UTF_8).length)));
+            assertArrayEquals(new long[]{1, 2, 3}, archive.ids());
+        }
+        assertTrue(Files.size(directory.resolve("archive-0000000001.seg")) < large.length() / 10);
+    }
+
+    /**
+     * Test that superseded notes are no longer found, unless archived again later, and that segments holding only
+     * superseded notes are deleted.
+     */
+    @Test
+    public void testSupersededNotes() throws Exception {
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            archive.write(List.of(note(1, "alice", "First", "first"), note(2, "alice", "Second", "second")));
+            archive.markSuperseded(1);
+            assertNull(archive.read(1));
+            assertEquals(List.of(2L), archive.readByOwner("alice", title -> true).stream().map(Note::getId).toList());
+
+            // Archive the first note again with another title, and supersede the rest of the first segment
+            archive.write(List.of(note(1, "alice", "First, archived again", "first")));
+            assertEquals("First, archived again", archive.read(1).getTitle());
+            archive.markSuperseded(2);
+            assertNull(archive.read(2));
+            assertEquals("First, archived again", archive.read(1).getTitle());  // Verify that the newer copy stays current
+        }
+
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            assertNull(archive.read(2));
+            assertEquals("First, archived again", archive.read(1).getTitle());
+            assertEquals(1, archive.deleteObsoleteSegments());
+            assertEquals(1, archive.segmentCount());
+            archive.markSuperseded(1);
+            assertEquals(0, archive.deleteObsoleteSegments());  // Verify that the newest segment is kept
+            assertTrue(archive.readByOwner("alice", title -> true).isEmpty());
+
+            // Verify that segment IDs are not reused
+            assertEquals(3, archive.write(List.of(note(2, "alice", "Second", "second"))));
+            assertEquals("Second", archive.read(2).getTitle());
+        }
+    }
+
+    /**
+     * Test that a torn append to the superseded log is ignored and overwritten, and that corrupt records and
+     * segments are detected.
+     */
+    @Test
+    public void testDetectsTornAndCorruptFiles() throws Exception {
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            archive.write(List.of(note(1, "alice", "First", "first"), note(2, "alice", "Second", "x".repeat(1000))));
+            archive.markSuperseded(1);
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("superseded.log"), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 0}));
+        }
+
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            assertNull(archive.read(1));
+            archive.markSuperseded(2);
+        }
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            assertNull(archive.read(1));
+            assertNull(archive.read(2));  // Verify that the append after the torn record is replayed
+        }
+
+        Path segment = directory.resolve("archive-0000000001.seg");
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            archive.write(List.of(note(3, "alice", "Third", "third")));
+        }
+        Path newest = directory.resolve("archive-0000000002.seg");
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'?'}), 40);  // Inside the body of the only record
+        }
+        try (NoteArchive archive = new NoteArchive(directory, 6)) {
+            assertThrows(IllegalStateException.class, () -> archive.read(3));
+        }
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> new NoteArchive(directory, 6));
+    }
+}
@@ -0,0 +1,193 @@
+package com.thoughttonotelite.storage;
+
+import com.thoughttonotelite.model.Note;
+import com.thoughttonotelite.utils.ContentCompressionUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link NoteLog} class.
+ * <p>
+ * These tests verify that the index rebuilt by replaying the log on reopening matches what was written,
+ * that a record torn by a crash is ignored and overwritten, that notes marked as deleted can be restored
+ * or purged, and that compaction keeps live notes, deletes and the ID sequence intact across reopening.
+ * </p>
+ */
+public class NoteLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private static Note note(String title, String content) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setContent(content);
+        note.setOwner("alice");
+        note.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_789));
+        note.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 12, 0));
+        return note;
+    }
+
+    /**
+     * Test that notes, updates and deletes are recovered after reopening, with all their fields.
+     */
+    @Test
+    public void testRecoversNotesOnReopen() throws Exception {
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            log.put(note("First", "first"));
+            log.put(note("Second", null));
+            Note large = note("Large", "äöü 😀 " + "x".repeat(10_000));
+            large.setOwner("bob");
+            log.put(large);
+            Note compressed = note("Compressed", null);
+            compressed.storeCompressedContent(ContentCompressionUtil.compress("y".repeat(5_000), 6));
+            log.put(compressed);
+            Note updated = log.read(1);
+            updated.setTitle("First, updated");
+            log.put(updated);
+            assertTrue(log.delete(2));
+            assertFalse(log.delete(2));  // Verify that deleting a missing note reports it
+        }
+
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(3, log.size());
+            assertEquals("First, updated", log.read(1).getTitle());  // Verify that the latest version wins
+            assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_789), log.read(1).getCreatedAt());
+            assertNull(log.read(2));  // Verify that the deleted note stays deleted
+            assertEquals("äöü 😀 " + "x".repeat(10_000), log.read(3).getContent());  // Verify that a note larger than a segment survives
+            assertEquals("y".repeat(5_000), log.read(4).getContent());
+            assertArrayEquals("y".repeat(5_000).getBytes(StandardCharsets.UTF_8), log.readContent(4));
+            assertEquals(List.of("Compressed"), log.readAll(owner -> true, title -> title.startsWith("C")).stream().map(Note::getTitle).toList());
+            assertEquals(List.of("Large"), log.readAll("bob"::equals, title -> true).stream().map(Note::getTitle).toList());  // Verify that notes are filtered by owner
+            assertEquals("alice", log.read(4).getOwner());
+
+            log.put(note("Fifth", "fifth"));
+            assertEquals(5L, log.read(5).getId());  // Verify that IDs continue after the highest one
+        }
+    }
+
+    /**
+     * Test that deletion marks are recovered after reopening, survive saves, and can be restored or purged.
+     */
+    @Test
+    public void testMarksRestoresAndPurgesDeletedNotes() throws Exception {
+        LocalDateTime deletedAt = LocalDateTime.of(2024, 2, 1, 3, 0, 0, 5);
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            for (int i = 1; i <= 4; i++) {
+                log.put(note("Note " + i, i == 2 ? null : "content " + i));
+            }
+            assertTrue(log.markDeleted(1, deletedAt));
+            assertTrue(log.markDeleted(2, deletedAt.plusDays(1)));
+            assertTrue(log.markDeleted(3, deletedAt.plusDays(2)));
+            assertFalse(log.markDeleted(3, deletedAt));  // Verify that a note is only marked once
+            Note saved = log.read(3);
+            saved.setTitle("Saved while deleted");
+            log.put(saved);
+        }
+
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(1, log.size());  // Verify that marked notes are not counted
+            assertEquals(List.of("Note 4"), log.readAll(owner -> true, title -> true).stream().map(Note::getTitle).toList());
+            assertEquals(deletedAt, log.read(1).getDeletedAt());  // Verify that the time of deletion is recovered
+            assertEquals("content 1", log.read(1).getContent());
+            assertTrue(log.isDeleted(3));  // Verify that saving a marked note keeps it marked
+            assertEquals("Saved while deleted", log.read(3).getTitle());
+
+            assertTrue(log.restore(1));
+            assertFalse(log.restore(4));  // Verify that only marked notes are restored
+            assertEquals("content 1", log.read(1).getContent());
+            assertNull(log.read(1).getDeletedAt());
+
+            // Only note 2 was marked before the cutoff; note 1 was restored
+            assertEquals(1, log.purgeDeletedBefore(deletedAt.plusDays(2), 10));
+            assertNull(log.read(2));
+            assertTrue(log.isDeleted(3));
+            assertEquals(1, log.purgeDeletedBefore(deletedAt.plusDays(3), 10));
+            assertEquals(2, log.size());
+        }
+
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(List.of("Note 1", "Note 4"), log.readAll(owner -> true, title -> true).stream().map(Note::getTitle).toList());
+            assertNull(log.read(3));  // Verify that purged notes stay deleted
+        }
+    }
+
+    /**
+     * Test that a record torn by a crash is ignored and that appending continues in its place.
+     */
+    @Test
+    public void testIgnoresTornRecord() throws Exception {
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            log.put(note("First", "first"));
+            log.put(note("Second", "second"));
+        }
+        // Simulate a crash in the middle of writing the second record by corrupting its last byte
+        Path segment = directory.resolve("segment-0000000001.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int second = 8 + buffer.getInt(0);
+            int end = second + 8 + buffer.getInt(second);
+            buffer.put(end - 1, (byte) (buffer.get(end - 1) + 1));
+            buffer.force();
+        }
+
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(1, log.size());  // Verify that only the intact record is recovered
+            log.put(note("Third", "third"));
+        }
+
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals("first", log.read(1).getContent());
+            assertEquals("Third", log.read(2).getTitle());  // Verify that the record appended after the crash is recovered
+        }
+    }
+
+    /**
+     * Test that compaction deletes segments holding mostly garbage without losing notes, deletes or IDs.
+     */
+    @Test
+    public void testCompactionKeepsLiveNotes() throws Exception {
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < 10; i++) {
+                log.put(note("Note " + i, "z".repeat(500)));
+            }
+            // Overwrite the first notes many times, so that the early segments become garbage
+            for (int round = 0; round < 20; round++) {
+                Note note = log.read(1 + round % 3);
+                note.setContent("round " + round + " " + "z".repeat(500));
+                log.put(note);
+            }
+            log.delete(9);
+            log.delete(10);
+            int segments = log.segmentCount();
+
+            int compacted = log.compact(0.5);
+
+            assertTrue(compacted > 0);  // Verify that segments were compacted
+            assertTrue(log.segmentCount() < segments);  // Verify that compacted segments were deleted
+            assertEquals(8, log.size());
+        }
+
+        try (NoteLog log = new NoteLog(directory, SEGMENT_SIZE, false)) {
+            assertEquals(8, log.size());
+            assertEquals("round 18 " + "z".repeat(500), log.read(1).getContent());
+            assertEquals("Note 7", log.read(8).getTitle());
+            assertNull(log.read(9));  // Verify that deleted notes stay deleted after compaction
+            assertNull(log.read(10));
+
+            log.put(note("New", "new"));
+            assertEquals(11L, log.read(11).getId());  // Verify that IDs of deleted notes are not reused
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.thoughttonotelite.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ShardMap} class.
+ * <p>
+ * These tests verify that buckets are spread evenly, and that adding shards only moves buckets to the new
+ * shards, as few as needed.
+ * </p>
+ */
+public class ShardMapTest {
+
+    /**
+     * Test that adding a shard moves buckets only to the new shard, until all shards hold about as many buckets.
+     */
+    @Test
+    public void testPlanMovesToAddedShard() {
+        ShardMap map = ShardMap.initial(2);
+        List<ShardMap.Move> moves = map.planMoves(3);
+
+        assertEquals(ShardMap.BUCKETS / 3, moves.size());  // Verify that only the new shard's share moves
+        for (ShardMap.Move move : moves) {
+            assertEquals(2, move.target());  // Verify that buckets only move to the new shard
+            assertEquals(map.shardOf(move.bucket()), move.source());
+            map.assign(move.bucket(), move.target());
+        }
+
+        int[] counts = new int[3];
+        for (int shard : map.snapshot()) {
+            counts[shard]++;
+        }
+        assertArrayEquals(new int[]{342, 341, 341}, counts);
+        assertTrue(map.planMoves(3).isEmpty());  // Verify that a balanced map needs no moves
+    }
+
+    /**
+     * Test that a note's bucket depends only on its ID.
+     */
+    @Test
+    public void testBucketOf() {
+        assertEquals(0, ShardMap.bucketOf(0));
+        assertEquals(1, ShardMap.bucketOf(ShardMap.BUCKETS + 1));
+        assertEquals(ShardMap.BUCKETS - 1, ShardMap.bucketOf(-1));
+        assertEquals(ShardMap.initial(4).shardOf(ShardMap.bucketOf(4103)), ShardMap.initial(4).shardOfNote(4103));
+    }
+}
@@ -0,0 +1,92 @@
+package com.thoughttonotelite.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BinaryDeltaUtil} class.
+ * <p>
+ * These tests verify that applying a delta to its base always reproduces the target, that typical edits
+ * to large texts produce deltas proportional to the edit, and that malformed deltas are rejected.
+ * </p>
+ */
+public class BinaryDeltaUtilTest {
+
+    private static void assertRoundTrip(byte[] base, byte[] target) {
+        assertArrayEquals(target, BinaryDeltaUtil.apply(base, BinaryDeltaUtil.diff(base, target)));
+    }
+
+    /**
+     * Test that small and empty versions, for which no block can match, round-trip.
+     */
+    @Test
+    public void testRoundTripsShortVersions() {
+        assertRoundTrip(new byte[0], new byte[0]);
+        assertRoundTrip(new byte[0], "new".getBytes(StandardCharsets.UTF_8));
+        assertRoundTrip("old".getBytes(StandardCharsets.UTF_8), new byte[0]);
+        assertRoundTrip("short".getBytes(StandardCharsets.UTF_8), "shorter".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test that random inserts and deletes at random positions round-trip.
+     */
+    @Test
+    public void testRoundTripsRandomEdits() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            byte[] base = new byte[random.nextInt(4000)];
+            for (int j = 0; j < base.length; j++) {
+                // A small alphabet makes for many repeated and colliding blocks
+                base[j] = (byte) ('a' + random.nextInt(4));
+            }
+            StringBuilder target = new StringBuilder(new String(base, StandardCharsets.ISO_8859_1));
+            for (int edit = random.nextInt(8); edit > 0; edit--) {
+                int position = target.isEmpty() ? 0 : random.nextInt(target.length());
+                if (random.nextBoolean()) {
+                    target.delete(position, Math.min(target.length(), position + random.nextInt(50)));
+                } else {
+                    target.insert(position, "x".repeat(random.nextInt(50)));
+                }
+            }
+            assertRoundTrip(base, target.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Test that the delta of a small edit to a large note stays small.
+     */
+    @Test
+    public void testDeltaOfSmallEditIsSmall() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1_000_000) {
+            text.append("Line ").append(random.nextInt()).append(" äöü\n");
+        }
+        byte[] base = text.toString().getBytes(StandardCharsets.UTF_8);
+        text.insert(500_003, "an inserted sentence");
+        text.delete(800_000, 800_100);
+        byte[] target = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] delta = BinaryDeltaUtil.diff(base, target);
+
+        assertTrue(delta.length < 100, "delta of " + delta.length + " bytes");
+        assertArrayEquals(target, BinaryDeltaUtil.apply(base, delta));
+    }
+
+    /**
+     * Test that a delta that does not fit its base is rejected instead of producing garbage.
+     */
+    @Test
+    public void testRejectsMalformedDeltas() {
+        byte[] base = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        byte[] delta = BinaryDeltaUtil.diff(base, base);
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryDeltaUtil.apply(new byte[4], delta));
+        assertThrows(IllegalArgumentException.class, () -> BinaryDeltaUtil.apply(base, new byte[]{(byte) 0x80}));
+        assertThrows(IllegalArgumentException.class, () -> BinaryDeltaUtil.apply(base, new byte[]{10, 4, 'a'}));
+    }
+}